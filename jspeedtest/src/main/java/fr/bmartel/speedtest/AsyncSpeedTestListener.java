@@ -0,0 +1,371 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.model.SpeedTestError;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Speed test listener decorator calling a listener from its own consumer thread so that a slow listener never throttles
+ * transfer threads.
+ * <p/>
+ * Events are published in a pre-allocated ring buffer : progress reports are copied in the report of their slot so
+ * that nothing is allocated per event. When the ring is full, progress events are dropped (they are cumulative, next
+ * report carries the same information) while completion and error events are queued so that none is lost. Consumer
+ * only delivers the newest of consecutive progress events when it is late, older ones are coalesced.
+ *
+ * @author Bertrand Martel
+ */
+public class AsyncSpeedTestListener implements ISpeedTestListener {
+
+    /**
+     * progress event.
+     */
+    private static final int EVENT_PROGRESS = 0;
+
+    /**
+     * completion event.
+     */
+    private static final int EVENT_COMPLETION = 1;
+
+    /**
+     * error event.
+     */
+    private static final int EVENT_ERROR = 2;
+
+    /**
+     * listener called from consumer thread.
+     */
+    private final ISpeedTestListener mListener;
+
+    /**
+     * ring buffer slots.
+     */
+    private final Event[] mRing;
+
+    /**
+     * mask used to compute slot index from sequence (ring size is a power of 2).
+     */
+    private final int mMask;
+
+    /**
+     * events that didn't fit in ring buffer (completion and error only).
+     */
+    private final Queue<Event> mOverflow = new ConcurrentLinkedQueue<>();
+
+    /**
+     * sequence of next event to be published.
+     */
+    private volatile long mHead;
+
+    /**
+     * sequence of next event to be consumed.
+     */
+    private volatile long mTail;
+
+    /**
+     * number of progress events dropped because ring buffer was full.
+     */
+    private volatile long mDroppedCount;
+
+    /**
+     * number of progress events replaced by a newer one before being delivered.
+     */
+    private volatile long mCoalescedCount;
+
+    /**
+     * define if consumer thread is waiting for an event.
+     */
+    private volatile boolean mWaiting;
+
+    /**
+     * define if this listener has been closed.
+     */
+    private volatile boolean mClosed;
+
+    /**
+     * consumer thread.
+     */
+    private final Thread mConsumer;
+
+    /**
+     * Build an asynchronous listener with default capacity.
+     *
+     * @param listener listener to call from consumer thread
+     */
+    public AsyncSpeedTestListener(final ISpeedTestListener listener) {
+        this(listener, SpeedTestConst.DEFAULT_ASYNC_LISTENER_CAPACITY);
+    }
+
+    /**
+     * Build an asynchronous listener.
+     *
+     * @param listener listener to call from consumer thread
+     * @param capacity number of events buffered (rounded up to a power of 2)
+     */
+    public AsyncSpeedTestListener(final ISpeedTestListener listener, final int capacity) {
+
+        mListener = listener;
+
+        int size = 2;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mRing = new Event[size];
+        for (int i = 0; i < size; i++) {
+            mRing[i] = new Event();
+        }
+        mMask = size - 1;
+
+        mConsumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "speedtest-listener");
+        mConsumer.setDaemon(true);
+        mConsumer.start();
+    }
+
+    @Override
+    public synchronized void onCompletion(final SpeedTestReport report) {
+        publish(EVENT_COMPLETION, 0, report, null, null);
+    }
+
+    @Override
+    public synchronized void onProgress(final float percent, final SpeedTestReport report) {
+        publish(EVENT_PROGRESS, percent, report, null, null);
+    }
+
+    @Override
+    public synchronized void onError(final SpeedTestError speedTestError, final String errorMessage) {
+        publish(EVENT_ERROR, 0, null, speedTestError, errorMessage);
+    }
+
+    /**
+     * Publish an event without blocking (called by one transfer thread at a time).
+     *
+     * @param type         event type
+     * @param percent      progress percent
+     * @param report       report
+     * @param error        error
+     * @param errorMessage error message
+     */
+    private void publish(final int type,
+                         final float percent,
+                         final SpeedTestReport report,
+                         final SpeedTestError error,
+                         final String errorMessage) {
+
+        final long head = mHead;
+
+        if (!mOverflow.isEmpty() || head - mTail > mMask) {
+            if (type == EVENT_PROGRESS) {
+                mDroppedCount++;
+                return;
+            }
+            final Event event = new Event();
+            event.set(type, percent, report, error, errorMessage);
+            mOverflow.add(event);
+        } else {
+            mRing[(int) (head & mMask)].set(type, percent, report, error, errorMessage);
+            mHead = head + 1;
+        }
+        if (mWaiting) {
+            LockSupport.unpark(mConsumer);
+        }
+    }
+
+    /**
+     * consumer thread loop.
+     */
+    private void consume() {
+
+        while (true) {
+            final long tail = mTail;
+
+            if (tail != mHead) {
+                final Event event = mRing[(int) (tail & mMask)];
+
+                if (event.mType == EVENT_PROGRESS && tail + 1 != mHead
+                        && mRing[(int) ((tail + 1) & mMask)].mType == EVENT_PROGRESS) {
+                    mCoalescedCount++;
+                } else {
+                    deliver(event);
+                }
+                mTail = tail + 1;
+                continue;
+            }
+            final Event overflowEvent = mOverflow.poll();
+
+            if (overflowEvent != null) {
+                deliver(overflowEvent);
+                continue;
+            }
+            if (mClosed) {
+                return;
+            }
+            mWaiting = true;
+            if (mTail == mHead && mOverflow.isEmpty() && !mClosed) {
+                LockSupport.park(this);
+            }
+            mWaiting = false;
+        }
+    }
+
+    /**
+     * Call listener with an event.
+     *
+     * @param event event
+     */
+    private void deliver(final Event event) {
+        try {
+            switch (event.mType) {
+                case EVENT_PROGRESS:
+                    mListener.onProgress(event.mPercent, event.mProgressReport);
+                    break;
+                case EVENT_COMPLETION:
+                    mListener.onCompletion(event.mReport);
+                    break;
+                default:
+                    mListener.onError(event.mError, event.mErrorMessage);
+                    break;
+            }
+        } catch (RuntimeException e) {
+            //a failing listener must not stop delivery of next events
+        }
+        event.mReport = null;
+        event.mErrorMessage = null;
+    }
+
+    /**
+     * Stop consumer thread once pending events have been delivered.
+     */
+    public void close() {
+        mClosed = true;
+        LockSupport.unpark(mConsumer);
+    }
+
+    /**
+     * Wait for consumer thread to deliver pending events after {@link #close()}.
+     *
+     * @param timeoutMillis maximum time to wait in milliseconds
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitTermination(final long timeoutMillis) throws InterruptedException {
+        mConsumer.join(timeoutMillis);
+    }
+
+    /**
+     * Get number of progress events dropped because listener was too slow and ring buffer was full.
+     *
+     * @return dropped event count
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * Get number of progress events not delivered because a newer progress event was already pending.
+     *
+     * @return coalesced event count
+     */
+    public long getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /**
+     * Get number of events waiting to be delivered.
+     *
+     * @return pending event count
+     */
+    public long getPendingCount() {
+        return mHead - mTail + mOverflow.size();
+    }
+
+    /**
+     * Listener event stored in ring buffer slot.
+     */
+    private static final class Event {
+
+        /**
+         * event type.
+         */
+        private int mType;
+
+        /**
+         * progress percent.
+         */
+        private float mPercent;
+
+        /**
+         * copy of progress report, allocated once per slot.
+         */
+        private final SpeedTestReport mProgressReport = new SpeedTestReport(null, 0, 0, 0, 0, 0, null, null, 0);
+
+        /**
+         * completion report.
+         */
+        private SpeedTestReport mReport;
+
+        /**
+         * error.
+         */
+        private SpeedTestError mError;
+
+        /**
+         * error message.
+         */
+        private String mErrorMessage;
+
+        /**
+         * Set event values.
+         *
+         * @param type         event type
+         * @param percent      progress percent
+         * @param report       report
+         * @param error        error
+         * @param errorMessage error message
+         */
+        private void set(final int type,
+                         final float percent,
+                         final SpeedTestReport report,
+                         final SpeedTestError error,
+                         final String errorMessage) {
+            mType = type;
+            mPercent = percent;
+            if (type == EVENT_PROGRESS) {
+                mProgressReport.copyFrom(report);
+            } else {
+                mReport = report;
+            }
+            mError = error;
+            mErrorMessage = errorMessage;
+        }
+    }
+}
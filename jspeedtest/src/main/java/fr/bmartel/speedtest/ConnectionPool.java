@@ -0,0 +1,295 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * HTTP/1.1 keep-alive connection pool : connections are borrowed by speed test tasks and given back when a response
+ * has been entirely read, so that a new download/upload to the same server doesn't need a new TCP connection & TLS
+ * handshake.
+ * <p/>
+ * Connections are identified by scheme, host, port and proxy. Idle connections are validated before being reused and
+ * are evicted when they have been idle for too long or when there are too many idle connections.
+ * <p/>
+ * A pool can be shared by several speed test sockets.
+ *
+ * @author Bertrand Martel
+ */
+public class ConnectionPool {
+
+    /**
+     * socket timeout in milliseconds used to check if an idle connection has been closed by server.
+     */
+    private static final int VALIDATION_TIMEOUT = 1;
+
+    /**
+     * maximum number of idle connections.
+     */
+    private final int mMaxIdleConnections;
+
+    /**
+     * maximum idle time of a connection in milliseconds.
+     */
+    private final long mKeepAliveDuration;
+
+    /**
+     * idle connections per key, most recently used last.
+     */
+    private final Map<String, Deque<IdleConnection>> mConnectionMap = new HashMap<>();
+
+    /**
+     * number of idle connections.
+     */
+    private int mIdleCount;
+
+    /**
+     * Build connection pool with default max idle connections & keep alive duration.
+     */
+    public ConnectionPool() {
+        this(SpeedTestConst.DEFAULT_MAX_IDLE_CONNECTIONS, SpeedTestConst.DEFAULT_KEEP_ALIVE_DURATION);
+    }
+
+    /**
+     * Build connection pool.
+     *
+     * @param maxIdleConnections maximum number of idle connections
+     * @param keepAliveDuration  maximum idle time of a connection in milliseconds
+     */
+    public ConnectionPool(final int maxIdleConnections, final long keepAliveDuration) {
+        mMaxIdleConnections = maxIdleConnections;
+        mKeepAliveDuration = keepAliveDuration;
+    }
+
+    /**
+     * Build key identifying connections to a server.
+     *
+     * @param protocol protocol (http/https)
+     * @param host     server host
+     * @param port     server port
+     * @param proxy    proxy url (null if no proxy is used)
+     * @return connection key
+     */
+    public static String getKey(final String protocol, final String host, final int port, final String proxy) {
+        return protocol + "://" + host + ":" + port + (proxy != null ? "|" + proxy : "");
+    }
+
+    /**
+     * Borrow an idle connection.
+     *
+     * @param key connection key
+     * @return valid connection or null if there is no idle connection for this key
+     */
+    public Socket acquire(final String key) {
+
+        while (true) {
+            final IdleConnection connection;
+
+            synchronized (this) {
+                evict(System.nanoTime());
+
+                final Deque<IdleConnection> connections = mConnectionMap.get(key);
+
+                if (connections == null) {
+                    return null;
+                }
+                connection = connections.pollLast();
+
+                if (connections.isEmpty()) {
+                    mConnectionMap.remove(key);
+                }
+                mIdleCount--;
+            }
+            if (isHealthy(connection.mSocket)) {
+                return connection.mSocket;
+            }
+            closeQuietly(connection.mSocket);
+        }
+    }
+
+    /**
+     * Give back a connection whose last response has been entirely read.
+     *
+     * @param key    connection key
+     * @param socket connection
+     */
+    public void release(final String key, final Socket socket) {
+
+        if (mMaxIdleConnections <= 0 || socket.isClosed()) {
+            closeQuietly(socket);
+            return;
+        }
+
+        synchronized (this) {
+            Deque<IdleConnection> connections = mConnectionMap.get(key);
+
+            if (connections == null) {
+                connections = new ArrayDeque<>();
+                mConnectionMap.put(key, connections);
+            }
+            connections.addLast(new IdleConnection(socket, System.nanoTime()));
+            mIdleCount++;
+
+            evict(System.nanoTime());
+        }
+    }
+
+    /**
+     * Close all idle connections.
+     */
+    public synchronized void evictAll() {
+        for (final Deque<IdleConnection> connections : mConnectionMap.values()) {
+            for (final IdleConnection connection : connections) {
+                closeQuietly(connection.mSocket);
+            }
+        }
+        mConnectionMap.clear();
+        mIdleCount = 0;
+    }
+
+    /**
+     * Get number of idle connections.
+     *
+     * @return idle connection count
+     */
+    public synchronized int getIdleConnectionCount() {
+        return mIdleCount;
+    }
+
+    /**
+     * Close connections idle for too long and oldest connections if there are too many idle connections.
+     *
+     * @param now current time in nanoseconds
+     */
+    private void evict(final long now) {
+
+        final long keepAliveNanos = mKeepAliveDuration * 1000000L;
+
+        IdleConnection oldest = null;
+        Deque<IdleConnection> oldestList = null;
+
+        final Iterator<Deque<IdleConnection>> iterator = mConnectionMap.values().iterator();
+
+        while (iterator.hasNext()) {
+            final Deque<IdleConnection> connections = iterator.next();
+
+            while (!connections.isEmpty() && (now - connections.peekFirst().mIdleSince) >= keepAliveNanos) {
+                closeQuietly(connections.pollFirst().mSocket);
+                mIdleCount--;
+            }
+            if (connections.isEmpty()) {
+                iterator.remove();
+            } else if (oldest == null || connections.peekFirst().mIdleSince < oldest.mIdleSince) {
+                oldest = connections.peekFirst();
+                oldestList = connections;
+            }
+        }
+        if (mIdleCount > mMaxIdleConnections && oldestList != null) {
+            closeQuietly(oldestList.pollFirst().mSocket);
+            mIdleCount--;
+            if (oldestList.isEmpty()) {
+                mConnectionMap.values().remove(oldestList);
+            }
+            evict(now);
+        }
+    }
+
+    /**
+     * Check that an idle connection has not been closed by server and has no unexpected pending data.
+     *
+     * @param socket idle connection
+     * @return true if connection can be reused
+     */
+    private static boolean isHealthy(final Socket socket) {
+
+        if (socket.isClosed() || !socket.isConnected() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+            return false;
+        }
+        try {
+            final int soTimeout = socket.getSoTimeout();
+            try {
+                socket.setSoTimeout(VALIDATION_TIMEOUT);
+                final InputStream inputStream = socket.getInputStream();
+                inputStream.read();
+                // connection closed by server or unexpected data
+                return false;
+            } catch (SocketTimeoutException e) {
+                return true;
+            } finally {
+                socket.setSoTimeout(soTimeout);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Close socket ignoring errors.
+     *
+     * @param socket socket to close
+     */
+    private static void closeQuietly(final Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            //e.printStackTrace();
+        }
+    }
+
+    /**
+     * Idle connection.
+     */
+    private static class IdleConnection {
+
+        /**
+         * connection socket.
+         */
+        private final Socket mSocket;
+
+        /**
+         * time in nanoseconds from which connection is idle.
+         */
+        private final long mIdleSince;
+
+        /**
+         * Build idle connection.
+         *
+         * @param socket    connection socket
+         * @param idleSince time in nanoseconds from which connection is idle
+         */
+        IdleConnection(final Socket socket, final long idleSince) {
+            mSocket = socket;
+            mIdleSince = idleSince;
+        }
+    }
+}
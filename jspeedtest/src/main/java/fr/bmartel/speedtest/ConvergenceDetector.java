@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+/**
+ * Convergence detector of adaptive speed tests : transferred octet count is sampled at fixed interval, transfer rate is
+ * computed over a sliding window and is considered converged when all windowed rates of the convergence period are
+ * within tolerance of their mean.
+ *
+ * @author Bertrand Martel
+ */
+public class ConvergenceDetector {
+
+    /**
+     * nanoseconds in a second.
+     */
+    private static final double NANO_PER_SECOND = 1e9;
+
+    /**
+     * sample times of the sliding window (ring buffer).
+     */
+    private final long[] mSampleTimes;
+
+    /**
+     * transferred octet counts of the sliding window (ring buffer).
+     */
+    private final long[] mSampleOctets;
+
+    /**
+     * windowed rates of the convergence period in octet/s (ring buffer).
+     */
+    private final double[] mRates;
+
+    /**
+     * maximum relative spread of windowed rates around their mean.
+     */
+    private final double mTolerance;
+
+    /**
+     * number of samples added.
+     */
+    private long mSampleCount;
+
+    /**
+     * number of windowed rates computed.
+     */
+    private long mRateCount;
+
+    /**
+     * Build convergence detector.
+     *
+     * @param sampleInterval interval between two samples in milliseconds
+     * @param window         sliding window used to compute transfer rate in milliseconds
+     * @param period         period during which windowed rate must stay within tolerance in milliseconds
+     * @param tolerance      maximum relative spread of windowed rates around their mean (0.05 for 5%)
+     */
+    public ConvergenceDetector(final int sampleInterval, final int window, final int period, final double tolerance) {
+        mSampleTimes = new long[Math.max(1, window / sampleInterval) + 1];
+        mSampleOctets = new long[mSampleTimes.length];
+        mRates = new double[Math.max(1, period / sampleInterval)];
+        mTolerance = tolerance;
+    }
+
+    /**
+     * Add a sample of transferred octet count.
+     *
+     * @param timestamp  sample time (System.nanoTime())
+     * @param octetCount total number of octet transferred since transfer start
+     * @return true if transfer rate has converged
+     */
+    public boolean addSample(final long timestamp, final long octetCount) {
+
+        final int index = (int) (mSampleCount % mSampleTimes.length);
+        mSampleTimes[index] = timestamp;
+        mSampleOctets[index] = octetCount;
+        mSampleCount++;
+
+        if (mSampleCount < mSampleTimes.length) {
+            return false;
+        }
+        //oldest sample of the window is the next one to be overwritten
+        final int oldest = (int) (mSampleCount % mSampleTimes.length);
+        final long duration = timestamp - mSampleTimes[oldest];
+
+        if (duration <= 0) {
+            return false;
+        }
+        mRates[(int) (mRateCount % mRates.length)] = (octetCount - mSampleOctets[oldest]) * NANO_PER_SECOND / duration;
+        mRateCount++;
+
+        if (mRateCount < mRates.length) {
+            return false;
+        }
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        double sum = 0;
+
+        for (int i = 0; i < mRates.length; i++) {
+            min = Math.min(min, mRates[i]);
+            max = Math.max(max, mRates[i]);
+            sum += mRates[i];
+        }
+        final double mean = sum / mRates.length;
+
+        return mean > 0 && (max - mean) <= mTolerance * mean && (mean - min) <= mTolerance * mean;
+    }
+}
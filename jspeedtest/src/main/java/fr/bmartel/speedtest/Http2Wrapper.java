@@ -0,0 +1,933 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.http2.Http2Connection;
+import fr.bmartel.speedtest.http2.IHttp2Listener;
+import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.inter.ISpeedTestSocket;
+import fr.bmartel.speedtest.inter.IThroughputEstimator;
+import fr.bmartel.speedtest.model.SpeedTestError;
+import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.model.StopReason;
+import fr.bmartel.speedtest.utils.PayloadPool;
+import fr.bmartel.speedtest.utils.SpeedTestUtils;
+import fr.bmartel.speedtest.utils.ThroughputHistogram;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP/2 speed test wrapper : this is used to run the same download/upload request over several streams multiplexed
+ * on a single HTTP/2 connection and merge the result of each stream into a single report.
+ * <p/>
+ * http uri are requested with prior knowledge (h2c), https uri must negotiate h2 with ALPN. For upload, file size is
+ * split between all streams and payload is read from payload pool.
+ *
+ * @author Bertrand Martel
+ */
+public class Http2Wrapper implements IHttp2Listener {
+
+    /**
+     * speed test socket interface.
+     */
+    private final ISpeedTestSocket mSpeedTestSocket;
+
+    /**
+     * speed test listener list of the speed test socket.
+     */
+    private final List<ISpeedTestListener> mListenerList;
+
+    /**
+     * task used to publish reports at fixed interval for the speed test socket.
+     */
+    private final SpeedTestTask mReportTask;
+
+    /**
+     * repeat wrapper of the speed test socket.
+     */
+    private final RepeatWrapper mRepeatWrapper;
+
+    /**
+     * executor running connection read loop and upload writers.
+     */
+    private ExecutorService mExecutorService;
+
+    /**
+     * current HTTP/2 connection.
+     */
+    private volatile Http2Connection mConnection;
+
+    /**
+     * state of each stream of the current speed test.
+     */
+    private volatile StreamState[] mStreams = new StreamState[0];
+
+    /**
+     * number of streams that have not completed yet.
+     */
+    private final AtomicInteger mPendingStream = new AtomicInteger();
+
+    /**
+     * define if completion or error has been dispatched already for the current speed test.
+     */
+    private final AtomicBoolean mFinished = new AtomicBoolean();
+
+    /**
+     * lock used to dispatch callbacks coming from different threads one at a time.
+     */
+    private final Object mDispatchLock = new Object();
+
+    /**
+     * speed test counter, a connection of a previous speed test must not dispatch errors of the current one.
+     */
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    /**
+     * define if speed test has been stopped by user.
+     */
+    private volatile boolean mForceStop;
+
+    /**
+     * TLS handshake duration of current connection in nanoseconds (0 if there was no handshake).
+     */
+    private volatile long mHandshakeDuration;
+
+    /**
+     * define if TLS handshake of current connection has resumed a previous session.
+     */
+    private volatile boolean mSessionResumed;
+
+    /**
+     * receive buffer size of current connection in octet.
+     */
+    private volatile int mReceiveBufferSize;
+
+    /**
+     * send buffer size of current connection in octet.
+     */
+    private volatile int mSendBufferSize;
+
+    /**
+     * throughput estimator of current connection (null if transfer rate is computed since start).
+     */
+    private volatile IThroughputEstimator mEstimator;
+
+    /**
+     * transfer rate histogram of fixed intervals for current connection (all streams).
+     */
+    private final ThroughputHistogram mRateHistogram = new ThroughputHistogram();
+
+    /**
+     * TCP slow-start detector of current connection (all streams), null if warm-up detection is disabled.
+     */
+    private volatile WarmupDetector mWarmupDetector;
+
+    /**
+     * coalescing of progress events of current connection (all streams).
+     */
+    private final ProgressThrottle mProgressThrottle = new ProgressThrottle();
+
+    /**
+     * define if a report interval is set (progress is not dispatched on each frame).
+     */
+    private boolean mReportInterval;
+
+    /**
+     * current speed test mode.
+     */
+    private SpeedTestMode mSpeedTestMode = SpeedTestMode.NONE;
+
+    /**
+     * Build HTTP/2 wrapper.
+     *
+     * @param socket       speed test socket
+     * @param reportTask   task owning the report threadpool of the speed test socket
+     * @param listenerList speed test listener list of the speed test socket
+     */
+    public Http2Wrapper(final ISpeedTestSocket socket,
+                        final SpeedTestTask reportTask,
+                        final List<ISpeedTestListener> listenerList) {
+        mSpeedTestSocket = socket;
+        mReportTask = reportTask;
+        mListenerList = listenerList;
+        mRepeatWrapper = socket.getRepeatWrapper();
+    }
+
+    /**
+     * Start download on several streams.
+     *
+     * @param uri            uri to fetch to download file
+     * @param streamCount    number of streams to open
+     * @param windowSize     receive window of each stream in octet
+     * @param reportInterval define if a report interval is set
+     */
+    public void startDownload(final String uri,
+                              final int streamCount,
+                              final int windowSize,
+                              final boolean reportInterval) {
+        start(SpeedTestMode.DOWNLOAD, uri, 0, streamCount, windowSize, reportInterval);
+    }
+
+    /**
+     * Start upload on several streams, file size is split between all streams.
+     *
+     * @param uri            uri to upload file to
+     * @param fileSizeOctet  total size of file to upload
+     * @param streamCount    number of streams to open
+     * @param windowSize     receive window of each stream in octet
+     * @param reportInterval define if a report interval is set
+     */
+    public void startUpload(final String uri,
+                            final int fileSizeOctet,
+                            final int streamCount,
+                            final int windowSize,
+                            final boolean reportInterval) {
+        start(SpeedTestMode.UPLOAD, uri, fileSizeOctet, streamCount, windowSize, reportInterval);
+    }
+
+    /**
+     * Initialize state for a new speed test and connect from executor.
+     *
+     * @param mode           speed test mode
+     * @param uri            uri to request
+     * @param fileSizeOctet  total size of file to upload
+     * @param streamCount    number of streams to open
+     * @param windowSize     receive window of each stream in octet
+     * @param reportInterval define if a report interval is set
+     */
+    private void start(final SpeedTestMode mode,
+                       final String uri,
+                       final int fileSizeOctet,
+                       final int streamCount,
+                       final int windowSize,
+                       final boolean reportInterval) {
+
+        mSpeedTestMode = mode;
+        mReportInterval = reportInterval;
+        mForceStop = false;
+        mHandshakeDuration = 0;
+        mSessionResumed = false;
+        mFinished.set(false);
+        mStreams = new StreamState[0];
+
+        final int generation = mGeneration.incrementAndGet();
+
+        final URL url;
+        try {
+            url = new URL(uri);
+        } catch (MalformedURLException e) {
+            dispatchError(SpeedTestError.MALFORMED_URI, e.getMessage());
+            return;
+        }
+        if (!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())) {
+            dispatchError(SpeedTestError.UNSUPPORTED_PROTOCOL, "unsupported protocol");
+            return;
+        }
+        if (mExecutorService == null || mExecutorService.isShutdown()) {
+            mExecutorService = Executors.newCachedThreadPool();
+        }
+        try {
+            mExecutorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runConnection(generation, url, fileSizeOctet, streamCount, windowSize);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            dispatchError(SpeedTestError.CONNECTION_ERROR, "executor rejected task");
+        }
+    }
+
+    /**
+     * Connect, open all streams and read frames until connection is closed.
+     *
+     * @param generation    speed test counter value of this connection
+     * @param url           url to request
+     * @param fileSizeOctet total size of file to upload
+     * @param streamCount   number of streams to open
+     * @param windowSize    receive window of each stream in octet
+     */
+    private void runConnection(final int generation,
+                               final URL url,
+                               final int fileSizeOctet,
+                               final int streamCount,
+                               final int windowSize) {
+
+        final boolean download = mSpeedTestMode == SpeedTestMode.DOWNLOAD;
+
+        try {
+            final Socket socket = connect(url);
+            if (socket == null) {
+                return;
+            }
+            socket.setSoTimeout(download ? mSpeedTestSocket.getSocketTimeout() : 0);
+            mReceiveBufferSize = socket.getReceiveBufferSize();
+            mSendBufferSize = socket.getSendBufferSize();
+
+            final Http2Connection connection = new Http2Connection(socket,
+                    windowSize,
+                    (int) Math.min(Integer.MAX_VALUE, (long) windowSize * streamCount),
+                    mSpeedTestSocket.getSocketTimeout(),
+                    this);
+            mConnection = connection;
+
+            if (mForceStop) {
+                connection.close();
+            }
+            connection.start();
+
+            final int count = Math.max(1, Math.min(streamCount, connection.getMaxConcurrentStreams()));
+            final StreamState[] streams = new StreamState[count];
+            final int share = fileSizeOctet / count;
+            final int remain = fileSizeOctet % count;
+
+            for (int i = 0; i < count; i++) {
+                streams[i] = new StreamState();
+                streams[i].mTotal = download ? -1 : ((i == 0) ? share + remain : share);
+            }
+            mPendingStream.set(count);
+            mStreams = streams;
+
+            final String scheme = url.getProtocol();
+            final String authority = (url.getPort() != -1) ? url.getHost() + ":" + url.getPort() : url.getHost();
+            final String path = url.getFile().isEmpty() ? "/" : url.getFile();
+
+            if (mRepeatWrapper.isFirstDownload() && download) {
+                mRepeatWrapper.setFirstDownloadRepeat(false);
+                mRepeatWrapper.setStartDate(System.nanoTime());
+            } else if (mRepeatWrapper.isFirstUpload() && !download) {
+                mRepeatWrapper.setFirstUploadRepeat(false);
+                mRepeatWrapper.setStartDate(System.nanoTime());
+            }
+            if (mRepeatWrapper.isRepeatUpload()) {
+                mRepeatWrapper.updatePacketSize(fileSizeOctet);
+            }
+
+            mRateHistogram.reset(System.nanoTime(), mSpeedTestSocket.getRateInterval());
+
+            synchronized (mProgressThrottle) {
+                mProgressThrottle.reset(System.nanoTime(), mSpeedTestSocket.getProgressInterval(),
+                        mSpeedTestSocket.getProgressOctetStep(), mSpeedTestSocket.getProgressPercentStep());
+            }
+
+            if (mSpeedTestSocket.isAutoWarmup()) {
+                final WarmupDetector warmupDetector = new WarmupDetector();
+                warmupDetector.reset(System.nanoTime(),
+                        TimeUnit.MILLISECONDS.toNanos(SpeedTestConst.WARMUP_MIN_INTERVAL));
+                mWarmupDetector = warmupDetector;
+            } else {
+                mWarmupDetector = null;
+            }
+
+            final IThroughputEstimator estimator = mSpeedTestSocket.getThroughputEstimator();
+            if (estimator != null) {
+                final IThroughputEstimator connectionEstimator = estimator.newInstance();
+                connectionEstimator.reset(System.nanoTime());
+                mEstimator = connectionEstimator;
+            } else {
+                mEstimator = null;
+            }
+
+            for (int i = 0; i < count; i++) {
+                final StreamState stream = streams[i];
+                stream.mStartTime = System.nanoTime();
+                stream.mStreamId = connection.newStream(download ? "GET" : "POST", scheme, authority, path,
+                        download ? 0 : stream.mTotal);
+                if (!download && stream.mTotal > 0) {
+                    mExecutorService.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            writeStream(connection, stream);
+                        }
+                    });
+                }
+            }
+            connection.readLoop();
+
+            if (generation == mGeneration.get()) {
+                //connection closed locally before all streams have ended
+                dispatchError(SpeedTestError.CONNECTION_ERROR, "connection closed");
+            }
+
+        } catch (SocketTimeoutException e) {
+            if (generation == mGeneration.get()) {
+                dispatchError(SpeedTestError.SOCKET_TIMEOUT, e.getMessage());
+            }
+        } catch (IOException | RejectedExecutionException e) {
+            if (generation == mGeneration.get()) {
+                dispatchError(SpeedTestError.CONNECTION_ERROR, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Create and connect socket, https socket negotiates h2 with ALPN.
+     *
+     * @param url url to request
+     * @return connected socket (null if an error has been dispatched)
+     * @throws IOException socket io exception
+     */
+    private Socket connect(final URL url) throws IOException {
+
+        final String hostname = url.getHost();
+
+        final Socket plainSocket = new Socket();
+        SpeedTestUtils.applySocketOptions(mSpeedTestSocket, plainSocket);
+        //frames of different streams must not wait for each other
+        plainSocket.setTcpNoDelay(true);
+
+        if ("http".equals(url.getProtocol())) {
+            plainSocket.connect(new InetSocketAddress(hostname, url.getPort() != -1 ? url.getPort() : 80));
+            return plainSocket;
+        }
+        final int port = url.getPort() != -1 ? url.getPort() : 443;
+        plainSocket.connect(new InetSocketAddress(hostname, port));
+
+        final SSLSocketFactory ssf = SpeedTestUtils.getSslSocketFactory(mSpeedTestSocket);
+        final SSLSocket sslSocket = (SSLSocket) ssf.createSocket(plainSocket, hostname, port, true);
+
+        String protocol;
+        try {
+            final SSLParameters parameters = sslSocket.getSSLParameters();
+            parameters.setApplicationProtocols(new String[]{Http2Connection.PROTOCOL});
+            sslSocket.setSSLParameters(parameters);
+
+            final long handshakeStartMillis = System.currentTimeMillis();
+            final long handshakeStart = System.nanoTime();
+            sslSocket.startHandshake();
+            mHandshakeDuration = System.nanoTime() - handshakeStart;
+            mSessionResumed = SpeedTestUtils.isSessionResumed(sslSocket.getSession(), handshakeStartMillis);
+            protocol = sslSocket.getApplicationProtocol();
+        } catch (NoSuchMethodError e) {
+            //ALPN API is not available on this platform (Android < 10)
+            protocol = null;
+        }
+        if (!Http2Connection.PROTOCOL.equals(protocol)) {
+            sslSocket.close();
+            dispatchError(SpeedTestError.UNSUPPORTED_PROTOCOL, "server does not support HTTP/2");
+            return null;
+        }
+        return sslSocket;
+    }
+
+    /**
+     * Write request body of an upload stream as slices of payload pool block.
+     *
+     * @param connection HTTP/2 connection
+     * @param stream     upload stream
+     */
+    private void writeStream(final Http2Connection connection, final StreamState stream) {
+
+        final byte[] block = PayloadPool.getBlock();
+        final int chunkSize = mSpeedTestSocket.getUploadChunkSize();
+
+        try {
+            long offset = 0;
+
+            while (offset < stream.mTotal) {
+                final int blockOffset = PayloadPool.getBlockOffset(offset);
+                final int length = (int) Math.min(Math.min(stream.mTotal - offset, chunkSize),
+                        block.length - blockOffset);
+                final int sent = connection.writeData(stream.mStreamId, block, blockOffset, length,
+                        offset + length == stream.mTotal);
+                offset += sent;
+                stream.mTemp = offset;
+                addTransferSample(sent);
+
+                if (mRepeatWrapper.isRepeatUpload()) {
+                    mRepeatWrapper.updateTempPacketSize(sent);
+                }
+                if (!mReportInterval) {
+                    dispatchProgress();
+                }
+            }
+            stream.mEndTime = System.nanoTime();
+        } catch (IOException e) {
+            if (!mForceStop) {
+                connection.close();
+            }
+        }
+    }
+
+    @Override
+    public void onHeaders(final int streamId, final Map<String, String> headers, final boolean endStream) {
+
+        final StreamState stream = getStream(streamId);
+        if (stream == null) {
+            return;
+        }
+        final String status = headers.get(":status");
+
+        if (!"200".equals(status)) {
+            dispatchError(SpeedTestError.INVALID_HTTP_RESPONSE, "Error status code " + status);
+            return;
+        }
+        if (mSpeedTestMode == SpeedTestMode.DOWNLOAD) {
+            final String contentLength = headers.get("content-length");
+            if (contentLength != null) {
+                try {
+                    stream.mTotal = Long.parseLong(contentLength.trim());
+                } catch (NumberFormatException e) {
+                    stream.mTotal = -1;
+                }
+                if (mRepeatWrapper.isRepeatDownload() && stream.mTotal > 0) {
+                    mRepeatWrapper.updatePacketSize(stream.mTotal);
+                }
+            }
+        }
+        if (endStream) {
+            onStreamEnd(stream);
+        }
+    }
+
+    @Override
+    public void onData(final int streamId, final int length, final boolean endStream) {
+
+        final StreamState stream = getStream(streamId);
+        if (stream == null) {
+            return;
+        }
+        if (mSpeedTestMode == SpeedTestMode.DOWNLOAD) {
+            stream.mTemp += length;
+            addTransferSample(length);
+
+            if (mRepeatWrapper.isRepeatDownload()) {
+                mRepeatWrapper.updateTempPacketSize(length);
+            }
+            if (!mReportInterval && length > 0) {
+                dispatchProgress();
+            }
+        }
+        if (endStream) {
+            onStreamEnd(stream);
+        }
+    }
+
+    @Override
+    public void onReset(final int streamId, final int errorCode) {
+        dispatchError(SpeedTestError.CONNECTION_ERROR, "stream " + streamId + " reset with error code " + errorCode);
+    }
+
+    @Override
+    public void onGoAway(final int lastStreamId, final int errorCode) {
+
+        final StreamState[] streams = mStreams;
+
+        for (int i = 0; i < streams.length; i++) {
+            if (streams[i].mEndTime == 0 && (errorCode != 0 || streams[i].mStreamId > lastStreamId)) {
+                dispatchError(SpeedTestError.CONNECTION_ERROR, "connection closed by server with error code " +
+                        errorCode);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Process end of a stream, completion is dispatched when all streams have ended.
+     *
+     * @param stream stream state
+     */
+    private void onStreamEnd(final StreamState stream) {
+
+        if (mSpeedTestMode == SpeedTestMode.DOWNLOAD) {
+            stream.mEndTime = System.nanoTime();
+            if (stream.mTotal <= 0) {
+                stream.mTotal = stream.mTemp;
+            }
+        } else if (stream.mEndTime == 0) {
+            stream.mEndTime = System.nanoTime();
+        }
+        if (mPendingStream.decrementAndGet() != 0 || !mFinished.compareAndSet(false, true)) {
+            return;
+        }
+        closeConnection();
+
+        if (!mRepeatWrapper.isRepeat()) {
+            mReportTask.setReportInterval(false);
+            mReportTask.closeReportTimer();
+        }
+        final SpeedTestReport report = getReport();
+        report.setStopReason(mForceStop ? mSpeedTestSocket.getStopReason() : StopReason.COMPLETED);
+
+        synchronized (mDispatchLock) {
+            for (int i = 0; i < mListenerList.size(); i++) {
+                mListenerList.get(i).onCompletion(report);
+            }
+        }
+    }
+
+    /**
+     * Dispatch a progress report merging all streams unless it is coalesced.
+     */
+    private void dispatchProgress() {
+
+        if (mFinished.get() || mListenerList.isEmpty()) {
+            return;
+        }
+        final StreamState[] streams = mStreams;
+
+        long temporaryPacketSize = 0;
+        long totalPacketSize = 0;
+
+        for (int i = 0; i < streams.length; i++) {
+            temporaryPacketSize += streams[i].mTemp;
+            if (streams[i].mTotal <= 0 || totalPacketSize < 0) {
+                totalPacketSize = -1;
+            } else {
+                totalPacketSize += streams[i].mTotal;
+            }
+        }
+        synchronized (mProgressThrottle) {
+            if (!mProgressThrottle.shallDispatch(temporaryPacketSize, totalPacketSize)) {
+                return;
+            }
+        }
+        final SpeedTestReport report = getReport();
+
+        synchronized (mDispatchLock) {
+            for (int i = 0; i < mListenerList.size(); i++) {
+                mListenerList.get(i).onProgress(report.getProgressPercent(), report);
+            }
+        }
+    }
+
+    /**
+     * Close connection and dispatch error once, or completion if speed test has been stopped by user.
+     *
+     * @param error        error type
+     * @param errorMessage error message
+     */
+    private void dispatchError(final SpeedTestError error, final String errorMessage) {
+
+        if (!mFinished.compareAndSet(false, true)) {
+            return;
+        }
+        final long endTime = System.nanoTime();
+        final StreamState[] streams = mStreams;
+
+        for (int i = 0; i < streams.length; i++) {
+            if (streams[i].mEndTime == 0) {
+                streams[i].mEndTime = endTime;
+            }
+        }
+        closeConnection();
+        mReportTask.setReportInterval(false);
+        mReportTask.closeReportTimer();
+
+        synchronized (mDispatchLock) {
+            SpeedTestUtils.dispatchError(mSpeedTestSocket, mForceStop, mListenerList, error, errorMessage);
+        }
+    }
+
+    /**
+     * Get state of a stream.
+     *
+     * @param streamId stream identifier
+     * @return stream state (null if stream is not part of the current speed test)
+     */
+    private StreamState getStream(final int streamId) {
+
+        final StreamState[] streams = mStreams;
+
+        for (int i = 0; i < streams.length; i++) {
+            if (streams[i].mStreamId == streamId) {
+                return streams[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get a report merging all streams.
+     *
+     * @return speed test report
+     */
+    public SpeedTestReport getReport() {
+
+        final StreamState[] streams = mStreams;
+        final List<SpeedTestReport> streamReports = new ArrayList<>(streams.length);
+
+        final int scale = mSpeedTestSocket.getDefaultScale();
+        final RoundingMode roundingMode = mSpeedTestSocket.getDefaultRoundingMode();
+        final long currentTime = System.nanoTime();
+        final long handshakeDuration = mHandshakeDuration;
+        final boolean sessionResumed = mSessionResumed;
+
+        long temporaryPacketSize = 0;
+        long totalPacketSize = 0;
+        long startTime = 0;
+        long reportTime = 0;
+        boolean unknownSize = false;
+
+        for (int i = 0; i < streams.length; i++) {
+
+            final StreamState stream = streams[i];
+            final long streamStart = stream.mStartTime;
+            final long streamReport = (stream.mEndTime != 0) ? stream.mEndTime : currentTime;
+            final long temp = stream.mTemp;
+            final long total = stream.mTotal;
+
+            final SpeedTestReport report = new SpeedTestReport(mSpeedTestMode,
+                    getPercent(temp, total, scale, roundingMode).floatValue(),
+                    streamStart,
+                    streamReport,
+                    temp,
+                    total,
+                    temp,
+                    (streamStart != 0) ? streamReport - streamStart : 0,
+                    1,
+                    scale,
+                    roundingMode);
+            report.setHandshake(handshakeDuration, sessionResumed);
+            report.setSocketBuffers(mReceiveBufferSize, mSendBufferSize);
+            streamReports.add(report);
+
+            temporaryPacketSize += temp;
+
+            if (total <= 0) {
+                unknownSize = true;
+            } else {
+                totalPacketSize += total;
+            }
+            if (streamStart != 0 && (startTime == 0 || streamStart < startTime)) {
+                startTime = streamStart;
+            }
+            if (streamReport > reportTime) {
+                reportTime = streamReport;
+            }
+        }
+        if (unknownSize) {
+            totalPacketSize = -1;
+        }
+
+        final IThroughputEstimator estimator = mEstimator;
+        final WarmupDetector warmupDetector = mWarmupDetector;
+
+        long rateOctetCount = temporaryPacketSize;
+        long rateDuration = (startTime == 0) ? 0 : reportTime - startTime;
+        long warmupDuration = 0;
+        long warmupOctetCount = 0;
+
+        if (estimator != null) {
+            rateOctetCount = Math.round(estimator.getRate(reportTime));
+            rateDuration = (startTime == 0) ? 0 : SpeedTestConst.ESTIMATOR_RATE_DURATION;
+        } else if (warmupDetector != null) {
+            synchronized (warmupDetector) {
+                warmupDuration = warmupDetector.getWarmupDuration();
+                warmupOctetCount = warmupDetector.getWarmupOctetCount();
+                if (warmupDetector.isDetected()) {
+                    //measure since end of TCP slow-start
+                    rateOctetCount = temporaryPacketSize - warmupOctetCount;
+                    rateDuration = reportTime - warmupDetector.getWarmupEndTime();
+                }
+            }
+        }
+
+        SpeedTestReport report = new SpeedTestReport(mSpeedTestMode,
+                getPercent(temporaryPacketSize, totalPacketSize, scale, roundingMode).floatValue(),
+                startTime,
+                reportTime,
+                temporaryPacketSize,
+                totalPacketSize,
+                rateOctetCount,
+                rateDuration,
+                1,
+                scale,
+                roundingMode);
+
+        if (mRepeatWrapper.isRepeat()) {
+            report = mRepeatWrapper.getRepeatReport(scale, roundingMode, mSpeedTestMode, reportTime,
+                    report.getTransferRateOctet());
+            report.setTransferDuration(startTime, reportTime);
+        }
+        report.setStreamReports(streamReports);
+        report.setHandshake(handshakeDuration, sessionResumed);
+        report.setSocketBuffers(mReceiveBufferSize, mSendBufferSize);
+        report.setIntervalRates(mRateHistogram);
+        report.setWarmup(warmupDuration, warmupOctetCount);
+        return report;
+    }
+
+    /**
+     * Feed interval rate histogram, throughput estimator and warm-up detector of current connection with a transfer sample.
+     *
+     * @param octetCount number of octet transferred
+     */
+    private void addTransferSample(final long octetCount) {
+
+        final long timestamp = System.nanoTime();
+        final IThroughputEstimator estimator = mEstimator;
+        final WarmupDetector warmupDetector = mWarmupDetector;
+
+        mRateHistogram.addSample(timestamp, octetCount);
+
+        if (estimator != null) {
+            estimator.addSample(timestamp, octetCount);
+        }
+        if (warmupDetector != null) {
+            //upload streams are written from several threads
+            synchronized (warmupDetector) {
+                warmupDetector.addSample(timestamp, octetCount);
+            }
+        }
+    }
+
+    /**
+     * Compute progress percent.
+     *
+     * @param temporaryPacketSize number of octet transferred
+     * @param totalPacketSize     total number of octet (-1 if unknown)
+     * @param scale               BigDecimal scale
+     * @param roundingMode        BigDecimal RoundingMode
+     * @return progress percent
+     */
+    private static BigDecimal getPercent(final long temporaryPacketSize,
+                                         final long totalPacketSize,
+                                         final int scale,
+                                         final RoundingMode roundingMode) {
+        if (totalPacketSize <= 0) {
+            return BigDecimal.ZERO;
+        }
+        return new BigDecimal(temporaryPacketSize).multiply(SpeedTestConst.PERCENT_MAX)
+                .divide(new BigDecimal(totalPacketSize), scale, roundingMode);
+    }
+
+    /**
+     * retrieve current speed test mode.
+     *
+     * @return speed test mode (UPLOAD/DOWNLOAD/NONE)
+     */
+    public SpeedTestMode getSpeedTestMode() {
+        return mSpeedTestMode;
+    }
+
+    /**
+     * Get number of streams used for the current speed test.
+     *
+     * @return number of streams
+     */
+    public int getStreamCount() {
+        return mStreams.length;
+    }
+
+    /**
+     * close connection / stop download/upload operations, completion is dispatched with current report.
+     */
+    public void forceStopTask() {
+        mForceStop = true;
+        closeConnection();
+    }
+
+    /**
+     * Close connection.
+     */
+    public void closeSocket() {
+        closeConnection();
+    }
+
+    /**
+     * Close current connection if any.
+     */
+    private void closeConnection() {
+        final Http2Connection connection = mConnection;
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Shutdown threadpool without waiting for task completion.
+     */
+    public void shutdown() {
+        if (mExecutorService != null) {
+            mExecutorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Shutdown threadpool and wait for task completion.
+     */
+    public void shutdownAndWait() {
+        if (mExecutorService != null) {
+            mExecutorService.shutdownNow();
+            try {
+                mExecutorService.awaitTermination(SpeedTestConst.THREADPOOL_WAIT_COMPLETION_MS,
+                        TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                //e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Transfer state of a stream.
+     */
+    private static class StreamState {
+
+        /**
+         * stream identifier.
+         */
+        private volatile int mStreamId;
+
+        /**
+         * number of octet transferred.
+         */
+        private volatile long mTemp;
+
+        /**
+         * total number of octet to transfer (-1 if unknown).
+         */
+        private volatile long mTotal;
+
+        /**
+         * request start time in nanoseconds.
+         */
+        private volatile long mStartTime;
+
+        /**
+         * transfer end time in nanoseconds (0 if not ended).
+         */
+        private volatile long mEndTime;
+    }
+}
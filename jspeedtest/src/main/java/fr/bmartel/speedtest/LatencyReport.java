@@ -0,0 +1,203 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.model.LatencyMethod;
+
+/**
+ * Latency test report : round trip time statistics of all successful probes in nanoseconds.
+ *
+ * @author Bertrand Martel
+ */
+public class LatencyReport {
+
+    /**
+     * probe method.
+     */
+    private final LatencyMethod mMethod;
+
+    /**
+     * number of probes sent.
+     */
+    private final int mProbeCount;
+
+    /**
+     * number of successful probes.
+     */
+    private final int mSampleCount;
+
+    /**
+     * minimum latency.
+     */
+    private final long mMin;
+
+    /**
+     * maximum latency.
+     */
+    private final long mMax;
+
+    /**
+     * average latency.
+     */
+    private final long mAverage;
+
+    /**
+     * median latency.
+     */
+    private final long mMedian;
+
+    /**
+     * 95th percentile latency.
+     */
+    private final long mPercentile95;
+
+    /**
+     * jitter : average difference between consecutive latencies.
+     */
+    private final long mJitter;
+
+    /**
+     * Build latency report.
+     *
+     * @param method       probe method
+     * @param probeCount   number of probes sent
+     * @param sampleCount  number of successful probes
+     * @param min          minimum latency in nanoseconds
+     * @param max          maximum latency in nanoseconds
+     * @param average      average latency in nanoseconds
+     * @param median       median latency in nanoseconds
+     * @param percentile95 95th percentile latency in nanoseconds
+     * @param jitter       jitter in nanoseconds
+     */
+    public LatencyReport(final LatencyMethod method,
+                         final int probeCount,
+                         final int sampleCount,
+                         final long min,
+                         final long max,
+                         final long average,
+                         final long median,
+                         final long percentile95,
+                         final long jitter) {
+        mMethod = method;
+        mProbeCount = probeCount;
+        mSampleCount = sampleCount;
+        mMin = min;
+        mMax = max;
+        mAverage = average;
+        mMedian = median;
+        mPercentile95 = percentile95;
+        mJitter = jitter;
+    }
+
+    /**
+     * get probe method.
+     *
+     * @return TCP_CONNECT or HTTP
+     */
+    public LatencyMethod getMethod() {
+        return mMethod;
+    }
+
+    /**
+     * get number of probes sent.
+     *
+     * @return number of probes
+     */
+    public int getProbeCount() {
+        return mProbeCount;
+    }
+
+    /**
+     * get number of successful probes, statistics are computed on these probes only.
+     *
+     * @return number of successful probes
+     */
+    public int getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * get number of failed probes (timeout or connection error).
+     *
+     * @return number of failed probes
+     */
+    public int getLostCount() {
+        return mProbeCount - mSampleCount;
+    }
+
+    /**
+     * get minimum latency.
+     *
+     * @return latency in nanoseconds
+     */
+    public long getMin() {
+        return mMin;
+    }
+
+    /**
+     * get maximum latency.
+     *
+     * @return latency in nanoseconds
+     */
+    public long getMax() {
+        return mMax;
+    }
+
+    /**
+     * get average latency.
+     *
+     * @return latency in nanoseconds
+     */
+    public long getAverage() {
+        return mAverage;
+    }
+
+    /**
+     * get median latency.
+     *
+     * @return latency in nanoseconds
+     */
+    public long getMedian() {
+        return mMedian;
+    }
+
+    /**
+     * get 95th percentile latency (nearest rank).
+     *
+     * @return latency in nanoseconds
+     */
+    public long getPercentile95() {
+        return mPercentile95;
+    }
+
+    /**
+     * get jitter : average absolute difference between latencies of consecutive successful probes.
+     *
+     * @return jitter in nanoseconds
+     */
+    public long getJitter() {
+        return mJitter;
+    }
+}
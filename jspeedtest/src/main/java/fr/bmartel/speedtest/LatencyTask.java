@@ -0,0 +1,556 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.http.HttpFrame;
+import fr.bmartel.speedtest.http.HttpResponseParser;
+import fr.bmartel.speedtest.http.HttpStates;
+import fr.bmartel.speedtest.inter.ILatencyListener;
+import fr.bmartel.speedtest.inter.ISpeedTestSocket;
+import fr.bmartel.speedtest.model.LatencyMethod;
+import fr.bmartel.speedtest.model.SpeedTestError;
+import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.utils.SpeedTestUtils;
+
+import javax.net.ssl.SSLSocket;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency test task : round trip time is measured with TCP connection establishment or HEAD requests on a keep-alive
+ * connection. Host name is resolved and HTTP connection is opened before probes so that only round trip time is
+ * measured.
+ * <p/>
+ * Samples are stored in arrays allocated once per test and HTTP probes reuse the same request and response buffers so
+ * that probes can be sent at high frequency without garbage.
+ *
+ * @author Bertrand Martel
+ */
+public class LatencyTask {
+
+    /**
+     * size of buffer used to read HTTP response header.
+     */
+    private static final int RESPONSE_BUFFER_SIZE = 4096;
+
+    /**
+     * percentile reported in latency report.
+     */
+    private static final double PERCENTILE = 0.95;
+
+    /**
+     * connection header value asking to close connection.
+     */
+    private static final String CLOSE_TOKEN = "close";
+
+    /**
+     * speed test socket interface.
+     */
+    private final ISpeedTestSocket mSocketInterface;
+
+    /**
+     * executor running probes.
+     */
+    private ExecutorService mExecutorService;
+
+    /**
+     * buffer used to read HTTP response header.
+     */
+    private final byte[] mResponseBuffer = new byte[RESPONSE_BUFFER_SIZE];
+
+    /**
+     * parser of HTTP response header.
+     */
+    private final HttpResponseParser mResponseParser = new HttpResponseParser();
+
+    /**
+     * latency of successful probes in probe order in nanoseconds.
+     */
+    private long[] mSamples = new long[0];
+
+    /**
+     * sorted copy of latency samples used to compute median and percentile.
+     */
+    private long[] mSortedSamples = new long[0];
+
+    /**
+     * number of successful probes.
+     */
+    private int mSampleCount;
+
+    /**
+     * number of probes sent.
+     */
+    private int mProbeCount;
+
+    /**
+     * lock guarding samples.
+     */
+    private final Object mSampleLock = new Object();
+
+    /**
+     * probe method of current test.
+     */
+    private LatencyMethod mMethod = LatencyMethod.TCP_CONNECT;
+
+    /**
+     * current speed test mode.
+     */
+    private SpeedTestMode mSpeedTestMode = SpeedTestMode.NONE;
+
+    /**
+     * define if latency test has been stopped by user.
+     */
+    private volatile boolean mForceStop;
+
+    /**
+     * lock object for socket operations.
+     */
+    private final Object mSocketLock = new Object();
+
+    /**
+     * socket of current probe / HTTP connection.
+     */
+    private Socket mSocket;
+
+    /**
+     * Build latency task.
+     *
+     * @param socketInterface speed test socket
+     */
+    public LatencyTask(final ISpeedTestSocket socketInterface) {
+        mSocketInterface = socketInterface;
+    }
+
+    /**
+     * Start latency test.
+     *
+     * @param uri        uri of host to probe (http/https)
+     * @param probeCount number of probes
+     * @param method     probe method
+     * @param listener   latency listener
+     */
+    public void startLatency(final String uri,
+                             final int probeCount,
+                             final LatencyMethod method,
+                             final ILatencyListener listener) {
+
+        final URL url = initLatency(uri, probeCount, method, listener);
+        if (url == null) {
+            return;
+        }
+
+        if (mExecutorService == null || mExecutorService.isShutdown()) {
+            mExecutorService = Executors.newSingleThreadExecutor();
+        }
+        try {
+            mExecutorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runProbes(url, probeCount, listener);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            listener.onError(SpeedTestError.CONNECTION_ERROR, "executor rejected task");
+        }
+    }
+
+    /**
+     * Run latency test in calling thread, listener is called before this method returns.
+     *
+     * @param uri        uri of host to probe (http/https)
+     * @param probeCount number of probes
+     * @param method     probe method
+     * @param listener   latency listener
+     */
+    void runLatency(final String uri,
+                    final int probeCount,
+                    final LatencyMethod method,
+                    final ILatencyListener listener) {
+
+        final URL url = initLatency(uri, probeCount, method, listener);
+        if (url != null) {
+            runProbes(url, probeCount, listener);
+        }
+    }
+
+    /**
+     * Reset samples and parse uri of a new latency test.
+     *
+     * @param uri        uri of host to probe (http/https)
+     * @param probeCount number of probes
+     * @param method     probe method
+     * @param listener   latency listener notified if uri is invalid
+     * @return parsed url or null if uri is invalid
+     */
+    private URL initLatency(final String uri,
+                            final int probeCount,
+                            final LatencyMethod method,
+                            final ILatencyListener listener) {
+
+        mSpeedTestMode = SpeedTestMode.LATENCY;
+        mMethod = method;
+        mForceStop = false;
+
+        synchronized (mSampleLock) {
+            if (mSamples.length < probeCount) {
+                mSamples = new long[probeCount];
+                mSortedSamples = new long[probeCount];
+            }
+            mSampleCount = 0;
+            mProbeCount = 0;
+        }
+
+        final URL url;
+        try {
+            url = new URL(uri);
+        } catch (MalformedURLException e) {
+            listener.onError(SpeedTestError.MALFORMED_URI, e.getMessage());
+            return null;
+        }
+        if (!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())) {
+            listener.onError(SpeedTestError.UNSUPPORTED_PROTOCOL, "unsupported protocol");
+            return null;
+        }
+        return url;
+    }
+
+    /**
+     * Send all probes and dispatch report.
+     *
+     * @param url        url of host to probe
+     * @param probeCount number of probes
+     * @param listener   latency listener
+     */
+    private void runProbes(final URL url, final int probeCount, final ILatencyListener listener) {
+
+        final boolean https = "https".equals(url.getProtocol());
+        final int port = url.getPort() != -1 ? url.getPort() : (https ? 443 : 80);
+        final InetSocketAddress address = new InetSocketAddress(url.getHost(), port);
+
+        if (address.isUnresolved()) {
+            listener.onError(SpeedTestError.CONNECTION_ERROR, "unknown host " + url.getHost());
+            return;
+        }
+        final String path = url.getFile().isEmpty() ? "/" : url.getFile();
+        final byte[] request = ("HEAD " + path + " HTTP/1.1\r\nHost: " + url.getHost() + "\r\n\r\n").getBytes();
+
+        IOException lastError = null;
+
+        for (int i = 0; i < probeCount && !mForceStop; i++) {
+
+            long latency;
+            try {
+                if (mMethod == LatencyMethod.TCP_CONNECT) {
+                    latency = probeConnect(address);
+                } else {
+                    latency = probeHttp(url, address, request);
+                }
+            } catch (IOException e) {
+                lastError = e;
+                latency = -1;
+                closeSocket();
+            }
+            if (mForceStop) {
+                break;
+            }
+            synchronized (mSampleLock) {
+                mProbeCount++;
+                if (latency >= 0) {
+                    mSamples[mSampleCount++] = latency;
+                }
+            }
+            listener.onProbe(i, latency);
+        }
+        closeSocket();
+
+        if (!mForceStop && mSampleCount == 0 && lastError != null) {
+            listener.onError((lastError instanceof SocketTimeoutException) ? SpeedTestError.SOCKET_TIMEOUT :
+                    SpeedTestError.CONNECTION_ERROR, lastError.getMessage());
+        } else {
+            listener.onCompletion(getReport());
+        }
+    }
+
+    /**
+     * Measure TCP connection establishment.
+     *
+     * @param address resolved address of host
+     * @return latency in nanoseconds
+     * @throws IOException connection error
+     */
+    private long probeConnect(final InetSocketAddress address) throws IOException {
+
+        final Socket socket = new Socket();
+        SpeedTestUtils.applySocketOptions(mSocketInterface, socket);
+
+        synchronized (mSocketLock) {
+            mSocket = socket;
+        }
+        final long start = System.nanoTime();
+        socket.connect(address, mSocketInterface.getSocketTimeout());
+        final long latency = System.nanoTime() - start;
+
+        closeSocket();
+        return latency;
+    }
+
+    /**
+     * Measure HEAD request round trip on a keep-alive connection, connection is opened first if needed.
+     *
+     * @param url     url of host to probe
+     * @param address resolved address of host
+     * @param request HEAD request
+     * @return latency in nanoseconds
+     * @throws IOException socket io exception
+     */
+    private long probeHttp(final URL url, final InetSocketAddress address, final byte[] request) throws IOException {
+
+        Socket socket;
+        synchronized (mSocketLock) {
+            socket = mSocket;
+        }
+        if (socket == null || socket.isClosed()) {
+            socket = openConnection(url, address);
+        }
+        final OutputStream outputStream = socket.getOutputStream();
+        final InputStream inputStream = socket.getInputStream();
+
+        final long start = System.nanoTime();
+        outputStream.write(request);
+        outputStream.flush();
+        final int headerLength = readResponseHeader(inputStream);
+        final long latency = System.nanoTime() - start;
+
+        mResponseParser.next();
+        if (mResponseParser.parse(ByteBuffer.wrap(mResponseBuffer, 0, headerLength)) != HttpStates.HTTP_FRAME_OK) {
+            closeSocket();
+            throw new IOException("invalid response header");
+        }
+        if (isConnectionClose(mResponseParser.getFrame())) {
+            //next probe will open a new connection
+            closeSocket();
+        }
+        return latency;
+    }
+
+    /**
+     * Open HTTP connection used by HTTP probes (TLS handshake is done here for https).
+     *
+     * @param url     url of host to probe
+     * @param address resolved address of host
+     * @return connected socket
+     * @throws IOException socket io exception
+     */
+    private Socket openConnection(final URL url, final InetSocketAddress address) throws IOException {
+
+        Socket socket = new Socket();
+        SpeedTestUtils.applySocketOptions(mSocketInterface, socket);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(mSocketInterface.getSocketTimeout());
+
+        synchronized (mSocketLock) {
+            mSocket = socket;
+        }
+        socket.connect(address, mSocketInterface.getSocketTimeout());
+
+        if ("https".equals(url.getProtocol())) {
+            final SSLSocket sslSocket = (SSLSocket) SpeedTestUtils
+                    .getSslSocketFactory(mSocketInterface).createSocket(socket, url.getHost(), address.getPort(), true);
+            sslSocket.startHandshake();
+            socket = sslSocket;
+
+            synchronized (mSocketLock) {
+                mSocket = socket;
+            }
+        }
+        if (mForceStop) {
+            closeSocket();
+        }
+        return socket;
+    }
+
+    /**
+     * Read HTTP response header in response buffer (a response to HEAD request has no body).
+     *
+     * @param inputStream socket input stream
+     * @return header length
+     * @throws IOException socket io exception, end of stream or header too large
+     */
+    private int readResponseHeader(final InputStream inputStream) throws IOException {
+
+        int length = 0;
+
+        while (true) {
+            if (length == mResponseBuffer.length) {
+                throw new IOException("response header too large");
+            }
+            final int read = inputStream.read(mResponseBuffer, length, mResponseBuffer.length - length);
+            if (read == -1) {
+                throw new EOFException("connection closed by server");
+            }
+            for (int i = Math.max(3, length); i < length + read; i++) {
+                if (mResponseBuffer[i] == '\n' && mResponseBuffer[i - 1] == '\r' &&
+                        mResponseBuffer[i - 2] == '\n' && mResponseBuffer[i - 3] == '\r') {
+                    return i + 1;
+                }
+            }
+            length += read;
+        }
+    }
+
+    /**
+     * Check if server closes connection after this response : only connection header options are checked.
+     *
+     * @param frame http response
+     * @return true if connection header contains close option
+     */
+    private static boolean isConnectionClose(final HttpFrame frame) {
+
+        final String connection = frame.getHeaders().get("connection");
+        if (connection == null) {
+            return false;
+        }
+        final String[] options = connection.split(",");
+        for (int i = 0; i < options.length; i++) {
+            if (CLOSE_TOKEN.equalsIgnoreCase(options[i].trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get a report with statistics of probes sent until now.
+     *
+     * @return latency report
+     */
+    public LatencyReport getReport() {
+
+        synchronized (mSampleLock) {
+
+            final int count = mSampleCount;
+
+            if (count == 0) {
+                return new LatencyReport(mMethod, mProbeCount, 0, 0, 0, 0, 0, 0, 0);
+            }
+            long sum = 0;
+            long jitterSum = 0;
+
+            for (int i = 0; i < count; i++) {
+                sum += mSamples[i];
+                if (i > 0) {
+                    jitterSum += Math.abs(mSamples[i] - mSamples[i - 1]);
+                }
+            }
+            System.arraycopy(mSamples, 0, mSortedSamples, 0, count);
+            Arrays.sort(mSortedSamples, 0, count);
+
+            final long median = (count % 2 == 1) ? mSortedSamples[count / 2] :
+                    (mSortedSamples[count / 2 - 1] + mSortedSamples[count / 2]) / 2;
+            final int percentileIndex = (int) Math.ceil(PERCENTILE * count) - 1;
+
+            return new LatencyReport(mMethod,
+                    mProbeCount,
+                    count,
+                    mSortedSamples[0],
+                    mSortedSamples[count - 1],
+                    sum / count,
+                    median,
+                    mSortedSamples[percentileIndex],
+                    (count > 1) ? jitterSum / (count - 1) : 0);
+        }
+    }
+
+    /**
+     * retrieve current speed test mode.
+     *
+     * @return speed test mode (LATENCY/NONE)
+     */
+    public SpeedTestMode getSpeedTestMode() {
+        return mSpeedTestMode;
+    }
+
+    /**
+     * stop probes, completion is dispatched with probes sent until now.
+     */
+    public void forceStopTask() {
+        mForceStop = true;
+        closeSocket();
+    }
+
+    /**
+     * Close current socket.
+     */
+    public void closeSocket() {
+        synchronized (mSocketLock) {
+            if (mSocket != null) {
+                try {
+                    mSocket.close();
+                } catch (IOException e) {
+                    //e.printStackTrace();
+                }
+                mSocket = null;
+            }
+        }
+    }
+
+    /**
+     * Shutdown threadpool without waiting for task completion.
+     */
+    public void shutdown() {
+        if (mExecutorService != null) {
+            mExecutorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Shutdown threadpool and wait for task completion.
+     */
+    public void shutdownAndWait() {
+        if (mExecutorService != null) {
+            mExecutorService.shutdownNow();
+            try {
+                mExecutorService.awaitTermination(SpeedTestConst.THREADPOOL_WAIT_COMPLETION_MS,
+                        TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                //e.printStackTrace();
+            }
+        }
+    }
+}
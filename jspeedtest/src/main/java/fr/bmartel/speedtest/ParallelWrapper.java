@@ -0,0 +1,467 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.inter.ISpeedTestSocket;
+import fr.bmartel.speedtest.model.ComputationMethod;
+import fr.bmartel.speedtest.model.SpeedTestError;
+import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.utils.ThroughputHistogram;
+
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel tasks speed test wrapper : this is used to run the same download/upload request over several
+ * connections at the same time and merge the result of each connection into a single report.
+ * <p/>
+ * For upload, file size is split between all connections.
+ * <p/>
+ * Progress of all connections is merged and throttled here, connection reports are read-only snapshots : transfer
+ * rate interval of each connection is only reset by its own transfer thread.
+ *
+ * @author Bertrand Martel
+ */
+public class ParallelWrapper {
+
+    /**
+     * speed test socket interface.
+     */
+    private final ISpeedTestSocket mSpeedTestSocket;
+
+    /**
+     * speed test listener list of the speed test socket.
+     */
+    private final List<ISpeedTestListener> mListenerList;
+
+    /**
+     * task used to publish reports at fixed interval for the speed test socket.
+     */
+    private final SpeedTestTask mReportTask;
+
+    /**
+     * one task per connection.
+     */
+    private final List<SpeedTestTask> mTaskList = new ArrayList<>();
+
+    /**
+     * listener attached to each connection task.
+     */
+    private final List<ConnectionListener> mConnectionListenerList = new ArrayList<>();
+
+    /**
+     * number of connections used for the current speed test.
+     */
+    private int mConnectionCount;
+
+    /**
+     * number of connections that have not completed yet.
+     */
+    private final AtomicInteger mPendingConnection = new AtomicInteger();
+
+    /**
+     * define if an error has been dispatched already for the current speed test.
+     */
+    private final AtomicBoolean mErrorDispatched = new AtomicBoolean();
+
+    /**
+     * lock used to dispatch callbacks coming from different connections one at a time.
+     */
+    private final Object mDispatchLock = new Object();
+
+    /**
+     * current speed test mode.
+     */
+    private SpeedTestMode mSpeedTestMode = SpeedTestMode.NONE;
+
+    /**
+     * transfer rate histogram of fixed intervals fed by all connections.
+     */
+    private final ThroughputHistogram mRateHistogram = new ThroughputHistogram();
+
+    /**
+     * coalescing of merged progress events dispatched by all connections.
+     */
+    private final ProgressThrottle mProgressThrottle = new ProgressThrottle();
+
+    /**
+     * Build parallel wrapper.
+     *
+     * @param socket       speed test socket
+     * @param reportTask   task owning the report threadpool of the speed test socket
+     * @param listenerList speed test listener list of the speed test socket
+     */
+    public ParallelWrapper(final ISpeedTestSocket socket,
+                           final SpeedTestTask reportTask,
+                           final List<ISpeedTestListener> listenerList) {
+        mSpeedTestSocket = socket;
+        mReportTask = reportTask;
+        mListenerList = listenerList;
+    }
+
+    /**
+     * Start download on several connections.
+     *
+     * @param uri             uri to fetch to download file
+     * @param connectionCount number of connections to open
+     * @param reportInterval  define if a report interval is set
+     */
+    public void startDownload(final String uri, final int connectionCount, final boolean reportInterval) {
+
+        initTasks(SpeedTestMode.DOWNLOAD, connectionCount, reportInterval);
+
+        for (int i = 0; i < mConnectionCount; i++) {
+            mTaskList.get(i).startDownloadRequest(uri);
+        }
+    }
+
+    /**
+     * Start upload on several connections, file size is split between all connections.
+     *
+     * @param uri             uri to upload file to
+     * @param fileSizeOctet   total size of file to upload
+     * @param connectionCount number of connections to open
+     * @param reportInterval  define if a report interval is set
+     */
+    public void startUpload(final String uri,
+                            final int fileSizeOctet,
+                            final int connectionCount,
+                            final boolean reportInterval) {
+
+        initTasks(SpeedTestMode.UPLOAD, connectionCount, reportInterval);
+
+        final int share = fileSizeOctet / connectionCount;
+        final int remain = fileSizeOctet % connectionCount;
+
+        for (int i = 0; i < mConnectionCount; i++) {
+            final SpeedTestTask task = mTaskList.get(i);
+            task.startUploadRequest(getConnectionUri(uri, i), (i == 0) ? share + remain : share);
+        }
+    }
+
+    /**
+     * Get uri used by a connection. FTP connections upload to distinct files, the connection index is appended to
+     * the file name for all connections but the first one.
+     *
+     * @param uri   uri given for the speed test
+     * @param index connection index
+     * @return uri for this connection
+     */
+    private String getConnectionUri(final String uri, final int index) {
+        if (index == 0 || !uri.startsWith("ftp")) {
+            return uri;
+        }
+        return uri + "." + index;
+    }
+
+    /**
+     * Initialize connection tasks & state for a new speed test.
+     *
+     * @param mode            speed test mode
+     * @param connectionCount number of connections to open
+     * @param reportInterval  define if a report interval is set
+     */
+    private void initTasks(final SpeedTestMode mode, final int connectionCount, final boolean reportInterval) {
+
+        mSpeedTestMode = mode;
+        mConnectionCount = connectionCount;
+        mPendingConnection.set(connectionCount);
+        mErrorDispatched.set(false);
+        mRateHistogram.reset(System.nanoTime(), mSpeedTestSocket.getRateInterval());
+
+        synchronized (mDispatchLock) {
+            mProgressThrottle.reset(System.nanoTime(), mSpeedTestSocket.getProgressInterval(),
+                    mSpeedTestSocket.getProgressOctetStep(), mSpeedTestSocket.getProgressPercentStep());
+        }
+
+        while (mTaskList.size() < connectionCount) {
+            final ConnectionListener listener = new ConnectionListener();
+            mConnectionListenerList.add(listener);
+            final SpeedTestTask task = new SpeedTestTask(mSpeedTestSocket,
+                    Collections.<ISpeedTestListener>singletonList(listener));
+            task.setAggregateHistogram(mRateHistogram);
+            task.setMergedProgress(true);
+            mTaskList.add(task);
+        }
+        for (int i = 0; i < mConnectionCount; i++) {
+            mConnectionListenerList.get(i).reset();
+            mTaskList.get(i).setReportInterval(reportInterval);
+        }
+    }
+
+    /**
+     * Get a report merging all connections.
+     *
+     * @return speed test report
+     */
+    public SpeedTestReport getReport() {
+
+        final List<SpeedTestReport> streamReports = new ArrayList<>(mConnectionCount);
+
+        long temporaryPacketSize = 0;
+        long totalPacketSize = 0;
+        long startTime = 0;
+        long reportTime = 0;
+        boolean unknownSize = false;
+        long handshakeDuration = 0;
+        boolean sessionResumed = mConnectionCount > 0;
+        int receiveBufferSize = 0;
+        int sendBufferSize = 0;
+        long warmupDuration = 0;
+        long warmupOctetCount = 0;
+        double transferRateOctet = 0;
+        boolean rateComputed = false;
+
+        for (int i = 0; i < mConnectionCount; i++) {
+
+            final SpeedTestReport report = mTaskList.get(i).getStreamSnapshot(mSpeedTestMode);
+            streamReports.add(report);
+
+            temporaryPacketSize += report.getTemporaryPacketSize();
+
+            if (report.getTotalPacketSize() <= 0) {
+                unknownSize = true;
+            } else {
+                totalPacketSize += report.getTotalPacketSize();
+            }
+            if (report.getStartTime() != 0 && (startTime == 0 || report.getStartTime() < startTime)) {
+                startTime = report.getStartTime();
+            }
+            if (report.getReportTime() > reportTime) {
+                reportTime = report.getReportTime();
+            }
+            if (report.getRateDuration() > 0) {
+                transferRateOctet += report.getRateOctetCount() * (double) SpeedTestConst.ESTIMATOR_RATE_DURATION /
+                        report.getRateDuration();
+                rateComputed = true;
+            }
+
+            handshakeDuration = Math.max(handshakeDuration, report.getHandshakeDuration());
+            sessionResumed = sessionResumed && report.isSessionResumed();
+            receiveBufferSize = Math.max(receiveBufferSize, report.getReceiveBufferSize());
+            sendBufferSize = Math.max(sendBufferSize, report.getSendBufferSize());
+            warmupDuration = Math.max(warmupDuration, report.getWarmupDuration());
+            warmupOctetCount += report.getWarmupOctetCount();
+        }
+
+        if (mSpeedTestSocket.getComputationMethod() == ComputationMethod.MEDIAN_INTERVAL) {
+            //interval counters are reset by each connection transfer thread
+            for (int i = 0; i < mConnectionCount; i++) {
+                mTaskList.get(i).requestIntervalReset();
+            }
+        }
+
+        final int scale = mSpeedTestSocket.getDefaultScale();
+        final RoundingMode roundingMode = mSpeedTestSocket.getDefaultRoundingMode();
+
+        //merged transfer rate is given as a number of octet per second
+        final long rateOctetCount = Math.round(transferRateOctet);
+        final long rateDuration = rateComputed ? SpeedTestConst.ESTIMATOR_RATE_DURATION : 0;
+
+        SpeedTestReport report;
+
+        if (unknownSize) {
+            totalPacketSize = -1;
+        }
+        float percent = 0;
+
+        if (totalPacketSize > 0) {
+            percent = (float) (temporaryPacketSize * SpeedTestConst.PERCENT_MAX.doubleValue() / totalPacketSize);
+        }
+        report = new SpeedTestReport(mSpeedTestMode,
+                percent,
+                startTime,
+                reportTime,
+                temporaryPacketSize,
+                totalPacketSize,
+                rateOctetCount,
+                rateDuration,
+                1,
+                scale,
+                roundingMode);
+
+        if (mSpeedTestSocket.getRepeatWrapper().isRepeat()) {
+            report = mSpeedTestSocket.getRepeatWrapper().getRepeatReport(scale, roundingMode, mSpeedTestMode,
+                    reportTime, report.getTransferRateOctet());
+            report.setTransferDuration(startTime, reportTime);
+        }
+        report.setStreamReports(streamReports);
+        report.setHandshake(handshakeDuration, sessionResumed);
+        report.setSocketBuffers(receiveBufferSize, sendBufferSize);
+        report.setIntervalRates(mRateHistogram);
+        report.setWarmup(warmupDuration, warmupOctetCount);
+        return report;
+    }
+
+    /**
+     * retrieve current speed test mode.
+     *
+     * @return speed test mode (UPLOAD/DOWNLOAD/NONE)
+     */
+    public SpeedTestMode getSpeedTestMode() {
+        return mSpeedTestMode;
+    }
+
+    /**
+     * Get number of connections used for the current speed test.
+     *
+     * @return number of connections
+     */
+    public int getConnectionCount() {
+        return mConnectionCount;
+    }
+
+    /**
+     * close all connections / stop download/upload operations.
+     */
+    public void forceStopTask() {
+        for (int i = 0; i < mConnectionCount; i++) {
+            mTaskList.get(i).forceStopTask();
+            mTaskList.get(i).closeSocket();
+        }
+    }
+
+    /**
+     * Close all connections.
+     */
+    public void closeSocket() {
+        for (int i = 0; i < mTaskList.size(); i++) {
+            mTaskList.get(i).closeSocket();
+        }
+    }
+
+    /**
+     * Shutdown threadpool of each connection without waiting for task completion.
+     */
+    public void shutdown() {
+        for (int i = 0; i < mTaskList.size(); i++) {
+            mTaskList.get(i).shutdown();
+        }
+    }
+
+    /**
+     * Shutdown threadpool of each connection and wait for task completion.
+     */
+    public void shutdownAndWait() {
+        for (int i = 0; i < mTaskList.size(); i++) {
+            mTaskList.get(i).shutdownAndWait();
+        }
+    }
+
+    /**
+     * Listener attached to each connection task merging its callbacks into the speed test socket listeners.
+     */
+    private class ConnectionListener implements ISpeedTestListener {
+
+        /**
+         * define if this connection has completed (a connection may dispatch completion more than once when it is
+         * force stopped).
+         */
+        private final AtomicBoolean mFinished = new AtomicBoolean();
+
+        /**
+         * reset connection state for a new speed test.
+         */
+        private void reset() {
+            mFinished.set(false);
+        }
+
+        @Override
+        public void onCompletion(final SpeedTestReport report) {
+
+            if (!mFinished.compareAndSet(false, true)) {
+                return;
+            }
+            if (mPendingConnection.decrementAndGet() != 0 || mErrorDispatched.get()) {
+                return;
+            }
+            if (!mSpeedTestSocket.getRepeatWrapper().isRepeat()) {
+                mReportTask.setReportInterval(false);
+                mReportTask.closeReportTimer();
+            }
+            final SpeedTestReport parallelReport = getReport();
+            parallelReport.setStopReason(report.getStopReason());
+
+            synchronized (mDispatchLock) {
+                for (int i = 0; i < mListenerList.size(); i++) {
+                    mListenerList.get(i).onCompletion(parallelReport);
+                }
+            }
+        }
+
+        @Override
+        public void onProgress(final float percent, final SpeedTestReport report) {
+
+            if (mErrorDispatched.get()) {
+                return;
+            }
+
+            synchronized (mDispatchLock) {
+
+                long temporaryPacketSize = 0;
+                long totalPacketSize = 0;
+
+                for (int i = 0; i < mConnectionCount; i++) {
+                    final long total = mTaskList.get(i).getTotalPacketSize(mSpeedTestMode);
+                    temporaryPacketSize += mTaskList.get(i).getTemporaryPacketSize(mSpeedTestMode);
+                    totalPacketSize = (total <= 0 || totalPacketSize < 0) ? -1 : totalPacketSize + total;
+                }
+                if (!mProgressThrottle.shallDispatch(temporaryPacketSize, totalPacketSize)) {
+                    return;
+                }
+                final SpeedTestReport parallelReport = getReport();
+
+                for (int i = 0; i < mListenerList.size(); i++) {
+                    mListenerList.get(i).onProgress(parallelReport.getProgressPercent(), parallelReport);
+                }
+            }
+        }
+
+        @Override
+        public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+
+            if (mFinished.compareAndSet(false, true)) {
+                mPendingConnection.decrementAndGet();
+            }
+            if (!mErrorDispatched.compareAndSet(false, true)) {
+                return;
+            }
+            forceStopTask();
+            mReportTask.setReportInterval(false);
+            mReportTask.closeReportTimer();
+
+            synchronized (mDispatchLock) {
+                for (int i = 0; i < mListenerList.size(); i++) {
+                    mListenerList.get(i).onError(speedTestError, errorMessage);
+                }
+            }
+        }
+    }
+}
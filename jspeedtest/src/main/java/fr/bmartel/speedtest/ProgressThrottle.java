@@ -0,0 +1,130 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress event coalescing : when no report interval is set, progress is only dispatched once a minimum time, a
+ * minimum number of octet and/or a minimum progress percent have elapsed since last dispatched progress. This is
+ * checked in the transfer loop before any report is built. Each threshold is disabled when set to 0, last progress of
+ * a transfer is always dispatched.
+ * <p/>
+ * This is not thread safe, it is used by one transfer thread at a time.
+ *
+ * @author Bertrand Martel
+ */
+public class ProgressThrottle {
+
+    /**
+     * minimum time between two progress events in nanoseconds (0 if disabled).
+     */
+    private long mMinInterval;
+
+    /**
+     * minimum number of octet between two progress events (0 if disabled).
+     */
+    private long mMinOctet;
+
+    /**
+     * minimum progress percent between two progress events (0 if disabled).
+     */
+    private float mMinPercent;
+
+    /**
+     * define if at least one threshold is set.
+     */
+    private boolean mEnabled;
+
+    /**
+     * time of last dispatched progress.
+     */
+    private long mLastTime;
+
+    /**
+     * number of octet transferred at last dispatched progress.
+     */
+    private long mLastOctet;
+
+    /**
+     * progress percent at last dispatched progress.
+     */
+    private float mLastPercent;
+
+    /**
+     * Reset thresholds at transfer start.
+     *
+     * @param timestamp   transfer start time (System.nanoTime())
+     * @param minInterval minimum time between two progress events in milliseconds (0 to disable)
+     * @param minOctet    minimum number of octet between two progress events (0 to disable)
+     * @param minPercent  minimum progress percent between two progress events (0 to disable)
+     */
+    public void reset(final long timestamp, final int minInterval, final long minOctet, final float minPercent) {
+        mMinInterval = TimeUnit.MILLISECONDS.toNanos(Math.max(0, minInterval));
+        mMinOctet = Math.max(0, minOctet);
+        mMinPercent = Math.max(0, minPercent);
+        mEnabled = mMinInterval > 0 || mMinOctet > 0 || mMinPercent > 0;
+        mLastTime = timestamp;
+        mLastOctet = 0;
+        mLastPercent = 0;
+    }
+
+    /**
+     * Check if a progress event should be dispatched, thresholds are moved forward if so.
+     *
+     * @param octetCount number of octet transferred since transfer start
+     * @param total      total number of octet to transfer (0 or less if unknown)
+     * @return true if progress should be dispatched
+     */
+    public boolean shallDispatch(final long octetCount, final long total) {
+
+        if (!mEnabled) {
+            return true;
+        }
+        final boolean complete = total > 0 && octetCount >= total;
+
+        if (!complete) {
+            if (mMinOctet > 0 && octetCount - mLastOctet < mMinOctet) {
+                return false;
+            }
+            if (mMinPercent > 0 && total > 0 && (octetCount * 100f / total) - mLastPercent < mMinPercent) {
+                return false;
+            }
+        }
+        long now = 0;
+
+        if (mMinInterval > 0) {
+            now = System.nanoTime();
+            if (!complete && now - mLastTime < mMinInterval) {
+                return false;
+            }
+        }
+        mLastTime = now;
+        mLastOctet = octetCount;
+        if (total > 0) {
+            mLastPercent = octetCount * 100f / total;
+        }
+        return true;
+    }
+}
@@ -29,10 +29,12 @@ import fr.bmartel.speedtest.inter.ISpeedTestListener;
 import fr.bmartel.speedtest.inter.ISpeedTestSocket;
 import fr.bmartel.speedtest.model.SpeedTestError;
 import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.utils.RateStatistics;
+import fr.bmartel.speedtest.utils.TimerGroup;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Repeat tasks speed test wrapper : this is used to repeat download/upload requests during a fix duration.
@@ -42,9 +44,14 @@ import java.util.*;
 public class RepeatWrapper {
 
     /**
-     * transfer rate list.
+     * streaming statistics of transfer rates of all finished downloads/uploads.
      */
-    private List<BigDecimal> mRepeatTransferRateList = Collections.synchronizedList(new ArrayList<BigDecimal>());
+    private final AtomicReference<RateStatistics> mRateStatistics = new AtomicReference<>(RateStatistics.EMPTY);
+
+    /**
+     * number of packet downloaded/uploaded when last download/upload has finished.
+     */
+    private long mLastCompletionPckSize;
 
     /**
      * define if download repeat task is finished.
@@ -98,15 +105,21 @@ public class RepeatWrapper {
      */
     private boolean mFirstUploadRepeat;
 
+    /**
+     * define if last download of repeat task has been followed by a pipelined request on the same connection (next
+     * download is already running).
+     */
+    private boolean mPipelineContinued;
+
     /**
      * speed test socket interface.
      */
     private final ISpeedTestSocket mSpeedTestSocket;
 
     /**
-     * Timer used in repeat methods.
+     * timeouts used in repeat methods, scheduled on timer shared by all sockets.
      */
-    private Timer mTimer;
+    private final TimerGroup mTimer = new TimerGroup();
 
     /**
      * Build Speed test repeat.
@@ -152,17 +165,13 @@ public class RepeatWrapper {
             progressPercent = BigDecimal.ZERO;
         }
 
-        BigDecimal rates = BigDecimal.ZERO;
-        for (final BigDecimal rate :
-                mRepeatTransferRateList) {
-            rates = rates.add(rate);
-        }
+        final RateStatistics statistics = mRateStatistics.get();
 
-        if (!mRepeatTransferRateList.isEmpty() && mRepeatPacketSize.compareTo(BigDecimal.ZERO) != 0) {
-            downloadRepeatRateOctet = rates.add(downloadRepeatRateOctet).divide(new BigDecimal(mRepeatTransferRateList
-                    .size()).add
-                    (new BigDecimal(mRepeatTempPckSize).divide(mRepeatPacketSize, scale, roundingMode)
-                    ), scale, roundingMode);
+        if (statistics.getCount() != 0 && mRepeatPacketSize.compareTo(BigDecimal.ZERO) != 0) {
+            downloadRepeatRateOctet = new BigDecimal(statistics.getSum()).add(downloadRepeatRateOctet)
+                    .divide(new BigDecimal(statistics.getCount()).add
+                            (new BigDecimal(mRepeatTempPckSize).divide(mRepeatPacketSize, scale, roundingMode)
+                            ), scale, roundingMode);
         }
 
         final BigDecimal transferRateBit = downloadRepeatRateOctet.multiply(SpeedTestConst.BIT_MULTIPLIER);
@@ -221,7 +230,7 @@ public class RepeatWrapper {
 
         initRepeat(true);
 
-        mTimer = new Timer();
+        mTimer.renew();
 
         final ISpeedTestListener speedTestListener = new ISpeedTestListener() {
             @Override
@@ -229,8 +238,10 @@ public class RepeatWrapper {
                 if (mRepeatFinished) {
                     return;
                 }
-                mRepeatTransferRateList.add(report.getTransferRateOctet());
-                startDownloadRepeat(uri);
+                addTransferRate(report);
+                if (!mPipelineContinued) {
+                    startDownloadRepeat(uri);
+                }
                 mRepeatRequestNum++;
             }
 
@@ -249,11 +260,11 @@ public class RepeatWrapper {
 
         mRepeatWindows = repeatWindow;
 
-        mTimer.schedule(new TimerTask() {
+        mTimer.schedule(new Runnable() {
             @Override
             public void run() {
                 mSpeedTestSocket.removeSpeedTestListener(speedTestListener);
-                mSpeedTestSocket.forceStopTask();
+                mSpeedTestSocket.forceStopTaskAsync();
                 cleanTimer();
                 mRepeatFinished = true;
                 if (repeatListener != null) {
@@ -262,7 +273,7 @@ public class RepeatWrapper {
             }
         }, repeatWindow);
 
-        mTimer.scheduleAtFixedRate(new TimerTask() {
+        mTimer.scheduleAtFixedRate(new Runnable() {
             @Override
             public void run() {
                 if (repeatListener != null) {
@@ -291,7 +302,7 @@ public class RepeatWrapper {
 
         initRepeat(false);
 
-        mTimer = new Timer();
+        mTimer.renew();
 
         final ISpeedTestListener speedTestListener = new ISpeedTestListener() {
 
@@ -310,7 +321,7 @@ public class RepeatWrapper {
                 if (mRepeatFinished) {
                     return;
                 }
-                mRepeatTransferRateList.add(report.getTransferRateOctet());
+                addTransferRate(report);
                 startUploadRepeat(uri, fileSizeOctet);
                 mRepeatRequestNum++;
             }
@@ -320,11 +331,11 @@ public class RepeatWrapper {
 
         mRepeatWindows = repeatWindow;
 
-        mTimer.schedule(new TimerTask() {
+        mTimer.schedule(new Runnable() {
             @Override
             public void run() {
                 mSpeedTestSocket.removeSpeedTestListener(speedTestListener);
-                mSpeedTestSocket.forceStopTask();
+                mSpeedTestSocket.forceStopTaskAsync();
                 cleanTimer();
                 mRepeatFinished = true;
                 if (repeatListener != null) {
@@ -333,7 +344,7 @@ public class RepeatWrapper {
             }
         }, repeatWindow);
 
-        mTimer.scheduleAtFixedRate(new TimerTask() {
+        mTimer.scheduleAtFixedRate(new Runnable() {
             @Override
             public void run() {
                 if (repeatListener != null) {
@@ -345,11 +356,11 @@ public class RepeatWrapper {
         startUploadRepeat(uri, fileSizeOctet);
     }
 
+    /**
+     * Cancel repeat window and report timeouts.
+     */
     public void cleanTimer() {
-        if (mTimer != null) {
-            mTimer.cancel();
-            mTimer.purge();
-        }
+        mTimer.close();
     }
 
     /**
@@ -373,8 +384,41 @@ public class RepeatWrapper {
         mRepeatPacketSize = BigDecimal.ZERO;
         mRepeatTempPckSize = 0;
         mRepeatFinished = false;
+        mPipelineContinued = false;
         mStartDateRepeat = 0;
-        mRepeatTransferRateList = new ArrayList<>();
+        mRateStatistics.set(RateStatistics.EMPTY);
+        mLastCompletionPckSize = 0;
+    }
+
+    /**
+     * Add transfer rate of a finished download/upload to rate statistics, active time is the transfer duration of the
+     * finished download/upload only (connection and request time between downloads/uploads are not counted).
+     *
+     * @param report completion report of finished download/upload
+     */
+    private void addTransferRate(final SpeedTestReport report) {
+
+        final long completionPckSize = mRepeatTempPckSize;
+
+        final double rate = report.getTransferRateOctet().doubleValue();
+        final long octetCount = completionPckSize - mLastCompletionPckSize;
+        final long activeTime = report.getTransferDuration();
+
+        mLastCompletionPckSize = completionPckSize;
+
+        RateStatistics statistics;
+        do {
+            statistics = mRateStatistics.get();
+        } while (!mRateStatistics.compareAndSet(statistics, statistics.add(rate, octetCount, activeTime)));
+    }
+
+    /**
+     * Get statistics of transfer rates of all finished downloads/uploads of current repeat task.
+     *
+     * @return rate statistics
+     */
+    public RateStatistics getRateStatistics() {
+        return mRateStatistics.get();
     }
 
     /**
@@ -441,8 +485,8 @@ public class RepeatWrapper {
      *
      * @param packetSize packet size in octet
      */
-    public void updatePacketSize(final BigDecimal packetSize) {
-        mRepeatPacketSize = mRepeatPacketSize.add(packetSize);
+    public synchronized void updatePacketSize(final long packetSize) {
+        mRepeatPacketSize = mRepeatPacketSize.add(new BigDecimal(packetSize));
     }
 
     /**
@@ -450,7 +494,7 @@ public class RepeatWrapper {
      *
      * @param read packet size in octet
      */
-    public void updateTempPacketSize(final int read) {
+    public synchronized void updateTempPacketSize(final int read) {
         mRepeatTempPckSize += read;
     }
 
@@ -472,6 +516,16 @@ public class RepeatWrapper {
         return mRepeatDownload || mRepeatUpload;
     }
 
+    /**
+     * Set pipelined status of last download : if true, next download is already running on the same connection and
+     * no new request is to be started.
+     *
+     * @param state pipelined status
+     */
+    public void setPipelineContinued(final boolean state) {
+        mPipelineContinued = state;
+    }
+
     /**
      * Set the first uploaded packet status.
      *
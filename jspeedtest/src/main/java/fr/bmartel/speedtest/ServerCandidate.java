@@ -0,0 +1,137 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.model.SpeedTestError;
+
+import java.math.BigDecimal;
+
+/**
+ * Result of a candidate server probed by server selector.
+ *
+ * @author Bertrand Martel
+ */
+public class ServerCandidate {
+
+    /**
+     * candidate server uri.
+     */
+    private final String mUri;
+
+    /**
+     * latency report (null if server is unreachable).
+     */
+    private final LatencyReport mLatencyReport;
+
+    /**
+     * short burst download transfer rate in bit/s (null if not measured).
+     */
+    private final BigDecimal mTransferRateBit;
+
+    /**
+     * error of unreachable server (null if server is reachable).
+     */
+    private final SpeedTestError mError;
+
+    /**
+     * time at which server has been probed (System.nanoTime()).
+     */
+    private final long mTimestamp;
+
+    /**
+     * Build candidate server result.
+     *
+     * @param uri             candidate server uri
+     * @param latencyReport   latency report (null if server is unreachable)
+     * @param transferRateBit short burst download transfer rate in bit/s (null if not measured)
+     * @param error           error of unreachable server (null if server is reachable)
+     * @param timestamp       time at which server has been probed (System.nanoTime())
+     */
+    public ServerCandidate(final String uri,
+                           final LatencyReport latencyReport,
+                           final BigDecimal transferRateBit,
+                           final SpeedTestError error,
+                           final long timestamp) {
+        mUri = uri;
+        mLatencyReport = latencyReport;
+        mTransferRateBit = transferRateBit;
+        mError = error;
+        mTimestamp = timestamp;
+    }
+
+    /**
+     * get candidate server uri.
+     *
+     * @return uri
+     */
+    public String getUri() {
+        return mUri;
+    }
+
+    /**
+     * get latency report.
+     *
+     * @return latency report (null if server is unreachable)
+     */
+    public LatencyReport getLatencyReport() {
+        return mLatencyReport;
+    }
+
+    /**
+     * get short burst download transfer rate.
+     *
+     * @return transfer rate in bit/s (null if not measured)
+     */
+    public BigDecimal getTransferRateBit() {
+        return mTransferRateBit;
+    }
+
+    /**
+     * get error of unreachable server.
+     *
+     * @return error (null if server is reachable)
+     */
+    public SpeedTestError getError() {
+        return mError;
+    }
+
+    /**
+     * define if server has answered at least one latency probe.
+     *
+     * @return true if server is reachable
+     */
+    public boolean isReachable() {
+        return mLatencyReport != null;
+    }
+
+    /**
+     * get time at which server has been probed.
+     *
+     * @return timestamp (System.nanoTime())
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+}
@@ -0,0 +1,531 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.inter.ILatencyListener;
+import fr.bmartel.speedtest.inter.IServerSelectorListener;
+import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.model.LatencyMethod;
+import fr.bmartel.speedtest.model.SpeedTestError;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server selector : candidate servers are probed concurrently with a bounded number of threads and an overall
+ * deadline, then ranked by median latency (or by short burst download transfer rate if enabled). Results are cached
+ * per candidate uri so that a selection repeated within cache time to live does not probe servers again.
+ *
+ * @author Bertrand Martel
+ */
+public class ServerSelector {
+
+    /**
+     * ranking of candidate servers : reachable servers with a transfer rate first (best transfer rate then lowest
+     * median latency), then reachable servers without transfer rate (lowest median latency), then unreachable servers.
+     */
+    public static final Comparator<ServerCandidate> RANKING = new Comparator<ServerCandidate>() {
+        @Override
+        public int compare(final ServerCandidate first, final ServerCandidate second) {
+            final int tier = Integer.compare(getRankingTier(first), getRankingTier(second));
+            if (tier != 0) {
+                return tier;
+            }
+            if (!first.isReachable()) {
+                return 0;
+            }
+            if (first.getTransferRateBit() != null) {
+                final int rate = second.getTransferRateBit().compareTo(first.getTransferRateBit());
+                if (rate != 0) {
+                    return rate;
+                }
+            }
+            return Long.compare(first.getLatencyReport().getMedian(), second.getLatencyReport().getMedian());
+        }
+    };
+
+    /**
+     * cached results of candidate servers by uri.
+     */
+    private final Map<String, ServerCandidate> mCache = new ConcurrentHashMap<>();
+
+    /**
+     * executor running server selections.
+     */
+    private ExecutorService mExecutorService;
+
+    /**
+     * maximum number of candidate servers probed concurrently.
+     */
+    private int mParallelism = SpeedTestConst.DEFAULT_SELECTION_PARALLELISM;
+
+    /**
+     * number of latency probes sent to each candidate server.
+     */
+    private int mProbeCount = SpeedTestConst.DEFAULT_SELECTION_PROBE_COUNT;
+
+    /**
+     * latency probe method.
+     */
+    private LatencyMethod mLatencyMethod = LatencyMethod.TCP_CONNECT;
+
+    /**
+     * deadline of a server selection in milliseconds.
+     */
+    private int mTimeout = SpeedTestConst.DEFAULT_SELECTION_TIMEOUT;
+
+    /**
+     * time to live of cached results in milliseconds.
+     */
+    private long mCacheTtl = SpeedTestConst.DEFAULT_SELECTION_CACHE_TTL;
+
+    /**
+     * duration of short burst download in milliseconds (0 to disable transfer rate measurement).
+     */
+    private int mThroughputDuration;
+
+    /**
+     * socket timeout used for probes in milliseconds.
+     */
+    private int mSocketTimeout = SpeedTestConst.DEFAULT_SOCKET_TIMEOUT;
+
+    /**
+     * Rank candidate servers, listener is called from a background thread. Candidates not probed before deadline are
+     * reported unreachable with {@link SpeedTestError#SOCKET_TIMEOUT} and are not cached.
+     *
+     * @param uris     candidate server uris (download file uri if transfer rate is measured)
+     * @param listener server selection listener
+     */
+    public void selectServers(final List<String> uris, final IServerSelectorListener listener) {
+
+        if (mExecutorService == null || mExecutorService.isShutdown()) {
+            mExecutorService = Executors.newSingleThreadExecutor();
+        }
+        final List<String> candidates = new ArrayList<>(uris);
+        try {
+            mExecutorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onCompletion(rankServers(candidates));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            listener.onCompletion(new ArrayList<ServerCandidate>());
+        }
+    }
+
+    /**
+     * Probe candidate servers missing from cache and rank all candidates.
+     *
+     * @param uris candidate server uris
+     * @return candidate servers ranked from best to worst
+     */
+    private List<ServerCandidate> rankServers(final List<String> uris) {
+
+        final long start = System.nanoTime();
+        final long ttl = TimeUnit.MILLISECONDS.toNanos(mCacheTtl);
+
+        final List<ServerCandidate> result = new ArrayList<>();
+        final List<CandidateProbe> probes = new ArrayList<>();
+
+        for (int i = 0; i < uris.size(); i++) {
+            final ServerCandidate cached = mCache.get(uris.get(i));
+            if (cached != null && (start - cached.getTimestamp()) < ttl) {
+                result.add(cached);
+            } else {
+                probes.add(new CandidateProbe(uris.get(i)));
+            }
+        }
+
+        if (!probes.isEmpty()) {
+
+            final ExecutorService probeExecutor = Executors.newFixedThreadPool(Math.min(mParallelism,
+                    probes.size()));
+
+            for (int i = 0; i < probes.size(); i++) {
+                probeExecutor.execute(probes.get(i));
+            }
+            probeExecutor.shutdown();
+
+            try {
+                if (!probeExecutor.awaitTermination(mTimeout, TimeUnit.MILLISECONDS)) {
+                    for (int i = 0; i < probes.size(); i++) {
+                        probes.get(i).cancel();
+                    }
+                    probeExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                probeExecutor.shutdownNow();
+            }
+
+            for (int i = 0; i < probes.size(); i++) {
+                final CandidateProbe probe = probes.get(i);
+                final ServerCandidate candidate = probe.getResult();
+                if (candidate != null) {
+                    mCache.put(probe.getUri(), candidate);
+                    result.add(candidate);
+                } else {
+                    result.add(new ServerCandidate(probe.getUri(), null, null, SpeedTestError.SOCKET_TIMEOUT,
+                            System.nanoTime()));
+                }
+            }
+        }
+        Collections.sort(result, RANKING);
+        return result;
+    }
+
+    /**
+     * Get ranking tier of a candidate server : candidates are only compared by transfer rate or latency within the
+     * same tier so that ranking stays consistent when some transfer rates are missing.
+     *
+     * @param candidate candidate server
+     * @return 0 if reachable with transfer rate, 1 if reachable without transfer rate, 2 if unreachable
+     */
+    private static int getRankingTier(final ServerCandidate candidate) {
+        if (!candidate.isReachable()) {
+            return 2;
+        }
+        return (candidate.getTransferRateBit() != null) ? 0 : 1;
+    }
+
+    /**
+     * Set maximum number of candidate servers probed concurrently.
+     *
+     * @param parallelism number of concurrent probes (4 by default)
+     */
+    public void setParallelism(final int parallelism) {
+        if (parallelism > 0) {
+            mParallelism = parallelism;
+        }
+    }
+
+    /**
+     * get maximum number of candidate servers probed concurrently.
+     *
+     * @return number of concurrent probes
+     */
+    public int getParallelism() {
+        return mParallelism;
+    }
+
+    /**
+     * Set number of latency probes sent to each candidate server.
+     *
+     * @param probeCount number of probes (5 by default)
+     */
+    public void setProbeCount(final int probeCount) {
+        if (probeCount > 0) {
+            mProbeCount = probeCount;
+        }
+    }
+
+    /**
+     * get number of latency probes sent to each candidate server.
+     *
+     * @return number of probes
+     */
+    public int getProbeCount() {
+        return mProbeCount;
+    }
+
+    /**
+     * Set latency probe method.
+     *
+     * @param latencyMethod probe method (TCP_CONNECT by default)
+     */
+    public void setLatencyMethod(final LatencyMethod latencyMethod) {
+        mLatencyMethod = latencyMethod;
+    }
+
+    /**
+     * get latency probe method.
+     *
+     * @return probe method
+     */
+    public LatencyMethod getLatencyMethod() {
+        return mLatencyMethod;
+    }
+
+    /**
+     * Set deadline of a server selection.
+     *
+     * @param timeout deadline in milliseconds (10s by default)
+     */
+    public void setTimeout(final int timeout) {
+        if (timeout > 0) {
+            mTimeout = timeout;
+        }
+    }
+
+    /**
+     * get deadline of a server selection.
+     *
+     * @return deadline in milliseconds
+     */
+    public int getTimeout() {
+        return mTimeout;
+    }
+
+    /**
+     * Set time to live of cached candidate server results.
+     *
+     * @param cacheTtl time to live in milliseconds (10 minutes by default, 0 to disable cache)
+     */
+    public void setCacheTtl(final long cacheTtl) {
+        if (cacheTtl >= 0) {
+            mCacheTtl = cacheTtl;
+        }
+    }
+
+    /**
+     * get time to live of cached candidate server results.
+     *
+     * @return time to live in milliseconds
+     */
+    public long getCacheTtl() {
+        return mCacheTtl;
+    }
+
+    /**
+     * Set duration of short burst download used to rank candidate servers by transfer rate. Candidate uris must then
+     * be download file uris.
+     *
+     * @param throughputDuration duration in milliseconds (0 by default : servers are ranked by latency only)
+     */
+    public void setThroughputDuration(final int throughputDuration) {
+        if (throughputDuration >= 0) {
+            mThroughputDuration = throughputDuration;
+        }
+    }
+
+    /**
+     * get duration of short burst download.
+     *
+     * @return duration in milliseconds
+     */
+    public int getThroughputDuration() {
+        return mThroughputDuration;
+    }
+
+    /**
+     * Set socket timeout used for probes.
+     *
+     * @param socketTimeout socket timeout in milliseconds
+     */
+    public void setSocketTimeout(final int socketTimeout) {
+        if (socketTimeout >= 0) {
+            mSocketTimeout = socketTimeout;
+        }
+    }
+
+    /**
+     * get socket timeout used for probes.
+     *
+     * @return socket timeout in milliseconds
+     */
+    public int getSocketTimeout() {
+        return mSocketTimeout;
+    }
+
+    /**
+     * Remove all cached candidate server results.
+     */
+    public void clearCache() {
+        mCache.clear();
+    }
+
+    /**
+     * Shutdown threadpool and wait for selection completion.
+     */
+    public void shutdownAndWait() {
+        if (mExecutorService != null) {
+            mExecutorService.shutdown();
+            try {
+                mExecutorService.awaitTermination(mTimeout + SpeedTestConst.THREADPOOL_WAIT_COMPLETION_MS,
+                        TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                //e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Probe of a candidate server : latency is measured then transfer rate if enabled.
+     */
+    private class CandidateProbe implements Runnable {
+
+        /**
+         * candidate server uri.
+         */
+        private final String mUri;
+
+        /**
+         * speed test socket holding probe settings and used for short burst download.
+         */
+        private final SpeedTestSocket mSocket = new SpeedTestSocket();
+
+        /**
+         * latency task.
+         */
+        private final LatencyTask mLatencyTask = new LatencyTask(mSocket);
+
+        /**
+         * define if probe has been cancelled after deadline.
+         */
+        private volatile boolean mCancelled;
+
+        /**
+         * probe result (null until probe is finished).
+         */
+        private volatile ServerCandidate mResult;
+
+        /**
+         * latency report.
+         */
+        private LatencyReport mLatencyReport;
+
+        /**
+         * latency error.
+         */
+        private SpeedTestError mError;
+
+        /**
+         * short burst download transfer rate in bit/s.
+         */
+        private BigDecimal mTransferRateBit;
+
+        /**
+         * Build probe.
+         *
+         * @param uri candidate server uri
+         */
+        CandidateProbe(final String uri) {
+            mUri = uri;
+            mSocket.setSocketTimeout(mSocketTimeout);
+        }
+
+        @Override
+        public void run() {
+
+            if (mCancelled) {
+                return;
+            }
+            mLatencyTask.runLatency(mUri, mProbeCount, mLatencyMethod, new ILatencyListener() {
+                @Override
+                public void onCompletion(final LatencyReport report) {
+                    mLatencyReport = report.getSampleCount() > 0 ? report : null;
+                }
+
+                @Override
+                public void onProbe(final int probeIndex, final long latency) {
+                }
+
+                @Override
+                public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+                    mError = speedTestError;
+                }
+            });
+
+            if (mLatencyReport != null && mThroughputDuration > 0 && !mCancelled) {
+                measureTransferRate();
+            }
+            if (!mCancelled) {
+                mResult = new ServerCandidate(mUri, mLatencyReport, mTransferRateBit,
+                        mLatencyReport == null && mError == null ? SpeedTestError.CONNECTION_ERROR : mError,
+                        System.nanoTime());
+            }
+        }
+
+        /**
+         * Run short burst download and wait for its completion.
+         */
+        private void measureTransferRate() {
+
+            final CountDownLatch latch = new CountDownLatch(1);
+
+            mSocket.addSpeedTestListener(new ISpeedTestListener() {
+                @Override
+                public void onCompletion(final SpeedTestReport report) {
+                    mTransferRateBit = report.getTransferRateBit();
+                    latch.countDown();
+                }
+
+                @Override
+                public void onProgress(final float percent, final SpeedTestReport report) {
+                }
+
+                @Override
+                public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+                    latch.countDown();
+                }
+            });
+            mSocket.startFixedDownload(mUri, mThroughputDuration);
+
+            try {
+                latch.await(mThroughputDuration + mSocketTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                //deadline reached
+            }
+            mSocket.forceStopTask();
+        }
+
+        /**
+         * Stop probe after deadline.
+         */
+        void cancel() {
+            mCancelled = true;
+            mLatencyTask.forceStopTask();
+            mSocket.forceStopTask();
+        }
+
+        /**
+         * get candidate server uri.
+         *
+         * @return uri
+         */
+        String getUri() {
+            return mUri;
+        }
+
+        /**
+         * get probe result.
+         *
+         * @return candidate server result (null if probe is not finished)
+         */
+        ServerCandidate getResult() {
+            return mResult;
+        }
+    }
+}
@@ -35,9 +35,19 @@ import java.math.RoundingMode;
 public class SpeedTestConst {
 
     /**
-     * maximum size for report thread pool.
+     * default tick duration of timer shared by all speed test sockets in milliseconds.
      */
-    public static final int THREAD_POOL_REPORT_SIZE = 1;
+    public static final int DEFAULT_TIMER_TICK = 10;
+
+    /**
+     * default number of buckets of timer shared by all speed test sockets.
+     */
+    public static final int DEFAULT_TIMER_WHEEL_SIZE = 512;
+
+    /**
+     * default number of threads running expired tasks of timer shared by all speed test sockets.
+     */
+    public static final int DEFAULT_TIMER_THREAD_COUNT = 4;
 
     /**
      * size of the write read buffer for downloading.
@@ -121,7 +131,10 @@ public class SpeedTestConst {
 
     /**
      * Chunk to write at each iteration for upload file generation.
+     *
+     * @deprecated upload payload is now served from a process-wide block, see {@link #PAYLOAD_BLOCK_SIZE}
      */
+    @Deprecated
     public static final int UPLOAD_FILE_WRITE_CHUNK = 64000;
 
     /**
@@ -134,6 +147,132 @@ public class SpeedTestConst {
      */
     public static final String UPLOAD_TEMP_FILE_EXTENSION = ".tmp";
 
+    /**
+     * default number of connections used for download/upload.
+     */
+    public static final int DEFAULT_CONNECTION_COUNT = 1;
+
+    /**
+     * size of random block repeated to build upload payload.
+     */
+    public static final int PAYLOAD_BLOCK_SIZE = 4194304;
+
+    /**
+     * default maximum number of idle connections in connection pool.
+     */
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+
+    /**
+     * default maximum idle time of a connection in connection pool in milliseconds.
+     */
+    public static final long DEFAULT_KEEP_ALIVE_DURATION = 60000;
+
+    /**
+     * default number of streams used for HTTP/2 download/upload.
+     */
+    public static final int DEFAULT_HTTP2_STREAM_COUNT = 1;
+
+    /**
+     * default HTTP/2 receive window of each stream in octet.
+     */
+    public static final int DEFAULT_HTTP2_WINDOW_SIZE = 8388608;
+
+    /**
+     * maximum number of TLS sessions kept in shared SSL context session cache.
+     */
+    public static final int SSL_SESSION_CACHE_SIZE = 100;
+
+    /**
+     * timeout of TLS sessions kept in shared SSL context session cache in seconds.
+     */
+    public static final int SSL_SESSION_TIMEOUT = 86400;
+
+    /**
+     * minimum transfer duration used to measure bandwidth before socket buffers are autotuned in nanoseconds.
+     */
+    public static final long AUTOTUNE_SAMPLE_TIME = 200000000;
+
+    /**
+     * socket buffers autotuned are sized to this multiple of bandwidth-delay product.
+     */
+    public static final int AUTOTUNE_BDP_FACTOR = 2;
+
+    /**
+     * maximum socket buffer size set by autotune in octet.
+     */
+    public static final int AUTOTUNE_MAX_BUFFER_SIZE = 16777216;
+
+    /**
+     * default number of candidate servers probed concurrently by server selector.
+     */
+    public static final int DEFAULT_SELECTION_PARALLELISM = 4;
+
+    /**
+     * default number of latency probes sent to each candidate server.
+     */
+    public static final int DEFAULT_SELECTION_PROBE_COUNT = 5;
+
+    /**
+     * default deadline of a server selection in milliseconds.
+     */
+    public static final int DEFAULT_SELECTION_TIMEOUT = 10000;
+
+    /**
+     * default time to live of a candidate server result in server selector cache in milliseconds.
+     */
+    public static final long DEFAULT_SELECTION_CACHE_TTL = 600000;
+
+    /**
+     * default maximum relative spread of windowed transfer rate around its mean for adaptive speed tests.
+     */
+    public static final double DEFAULT_CONVERGENCE_TOLERANCE = 0.05;
+
+    /**
+     * default period during which windowed transfer rate must stay within tolerance for adaptive speed tests in
+     * milliseconds.
+     */
+    public static final int DEFAULT_CONVERGENCE_PERIOD = 2000;
+
+    /**
+     * interval between two convergence checks of adaptive speed tests in milliseconds.
+     */
+    public static final int CONVERGENCE_CHECK_INTERVAL = 100;
+
+    /**
+     * sliding window used to compute transfer rate of adaptive speed tests in milliseconds.
+     */
+    public static final int CONVERGENCE_WINDOW = 1000;
+
+    /**
+     * minimum interval used to detect end of TCP slow-start in milliseconds.
+     */
+    public static final int WARMUP_MIN_INTERVAL = 50;
+
+    /**
+     * interval used to detect end of TCP slow-start is at least this multiple of round trip time.
+     */
+    public static final int WARMUP_RTT_FACTOR = 2;
+
+    /**
+     * minimum growth of interval transfer rate in percent for warm-up to be considered still running.
+     */
+    public static final int WARMUP_GROWTH_PERCENT = 10;
+
+    /**
+     * number of intervals without transfer rate growth after which warm-up is considered over.
+     */
+    public static final int WARMUP_PLATEAU_INTERVALS = 3;
+
+    /**
+     * default duration of fixed intervals recorded in interval rate distribution in milliseconds.
+     */
+    public static final int DEFAULT_RATE_INTERVAL = 50;
+
+    /**
+     * duration in nanoseconds associated to a transfer rate in octet/s given by a throughput estimator.
+     */
+    public static final long ESTIMATOR_RATE_DURATION = 1000000000L;
+
     /**
      * default setup time for download.
      */
@@ -143,4 +282,14 @@ public class SpeedTestConst {
      * default setup time for upload.
      */
     public static final long DEFAULT_UPLOAD_SETUP_TIME = 0;
+
+    /**
+     * default number of events buffered by an asynchronous listener.
+     */
+    public static final int DEFAULT_ASYNC_LISTENER_CAPACITY = 256;
+
+    /**
+     * number of threads resolving host names for non-blocking speed tests.
+     */
+    public static final int NIO_RESOLVER_THREAD_COUNT = 2;
 }
@@ -25,13 +25,21 @@
 package fr.bmartel.speedtest;
 
 import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.model.StopReason;
+import fr.bmartel.speedtest.utils.ThroughputHistogram;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Speed examples report.
  * <p/>
  * feature current report measurement for DOWNLOAD/UPLOAD
+ * <p/>
+ * Reports built by the speed test task only keep the number of octet and the duration used for transfer rate, the
+ * BigDecimal transfer rate is computed the first time it is requested.
  *
  * @author Bertrand Martel
  */
@@ -40,47 +48,142 @@ public class SpeedTestReport {
     /**
      * current size of file to upload.
      */
-    private final long mTempPacketSize;
+    private long mTempPacketSize;
 
     /**
      * total file size.
      */
-    private final long mTotalPacketSize;
+    private long mTotalPacketSize;
 
     /**
      * transfer rate in octet/s.
      */
-    private final BigDecimal mTransferRateOctet;
+    private BigDecimal mTransferRateOctet;
 
     /**
      * transfer rate in bit/s.
      */
-    private final BigDecimal mTransferRateBit;
+    private BigDecimal mTransferRateBit;
 
     /**
      * upload start time in nanoseconds.
      */
-    private final long mStartTime;
+    private long mStartTime;
 
     /**
      * upload report time in nanoseconds.
      */
-    private final long mReportTime;
+    private long mReportTime;
 
     /**
      * speed examples mode for this report.
      */
-    private final SpeedTestMode mSpeedTestMode;
+    private SpeedTestMode mSpeedTestMode;
 
     /**
      * speed examples progress in percent (%).
      */
-    private final float mProgressPercent;
+    private float mProgressPercent;
 
     /**
      * number of request.
      */
-    private final int mRequestNum;
+    private int mRequestNum;
+
+    /**
+     * number of octet used for transfer rate calculation.
+     */
+    private long mRateOctetCount;
+
+    /**
+     * duration in nanoseconds used for transfer rate calculation (0 if transfer rate is 0).
+     */
+    private long mRateDuration;
+
+    /**
+     * BigDecimal scale used in transfer rate calculation.
+     */
+    private int mScale;
+
+    /**
+     * BigDecimal RoundingMode used in transfer rate calculation.
+     */
+    private RoundingMode mRoundingMode;
+
+    /**
+     * report of each connection when the speed test is run over several connections.
+     */
+    private List<SpeedTestReport> mStreamReports = Collections.emptyList();
+
+    /**
+     * TLS handshake duration in nanoseconds (0 if there was no handshake).
+     */
+    private long mHandshakeDuration;
+
+    /**
+     * define if TLS handshake has resumed a previous session.
+     */
+    private boolean mSessionResumed;
+
+    /**
+     * socket receive buffer size in octet (0 if unknown).
+     */
+    private int mReceiveBufferSize;
+
+    /**
+     * socket send buffer size in octet (0 if unknown).
+     */
+    private int mSendBufferSize;
+
+    /**
+     * number of fixed intervals whose transfer rate is recorded in interval rate distribution.
+     */
+    private long mIntervalCount;
+
+    /**
+     * 10th percentile of interval transfer rates in bit/s.
+     */
+    private long mIntervalRateP10;
+
+    /**
+     * median of interval transfer rates in bit/s.
+     */
+    private long mIntervalRateP50;
+
+    /**
+     * 90th percentile of interval transfer rates in bit/s.
+     */
+    private long mIntervalRateP90;
+
+    /**
+     * 99th percentile of interval transfer rates in bit/s.
+     */
+    private long mIntervalRateP99;
+
+    /**
+     * highest interval transfer rate in bit/s.
+     */
+    private long mIntervalRateMax;
+
+    /**
+     * reason why transfer has stopped.
+     */
+    private StopReason mStopReason = StopReason.NONE;
+
+    /**
+     * detected TCP slow-start duration in nanoseconds (0 if not detected).
+     */
+    private long mWarmupDuration;
+
+    /**
+     * octets transferred during detected TCP slow-start (0 if not detected).
+     */
+    private long mWarmupOctetCount;
+
+    /**
+     * transfer duration of current download/upload in nanoseconds for a repeat report (0 if unknown).
+     */
+    private long mTransferDuration;
 
     /**
      * Build Upload report.
@@ -116,6 +219,115 @@ public class SpeedTestReport {
         this.mRequestNum = requestNum;
     }
 
+    /**
+     * Build report with transfer rate computed on demand.
+     *
+     * @param speedTestMode   speed examples mode (DOWNLOAD/UPLOAD)
+     * @param progressPercent speed examples progress in percent (%)
+     * @param startTime       start time in nanoseconds
+     * @param reportTime      report time in nanoseconds
+     * @param tempPacketSize  current size of file to download/upload
+     * @param totalPacketSize total file size
+     * @param rateOctetCount  number of octet used for transfer rate calculation
+     * @param rateDuration    duration in nanoseconds used for transfer rate calculation
+     * @param requestNum      number of request for this report
+     * @param scale           BigDecimal scale used in transfer rate calculation
+     * @param roundingMode    BigDecimal RoundingMode used in transfer rate calculation
+     */
+    public SpeedTestReport(final SpeedTestMode speedTestMode,
+                           final float progressPercent,
+                           final long startTime,
+                           final long reportTime,
+                           final long tempPacketSize,
+                           final long totalPacketSize,
+                           final long rateOctetCount,
+                           final long rateDuration,
+                           final int requestNum,
+                           final int scale,
+                           final RoundingMode roundingMode) {
+        update(speedTestMode, progressPercent, startTime, reportTime, tempPacketSize, totalPacketSize, rateOctetCount,
+                rateDuration, requestNum, scale, roundingMode);
+    }
+
+    /**
+     * Overwrite all values of this report, this is used to reuse the same report for each progress event.
+     *
+     * @param speedTestMode   speed examples mode (DOWNLOAD/UPLOAD)
+     * @param progressPercent speed examples progress in percent (%)
+     * @param startTime       start time in nanoseconds
+     * @param reportTime      report time in nanoseconds
+     * @param tempPacketSize  current size of file to download/upload
+     * @param totalPacketSize total file size
+     * @param rateOctetCount  number of octet used for transfer rate calculation
+     * @param rateDuration    duration in nanoseconds used for transfer rate calculation
+     * @param requestNum      number of request for this report
+     * @param scale           BigDecimal scale used in transfer rate calculation
+     * @param roundingMode    BigDecimal RoundingMode used in transfer rate calculation
+     */
+    void update(final SpeedTestMode speedTestMode,
+                final float progressPercent,
+                final long startTime,
+                final long reportTime,
+                final long tempPacketSize,
+                final long totalPacketSize,
+                final long rateOctetCount,
+                final long rateDuration,
+                final int requestNum,
+                final int scale,
+                final RoundingMode roundingMode) {
+
+        this.mSpeedTestMode = speedTestMode;
+        this.mProgressPercent = progressPercent;
+        this.mStartTime = startTime;
+        this.mReportTime = reportTime;
+        this.mTempPacketSize = tempPacketSize;
+        this.mTotalPacketSize = totalPacketSize;
+        this.mRateOctetCount = rateOctetCount;
+        this.mRateDuration = rateDuration;
+        this.mRequestNum = requestNum;
+        this.mScale = scale;
+        this.mRoundingMode = roundingMode;
+        this.mTransferRateOctet = null;
+        this.mTransferRateBit = null;
+    }
+
+    /**
+     * Overwrite all values of this report with values of another report, this is used to keep a report valid after
+     * the report it was copied from has been reused.
+     *
+     * @param report report to copy
+     */
+    void copyFrom(final SpeedTestReport report) {
+        mTempPacketSize = report.mTempPacketSize;
+        mTotalPacketSize = report.mTotalPacketSize;
+        mTransferRateOctet = report.mTransferRateOctet;
+        mTransferRateBit = report.mTransferRateBit;
+        mStartTime = report.mStartTime;
+        mReportTime = report.mReportTime;
+        mSpeedTestMode = report.mSpeedTestMode;
+        mProgressPercent = report.mProgressPercent;
+        mRequestNum = report.mRequestNum;
+        mRateOctetCount = report.mRateOctetCount;
+        mRateDuration = report.mRateDuration;
+        mScale = report.mScale;
+        mRoundingMode = report.mRoundingMode;
+        mStreamReports = report.mStreamReports;
+        mHandshakeDuration = report.mHandshakeDuration;
+        mSessionResumed = report.mSessionResumed;
+        mReceiveBufferSize = report.mReceiveBufferSize;
+        mSendBufferSize = report.mSendBufferSize;
+        mIntervalCount = report.mIntervalCount;
+        mIntervalRateP10 = report.mIntervalRateP10;
+        mIntervalRateP50 = report.mIntervalRateP50;
+        mIntervalRateP90 = report.mIntervalRateP90;
+        mIntervalRateP99 = report.mIntervalRateP99;
+        mIntervalRateMax = report.mIntervalRateMax;
+        mStopReason = report.mStopReason;
+        mWarmupDuration = report.mWarmupDuration;
+        mWarmupOctetCount = report.mWarmupOctetCount;
+        mTransferDuration = report.mTransferDuration;
+    }
+
     /**
      * get current file size.
      *
@@ -140,6 +352,9 @@ public class SpeedTestReport {
      * @return transfer rate in octet/s
      */
     public BigDecimal getTransferRateOctet() {
+        if (mTransferRateOctet == null) {
+            mTransferRateOctet = computeTransferRate();
+        }
         return mTransferRateOctet;
     }
 
@@ -149,9 +364,49 @@ public class SpeedTestReport {
      * @return transfer rate in bit/s
      */
     public BigDecimal getTransferRateBit() {
+        if (mTransferRateBit == null) {
+            mTransferRateBit = getTransferRateOctet().multiply(SpeedTestConst.BIT_MULTIPLIER);
+        }
         return mTransferRateBit;
     }
 
+    /**
+     * get number of octet used for transfer rate calculation.
+     *
+     * @return number of octet
+     */
+    long getRateOctetCount() {
+        return mRateOctetCount;
+    }
+
+    /**
+     * get duration used for transfer rate calculation.
+     *
+     * @return duration in nanoseconds
+     */
+    long getRateDuration() {
+        return mRateDuration;
+    }
+
+    /**
+     * compute transfer rate in octet/s from number of octet and duration.
+     *
+     * @return transfer rate in octet/s
+     */
+    private BigDecimal computeTransferRate() {
+
+        if (mRateDuration == 0) {
+            return BigDecimal.ZERO;
+        }
+        final BigDecimal divider = new BigDecimal(mRateDuration).divide(SpeedTestConst.NANO_DIVIDER, mScale,
+                mRoundingMode);
+
+        if (divider.compareTo(BigDecimal.ZERO) == 0) {
+            return BigDecimal.ZERO;
+        }
+        return new BigDecimal(mRateOctetCount).divide(divider, mScale, mRoundingMode);
+    }
+
     /**
      * get speed examples start time.
      *
@@ -196,4 +451,225 @@ public class SpeedTestReport {
     public int getRequestNum() {
         return mRequestNum;
     }
+
+    /**
+     * get report of each connection used for this speed test.
+     *
+     * @return report list (empty if the speed test is run over a single connection)
+     */
+    public List<SpeedTestReport> getStreamReports() {
+        return mStreamReports;
+    }
+
+    /**
+     * set report of each connection used for this speed test.
+     *
+     * @param streamReports report list
+     */
+    void setStreamReports(final List<SpeedTestReport> streamReports) {
+        mStreamReports = Collections.unmodifiableList(streamReports);
+    }
+
+    /**
+     * get TLS handshake duration of the connection used for this speed test. Handshake is not included in transfer
+     * rate. For several connections, this is the longest handshake.
+     *
+     * @return handshake duration in nanoseconds (0 if connection is not TLS or has been reused from pool)
+     */
+    public long getHandshakeDuration() {
+        return mHandshakeDuration;
+    }
+
+    /**
+     * check if TLS handshake has resumed a previous session. For several connections, all handshakes must have
+     * resumed a session.
+     *
+     * @return true if session has been resumed
+     */
+    public boolean isSessionResumed() {
+        return mSessionResumed;
+    }
+
+    /**
+     * set TLS handshake information.
+     *
+     * @param handshakeDuration handshake duration in nanoseconds
+     * @param sessionResumed    define if handshake has resumed a previous session
+     */
+    void setHandshake(final long handshakeDuration, final boolean sessionResumed) {
+        mHandshakeDuration = handshakeDuration;
+        mSessionResumed = sessionResumed;
+    }
+
+    /**
+     * get receive buffer size of the socket used for this speed test (after autotune). For several connections, this
+     * is the largest buffer.
+     *
+     * @return buffer size in octet (0 if unknown)
+     */
+    public int getReceiveBufferSize() {
+        return mReceiveBufferSize;
+    }
+
+    /**
+     * get send buffer size of the socket used for this speed test (after autotune). For several connections, this is
+     * the largest buffer.
+     *
+     * @return buffer size in octet (0 if unknown)
+     */
+    public int getSendBufferSize() {
+        return mSendBufferSize;
+    }
+
+    /**
+     * set socket buffer sizes.
+     *
+     * @param receiveBufferSize receive buffer size in octet
+     * @param sendBufferSize    send buffer size in octet
+     */
+    void setSocketBuffers(final int receiveBufferSize, final int sendBufferSize) {
+        mReceiveBufferSize = receiveBufferSize;
+        mSendBufferSize = sendBufferSize;
+    }
+
+    /**
+     * get number of fixed intervals whose transfer rate has been recorded (see
+     * {@link SpeedTestSocket#setRateInterval(int)}).
+     *
+     * @return interval count
+     */
+    public long getIntervalCount() {
+        return mIntervalCount;
+    }
+
+    /**
+     * get 10th percentile of interval transfer rates.
+     *
+     * @return transfer rate in bit/s
+     */
+    public long getIntervalRateP10() {
+        return mIntervalRateP10;
+    }
+
+    /**
+     * get median of interval transfer rates.
+     *
+     * @return transfer rate in bit/s
+     */
+    public long getIntervalRateP50() {
+        return mIntervalRateP50;
+    }
+
+    /**
+     * get 90th percentile of interval transfer rates.
+     *
+     * @return transfer rate in bit/s
+     */
+    public long getIntervalRateP90() {
+        return mIntervalRateP90;
+    }
+
+    /**
+     * get 99th percentile of interval transfer rates.
+     *
+     * @return transfer rate in bit/s
+     */
+    public long getIntervalRateP99() {
+        return mIntervalRateP99;
+    }
+
+    /**
+     * get highest interval transfer rate.
+     *
+     * @return transfer rate in bit/s
+     */
+    public long getIntervalRateMax() {
+        return mIntervalRateMax;
+    }
+
+    /**
+     * set interval transfer rate distribution from a histogram.
+     *
+     * @param histogram interval transfer rate histogram
+     */
+    void setIntervalRates(final ThroughputHistogram histogram) {
+        final long bitMultiplier = SpeedTestConst.BIT_MULTIPLIER.longValue();
+
+        histogram.updateSummary();
+        mIntervalCount = histogram.getIntervalCount();
+        mIntervalRateP10 = histogram.getP10() * bitMultiplier;
+        mIntervalRateP50 = histogram.getP50() * bitMultiplier;
+        mIntervalRateP90 = histogram.getP90() * bitMultiplier;
+        mIntervalRateP99 = histogram.getP99() * bitMultiplier;
+        mIntervalRateMax = histogram.getMax() * bitMultiplier;
+    }
+
+    /**
+     * get reason why transfer has stopped.
+     *
+     * @return stop reason (NONE if transfer is still running)
+     */
+    public StopReason getStopReason() {
+        return mStopReason;
+    }
+
+    /**
+     * set reason why transfer has stopped.
+     *
+     * @param stopReason stop reason
+     */
+    void setStopReason(final StopReason stopReason) {
+        mStopReason = stopReason;
+    }
+
+    /**
+     * get duration of TCP slow-start detected with {@link SpeedTestSocket#setAutoWarmup(boolean)}, transfer rate is
+     * measured from the end of warm-up. For several connections, this is the longest warm-up.
+     *
+     * @return warm-up duration in nanoseconds (0 if not detected)
+     */
+    public long getWarmupDuration() {
+        return mWarmupDuration;
+    }
+
+    /**
+     * get number of octet transferred during TCP slow-start detected with {@link SpeedTestSocket#setAutoWarmup(boolean)}.
+     * For several connections, this is the sum of all connections.
+     *
+     * @return octet count (0 if not detected)
+     */
+    public long getWarmupOctetCount() {
+        return mWarmupOctetCount;
+    }
+
+    /**
+     * set detected TCP slow-start.
+     *
+     * @param warmupDuration   warm-up duration in nanoseconds
+     * @param warmupOctetCount octets transferred during warm-up
+     */
+    void setWarmup(final long warmupDuration, final long warmupOctetCount) {
+        mWarmupDuration = warmupDuration;
+        mWarmupOctetCount = warmupOctetCount;
+    }
+
+    /**
+     * get transfer duration of current download/upload for a repeat report (repeat report start time is the start of
+     * the repeat task).
+     *
+     * @return transfer duration in nanoseconds (0 if unknown)
+     */
+    long getTransferDuration() {
+        return mTransferDuration;
+    }
+
+    /**
+     * set transfer duration of current download/upload for a repeat report.
+     *
+     * @param startTime  current download/upload start time in nanoseconds
+     * @param reportTime current download/upload report time in nanoseconds
+     */
+    void setTransferDuration(final long startTime, final long reportTime) {
+        mTransferDuration = (startTime != 0) ? reportTime - startTime : 0;
+    }
 }
@@ -24,14 +24,21 @@
 
 package fr.bmartel.speedtest;
 
+import fr.bmartel.speedtest.inter.ILatencyListener;
 import fr.bmartel.speedtest.inter.IRepeatListener;
 import fr.bmartel.speedtest.inter.ISpeedTestListener;
 import fr.bmartel.speedtest.inter.ISpeedTestSocket;
+import fr.bmartel.speedtest.inter.IThroughputEstimator;
 import fr.bmartel.speedtest.model.ComputationMethod;
 import fr.bmartel.speedtest.model.FtpMode;
+import fr.bmartel.speedtest.model.HttpVersion;
+import fr.bmartel.speedtest.model.LatencyMethod;
 import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.model.StopReason;
 import fr.bmartel.speedtest.model.UploadStorageType;
+import fr.bmartel.speedtest.utils.HashedWheelTimer;
 
+import javax.net.ssl.SSLContext;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
@@ -99,6 +106,56 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      */
     private final SpeedTestTask mTask = new SpeedTestTask(this, mListenerList);
 
+    /**
+     * Speed test parallel wrapper used to run download/upload over several connections.
+     */
+    private final ParallelWrapper mParallelWrapper = new ParallelWrapper(this, mTask, mListenerList);
+
+    /**
+     * Speed test HTTP/2 wrapper used to run download/upload over several streams of one connection.
+     */
+    private final Http2Wrapper mHttp2Wrapper = new Http2Wrapper(this, mTask, mListenerList);
+
+    /**
+     * Latency task used to measure round trip time.
+     */
+    private final LatencyTask mLatencyTask = new LatencyTask(this);
+
+    /**
+     * number of connections opened for each download/upload.
+     */
+    private int mConnectionCount = SpeedTestConst.DEFAULT_CONNECTION_COUNT;
+
+    /**
+     * define if current speed test is run over several connections.
+     */
+    private boolean mParallelTest;
+
+    /**
+     * define if current speed test is run over HTTP/2.
+     */
+    private boolean mHttp2Test;
+
+    /**
+     * define if current test is a latency test.
+     */
+    private boolean mLatencyTest;
+
+    /**
+     * HTTP version used for http/https speed tests.
+     */
+    private HttpVersion mHttpVersion = HttpVersion.HTTP_1_1;
+
+    /**
+     * number of HTTP/2 streams opened for each download/upload.
+     */
+    private int mHttp2StreamCount = SpeedTestConst.DEFAULT_HTTP2_STREAM_COUNT;
+
+    /**
+     * HTTP/2 receive window of each stream in octet.
+     */
+    private int mHttp2WindowSize = SpeedTestConst.DEFAULT_HTTP2_WINDOW_SIZE;
+
     /**
      * setup time for calculating the threshold before updating the calculation of download.
      */
@@ -119,6 +176,102 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      */
     private ComputationMethod mComputationMethod = ComputationMethod.MEDIAN_ALL_TIME;
 
+    /**
+     * throughput estimator used instead of computation method (null by default).
+     */
+    private IThroughputEstimator mThroughputEstimator;
+
+    /**
+     * duration of fixed intervals recorded in interval rate distribution in milliseconds.
+     */
+    private int mRateInterval = SpeedTestConst.DEFAULT_RATE_INTERVAL;
+
+    /**
+     * maximum relative spread of windowed transfer rate for an adaptive speed test to be considered converged.
+     */
+    private double mConvergenceTolerance = SpeedTestConst.DEFAULT_CONVERGENCE_TOLERANCE;
+
+    /**
+     * period during which windowed transfer rate of an adaptive speed test must stay within tolerance in
+     * milliseconds.
+     */
+    private int mConvergencePeriod = SpeedTestConst.DEFAULT_CONVERGENCE_PERIOD;
+
+    /**
+     * define if TCP slow-start is detected from transfer rate instead of using fixed setup time.
+     */
+    private boolean mAutoWarmup;
+
+    /**
+     * minimum time between two progress events in milliseconds when no report interval is set (0 if disabled).
+     */
+    private int mProgressInterval;
+
+    /**
+     * minimum number of octet between two progress events when no report interval is set (0 if disabled).
+     */
+    private long mProgressOctetStep;
+
+    /**
+     * minimum progress percent between two progress events when no report interval is set (0 if disabled).
+     */
+    private float mProgressPercentStep;
+
+    /**
+     * reason why current transfer has been stopped.
+     */
+    private volatile StopReason mStopReason = StopReason.NONE;
+
+    /**
+     * periodic convergence check of current adaptive speed test.
+     */
+    private volatile HashedWheelTimer.Timeout mConvergenceCheck;
+
+    /**
+     * define if the same report instance is reused for each progress event.
+     */
+    private boolean mReuseProgressReport;
+
+    /**
+     * keep-alive connection pool used for HTTP connections (null if connections are not reused).
+     */
+    private ConnectionPool mConnectionPool;
+
+    /**
+     * number of HTTP requests sent ahead on the same connection for download repeat.
+     */
+    private int mPipelineDepth = 1;
+
+    /**
+     * SSL context used for https connections (null to use shared SSL context).
+     */
+    private SSLContext mSslContext;
+
+    /**
+     * socket receive buffer size in octet (-1 for system default).
+     */
+    private int mReceiveBufferSize = -1;
+
+    /**
+     * socket send buffer size in octet (-1 for system default).
+     */
+    private int mSendBufferSize = -1;
+
+    /**
+     * define if Nagle's algorithm is disabled.
+     */
+    private boolean mTcpNoDelay;
+
+    /**
+     * IP traffic class of sockets (-1 for system default).
+     */
+    private int mTrafficClass = -1;
+
+    /**
+     * define if socket buffers are autotuned from bandwidth-delay product.
+     */
+    private boolean mBufferAutotune;
+
     /**
      * default repeat interval in milliseconds.
      */
@@ -144,9 +297,9 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      */
     private void initReportTask(final int reportInterval) {
 
-        mTask.renewReportThreadPool();
+        mTask.renewReportTimer();
 
-        mTask.getReportThreadPool().scheduleAtFixedRate(new Runnable() {
+        mTask.getReportTimer().scheduleAtFixedRate(new Runnable() {
             @Override
             public void run() {
                 final SpeedTestReport report = getLiveReport();
@@ -155,7 +308,7 @@ public class SpeedTestSocket implements ISpeedTestSocket {
                     listener.onProgress(report.getProgressPercent(), report);
                 }
             }
-        }, reportInterval, reportInterval, TimeUnit.MILLISECONDS);
+        }, reportInterval, reportInterval);
     }
 
     /**
@@ -184,6 +337,19 @@ public class SpeedTestSocket implements ISpeedTestSocket {
     @Override
     public void shutdownAndWait() {
         mTask.shutdownAndWait();
+        mParallelWrapper.shutdownAndWait();
+        mHttp2Wrapper.shutdownAndWait();
+        mLatencyTask.shutdownAndWait();
+    }
+
+    /**
+     * Shutdown threadpool without waiting for task completion.
+     */
+    private void shutdown() {
+        mTask.shutdown();
+        mParallelWrapper.shutdown();
+        mHttp2Wrapper.shutdown();
+        mLatencyTask.shutdown();
     }
 
     /**
@@ -199,14 +365,14 @@ public class SpeedTestSocket implements ISpeedTestSocket {
             initReportTask(mReportInterval);
             mTask.setReportInterval(true);
         }
-        mTask.renewReportThreadPool();
+        mTask.renewReportTimer();
 
-        mTask.getReportThreadPool().schedule(new Runnable() {
+        mTask.getReportTimer().schedule(new Runnable() {
             @Override
             public void run() {
-                forceStopTask();
+                stopTask(StopReason.MAX_DURATION, false);
             }
-        }, maxDuration, TimeUnit.MILLISECONDS);
+        }, maxDuration);
 
         startDownload(uri);
     }
@@ -226,6 +392,96 @@ public class SpeedTestSocket implements ISpeedTestSocket {
         startFixedDownload(uri, maxDuration);
     }
 
+    /**
+     * Start download process that stops as soon as transfer rate has converged (see
+     * {@link #setConvergenceTolerance(double)} and {@link #setConvergencePeriod(int)}) once minimum duration has
+     * elapsed, or when maximum duration is reached. Stop reason is given by {@link SpeedTestReport#getStopReason()}.
+     *
+     * @param uri         uri to fetch to download file
+     * @param minDuration minimum duration of the speed test in milliseconds
+     * @param maxDuration maximum duration of the speed test in milliseconds
+     */
+    public void startAdaptiveDownload(final String uri,
+                                      final int minDuration,
+                                      final int maxDuration) {
+        scheduleConvergenceCheck(minDuration, maxDuration);
+        startDownload(uri);
+    }
+
+    /**
+     * Start upload process that stops as soon as transfer rate has converged (see
+     * {@link #setConvergenceTolerance(double)} and {@link #setConvergencePeriod(int)}) once minimum duration has
+     * elapsed, or when maximum duration is reached. Stop reason is given by {@link SpeedTestReport#getStopReason()}.
+     *
+     * @param uri           uri to upload file to
+     * @param fileSizeOctet size of file to upload
+     * @param minDuration   minimum duration of the speed test in milliseconds
+     * @param maxDuration   maximum duration of the speed test in milliseconds
+     */
+    public void startAdaptiveUpload(final String uri,
+                                    final int fileSizeOctet,
+                                    final int minDuration,
+                                    final int maxDuration) {
+        scheduleConvergenceCheck(minDuration, maxDuration);
+        startUpload(uri, fileSizeOctet);
+    }
+
+    /**
+     * Schedule periodic convergence check of an adaptive speed test on report timer.
+     *
+     * @param minDuration minimum duration of the speed test in milliseconds
+     * @param maxDuration maximum duration of the speed test in milliseconds
+     */
+    private void scheduleConvergenceCheck(final int minDuration, final int maxDuration) {
+
+        if (mReportInterval != -1 && !mTask.isReportInterval()) {
+            initReportTask(mReportInterval);
+            mTask.setReportInterval(true);
+        }
+        mTask.renewReportTimer();
+
+        final ConvergenceDetector detector = new ConvergenceDetector(SpeedTestConst.CONVERGENCE_CHECK_INTERVAL,
+                SpeedTestConst.CONVERGENCE_WINDOW, mConvergencePeriod, mConvergenceTolerance);
+        final long start = System.nanoTime();
+        final long minNanos = TimeUnit.MILLISECONDS.toNanos(minDuration);
+        final long maxNanos = TimeUnit.MILLISECONDS.toNanos(maxDuration);
+
+        cancelConvergenceCheck();
+
+        mConvergenceCheck = mTask.getReportTimer().scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                final long now = System.nanoTime();
+                final SpeedTestReport report = getLiveReport();
+
+                if (report.getTotalPacketSize() > 0 &&
+                        report.getTemporaryPacketSize() >= report.getTotalPacketSize()) {
+                    //transfer complete : no more check is needed
+                    cancelConvergenceCheck();
+                    return;
+                }
+                final boolean converged = detector.addSample(now, report.getTemporaryPacketSize());
+
+                if (now - start >= maxNanos) {
+                    stopTask(StopReason.MAX_DURATION, false);
+                } else if (converged && now - start >= minNanos) {
+                    stopTask(StopReason.CONVERGED, false);
+                }
+            }
+        }, SpeedTestConst.CONVERGENCE_CHECK_INTERVAL, SpeedTestConst.CONVERGENCE_CHECK_INTERVAL);
+    }
+
+    /**
+     * Cancel periodic convergence check of previous adaptive speed test.
+     */
+    private void cancelConvergenceCheck() {
+        final HashedWheelTimer.Timeout convergenceCheck = mConvergenceCheck;
+        if (convergenceCheck != null) {
+            convergenceCheck.cancel();
+            mConvergenceCheck = null;
+        }
+    }
+
     /**
      * Start download process.
      *
@@ -250,7 +506,28 @@ public class SpeedTestSocket implements ISpeedTestSocket {
             initReportTask(mReportInterval);
             mTask.setReportInterval(true);
         }
-        mTask.startDownloadRequest(uri);
+        mLatencyTest = false;
+        mStopReason = StopReason.NONE;
+        mHttp2Test = isHttp2(uri);
+        mParallelTest = !mHttp2Test && mConnectionCount > 1;
+
+        if (mHttp2Test) {
+            mHttp2Wrapper.startDownload(uri, mHttp2StreamCount, mHttp2WindowSize, mTask.isReportInterval());
+        } else if (mParallelTest) {
+            mParallelWrapper.startDownload(uri, mConnectionCount, mTask.isReportInterval());
+        } else {
+            mTask.startDownloadRequest(uri);
+        }
+    }
+
+    /**
+     * Check if a speed test uri is run over HTTP/2.
+     *
+     * @param uri speed test uri
+     * @return true if HTTP/2 is selected and uri is http/https
+     */
+    private boolean isHttp2(final String uri) {
+        return mHttpVersion == HttpVersion.HTTP_2 && (uri.startsWith("http:") || uri.startsWith("https:"));
     }
 
     /**
@@ -279,14 +556,14 @@ public class SpeedTestSocket implements ISpeedTestSocket {
             initReportTask(mReportInterval);
             mTask.setReportInterval(true);
         }
-        mTask.renewReportThreadPool();
+        mTask.renewReportTimer();
 
-        mTask.getReportThreadPool().schedule(new Runnable() {
+        mTask.getReportTimer().schedule(new Runnable() {
             @Override
             public void run() {
-                forceStopTask();
+                stopTask(StopReason.MAX_DURATION, false);
             }
-        }, maxDuration, TimeUnit.MILLISECONDS);
+        }, maxDuration);
 
         startUpload(uri, fileSizeOctet);
     }
@@ -339,7 +616,56 @@ public class SpeedTestSocket implements ISpeedTestSocket {
             initReportTask(mReportInterval);
             mTask.setReportInterval(true);
         }
-        mTask.startUploadRequest(uri, fileSizeOctet);
+        mLatencyTest = false;
+        mStopReason = StopReason.NONE;
+        mHttp2Test = isHttp2(uri);
+        mParallelTest = !mHttp2Test && mConnectionCount > 1;
+
+        if (mHttp2Test) {
+            mHttp2Wrapper.startUpload(uri, fileSizeOctet, mHttp2StreamCount, mHttp2WindowSize,
+                    mTask.isReportInterval());
+        } else if (mParallelTest) {
+            mParallelWrapper.startUpload(uri, fileSizeOctet, mConnectionCount, mTask.isReportInterval());
+        } else {
+            mTask.startUploadRequest(uri, fileSizeOctet);
+        }
+    }
+
+    /**
+     * Start latency test : TCP connection establishment to host is measured for each probe.
+     *
+     * @param uri        uri of host to probe (http/https)
+     * @param probeCount number of probes
+     * @param listener   latency listener
+     */
+    public void startLatency(final String uri, final int probeCount, final ILatencyListener listener) {
+        startLatency(uri, probeCount, LatencyMethod.TCP_CONNECT, listener);
+    }
+
+    /**
+     * Start latency test. With {@link LatencyMethod#HTTP}, HEAD requests are sent on a keep-alive connection opened
+     * before first probe so that connection setup is not measured.
+     *
+     * @param uri        uri of host to probe (http/https)
+     * @param probeCount number of probes
+     * @param method     probe method
+     * @param listener   latency listener
+     */
+    public void startLatency(final String uri,
+                             final int probeCount,
+                             final LatencyMethod method,
+                             final ILatencyListener listener) {
+        mLatencyTest = true;
+        mLatencyTask.startLatency(uri, probeCount, method, listener);
+    }
+
+    /**
+     * Get latency report with statistics of probes sent until now.
+     *
+     * @return latency report
+     */
+    public LatencyReport getLatencyReport() {
+        return mLatencyTask.getReport();
     }
 
     /**
@@ -428,10 +754,40 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      */
     @Override
     public void forceStopTask() {
+        stopTask(StopReason.FORCE_STOP, true);
+    }
+
+    /**
+     * close mSocket + shutdown thread pool without waiting for task completion.
+     */
+    @Override
+    public void forceStopTaskAsync() {
+        stopTask(StopReason.FORCE_STOP, false);
+    }
+
+    /**
+     * close mSocket + shutdown thread pool, stop reason is given in completion report. Stops triggered by timer must
+     * not wait for task completion since timer worker threads are shared by all speed test sockets.
+     *
+     * @param stopReason reason why transfer is stopped
+     * @param wait       define if task completion is awaited
+     */
+    private void stopTask(final StopReason stopReason, final boolean wait) {
+        if (mStopReason == StopReason.NONE) {
+            mStopReason = stopReason;
+        }
         mRepeatWrapper.cleanTimer();
+        cancelConvergenceCheck();
         mTask.forceStopTask();
         mTask.closeSocket();
-        shutdownAndWait();
+        mParallelWrapper.forceStopTask();
+        mHttp2Wrapper.forceStopTask();
+        mLatencyTask.forceStopTask();
+        if (wait) {
+            shutdownAndWait();
+        } else {
+            shutdown();
+        }
     }
 
     /**
@@ -441,27 +797,268 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      */
     @Override
     public SpeedTestReport getLiveReport() {
-        if (getSpeedTestMode() == SpeedTestMode.DOWNLOAD) {
-            return mTask.getReport(SpeedTestMode.DOWNLOAD);
+
+        final SpeedTestReport report;
+
+        if (mHttp2Test) {
+            report = mHttp2Wrapper.getReport();
+        } else if (mParallelTest) {
+            report = mParallelWrapper.getReport();
+        } else if (getSpeedTestMode() == SpeedTestMode.DOWNLOAD) {
+            report = mTask.getReport(SpeedTestMode.DOWNLOAD);
         } else {
-            return mTask.getReport(SpeedTestMode.UPLOAD);
+            report = mTask.getReport(SpeedTestMode.UPLOAD);
         }
+        report.setStopReason(mStopReason);
+        return report;
+    }
+
+    /**
+     * Get reason why current transfer has been stopped.
+     *
+     * @return stop reason (NONE if transfer is running or has not been stopped)
+     */
+    @Override
+    public StopReason getStopReason() {
+        return mStopReason;
     }
 
     @Override
     public void closeSocket() {
         mTask.closeSocket();
+        mParallelWrapper.closeSocket();
+        mHttp2Wrapper.closeSocket();
+        mLatencyTask.closeSocket();
     }
 
     /**
      * retrieve current speed test mode.
      *
-     * @return speed test mode (UPLOAD/DOWNLOAD/NONE)
+     * @return speed test mode (UPLOAD/DOWNLOAD/LATENCY/NONE)
      */
     public SpeedTestMode getSpeedTestMode() {
+        if (mLatencyTest) {
+            return mLatencyTask.getSpeedTestMode();
+        }
+        if (mHttp2Test) {
+            return mHttp2Wrapper.getSpeedTestMode();
+        }
+        if (mParallelTest) {
+            return mParallelWrapper.getSpeedTestMode();
+        }
         return mTask.getSpeedTestMode();
     }
 
+    /**
+     * Set number of connections opened in parallel for each download/upload. Transfer of each connection is merged
+     * into a single report, report of each connection is available with {@link SpeedTestReport#getStreamReports()}.
+     * For upload, file size is split between all connections.
+     *
+     * @param connectionCount number of connections (1 by default)
+     */
+    public void setConnectionCount(final int connectionCount) {
+        if (connectionCount > 0) {
+            mConnectionCount = connectionCount;
+        }
+    }
+
+    /**
+     * Get number of connections opened in parallel for each download/upload.
+     *
+     * @return number of connections
+     */
+    public int getConnectionCount() {
+        return mConnectionCount;
+    }
+
+    /**
+     * Set SSL context used for https connections. By default all speed test sockets share the same SSL context so
+     * that TLS sessions are resumed instead of a full handshake for each connection. Sockets sharing the same SSL
+     * context resume each other sessions.
+     *
+     * @param sslContext SSL context (null to use shared SSL context)
+     */
+    public void setSslContext(final SSLContext sslContext) {
+        mSslContext = sslContext;
+    }
+
+    /**
+     * Get SSL context used for https connections.
+     *
+     * @return SSL context (null if shared SSL context is used)
+     */
+    @Override
+    public SSLContext getSslContext() {
+        return mSslContext;
+    }
+
+    /**
+     * Set socket receive buffer size (SO_RCVBUF). A single connection throughput is limited to receive buffer size
+     * divided by round trip time, high bandwidth-delay product paths require a large buffer.
+     *
+     * @param receiveBufferSize buffer size in octet (-1 for system default)
+     */
+    public void setReceiveBufferSize(final int receiveBufferSize) {
+        if (receiveBufferSize > 0 || receiveBufferSize == -1) {
+            mReceiveBufferSize = receiveBufferSize;
+        }
+    }
+
+    /**
+     * Get socket receive buffer size (SO_RCVBUF).
+     *
+     * @return buffer size in octet (-1 for system default)
+     */
+    @Override
+    public int getReceiveBufferSize() {
+        return mReceiveBufferSize;
+    }
+
+    /**
+     * Set socket send buffer size (SO_SNDBUF).
+     *
+     * @param sendBufferSize buffer size in octet (-1 for system default)
+     */
+    public void setSendBufferSize(final int sendBufferSize) {
+        if (sendBufferSize > 0 || sendBufferSize == -1) {
+            mSendBufferSize = sendBufferSize;
+        }
+    }
+
+    /**
+     * Get socket send buffer size (SO_SNDBUF).
+     *
+     * @return buffer size in octet (-1 for system default)
+     */
+    @Override
+    public int getSendBufferSize() {
+        return mSendBufferSize;
+    }
+
+    /**
+     * Disable Nagle's algorithm (TCP_NODELAY).
+     *
+     * @param tcpNoDelay true to set TCP_NODELAY
+     */
+    public void setTcpNoDelay(final boolean tcpNoDelay) {
+        mTcpNoDelay = tcpNoDelay;
+    }
+
+    /**
+     * Check if Nagle's algorithm is disabled (TCP_NODELAY).
+     *
+     * @return true if TCP_NODELAY is set
+     */
+    @Override
+    public boolean isTcpNoDelay() {
+        return mTcpNoDelay;
+    }
+
+    /**
+     * Set IP traffic class (type of service) of sockets.
+     *
+     * @param trafficClass traffic class between 0 and 255 (-1 for system default)
+     */
+    public void setTrafficClass(final int trafficClass) {
+        if (trafficClass >= -1 && trafficClass <= 255) {
+            mTrafficClass = trafficClass;
+        }
+    }
+
+    /**
+     * Get IP traffic class (type of service) of sockets.
+     *
+     * @return traffic class (-1 for system default)
+     */
+    @Override
+    public int getTrafficClass() {
+        return mTrafficClass;
+    }
+
+    /**
+     * Autotune socket buffers : bandwidth and round trip time (TCP connection time) are measured during setup phase
+     * and receive buffer (download) or send buffer (upload) is grown to fit bandwidth-delay product. Send buffer is
+     * grown on current connection, receive buffer is applied before connecting next connections (repeat iterations)
+     * since TCP window scale is fixed at connection. Buffer sizes used are available with
+     * {@link SpeedTestReport#getReceiveBufferSize()} and {@link SpeedTestReport#getSendBufferSize()}.
+     *
+     * @param bufferAutotune true to autotune buffers
+     */
+    public void setBufferAutotune(final boolean bufferAutotune) {
+        mBufferAutotune = bufferAutotune;
+    }
+
+    /**
+     * Check if socket buffers are autotuned from bandwidth-delay product measured during setup phase.
+     *
+     * @return true if buffers are autotuned
+     */
+    @Override
+    public boolean isBufferAutotune() {
+        return mBufferAutotune;
+    }
+
+    /**
+     * Set HTTP version used for http/https download/upload. With HTTP/2, requests are sent on several streams of a
+     * single connection (see {@link #setHttp2StreamCount(int)}) : http uri are requested with prior knowledge (h2c)
+     * and https uri must negotiate h2 with ALPN. Proxy server is not used with HTTP/2.
+     *
+     * @param httpVersion HTTP version (HTTP/1.1 by default)
+     */
+    public void setHttpVersion(final HttpVersion httpVersion) {
+        mHttpVersion = httpVersion;
+    }
+
+    /**
+     * Get HTTP version used for http/https download/upload.
+     *
+     * @return HTTP version
+     */
+    public HttpVersion getHttpVersion() {
+        return mHttpVersion;
+    }
+
+    /**
+     * Set number of HTTP/2 streams opened for each download/upload, this is limited by the maximum number of
+     * concurrent streams accepted by server. For upload, file size is split between all streams.
+     *
+     * @param streamCount number of streams (1 by default)
+     */
+    public void setHttp2StreamCount(final int streamCount) {
+        if (streamCount > 0) {
+            mHttp2StreamCount = streamCount;
+        }
+    }
+
+    /**
+     * Get number of HTTP/2 streams opened for each download/upload.
+     *
+     * @return number of streams
+     */
+    public int getHttp2StreamCount() {
+        return mHttp2StreamCount;
+    }
+
+    /**
+     * Set HTTP/2 receive window of each stream, connection window is this size multiplied by number of streams.
+     *
+     * @param windowSize window size in octet (at least 65535)
+     */
+    public void setHttp2WindowSize(final int windowSize) {
+        if (windowSize >= 65535) {
+            mHttp2WindowSize = windowSize;
+        }
+    }
+
+    /**
+     * Get HTTP/2 receive window of each stream.
+     *
+     * @return window size in octet
+     */
+    public int getHttp2WindowSize() {
+        return mHttp2WindowSize;
+    }
+
     /**
      * set socket timeout in millisecond.
      *
@@ -535,6 +1132,69 @@ public class SpeedTestSocket implements ISpeedTestSocket {
         mComputationMethod = computationMethod;
     }
 
+    /**
+     * Reuse the same report instance for each progress event instead of building a new one. This avoids any
+     * allocation on each socket read/write when no report interval is set but the report passed to onProgress is
+     * only valid during the callback. It is not used in repeat mode.
+     *
+     * @param reuse true to reuse progress report
+     */
+    public void setReuseProgressReport(final boolean reuse) {
+        mReuseProgressReport = reuse;
+    }
+
+    /**
+     * Define if the same report instance is reused for each progress event.
+     *
+     * @return true if progress report is reused
+     */
+    @Override
+    public boolean isReuseProgressReport() {
+        return mReuseProgressReport;
+    }
+
+    /**
+     * Set keep-alive connection pool used for HTTP downloads/uploads. A connection is given back to the pool when a
+     * response has been entirely read and is reused by the next request to the same server (repeat download/upload,
+     * chained requests). The same pool can be used by several speed test sockets.
+     *
+     * @param connectionPool connection pool (null to close connection after each request)
+     */
+    public void setConnectionPool(final ConnectionPool connectionPool) {
+        mConnectionPool = connectionPool;
+    }
+
+    /**
+     * Get keep-alive connection pool used for HTTP connections.
+     *
+     * @return connection pool (null if connections are not reused)
+     */
+    @Override
+    public ConnectionPool getConnectionPool() {
+        return mConnectionPool;
+    }
+
+    /**
+     * Set number of HTTP requests sent ahead on the same connection for download repeat (HTTP/1.1 pipelining). The
+     * next request is sent before the current response body has been read so that there is no idle time between two
+     * downloads. Server must support keep-alive connections, otherwise a new connection is opened for each download.
+     *
+     * @param pipelineDepth number of requests in flight (1 to disable pipelining)
+     */
+    public void setPipelineDepth(final int pipelineDepth) {
+        mPipelineDepth = Math.max(1, pipelineDepth);
+    }
+
+    /**
+     * Get number of HTTP requests sent ahead on the same connection for download repeat.
+     *
+     * @return pipeline depth (1 if requests are not pipelined)
+     */
+    @Override
+    public int getPipelineDepth() {
+        return mPipelineDepth;
+    }
+
     /**
      * Set FTP mode passive or active.
      *
@@ -554,10 +1214,184 @@ public class SpeedTestSocket implements ISpeedTestSocket {
         return mComputationMethod;
     }
 
+    /**
+     * Set throughput estimator used to calculate transfer rate instead of computation method, a new estimator is
+     * built with {@link IThroughputEstimator#newInstance()} for each connection.
+     *
+     * @param estimator throughput estimator (null to use computation method)
+     */
+    @Override
+    public void setThroughputEstimator(final IThroughputEstimator estimator) {
+        mThroughputEstimator = estimator;
+    }
+
+    /**
+     * Get the throughput estimator.
+     *
+     * @return throughput estimator (null if computation method is used)
+     */
+    @Override
+    public IThroughputEstimator getThroughputEstimator() {
+        return mThroughputEstimator;
+    }
+
+    /**
+     * Set maximum relative spread of windowed transfer rate around its mean for an adaptive speed test to be
+     * considered converged.
+     *
+     * @param convergenceTolerance tolerance (0.05 by default for 5%)
+     */
+    public void setConvergenceTolerance(final double convergenceTolerance) {
+        if (convergenceTolerance > 0) {
+            mConvergenceTolerance = convergenceTolerance;
+        }
+    }
+
+    /**
+     * Get maximum relative spread of windowed transfer rate for an adaptive speed test to be considered converged.
+     *
+     * @return tolerance
+     */
+    public double getConvergenceTolerance() {
+        return mConvergenceTolerance;
+    }
+
+    /**
+     * Set period during which windowed transfer rate of an adaptive speed test must stay within tolerance.
+     *
+     * @param convergencePeriod period in milliseconds (2s by default)
+     */
+    public void setConvergencePeriod(final int convergencePeriod) {
+        if (convergencePeriod > 0) {
+            mConvergencePeriod = convergencePeriod;
+        }
+    }
+
+    /**
+     * Get period during which windowed transfer rate of an adaptive speed test must stay within tolerance.
+     *
+     * @return period in milliseconds
+     */
+    public int getConvergencePeriod() {
+        return mConvergencePeriod;
+    }
+
+    /**
+     * Set duration of fixed intervals whose transfer rate is recorded in interval rate distribution available with
+     * {@link SpeedTestReport#getIntervalRateP50()} and others.
+     *
+     * @param rateInterval interval in milliseconds (50ms by default)
+     */
+    @Override
+    public void setRateInterval(final int rateInterval) {
+        if (rateInterval > 0) {
+            mRateInterval = rateInterval;
+        }
+    }
+
+    /**
+     * Get duration of fixed intervals whose transfer rate is recorded in interval rate distribution.
+     *
+     * @return interval in milliseconds
+     */
+    @Override
+    public int getRateInterval() {
+        return mRateInterval;
+    }
+
+    /**
+     * Detect end of TCP slow-start from per-interval transfer rate instead of using fixed setup time. Transfer rate
+     * is measured from the point where rate stops growing, detected warm-up is available with
+     * {@link SpeedTestReport#getWarmupDuration()} and {@link SpeedTestReport#getWarmupOctetCount()}.
+     * This applies to {@link ComputationMethod#MEDIAN_ALL_TIME} when no throughput estimator is set.
+     *
+     * @param autoWarmup true to enable warm-up detection (disabled by default)
+     */
+    @Override
+    public void setAutoWarmup(final boolean autoWarmup) {
+        mAutoWarmup = autoWarmup;
+    }
+
+    /**
+     * Define if TCP slow-start is detected from transfer rate.
+     *
+     * @return true if warm-up detection is enabled
+     */
+    @Override
+    public boolean isAutoWarmup() {
+        return mAutoWarmup;
+    }
+
+    /**
+     * Coalesce progress events dispatched on each socket read/write when no report interval is set : progress is
+     * dispatched at most once per interval. This is checked before any report is built, last progress of a transfer
+     * is always dispatched. It can be combined with {@link #setProgressOctetStep(long)} and
+     * {@link #setProgressPercentStep(float)}, all thresholds set must be reached.
+     *
+     * @param progressInterval minimum time between two progress events in milliseconds (0 to disable, default)
+     */
+    @Override
+    public void setProgressInterval(final int progressInterval) {
+        mProgressInterval = Math.max(0, progressInterval);
+    }
+
+    /**
+     * Get minimum time between two progress events.
+     *
+     * @return interval in milliseconds (0 if disabled)
+     */
+    @Override
+    public int getProgressInterval() {
+        return mProgressInterval;
+    }
+
+    /**
+     * Coalesce progress events dispatched on each socket read/write when no report interval is set : progress is
+     * dispatched once at least this number of octet has been transferred since last progress.
+     *
+     * @param progressOctetStep minimum number of octet between two progress events (0 to disable, default)
+     */
+    @Override
+    public void setProgressOctetStep(final long progressOctetStep) {
+        mProgressOctetStep = Math.max(0, progressOctetStep);
+    }
+
+    /**
+     * Get minimum number of octet between two progress events.
+     *
+     * @return octet count (0 if disabled)
+     */
+    @Override
+    public long getProgressOctetStep() {
+        return mProgressOctetStep;
+    }
+
+    /**
+     * Coalesce progress events dispatched on each socket read/write when no report interval is set : progress is
+     * dispatched once progress percent has grown by this value since last progress. This is ignored when transfer
+     * size is unknown.
+     *
+     * @param progressPercentStep minimum progress percent between two progress events (0 to disable, default)
+     */
+    @Override
+    public void setProgressPercentStep(final float progressPercentStep) {
+        mProgressPercentStep = Math.max(0, progressPercentStep);
+    }
+
+    /**
+     * Get minimum progress percent between two progress events.
+     *
+     * @return percent (0 if disabled)
+     */
+    @Override
+    public float getProgressPercentStep() {
+        return mProgressPercentStep;
+    }
+
     /**
      * Set the setup time for upload.
      *
-     * @param setupTime point in time from which upload speed rate should be computed
+     * @param setupTime point in time in milliseconds from which upload speed rate should be computed
      */
     public void setUploadSetupTime(final long setupTime) {
         this.mUploadSetupTime = setupTime;
@@ -566,7 +1400,7 @@ public class SpeedTestSocket implements ISpeedTestSocket {
     /**
      * Set the setup time for download.
      *
-     * @param setupTime point in time from which download speed rate should be computed
+     * @param setupTime point in time in milliseconds from which download speed rate should be computed
      */
     public void setDownloadSetupTime(final long setupTime) {
         this.mDownloadSetupTime = setupTime;
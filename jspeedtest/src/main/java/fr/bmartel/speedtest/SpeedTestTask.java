@@ -24,20 +24,27 @@
 
 package fr.bmartel.speedtest;
 
+import fr.bmartel.speedtest.http.ChunkedDecoder;
 import fr.bmartel.speedtest.http.HttpFrame;
+import fr.bmartel.speedtest.http.HttpResponseParser;
 import fr.bmartel.speedtest.http.HttpStates;
 import fr.bmartel.speedtest.inter.ISpeedTestListener;
 import fr.bmartel.speedtest.inter.ISpeedTestSocket;
+import fr.bmartel.speedtest.inter.IThroughputEstimator;
 import fr.bmartel.speedtest.model.FtpMode;
 import fr.bmartel.speedtest.model.SpeedTestError;
 import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.model.StopReason;
 import fr.bmartel.speedtest.model.UploadStorageType;
 import fr.bmartel.speedtest.utils.RandomGen;
 import fr.bmartel.speedtest.utils.SpeedTestUtils;
+import fr.bmartel.speedtest.utils.ThroughputHistogram;
+import fr.bmartel.speedtest.utils.TimerGroup;
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
 
+import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.IOException;
 import java.io.InputStream;
@@ -46,6 +53,8 @@ import java.io.RandomAccessFile;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.util.List;
 import java.util.concurrent.*;
 
@@ -86,6 +95,59 @@ public class SpeedTestTask {
      */
     private final Object mSocketLock = new Object();
 
+    /**
+     * key of current connection in connection pool.
+     */
+    private String mConnectionKey;
+
+    /**
+     * TLS handshake duration of current connection in nanoseconds (0 if there was no handshake).
+     */
+    private volatile long mHandshakeDuration;
+
+    /**
+     * define if TLS handshake of current connection has resumed a previous session.
+     */
+    private volatile boolean mSessionResumed;
+
+    /**
+     * TCP connection duration of current connection in nanoseconds used as round trip time (0 if connection has been
+     * reused from pool).
+     */
+    private long mConnectDuration;
+
+    /**
+     * define if socket buffer autotune has not been done yet for current connection.
+     */
+    private boolean mAutotunePending;
+
+    /**
+     * receive buffer size computed by autotune on a previous connection in octet, applied before connecting next
+     * connections (0 if not computed yet).
+     */
+    private int mAutotuneReceiveBufferSize;
+
+    /**
+     * receive buffer size of current connection in octet.
+     */
+    private volatile int mReceiveBufferSize;
+
+    /**
+     * send buffer size of current connection in octet.
+     */
+    private volatile int mSendBufferSize;
+
+    /**
+     * HTTP download request sent again on the same connection when repeat download is pipelined (null if not
+     * pipelined).
+     */
+    private byte[] mPipelineRequest;
+
+    /**
+     * http response parser for current connection (keeps octets read ahead of response header).
+     */
+    private final HttpResponseParser mResponseParser = new HttpResponseParser(SpeedTestConst.READ_BUFFER_SIZE);
+
     /**
      * start time triggered in millis.
      */
@@ -114,23 +176,74 @@ public class SpeedTestTask {
     /**
      * this is the number of packet downloaded at this time.
      */
-    private int mDownloadTemporaryPacketSize;
+    private long mDownloadTemporaryPacketSize;
 
     /**
      * number of packet download since the last computation.
      */
-    private int mDlComputationTempPacketSize;
+    private long mDlComputationTempPacketSize;
 
     /**
      * this is the number of packet to download.
      */
-    private BigDecimal mDownloadPckSize = BigDecimal.ZERO;
+    private long mDownloadPckSize;
+
+    /**
+     * throughput estimator of current transfer (null if computation method is used).
+     */
+    private IThroughputEstimator mEstimator;
+
+    /**
+     * estimator set on speed test socket from which current estimator has been built.
+     */
+    private IThroughputEstimator mEstimatorSource;
+
+    /**
+     * transfer rate histogram of fixed intervals for this connection.
+     */
+    private final ThroughputHistogram mRateHistogram = new ThroughputHistogram();
+
+    /**
+     * transfer rate histogram shared by all connections of a parallel speed test (null if not used).
+     */
+    private ThroughputHistogram mAggregateHistogram;
+
+    /**
+     * TCP slow-start detector of current transfer.
+     */
+    private final WarmupDetector mWarmupDetector = new WarmupDetector();
+
+    /**
+     * define if automatic warm-up detection is used for current transfer.
+     */
+    private boolean mAutoWarmup;
+
+    /**
+     * coalescing of progress events dispatched on each socket read/write.
+     */
+    private final ProgressThrottle mProgressThrottle = new ProgressThrottle();
 
     /**
-     * flag indicating chunked transfer encoding (no Content-Length).
+     * define if progress of this connection is merged with other connections of a parallel speed test : progress
+     * is then throttled and interval computation is reset by the parallel speed test only.
+     */
+    private boolean mMergedProgress;
+
+    /**
+     * define if transfer rate interval computation should be reset by the transfer thread on next read/write.
+     */
+    private volatile boolean mIntervalResetPending;
+
+    /**
+     * flag indicating chunked transfer encoding.
      */
     private boolean mChunkedTransfer = false;
 
+    /**
+     * decoder used to count payload octets of a chunked response.
+     */
+    private final ChunkedDecoder mChunkedDecoder = new ChunkedDecoder();
+
     /**
      * FTP inputstream.
      */
@@ -155,7 +268,7 @@ public class SpeedTestTask {
     /**
      * size of file to upload.
      */
-    private BigDecimal mUploadFileSize = BigDecimal.ZERO;
+    private long mUploadFileSize;
 
     /**
      * SpeedTestSocket interface.
@@ -188,9 +301,19 @@ public class SpeedTestTask {
     private ExecutorService mWriteExecutorService;
 
     /**
-     * executor service used for reporting.
+     * timeouts used for reporting and fixed duration tasks, scheduled on timer shared by all sockets.
      */
-    private ScheduledExecutorService mReportExecutorService;
+    private final TimerGroup mReportTimer = new TimerGroup();
+
+    /**
+     * watchdog closing socket when a write exceeds socket timeout.
+     */
+    private final WriteWatchdog mWriteWatchdog = new WriteWatchdog();
+
+    /**
+     * report reused for each progress event when progress report reuse is enabled.
+     */
+    private SpeedTestReport mProgressReport;
 
     /**
      * current speed test mode.
@@ -214,7 +337,6 @@ public class SpeedTestTask {
      */
     private void initThreadPool() {
         mReadExecutorService = Executors.newSingleThreadExecutor();
-        mReportExecutorService = Executors.newScheduledThreadPool(SpeedTestConst.THREAD_POOL_REPORT_SIZE);
         mWriteExecutorService = Executors.newSingleThreadExecutor();
     }
 
@@ -278,6 +400,11 @@ public class SpeedTestTask {
                         }
                         downloadRequest = "GET " + uri + " HTTP/1.1\r\n" + "Host: " + url.getHost() + "\r\n\r\n";
                     }
+                    if (mRepeatWrapper.isRepeatDownload() && mSocketInterface.getPipelineDepth() > 1) {
+                        mPipelineRequest = downloadRequest.getBytes();
+                    } else {
+                        mPipelineRequest = null;
+                    }
                     writeDownload(downloadRequest.getBytes());
                     break;
                 case "ftp":
@@ -346,7 +473,7 @@ public class SpeedTestTask {
      */
     private void closeExecutors() {
         mReadExecutorService.shutdownNow();
-        mReportExecutorService.shutdownNow();
+        mReportTimer.close();
         mWriteExecutorService.shutdownNow();
     }
 
@@ -374,13 +501,14 @@ public class SpeedTestTask {
                     this.mPort = url.getPort() != -1 ? url.getPort() : 443;
                 }
             }
-            mUploadFileSize = new BigDecimal(fileSizeOctet);
+            mUploadFileSize = fileSizeOctet;
 
             mUploadTempFileSize = 0;
             mUlComputationTempFileSize = 0;
 
             mTimeStart = System.nanoTime();
             mTimeComputeStart = System.nanoTime();
+            resetTransferSampling();
 
             connectAndExecuteTask(new Runnable() {
                 @Override
@@ -397,12 +525,7 @@ public class SpeedTestTask {
 
                         try {
 
-                            byte[] body = new byte[]{};
-
-                            if (mSocketInterface.getUploadStorageType() == UploadStorageType.RAM_STORAGE) {
-                                /* generate a file with size of fileSizeOctet octet */
-                                body = randomGen.generateRandomArray(fileSizeOctet);
-                            } else {
+                            if (mSocketInterface.getUploadStorageType() == UploadStorageType.FILE_STORAGE) {
                                 uploadFile = randomGen.generateRandomFile(fileSizeOctet);
                                 uploadFile.seek(0);
                             }
@@ -425,6 +548,9 @@ public class SpeedTestTask {
                             final int step = fileSizeOctet / uploadChunkSize;
                             final int remain = fileSizeOctet % uploadChunkSize;
 
+                            final byte[] chunkBuffer = (uploadFile != null && socket.getChannel() == null) ?
+                                    new byte[uploadChunkSize] : null;
+
                             if (socket.getOutputStream() != null) {
 
                                 if (writeFlushSocket(socket, head.getBytes()) != 0) {
@@ -433,6 +559,7 @@ public class SpeedTestTask {
 
                                 mTimeStart = System.nanoTime();
                                 mTimeComputeStart = System.nanoTime();
+                                resetTransferSampling();
                                 mTimeEnd = 0;
 
                                 if (mRepeatWrapper.isFirstUpload()) {
@@ -446,46 +573,36 @@ public class SpeedTestTask {
 
                                 for (int i = 0; i < step; i++) {
 
-                                    final byte[] chunk = SpeedTestUtils.readUploadData(mSocketInterface
-                                                    .getUploadStorageType(),
-                                            body,
-                                            uploadFile,
-                                            mUploadTempFileSize,
-                                            uploadChunkSize);
-
-                                    if (writeFlushSocket(socket, chunk) != 0) {
+                                    if (writeUploadChunk(socket, uploadFile, chunkBuffer, mUploadTempFileSize,
+                                            uploadChunkSize) != 0) {
                                         throw new SocketTimeoutException();
                                     }
 
                                     mUploadTempFileSize += uploadChunkSize;
                                     mUlComputationTempFileSize += uploadChunkSize;
+                                    addTransferSample(uploadChunkSize);
 
                                     if (mRepeatWrapper.isRepeatUpload()) {
                                         mRepeatWrapper.updateTempPacketSize(uploadChunkSize);
                                     }
 
-                                    if (!mReportInterval) {
-                                        final SpeedTestReport report = getReport(SpeedTestMode.UPLOAD);
+                                    if (mAutotunePending) {
+                                        autotuneBuffer(false, mUploadTempFileSize);
+                                    }
 
-                                        for (int j = 0; j < mListenerList.size(); j++) {
-                                            mListenerList.get(j).onProgress(report.getProgressPercent(), report);
-                                        }
+                                    if (!mReportInterval) {
+                                        dispatchProgress(SpeedTestMode.UPLOAD);
                                     }
                                 }
 
-                                final byte[] chunk = SpeedTestUtils.readUploadData(mSocketInterface
-                                                .getUploadStorageType(),
-                                        body,
-                                        uploadFile,
-                                        mUploadTempFileSize,
-                                        remain);
-
-                                if (remain != 0 && writeFlushSocket(socket, chunk) != 0) {
+                                if (remain != 0 && writeUploadChunk(socket, uploadFile, chunkBuffer,
+                                        mUploadTempFileSize, remain) != 0) {
                                     throw new SocketTimeoutException();
                                 } else {
 
                                     mUploadTempFileSize += remain;
                                     mUlComputationTempFileSize += remain;
+                                    addTransferSample(remain);
 
                                     if (mRepeatWrapper.isRepeatUpload()) {
                                         mRepeatWrapper.updateTempPacketSize(remain);
@@ -560,28 +677,61 @@ public class SpeedTestTask {
                 mSocket = null;
             }
 
+            final ConnectionPool connectionPool = mSocketInterface.getConnectionPool();
+
+            mConnectionKey = ConnectionPool.getKey(mProtocol, mHostname, mPort,
+                    (mProxyUrl != null) ? mProxyUrl.toString() : null);
+
             try {
-                Socket newSocket;
-                if ("https".equals(mProtocol)) {
-                    final SSLSocketFactory ssf = (SSLSocketFactory) SSLSocketFactory.getDefault();
+                Socket newSocket = (connectionPool != null) ? connectionPool.acquire(mConnectionKey) : null;
+
+                mHandshakeDuration = 0;
+                mSessionResumed = false;
+                mConnectDuration = 0;
+
+                if (newSocket != null) {
+                    //reuse idle connection
+                } else if ("https".equals(mProtocol)) {
+                    final SSLSocketFactory ssf = SpeedTestUtils.getSslSocketFactory(mSocketInterface);
                     final Socket plainSocket = new Socket();
-                    plainSocket.setReuseAddress(true);
-                    plainSocket.setKeepAlive(true);
+                    SpeedTestUtils.applySocketOptions(mSocketInterface, plainSocket);
+                    applyAutotuneBuffer(plainSocket);
+
+                    final long connectStart = System.nanoTime();
                     plainSocket.connect(new InetSocketAddress(mHostname, mPort));
-                    newSocket = ssf.createSocket(plainSocket, mHostname, mPort, true);
-                    ((javax.net.ssl.SSLSocket) newSocket).startHandshake();
+                    mConnectDuration = System.nanoTime() - connectStart;
+
+                    final SSLSocket sslSocket = (SSLSocket) ssf.createSocket(plainSocket, mHostname, mPort, true);
+
+                    final long handshakeStartMillis = System.currentTimeMillis();
+                    final long handshakeStart = System.nanoTime();
+                    sslSocket.startHandshake();
+                    mHandshakeDuration = System.nanoTime() - handshakeStart;
+                    mSessionResumed = SpeedTestUtils.isSessionResumed(sslSocket.getSession(), handshakeStartMillis);
+                    newSocket = sslSocket;
                 } else {
-                    newSocket = new Socket();
-                    newSocket.setReuseAddress(true);
-                    newSocket.setKeepAlive(true);
+                    if (!download && mSocketInterface.getUploadStorageType() == UploadStorageType.FILE_STORAGE) {
+                        // socket backed by a channel so that upload file can be sent with FileChannel.transferTo
+                        newSocket = SocketChannel.open().socket();
+                    } else {
+                        newSocket = new Socket();
+                    }
+                    SpeedTestUtils.applySocketOptions(mSocketInterface, newSocket);
+                    applyAutotuneBuffer(newSocket);
+
+                    final long connectStart = System.nanoTime();
                     newSocket.connect(new InetSocketAddress(mHostname, mPort));
+                    mConnectDuration = System.nanoTime() - connectStart;
                 }
 
-                if (mSocketInterface.getSocketTimeout() != 0 && download) {
-                    newSocket.setSoTimeout(mSocketInterface.getSocketTimeout());
-                }
+                newSocket.setSoTimeout(download ? mSocketInterface.getSocketTimeout() : 0);
+
+                mReceiveBufferSize = newSocket.getReceiveBufferSize();
+                mSendBufferSize = newSocket.getSendBufferSize();
+                mAutotunePending = mSocketInterface.isBufferAutotune() && mConnectDuration > 0;
 
                 mSocket = newSocket;
+                mResponseParser.reset();
 
             } catch (IOException e) {
                 if (!mErrorDispatched) {
@@ -640,10 +790,6 @@ public class SpeedTestTask {
      */
     private void startSocketDownloadTask(final String protocol, final String hostname) {
 
-        mDownloadTemporaryPacketSize = 0;
-        mDlComputationTempPacketSize = 0;
-        mChunkedTransfer = false;
-
         final Socket socket;
         synchronized (mSocketLock) {
             socket = mSocket;
@@ -655,15 +801,46 @@ public class SpeedTestTask {
             return;
         }
 
+        //pipeline is filled only when first response shows that connection is kept alive
+        int requestCount = mSocketInterface.getPipelineDepth() - 1;
+        boolean nextResponse;
+
+        do {
+            mDownloadTemporaryPacketSize = 0;
+            mDlComputationTempPacketSize = 0;
+            mChunkedTransfer = false;
+
+            nextResponse = readDownloadResponse(socket, protocol, hostname, requestCount);
+            requestCount = 1;
+
+        } while (nextResponse);
+
+        mErrorDispatched = false;
+    }
+
+    /**
+     * read one HTTP download response on socket. When repeat download is pipelined, next requests are sent as soon as
+     * response header is received so that server has always a response to send.
+     *
+     * @param socket       socket to read from
+     * @param protocol     protocol used (http/https)
+     * @param hostname     hostname to reach
+     * @param requestCount number of requests to send ahead if repeat download is pipelined
+     * @return true if next response is to be read on the same connection
+     */
+    private boolean readDownloadResponse(final Socket socket,
+                                         final String protocol,
+                                         final String hostname,
+                                         final int requestCount) {
+
         try {
-            final HttpFrame httpFrame = new HttpFrame();
+            mResponseParser.next();
 
-            final HttpStates httFrameState = httpFrame.decodeFrame(socket.getInputStream());
+            final HttpStates httFrameState = mResponseParser.parse(socket.getInputStream());
 
             SpeedTestUtils.checkHttpFrameError(mForceCloseSocket, mListenerList, httFrameState);
 
-            final HttpStates httpHeaderState = httpFrame.parseHeader(socket.getInputStream());
-            SpeedTestUtils.checkHttpHeaderError(mForceCloseSocket, mListenerList, httpHeaderState);
+            final HttpFrame httpFrame = mResponseParser.getFrame();
 
             if (httpFrame.getStatusCode() == SpeedTestConst.HTTP_OK &&
                     httpFrame.getReasonPhrase().equalsIgnoreCase("ok")) {
@@ -671,20 +848,30 @@ public class SpeedTestTask {
                 SpeedTestUtils.checkHttpContentLengthError(mForceCloseSocket,
                         mListenerList, httpFrame);
 
-                mChunkedTransfer = httpFrame.isChunkedTransfer() || httpFrame.getContentLength() <= 0;
+                mChunkedTransfer = httpFrame.isChunkedTransfer();
+                mChunkedDecoder.reset();
 
-                if (mChunkedTransfer) {
-                    mDownloadPckSize = BigDecimal.valueOf(-1);
+                if (mChunkedTransfer || httpFrame.getContentLength() <= 0) {
+                    //size is known when last chunk is received (chunked) or when connection is closed
+                    mDownloadPckSize = -1;
                 } else {
-                    mDownloadPckSize = new BigDecimal(httpFrame.getContentLength());
+                    mDownloadPckSize = httpFrame.getContentLength();
                 }
 
-                if (mRepeatWrapper.isRepeatDownload()) {
+                boolean pipelined = mPipelineRequest != null && (mChunkedTransfer || mDownloadPckSize != -1) &&
+                        isKeepAlive(httpFrame);
+
+                for (int i = 0; pipelined && i < requestCount; i++) {
+                    pipelined = writeFlushSocket(socket, mPipelineRequest) == 0;
+                }
+
+                if (mRepeatWrapper.isRepeatDownload() && mDownloadPckSize != -1) {
                     mRepeatWrapper.updatePacketSize(mDownloadPckSize);
                 }
 
                 mTimeStart = System.nanoTime();
                 mTimeComputeStart = System.nanoTime();
+                resetTransferSampling();
                 mTimeEnd = 0;
 
                 if (mRepeatWrapper.isFirstDownload()) {
@@ -695,7 +882,27 @@ public class SpeedTestTask {
                 downloadReadingLoop(socket.getInputStream());
                 mTimeEnd = System.nanoTime();
 
-                closeSocket();
+                final boolean complete = mChunkedTransfer ? mChunkedDecoder.isComplete() :
+                        mDownloadTemporaryPacketSize == mDownloadPckSize;
+
+                if (pipelined && complete && !mForceCloseSocket) {
+
+                    mRepeatWrapper.setPipelineContinued(true);
+
+                    final SpeedTestReport report = getCompletionReport(SpeedTestMode.DOWNLOAD);
+
+                    for (int i = 0; i < mListenerList.size(); i++) {
+                        mListenerList.get(i).onCompletion(report);
+                    }
+                    return mRepeatWrapper.isRepeatDownload() && !mForceCloseSocket;
+                }
+
+                if (complete && isKeepAlive(httpFrame) && mPipelineRequest == null &&
+                        mResponseParser.getBufferedLength() == 0) {
+                    releaseSocket();
+                } else {
+                    closeSocket();
+                }
 
                 mReportInterval = false;
 
@@ -703,7 +910,9 @@ public class SpeedTestTask {
                     closeExecutors();
                 }
 
-                final SpeedTestReport report = getReport(SpeedTestMode.DOWNLOAD);
+                mRepeatWrapper.setPipelineContinued(false);
+
+                final SpeedTestReport report = getCompletionReport(SpeedTestMode.DOWNLOAD);
 
                 for (int i = 0; i < mListenerList.size(); i++) {
                     mListenerList.get(i).onCompletion(report);
@@ -751,8 +960,7 @@ public class SpeedTestTask {
             mReportInterval = false;
             catchError(e.getMessage());
         }
-
-        mErrorDispatched = false;
+        return false;
     }
 
     private void finishTask() {
@@ -770,27 +978,138 @@ public class SpeedTestTask {
      */
     private void downloadReadingLoop(final InputStream inputStream) throws IOException {
 
+        if (mChunkedTransfer) {
+            chunkedReadingLoop(inputStream);
+            return;
+        }
+
         final byte[] buffer = new byte[SpeedTestConst.READ_BUFFER_SIZE];
         int read;
 
-        while ((read = inputStream.read(buffer)) != -1) {
+        int length = buffer.length;
+
+        if (mDownloadPckSize != -1) {
+            length = (int) Math.min(buffer.length, mDownloadPckSize);
+        }
+
+        while (length > 0 && (read = mResponseParser.readBody(inputStream, buffer, 0, length)) != -1) {
 
             mDownloadTemporaryPacketSize += read;
             mDlComputationTempPacketSize += read;
+            addTransferSample(read);
 
             if (mRepeatWrapper.isRepeatDownload()) {
                 mRepeatWrapper.updateTempPacketSize(read);
             }
 
+            if (mAutotunePending) {
+                autotuneBuffer(true, mDownloadTemporaryPacketSize);
+            }
+
             if (!mReportInterval) {
-                final SpeedTestReport report = getReport(SpeedTestMode.DOWNLOAD);
-                for (int i = 0; i < mListenerList.size(); i++) {
-                    mListenerList.get(i).onProgress(report.getProgressPercent(), report);
+                dispatchProgress(SpeedTestMode.DOWNLOAD);
+            }
+
+            if (mDownloadPckSize != -1) {
+                //never read beyond this response : next response may follow on the same connection
+                length = (int) Math.min(buffer.length, mDownloadPckSize - mDownloadTemporaryPacketSize);
+            }
+        }
+    }
+
+    /**
+     * Grow socket buffers to fit bandwidth-delay product once bandwidth has been measured during setup phase. This is
+     * done once per connection.
+     * <p>
+     * Send buffer (upload) is grown on current connection. Receive buffer (download) is only applied to next
+     * connections (repeat iterations or new connections when none is idle in pool) : TCP window scale is fixed when
+     * connecting and setting receive buffer disables kernel receive autotuning on some systems, so growing it on a
+     * connected socket may limit throughput instead of raising it.
+     *
+     * @param download    define if receive buffer or send buffer is tuned
+     * @param transferred number of octet transferred since transfer start
+     */
+    private void autotuneBuffer(final boolean download, final long transferred) {
+
+        final long duration = System.nanoTime() - mTimeStart;
+
+        if (duration < Math.max(SpeedTestConst.AUTOTUNE_SAMPLE_TIME,
+                getSetupTimeNanos(download ? SpeedTestMode.DOWNLOAD : SpeedTestMode.UPLOAD))) {
+            return;
+        }
+        mAutotunePending = false;
+
+        final int size = SpeedTestUtils.getAutotuneBufferSize(transferred, duration, mConnectDuration);
+
+        final Socket socket;
+        synchronized (mSocketLock) {
+            socket = mSocket;
+        }
+        if (socket == null) {
+            return;
+        }
+        try {
+            if (download) {
+                mAutotuneReceiveBufferSize = Math.max(mAutotuneReceiveBufferSize, size);
+            } else {
+                if (size > socket.getSendBufferSize()) {
+                    socket.setSendBufferSize(size);
                 }
+                mSendBufferSize = socket.getSendBufferSize();
             }
+        } catch (SocketException e) {
+            //current buffer size is kept
+        }
+    }
 
-            if (!mChunkedTransfer && mDownloadTemporaryPacketSize == mDownloadPckSize.longValueExact()) {
-                break;
+    /**
+     * Apply receive buffer size computed by autotune on a previous connection to a socket before it is connected.
+     *
+     * @param socket socket to configure
+     * @throws SocketException socket option error
+     */
+    private void applyAutotuneBuffer(final Socket socket) throws SocketException {
+        if (mAutotuneReceiveBufferSize > socket.getReceiveBufferSize()) {
+            socket.setReceiveBufferSize(mAutotuneReceiveBufferSize);
+        }
+    }
+
+    /**
+     * download reading loop for chunked response : only chunk payload is counted and chunks are decoded in place
+     * until last chunk is received.
+     *
+     * @param inputStream the socket input stream to read from
+     * @throws IOException mSocket io exception or invalid chunk
+     */
+    private void chunkedReadingLoop(final InputStream inputStream) throws IOException {
+
+        int read;
+
+        while (!mChunkedDecoder.isComplete() &&
+                (read = mResponseParser.readChunkedBody(inputStream, mChunkedDecoder)) != -1) {
+
+            mDownloadTemporaryPacketSize += read;
+            mDlComputationTempPacketSize += read;
+            addTransferSample(read);
+
+            if (mRepeatWrapper.isRepeatDownload()) {
+                mRepeatWrapper.updateTempPacketSize(read);
+            }
+
+            if (mAutotunePending) {
+                autotuneBuffer(true, mDownloadTemporaryPacketSize);
+            }
+
+            if (mChunkedDecoder.isComplete()) {
+                mDownloadPckSize = mDownloadTemporaryPacketSize;
+
+                if (mRepeatWrapper.isRepeatDownload()) {
+                    mRepeatWrapper.updatePacketSize(mDownloadPckSize);
+                }
+            }
+
+            if (!mReportInterval && read > 0) {
+                dispatchProgress(SpeedTestMode.DOWNLOAD);
             }
         }
     }
@@ -815,9 +1134,11 @@ public class SpeedTestTask {
         }
 
         try {
-            final HttpFrame frame = new HttpFrame();
+            mResponseParser.next();
+
+            final HttpStates httpStates = mResponseParser.parse(socket.getInputStream());
 
-            final HttpStates httpStates = frame.parseHttp(socket.getInputStream());
+            final HttpFrame frame = mResponseParser.getFrame();
 
             if (httpStates == HttpStates.HTTP_FRAME_OK) {
 
@@ -826,9 +1147,15 @@ public class SpeedTestTask {
                     mTimeEnd = System.nanoTime();
                     mReportInterval = false;
 
+                    if (mUploadTempFileSize == mUploadFileSize && isKeepAlive(frame) && !frame.isChunkedTransfer() &&
+                            frame.getContentLength() >= 0 &&
+                            mResponseParser.skipBody(socket.getInputStream(), frame.getContentLength()) &&
+                            mResponseParser.getBufferedLength() == 0) {
+                        releaseSocket();
+                    }
                     finishTask();
 
-                    final SpeedTestReport report = getReport(SpeedTestMode.UPLOAD);
+                    final SpeedTestReport report = getCompletionReport(SpeedTestMode.UPLOAD);
 
                     for (int i = 0; i < mListenerList.size(); i++) {
                         mListenerList.get(i).onCompletion(report);
@@ -942,7 +1269,7 @@ public class SpeedTestTask {
 
 
     /**
-     * write and flush socket.
+     * write and flush socket. Socket is closed by write watchdog if write exceeds socket timeout.
      *
      * @param socket socket to write to
      * @param data payload to write
@@ -955,36 +1282,96 @@ public class SpeedTestTask {
             return -1;
         }
 
-        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        mWriteWatchdog.begin(socket, mSocketInterface.getSocketTimeout());
 
-        @SuppressWarnings("unchecked") final Future<Integer> future = executor.submit(new Callable() {
+        try {
+            socket.getOutputStream().write(data);
+            socket.getOutputStream().flush();
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            mWriteWatchdog.end();
+        }
+        return 0;
+    }
 
-            /**
-             * execute sequential write/flush task.
-             *
-             * @return status
-             */
-            public Integer call() {
-                try {
-                    socket.getOutputStream().write(data);
-                    socket.getOutputStream().flush();
-                } catch (IOException e) {
+    /**
+     * write a chunk of upload data and flush socket. When upload file is stored on disk and socket is backed by a
+     * channel, the chunk is transferred from the file to the socket without copy with FileChannel.transferTo.
+     * Socket is closed by write watchdog if write exceeds socket timeout.
+     *
+     * @param socket     socket to write to
+     * @param uploadFile upload file (FILE_STORAGE)
+     * @param buffer     buffer used to read upload file (FILE_STORAGE)
+     * @param offset     offset of chunk in upload payload/file
+     * @param length     chunk size
+     * @return error status (-1 for error)
+     */
+    private int writeUploadChunk(final Socket socket,
+                                 final RandomAccessFile uploadFile,
+                                 final byte[] buffer,
+                                 final int offset,
+                                 final int length) {
+
+        if (socket.isClosed()) {
+            return -1;
+        }
+
+        if (uploadFile != null && socket.getChannel() != null) {
+            return transferFlushSocket(socket, uploadFile.getChannel(), offset, length);
+        }
+
+        mWriteWatchdog.begin(socket, mSocketInterface.getSocketTimeout());
+
+        try {
+            SpeedTestUtils.writeUploadData(mSocketInterface.getUploadStorageType(),
+                    socket.getOutputStream(),
+                    uploadFile,
+                    buffer,
+                    offset,
+                    length);
+            socket.getOutputStream().flush();
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            mWriteWatchdog.end();
+        }
+        return 0;
+    }
+
+    /**
+     * transfer a region of a file to socket channel. Socket is closed by write watchdog if transfer exceeds socket
+     * timeout.
+     *
+     * @param socket      socket backed by a channel to write to
+     * @param fileChannel file channel to read from
+     * @param position    position of region in file
+     * @param length      region size
+     * @return error status (-1 for error)
+     */
+    private int transferFlushSocket(final Socket socket,
+                                    final FileChannel fileChannel,
+                                    final long position,
+                                    final int length) {
+
+        mWriteWatchdog.begin(socket, mSocketInterface.getSocketTimeout());
+
+        try {
+            long transferred = 0;
+            while (transferred < length) {
+                final long count = fileChannel.transferTo(position + transferred, length - transferred,
+                        socket.getChannel());
+                if (count <= 0 && position + transferred >= fileChannel.size()) {
                     return -1;
                 }
-                return 0;
+                transferred += count;
             }
-        });
-        int status;
-        try {
-            status = future.get(mSocketInterface.getSocketTimeout(), TimeUnit.MILLISECONDS);
-        } catch (TimeoutException e) {
-            future.cancel(true);
-            status = -1;
-        } catch (InterruptedException | ExecutionException e) {
-            status = -1;
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            mWriteWatchdog.end();
         }
-        executor.shutdownNow();
-        return status;
+        return 0;
     }
 
     /**
@@ -1008,17 +1395,154 @@ public class SpeedTestTask {
      */
     public SpeedTestReport getReport(final SpeedTestMode mode) {
 
-        BigDecimal temporaryPacketSize = BigDecimal.ZERO;
-        BigDecimal totalPacketSize = BigDecimal.ZERO;
+        final SpeedTestReport report = getStreamReport(mode);
+
+        if (mRepeatWrapper.isRepeat()) {
+            final SpeedTestReport repeatReport = mRepeatWrapper.getRepeatReport(mSocketInterface.getDefaultScale(),
+                    mSocketInterface.getDefaultRoundingMode(),
+                    mode,
+                    report.getReportTime(),
+                    report.getTransferRateOctet());
+            repeatReport.setTransferDuration(report.getStartTime(), report.getReportTime());
+            repeatReport.setHandshake(mHandshakeDuration, mSessionResumed);
+            repeatReport.setSocketBuffers(mReceiveBufferSize, mSendBufferSize);
+            repeatReport.setIntervalRates(mRateHistogram);
+            repeatReport.setWarmup(mWarmupDetector.getWarmupDuration(), mWarmupDetector.getWarmupOctetCount());
+            return repeatReport;
+        }
+        return report;
+    }
+
+    /**
+     * get report dispatched when transfer has ended.
+     *
+     * @param mode speed test mode requested
+     * @return speed test report
+     */
+    private SpeedTestReport getCompletionReport(final SpeedTestMode mode) {
+        final SpeedTestReport report = getReport(mode);
+        report.setStopReason(mForceCloseSocket ? mSocketInterface.getStopReason() : StopReason.COMPLETED);
+        return report;
+    }
+
+    /**
+     * get a download/upload report for the connection managed by this task only (repeat stats are not taken into
+     * account).
+     *
+     * @param mode speed test mode requested
+     * @return speed test report
+     */
+    public SpeedTestReport getStreamReport(final SpeedTestMode mode) {
+        return computeStreamReport(mode, null, true);
+    }
+
+    /**
+     * get a read-only download/upload report for the connection managed by this task : transfer rate interval
+     * computation is not reset so it can be called from any thread.
+     *
+     * @param mode speed test mode requested
+     * @return speed test report
+     */
+    public SpeedTestReport getStreamSnapshot(final SpeedTestMode mode) {
+        return computeStreamReport(mode, null, false);
+    }
+
+    /**
+     * get number of octet transferred at this time.
+     *
+     * @param mode speed test mode requested
+     * @return number of octet transferred
+     */
+    public long getTemporaryPacketSize(final SpeedTestMode mode) {
+        return (mode == SpeedTestMode.DOWNLOAD) ? mDownloadTemporaryPacketSize : mUploadTempFileSize;
+    }
+
+    /**
+     * get total number of octet to transfer.
+     *
+     * @param mode speed test mode requested
+     * @return total number of octet (0 or less if unknown)
+     */
+    public long getTotalPacketSize(final SpeedTestMode mode) {
+        return (mode == SpeedTestMode.DOWNLOAD) ? mDownloadPckSize : mUploadFileSize;
+    }
+
+    /**
+     * Request a reset of transfer rate interval computation, it is done by the transfer thread on next read/write.
+     */
+    public void requestIntervalReset() {
+        mIntervalResetPending = true;
+    }
+
+    /**
+     * Set if progress of this connection is merged with other connections of a parallel speed test.
+     *
+     * @param mergedProgress true if progress is merged
+     */
+    public void setMergedProgress(final boolean mergedProgress) {
+        mMergedProgress = mergedProgress;
+    }
+
+    /**
+     * dispatch a progress report to all listeners unless it is coalesced. If progress report reuse is enabled (and
+     * repeat is not used), the same report instance is updated for each progress event.
+     *
+     * @param mode speed test mode
+     */
+    private void dispatchProgress(final SpeedTestMode mode) {
+
+        if (mListenerList.isEmpty()) {
+            return;
+        }
+        final boolean download = mode == SpeedTestMode.DOWNLOAD;
+
+        final SpeedTestReport report;
+
+        if (mMergedProgress) {
+            //merged progress is throttled and built by the parallel speed test
+            mProgressReport = computeStreamReport(mode, mProgressReport, false);
+            report = mProgressReport;
+        } else if (!mProgressThrottle.shallDispatch(download ? mDownloadTemporaryPacketSize : mUploadTempFileSize,
+                download ? mDownloadPckSize : mUploadFileSize)) {
+            return;
+        } else if (mSocketInterface.isReuseProgressReport() && !mRepeatWrapper.isRepeat()) {
+            mProgressReport = computeStreamReport(mode, mProgressReport, true);
+            report = mProgressReport;
+        } else {
+            report = getReport(mode);
+        }
+
+        for (int i = 0; i < mListenerList.size(); i++) {
+            mListenerList.get(i).onProgress(report.getProgressPercent(), report);
+        }
+    }
+
+    /**
+     * compute a download/upload report for the connection managed by this task with primitive values only, transfer
+     * rate BigDecimal is computed by the report when requested.
+     *
+     * @param mode          speed test mode requested
+     * @param report        report to update (null to build a new report)
+     * @param resetInterval define if transfer rate interval computation is reset (MEDIAN_INTERVAL)
+     * @return speed test report
+     */
+    private SpeedTestReport computeStreamReport(final SpeedTestMode mode, final SpeedTestReport report,
+                                                final boolean resetInterval) {
+
+        long temporaryPacketSize = 0;
+        long totalPacketSize = 0;
+        long intervalPacketSize = 0;
 
         switch (mode) {
             case DOWNLOAD:
-                temporaryPacketSize = new BigDecimal(mDownloadTemporaryPacketSize);
+                temporaryPacketSize = mDownloadTemporaryPacketSize;
                 totalPacketSize = mDownloadPckSize;
+                intervalPacketSize = mDlComputationTempPacketSize;
                 break;
             case UPLOAD:
-                temporaryPacketSize = new BigDecimal(mUploadTempFileSize);
+                temporaryPacketSize = mUploadTempFileSize;
                 totalPacketSize = mUploadFileSize;
+                intervalPacketSize = mUlComputationTempFileSize;
                 break;
             default:
                 break;
@@ -1031,59 +1555,138 @@ public class SpeedTestTask {
             currentTime = mTimeEnd;
         }
 
-        BigDecimal transferRateOps = BigDecimal.ZERO;
+        long rateOctetCount = 0;
+        long rateDuration = 0;
 
-        final int scale = mSocketInterface.getDefaultScale();
-        final RoundingMode roundingMode = mSocketInterface.getDefaultRoundingMode();
+        final IThroughputEstimator estimator = mEstimator;
 
-        switch (mSocketInterface.getComputationMethod()) {
-            case MEDIAN_ALL_TIME:
-                BigDecimal dividerAllTime = new BigDecimal(currentTime - mTimeComputeStart)
-                        .divide(SpeedTestConst.NANO_DIVIDER, scale, roundingMode);
+        if (estimator != null) {
+            if (shallCalculateTransferRate(currentTime)) {
+                rateOctetCount = Math.round(estimator.getRate(currentTime));
+                rateDuration = SpeedTestConst.ESTIMATOR_RATE_DURATION;
+            }
+        } else {
+            switch (mSocketInterface.getComputationMethod()) {
+                case MEDIAN_ALL_TIME:
+                    if (mAutoWarmup && mWarmupDetector.isDetected()) {
+                        //measure since end of TCP slow-start
+                        rateOctetCount = temporaryPacketSize - mWarmupDetector.getWarmupOctetCount();
+                        rateDuration = currentTime - mWarmupDetector.getWarmupEndTime();
+                        break;
+                    }
+                    rateOctetCount = temporaryPacketSize;
+                    if (shallCalculateTransferRate(currentTime)) {
+                        rateDuration = currentTime - mTimeComputeStart;
+                    }
+                    break;
+                case MEDIAN_INTERVAL:
+                    rateOctetCount = intervalPacketSize;
+                    if (shallCalculateTransferRate(currentTime)) {
+                        rateDuration = currentTime - mTimeComputeStart;
+                    }
+                    if (resetInterval) {
+                        resetInterval();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
 
-                if (shallCalculateTransferRate(currentTime) && dividerAllTime.compareTo(BigDecimal.ZERO) != 0) {
-                    transferRateOps = temporaryPacketSize.divide(dividerAllTime, scale, roundingMode);
-                }
-                break;
-            case MEDIAN_INTERVAL:
+        float percent = 0;
 
-                final BigDecimal tempPacket = (mode == SpeedTestMode.DOWNLOAD) ? new BigDecimal
-                        (mDlComputationTempPacketSize) : new BigDecimal(mUlComputationTempFileSize);
+        if (totalPacketSize > 0) {
+            percent = (float) (temporaryPacketSize * SpeedTestConst.PERCENT_MAX.doubleValue() / totalPacketSize);
+        }
 
-                BigDecimal dividerMedian = new BigDecimal(currentTime - mTimeComputeStart)
-                        .divide(SpeedTestConst.NANO_DIVIDER, scale, roundingMode);
+        final SpeedTestReport streamReport;
 
-                if (shallCalculateTransferRate(currentTime) && dividerMedian.compareTo(BigDecimal.ZERO) != 0) {
-                    transferRateOps = tempPacket.divide(dividerMedian, scale, roundingMode);
-                }
-                // reset those values for the next computation
-                mDlComputationTempPacketSize = 0;
-                mUlComputationTempFileSize = 0;
-                mTimeComputeStart = System.nanoTime();
-                break;
-            default:
-                break;
+        if (report == null) {
+            streamReport = new SpeedTestReport(mode, percent, mTimeStart, currentTime, temporaryPacketSize,
+                    totalPacketSize, rateOctetCount, rateDuration, 1, mSocketInterface.getDefaultScale(),
+                    mSocketInterface.getDefaultRoundingMode());
+        } else {
+            report.update(mode, percent, mTimeStart, currentTime, temporaryPacketSize, totalPacketSize,
+                    rateOctetCount, rateDuration, 1, mSocketInterface.getDefaultScale(),
+                    mSocketInterface.getDefaultRoundingMode());
+            streamReport = report;
         }
+        streamReport.setHandshake(mHandshakeDuration, mSessionResumed);
+        streamReport.setSocketBuffers(mReceiveBufferSize, mSendBufferSize);
+        streamReport.setIntervalRates(mRateHistogram);
+        streamReport.setWarmup(mWarmupDetector.getWarmupDuration(), mWarmupDetector.getWarmupOctetCount());
+        return streamReport;
+    }
 
-        final BigDecimal transferRateBitps = transferRateOps.multiply(SpeedTestConst.BIT_MULTIPLIER);
+    /**
+     * Reset interval rate histogram and build or reset throughput estimator at transfer start.
+     */
+    private void resetTransferSampling() {
 
-        BigDecimal percent = BigDecimal.ZERO;
+        mRateHistogram.reset(mTimeStart, mSocketInterface.getRateInterval());
 
-        SpeedTestReport report;
+        final IThroughputEstimator source = mSocketInterface.getThroughputEstimator();
 
-        if (mRepeatWrapper.isRepeat()) {
-            report = mRepeatWrapper.getRepeatReport(scale, roundingMode, mode, currentTime, transferRateOps);
+        if (source == null) {
+            mEstimator = null;
         } else {
-            if (totalPacketSize.compareTo(BigDecimal.ZERO) != 0) {
-                percent = temporaryPacketSize.multiply(SpeedTestConst.PERCENT_MAX).divide(totalPacketSize, scale,
-                        roundingMode);
+            if (mEstimator == null || mEstimatorSource != source) {
+                mEstimator = source.newInstance();
             }
-            report = new SpeedTestReport(mode, percent.floatValue(),
-                    mTimeStart, currentTime, temporaryPacketSize.longValueExact(), totalPacketSize.longValueExact(),
-                    transferRateOps, transferRateBitps,
-                    1);
+            mEstimator.reset(mTimeStart);
         }
-        return report;
+        mEstimatorSource = source;
+
+        mAutoWarmup = mSocketInterface.isAutoWarmup();
+        mProgressThrottle.reset(mTimeStart, mSocketInterface.getProgressInterval(),
+                mSocketInterface.getProgressOctetStep(), mSocketInterface.getProgressPercentStep());
+        mWarmupDetector.reset(mTimeStart, Math.max(
+                TimeUnit.MILLISECONDS.toNanos(SpeedTestConst.WARMUP_MIN_INTERVAL),
+                SpeedTestConst.WARMUP_RTT_FACTOR * mConnectDuration));
+    }
+
+    /**
+     * Feed interval rate histograms and throughput estimator with a transfer sample.
+     *
+     * @param octetCount number of octet transferred
+     */
+    private void addTransferSample(final long octetCount) {
+
+        final long timestamp = System.nanoTime();
+
+        if (mIntervalResetPending) {
+            mIntervalResetPending = false;
+            resetInterval();
+        }
+        mRateHistogram.addSample(timestamp, octetCount);
+
+        if (mAggregateHistogram != null) {
+            mAggregateHistogram.addSample(timestamp, octetCount);
+        }
+        if (mEstimator != null) {
+            mEstimator.addSample(timestamp, octetCount);
+        }
+        if (mAutoWarmup) {
+            mWarmupDetector.addSample(timestamp, octetCount);
+        }
+    }
+
+    /**
+     * reset values used for the next transfer rate interval computation.
+     */
+    private void resetInterval() {
+        mDlComputationTempPacketSize = 0;
+        mUlComputationTempFileSize = 0;
+        mTimeComputeStart = System.nanoTime();
+    }
+
+    /**
+     * Set transfer rate histogram shared by all connections of a parallel speed test.
+     *
+     * @param aggregateHistogram shared histogram
+     */
+    public void setAggregateHistogram(final ThroughputHistogram aggregateHistogram) {
+        mAggregateHistogram = aggregateHistogram;
     }
 
     /**
@@ -1094,21 +1697,29 @@ public class SpeedTestTask {
      */
     private boolean shallCalculateTransferRate(final long currentTime) {
 
-        final long elapsedTime = currentTime - mTimeStart;
+        if (mAutoWarmup) {
+            //fixed setup time is replaced by warm-up detection
+            return true;
+        }
+        return (currentTime - mTimeStart) > getSetupTimeNanos(mSpeedTestMode);
+    }
 
-        boolean ret = true;
+    /**
+     * Get setup time of a transfer mode, setup time is set in milliseconds and compared to nanosecond elapsed time.
+     *
+     * @param mode download or upload mode
+     * @return setup time in nanoseconds
+     */
+    private long getSetupTimeNanos(final SpeedTestMode mode) {
 
-        switch (mSpeedTestMode) {
+        switch (mode) {
             case DOWNLOAD:
-                ret = (elapsedTime > mSocketInterface.getDownloadSetupTime());
-                break;
+                return TimeUnit.MILLISECONDS.toNanos(mSocketInterface.getDownloadSetupTime());
             case UPLOAD:
-                ret = (elapsedTime > mSocketInterface.getUploadSetupTime());
-                break;
+                return TimeUnit.MILLISECONDS.toNanos(mSocketInterface.getUploadSetupTime());
             default:
+                return 0;
         }
-
-        return ret;
     }
 
     /**
@@ -1175,6 +1786,7 @@ public class SpeedTestTask {
 
                         mTimeStart = System.nanoTime();
                         mTimeComputeStart = System.nanoTime();
+                        resetTransferSampling();
 
                         mTimeEnd = 0;
 
@@ -1183,7 +1795,7 @@ public class SpeedTestTask {
                             mRepeatWrapper.setStartDate(mTimeStart);
                         }
 
-                        mDownloadPckSize = new BigDecimal(getFileSize(ftpclient, url.getPath()));
+                        mDownloadPckSize = getFileSize(ftpclient, url.getPath());
 
                         if (mRepeatWrapper.isRepeatDownload()) {
                             mRepeatWrapper.updatePacketSize(mDownloadPckSize);
@@ -1200,20 +1812,17 @@ public class SpeedTestTask {
 
                                 mDownloadTemporaryPacketSize += read;
                                 mDlComputationTempPacketSize += read;
+                                addTransferSample(read);
 
                                 if (mRepeatWrapper.isRepeatDownload()) {
                                     mRepeatWrapper.updateTempPacketSize(read);
                                 }
 
                                 if (!mReportInterval) {
-                                    final SpeedTestReport report = getReport(SpeedTestMode.DOWNLOAD);
-
-                                    for (int i = 0; i < mListenerList.size(); i++) {
-                                        mListenerList.get(i).onProgress(report.getProgressPercent(), report);
-                                    }
+                                    dispatchProgress(SpeedTestMode.DOWNLOAD);
                                 }
 
-                                if (mDownloadTemporaryPacketSize == mDownloadPckSize.longValueExact()) {
+                                if (mDownloadTemporaryPacketSize == mDownloadPckSize) {
                                     break;
                                 }
                             }
@@ -1223,7 +1832,7 @@ public class SpeedTestTask {
                             mTimeEnd = System.nanoTime();
 
                             mReportInterval = false;
-                            final SpeedTestReport report = getReport(SpeedTestMode.DOWNLOAD);
+                            final SpeedTestReport report = getCompletionReport(SpeedTestMode.DOWNLOAD);
 
                             for (int i = 0; i < mListenerList.size(); i++) {
                                 mListenerList.get(i).onCompletion(report);
@@ -1270,7 +1879,7 @@ public class SpeedTestTask {
 
         mSpeedTestMode = SpeedTestMode.UPLOAD;
 
-        mUploadFileSize = new BigDecimal(fileSizeOctet);
+        mUploadFileSize = fileSizeOctet;
         mForceCloseSocket = false;
         mErrorDispatched = false;
 
@@ -1311,12 +1920,7 @@ public class SpeedTestTask {
                         }
                         ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
 
-                        byte[] fileContent = new byte[]{};
-
-                        if (mSocketInterface.getUploadStorageType() == UploadStorageType.RAM_STORAGE) {
-                            /* generate a file with size of fileSizeOctet octet */
-                            fileContent = randomGen.generateRandomArray(fileSizeOctet);
-                        } else {
+                        if (mSocketInterface.getUploadStorageType() == UploadStorageType.FILE_STORAGE) {
                             uploadFile = randomGen.generateRandomFile(fileSizeOctet);
                             uploadFile.seek(0);
                         }
@@ -1333,8 +1937,11 @@ public class SpeedTestTask {
                             final int step = fileSizeOctet / uploadChunkSize;
                             final int remain = fileSizeOctet % uploadChunkSize;
 
+                            final byte[] chunkBuffer = (uploadFile != null) ? new byte[uploadChunkSize] : null;
+
                             mTimeStart = System.nanoTime();
                             mTimeComputeStart = System.nanoTime();
+                            resetTransferSampling();
                             mTimeEnd = 0;
 
                             if (mRepeatWrapper.isFirstUpload()) {
@@ -1356,46 +1963,38 @@ public class SpeedTestTask {
                             } else {
                                 for (int i = 0; i < step; i++) {
 
-
-                                    final byte[] chunk = SpeedTestUtils.readUploadData(mSocketInterface
-                                                    .getUploadStorageType(),
-                                            fileContent,
+                                    SpeedTestUtils.writeUploadData(mSocketInterface.getUploadStorageType(),
+                                            mFtpOutputstream,
                                             uploadFile,
+                                            chunkBuffer,
                                             mUploadTempFileSize,
                                             uploadChunkSize);
 
-                                    mFtpOutputstream.write(chunk, 0, uploadChunkSize);
-
                                     mUploadTempFileSize += uploadChunkSize;
                                     mUlComputationTempFileSize += uploadChunkSize;
+                                    addTransferSample(uploadChunkSize);
 
                                     if (mRepeatWrapper.isRepeatUpload()) {
                                         mRepeatWrapper.updateTempPacketSize(uploadChunkSize);
                                     }
 
                                     if (!mReportInterval) {
-
-                                        final SpeedTestReport report = getReport(SpeedTestMode.UPLOAD);
-
-                                        for (int j = 0; j < mListenerList.size(); j++) {
-                                            mListenerList.get(j).onProgress(report.getProgressPercent(), report);
-                                        }
+                                        dispatchProgress(SpeedTestMode.UPLOAD);
                                     }
                                 }
 
                                 if (remain != 0) {
 
-                                    final byte[] chunk = SpeedTestUtils.readUploadData(mSocketInterface
-                                                    .getUploadStorageType(),
-                                            fileContent,
+                                    SpeedTestUtils.writeUploadData(mSocketInterface.getUploadStorageType(),
+                                            mFtpOutputstream,
                                             uploadFile,
+                                            chunkBuffer,
                                             mUploadTempFileSize,
                                             remain);
 
-                                    mFtpOutputstream.write(chunk, 0, remain);
-
                                     mUploadTempFileSize += remain;
                                     mUlComputationTempFileSize += remain;
+                                    addTransferSample(remain);
 
                                     if (mRepeatWrapper.isRepeatUpload()) {
                                         mRepeatWrapper.updateTempPacketSize(remain);
@@ -1418,7 +2017,7 @@ public class SpeedTestTask {
                                     closeExecutors();
                                 }
 
-                                final SpeedTestReport report = getReport(SpeedTestMode.UPLOAD);
+                                final SpeedTestReport report = getCompletionReport(SpeedTestMode.UPLOAD);
 
                                 for (int i = 0; i < mListenerList.size(); i++) {
                                     mListenerList.get(i).onCompletion(report);
@@ -1487,6 +2086,37 @@ public class SpeedTestTask {
         }
     }
 
+    /**
+     * give back socket to connection pool after a response has been entirely read (socket is closed if there is no
+     * connection pool).
+     */
+    private void releaseSocket() {
+        final ConnectionPool connectionPool = mSocketInterface.getConnectionPool();
+
+        if (connectionPool == null || mForceCloseSocket) {
+            closeSocket();
+            return;
+        }
+        synchronized (mSocketLock) {
+            if (mSocket != null) {
+                connectionPool.release(mConnectionKey, mSocket);
+                mSocket = null;
+            }
+        }
+    }
+
+    /**
+     * check if connection can be reused for another request after this response.
+     *
+     * @param frame http response
+     * @return true if connection is kept alive by server
+     */
+    private boolean isKeepAlive(final HttpFrame frame) {
+        return "HTTP/1.1".equals(frame.getHttpVersion()) &&
+                !"close".equalsIgnoreCase(frame.getHeaders().get("connection")) &&
+                !"close".equalsIgnoreCase(frame.getHeaders().get("proxy-connection"));
+    }
+
     /**
      * close socket / stop download/upload operations.
      */
@@ -1508,6 +2138,13 @@ public class SpeedTestTask {
         }
     }
 
+    /**
+     * Shutdown threadpool without waiting for task completion.
+     */
+    public void shutdown() {
+        closeExecutors();
+    }
+
     /**
      * Shutdown threadpool and wait for task completion.
      */
@@ -1516,29 +2153,32 @@ public class SpeedTestTask {
         try {
             mReadExecutorService.awaitTermination(SpeedTestConst.THREADPOOL_WAIT_COMPLETION_MS, TimeUnit.MILLISECONDS);
             mWriteExecutorService.awaitTermination(SpeedTestConst.THREADPOOL_WAIT_COMPLETION_MS, TimeUnit.MILLISECONDS);
-            mReportExecutorService.awaitTermination(SpeedTestConst.THREADPOOL_WAIT_COMPLETION_MS,
-                    TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             //e.printStackTrace();
         }
     }
 
     /**
-     * reset report threadpool if necessary.
+     * allow report timeouts to be scheduled again if report timer has been closed.
      */
-    public void renewReportThreadPool() {
-        if (mReportExecutorService == null || mReportExecutorService.isShutdown()) {
-            mReportExecutorService = Executors.newScheduledThreadPool(SpeedTestConst.THREAD_POOL_REPORT_SIZE);
-        }
+    public void renewReportTimer() {
+        mReportTimer.renew();
+    }
+
+    /**
+     * cancel all timeouts used for report interval and fixed duration tasks.
+     */
+    public void closeReportTimer() {
+        mReportTimer.close();
     }
 
     /**
-     * retrieve threadpool used to publish reports.
+     * retrieve timeouts used to publish reports.
      *
-     * @return report threadpool
+     * @return report timer
      */
-    public ScheduledExecutorService getReportThreadPool() {
-        return mReportExecutorService;
+    public TimerGroup getReportTimer() {
+        return mReportTimer;
     }
 
     /**
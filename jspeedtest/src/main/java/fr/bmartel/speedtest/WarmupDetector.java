@@ -0,0 +1,193 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+/**
+ * TCP slow-start detector : transfer rate is computed over fixed intervals and warm-up is considered over once the
+ * rate has stopped growing for several intervals. Warm-up ends at the end of the last interval in which rate has
+ * grown, measurement should start there.
+ * <p/>
+ * This is fed from a single transfer thread, warm-up result may be read from any thread once detected.
+ *
+ * @author Bertrand Martel
+ */
+public class WarmupDetector {
+
+    /**
+     * transfer start time.
+     */
+    private long mStartTime;
+
+    /**
+     * interval duration in nanoseconds.
+     */
+    private long mInterval;
+
+    /**
+     * start time of current interval.
+     */
+    private long mIntervalStart;
+
+    /**
+     * octets transferred in current interval.
+     */
+    private long mIntervalOctetCount;
+
+    /**
+     * octets transferred since transfer start.
+     */
+    private long mOctetCount;
+
+    /**
+     * highest interval rate measured in octet per interval.
+     */
+    private long mBestRate;
+
+    /**
+     * end time of interval with highest rate.
+     */
+    private long mBestEnd;
+
+    /**
+     * octets transferred at the end of interval with highest rate.
+     */
+    private long mBestOctetCount;
+
+    /**
+     * number of non-empty intervals since rate has last grown.
+     */
+    private long mFlatCount;
+
+    /**
+     * define if warm-up end has been detected.
+     */
+    private volatile boolean mDetected;
+
+    /**
+     * warm-up duration in nanoseconds.
+     */
+    private long mWarmupDuration;
+
+    /**
+     * octets transferred during warm-up.
+     */
+    private long mWarmupOctetCount;
+
+    /**
+     * Reset detector at transfer start.
+     *
+     * @param timestamp transfer start time (System.nanoTime())
+     * @param interval  interval duration in nanoseconds
+     */
+    public void reset(final long timestamp, final long interval) {
+        mDetected = false;
+        mStartTime = timestamp;
+        mInterval = Math.max(1, interval);
+        mIntervalStart = timestamp;
+        mIntervalOctetCount = 0;
+        mOctetCount = 0;
+        mBestRate = 0;
+        mBestEnd = timestamp;
+        mBestOctetCount = 0;
+        mFlatCount = 0;
+        mWarmupDuration = 0;
+        mWarmupOctetCount = 0;
+    }
+
+    /**
+     * Add a transfer sample.
+     *
+     * @param timestamp  sample time (System.nanoTime())
+     * @param octetCount number of octet transferred since previous sample
+     */
+    public void addSample(final long timestamp, final long octetCount) {
+
+        if (mDetected) {
+            return;
+        }
+        final long intervals = (timestamp - mIntervalStart) / mInterval;
+
+        if (intervals > 0) {
+            final long intervalEnd = mIntervalStart + mInterval;
+
+            if (mIntervalOctetCount > mBestRate + mBestRate * SpeedTestConst.WARMUP_GROWTH_PERCENT / 100) {
+                mBestRate = mIntervalOctetCount;
+                mBestEnd = intervalEnd;
+                mBestOctetCount = mOctetCount;
+                mFlatCount = 0;
+            } else if (mIntervalOctetCount > 0) {
+                mFlatCount++;
+            }
+            //intervals without any data (waiting for acknowledgement) are no evidence of plateau
+            mIntervalStart += intervals * mInterval;
+            mIntervalOctetCount = 0;
+
+            if (mBestRate > 0 && mFlatCount >= SpeedTestConst.WARMUP_PLATEAU_INTERVALS) {
+                mWarmupDuration = mBestEnd - mStartTime;
+                mWarmupOctetCount = mBestOctetCount;
+                mDetected = true;
+                return;
+            }
+        }
+        mIntervalOctetCount += octetCount;
+        mOctetCount += octetCount;
+    }
+
+    /**
+     * define if warm-up end has been detected.
+     *
+     * @return true if warm-up is over
+     */
+    public boolean isDetected() {
+        return mDetected;
+    }
+
+    /**
+     * get warm-up duration.
+     *
+     * @return duration in nanoseconds (0 if not detected)
+     */
+    public long getWarmupDuration() {
+        return mDetected ? mWarmupDuration : 0;
+    }
+
+    /**
+     * get time at which warm-up has ended.
+     *
+     * @return warm-up end time (System.nanoTime(), transfer start time if not detected)
+     */
+    public long getWarmupEndTime() {
+        return mStartTime + getWarmupDuration();
+    }
+
+    /**
+     * get octets transferred during warm-up.
+     *
+     * @return octet count (0 if not detected)
+     */
+    public long getWarmupOctetCount() {
+        return mDetected ? mWarmupOctetCount : 0;
+    }
+}
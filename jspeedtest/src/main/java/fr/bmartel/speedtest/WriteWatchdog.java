@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.utils.HashedWheelTimer;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Socket write watchdog : a write deadline is set before each blocking write and cleared after it. If a write is
+ * still pending when its deadline expires, the socket is closed which unblocks the writing thread.
+ * <p/>
+ * The watchdog is armed at most once per socket timeout period whatever the number of writes, it is run by the timer
+ * shared by all connections.
+ *
+ * @author Bertrand Martel
+ */
+public class WriteWatchdog implements Runnable {
+
+    /**
+     * deadline of the pending write in nanoseconds (0 if no write is pending).
+     */
+    private volatile long mDeadline;
+
+    /**
+     * socket being written.
+     */
+    private volatile Socket mSocket;
+
+    /**
+     * define if watchdog is currently scheduled in timer.
+     */
+    private boolean mScheduled;
+
+    /**
+     * Set write deadline before a blocking write.
+     *
+     * @param socket        socket about to be written
+     * @param timeoutMillis write timeout in milliseconds (0 for no timeout)
+     */
+    public void begin(final Socket socket, final int timeoutMillis) {
+
+        mSocket = socket;
+        if (timeoutMillis <= 0) {
+            mDeadline = 0;
+            return;
+        }
+        mDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        synchronized (this) {
+            if (!mScheduled) {
+                mScheduled = true;
+                HashedWheelTimer.getInstance().schedule(this, timeoutMillis);
+            }
+        }
+    }
+
+    /**
+     * Clear write deadline after a blocking write.
+     */
+    public void end() {
+        mDeadline = 0;
+    }
+
+    @Override
+    public void run() {
+
+        final Socket socket;
+
+        synchronized (this) {
+            final long deadline = mDeadline;
+
+            if (deadline == 0) {
+                mScheduled = false;
+                return;
+            }
+            final long remaining = deadline - System.nanoTime();
+
+            if (remaining > 0) {
+                HashedWheelTimer.getInstance().schedule(this,
+                        TimeUnit.NANOSECONDS.toMillis(remaining + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+                return;
+            }
+            mScheduled = false;
+            socket = mSocket;
+        }
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.estimator;
+
+import fr.bmartel.speedtest.inter.IThroughputEstimator;
+
+/**
+ * Exponentially weighted moving average estimator : octets are accumulated over a fixed sample period and rate of each
+ * period is smoothed with weight alpha. Periods without any transfer count as zero rate.
+ *
+ * @author Bertrand Martel
+ */
+public class EwmaEstimator implements IThroughputEstimator {
+
+    /**
+     * nanoseconds in a second.
+     */
+    private static final double NANO_PER_SECOND = 1e9;
+
+    /**
+     * weight of latest period rate (0 < alpha <= 1).
+     */
+    private final double mAlpha;
+
+    /**
+     * sample period in milliseconds.
+     */
+    private final int mPeriodMs;
+
+    /**
+     * sample period in nanoseconds.
+     */
+    private final long mPeriod;
+
+    /**
+     * start time of current period.
+     */
+    private long mPeriodStart;
+
+    /**
+     * octets transferred in current period.
+     */
+    private long mPeriodOctetCount;
+
+    /**
+     * smoothed rate in octet/s.
+     */
+    private double mRate;
+
+    /**
+     * define if at least one period has been completed.
+     */
+    private boolean mInitialized;
+
+    /**
+     * Build EWMA estimator.
+     *
+     * @param alpha  weight of latest period rate (0 < alpha <= 1)
+     * @param period sample period in milliseconds
+     */
+    public EwmaEstimator(final double alpha, final int period) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha must be in ]0,1]");
+        }
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be > 0");
+        }
+        mAlpha = alpha;
+        mPeriodMs = period;
+        mPeriod = period * 1000000L;
+    }
+
+    @Override
+    public synchronized void reset(final long timestamp) {
+        mPeriodStart = timestamp;
+        mPeriodOctetCount = 0;
+        mRate = 0;
+        mInitialized = false;
+    }
+
+    @Override
+    public synchronized void addSample(final long timestamp, final long octetCount) {
+        advance(timestamp);
+        mPeriodOctetCount += octetCount;
+    }
+
+    @Override
+    public synchronized double getRate(final long timestamp) {
+        advance(timestamp);
+        if (mInitialized) {
+            return mRate;
+        }
+        final long elapsed = timestamp - mPeriodStart;
+        return (elapsed > 0) ? mPeriodOctetCount * NANO_PER_SECOND / elapsed : 0;
+    }
+
+    /**
+     * Close all periods ended before timestamp.
+     *
+     * @param timestamp current time
+     */
+    private void advance(final long timestamp) {
+
+        final long periods = (timestamp - mPeriodStart) / mPeriod;
+
+        if (periods <= 0) {
+            return;
+        }
+        final double periodRate = mPeriodOctetCount * NANO_PER_SECOND / mPeriod;
+        mRate = mInitialized ? (mAlpha * periodRate + (1 - mAlpha) * mRate) : periodRate;
+        mInitialized = true;
+
+        if (periods > 1) {
+            //idle periods decay rate towards zero
+            mRate *= Math.pow(1 - mAlpha, periods - 1);
+        }
+        mPeriodStart += periods * mPeriod;
+        mPeriodOctetCount = 0;
+    }
+
+    @Override
+    public IThroughputEstimator newInstance() {
+        return new EwmaEstimator(mAlpha, mPeriodMs);
+    }
+}
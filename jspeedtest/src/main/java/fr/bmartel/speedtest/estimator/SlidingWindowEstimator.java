@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.estimator;
+
+import fr.bmartel.speedtest.inter.IThroughputEstimator;
+
+/**
+ * Sliding window estimator : octets are accumulated in a ring buffer of fixed duration buckets and transfer rate is
+ * computed over the last window only.
+ *
+ * @author Bertrand Martel
+ */
+public class SlidingWindowEstimator implements IThroughputEstimator {
+
+    /**
+     * nanoseconds in a second.
+     */
+    private static final double NANO_PER_SECOND = 1e9;
+
+    /**
+     * window duration in milliseconds.
+     */
+    private final int mWindow;
+
+    /**
+     * octets transferred in each bucket.
+     */
+    private final long[] mBuckets;
+
+    /**
+     * bucket duration in nanoseconds.
+     */
+    private final long mBucketDuration;
+
+    /**
+     * transfer start time.
+     */
+    private long mStartTime;
+
+    /**
+     * index of current bucket since transfer start.
+     */
+    private long mBucketIndex;
+
+    /**
+     * sum of all buckets.
+     */
+    private long mWindowOctetCount;
+
+    /**
+     * Build sliding window estimator.
+     *
+     * @param window      window duration in milliseconds
+     * @param bucketCount number of buckets in window (window resolution)
+     */
+    public SlidingWindowEstimator(final int window, final int bucketCount) {
+        if (window <= 0 || bucketCount <= 0) {
+            throw new IllegalArgumentException("window and bucket count must be > 0");
+        }
+        mWindow = window;
+        mBuckets = new long[bucketCount];
+        mBucketDuration = Math.max(1, window * 1000000L / bucketCount);
+    }
+
+    @Override
+    public synchronized void reset(final long timestamp) {
+        mStartTime = timestamp;
+        mBucketIndex = 0;
+        mWindowOctetCount = 0;
+        for (int i = 0; i < mBuckets.length; i++) {
+            mBuckets[i] = 0;
+        }
+    }
+
+    @Override
+    public synchronized void addSample(final long timestamp, final long octetCount) {
+        advance(timestamp);
+        mBuckets[(int) (mBucketIndex % mBuckets.length)] += octetCount;
+        mWindowOctetCount += octetCount;
+    }
+
+    @Override
+    public synchronized double getRate(final long timestamp) {
+        advance(timestamp);
+
+        //window covers full buckets before current one plus elapsed part of current bucket
+        final long elapsed = timestamp - mStartTime;
+        final long covered = Math.min(elapsed, (mBuckets.length - 1) * mBucketDuration +
+                (elapsed - mBucketIndex * mBucketDuration));
+
+        return (covered > 0) ? mWindowOctetCount * NANO_PER_SECOND / covered : 0;
+    }
+
+    /**
+     * Move current bucket to timestamp, clearing buckets leaving the window.
+     *
+     * @param timestamp current time
+     */
+    private void advance(final long timestamp) {
+
+        final long index = (timestamp - mStartTime) / mBucketDuration;
+
+        if (index <= mBucketIndex) {
+            return;
+        }
+        final long clearCount = Math.min(index - mBucketIndex, mBuckets.length);
+
+        for (long i = 1; i <= clearCount; i++) {
+            final int bucket = (int) ((mBucketIndex + i) % mBuckets.length);
+            mWindowOctetCount -= mBuckets[bucket];
+            mBuckets[bucket] = 0;
+        }
+        mBucketIndex = index;
+    }
+
+    @Override
+    public IThroughputEstimator newInstance() {
+        return new SlidingWindowEstimator(mWindow, mBuckets.length);
+    }
+}
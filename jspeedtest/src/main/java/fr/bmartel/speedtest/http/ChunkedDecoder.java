@@ -0,0 +1,231 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2024 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.http;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental decoder of a chunked transfer encoded body : octets can be given in any number of parts, chunk payload
+ * is counted and skipped without being copied.
+ *
+ * @author Bertrand Martel
+ */
+public class ChunkedDecoder {
+
+    /**
+     * reading chunk size (hexadecimal digits).
+     */
+    private static final int STATE_SIZE = 0;
+
+    /**
+     * reading chunk extension until end of size line.
+     */
+    private static final int STATE_EXTENSION = 1;
+
+    /**
+     * expecting LF ending size line.
+     */
+    private static final int STATE_SIZE_LF = 2;
+
+    /**
+     * reading chunk payload.
+     */
+    private static final int STATE_DATA = 3;
+
+    /**
+     * expecting CRLF following chunk payload.
+     */
+    private static final int STATE_DATA_CR = 4;
+
+    /**
+     * expecting LF following chunk payload.
+     */
+    private static final int STATE_DATA_LF = 5;
+
+    /**
+     * beginning of a trailer line after last chunk (empty line ends body).
+     */
+    private static final int STATE_TRAILER = 6;
+
+    /**
+     * reading a trailer field line.
+     */
+    private static final int STATE_TRAILER_LINE = 7;
+
+    /**
+     * expecting LF of the empty line ending body.
+     */
+    private static final int STATE_TRAILER_LF = 8;
+
+    /**
+     * last chunk and trailer have been read.
+     */
+    private static final int STATE_COMPLETE = 9;
+
+    /**
+     * maximum number of hexadecimal digits of a chunk size.
+     */
+    private static final int MAX_SIZE_DIGITS = 15;
+
+    /**
+     * current decoder state.
+     */
+    private int mState = STATE_SIZE;
+
+    /**
+     * number of payload octet remaining in current chunk.
+     */
+    private long mChunkRemaining;
+
+    /**
+     * number of digits read for current chunk size.
+     */
+    private int mSizeDigits;
+
+    /**
+     * Reset decoder for a new body.
+     */
+    public void reset() {
+        mState = STATE_SIZE;
+        mChunkRemaining = 0;
+        mSizeDigits = 0;
+    }
+
+    /**
+     * check if last chunk and trailer have been decoded.
+     *
+     * @return true if body is complete
+     */
+    public boolean isComplete() {
+        return mState == STATE_COMPLETE;
+    }
+
+    /**
+     * Decode octets between buffer position and limit. Decoding stops right after the end of body so that buffer
+     * position is left on the first octet following the last chunk (beginning of next pipelined response).
+     *
+     * @param data chunked body octets
+     * @return number of payload octet decoded (-1 if a chunk is malformed)
+     */
+    public int decode(final ByteBuffer data) {
+        int payload = 0;
+
+        while (data.hasRemaining() && mState != STATE_COMPLETE) {
+
+            if (mState == STATE_DATA) {
+                final int count = (int) Math.min(mChunkRemaining, data.remaining());
+                data.position(data.position() + count);
+                mChunkRemaining -= count;
+                payload += count;
+                if (mChunkRemaining == 0) {
+                    mState = STATE_DATA_CR;
+                }
+                continue;
+            }
+            final byte value = data.get();
+
+            switch (mState) {
+                case STATE_SIZE:
+                    final int digit = Character.digit(value, 16);
+                    if (digit != -1) {
+                        if (++mSizeDigits > MAX_SIZE_DIGITS) {
+                            return -1;
+                        }
+                        mChunkRemaining = (mChunkRemaining << 4) + digit;
+                    } else if (mSizeDigits == 0) {
+                        return -1;
+                    } else if (value == ';' || value == ' ' || value == '\t') {
+                        mState = STATE_EXTENSION;
+                    } else if (value == '\r') {
+                        mState = STATE_SIZE_LF;
+                    } else if (value == '\n') {
+                        endSizeLine();
+                    } else {
+                        return -1;
+                    }
+                    break;
+                case STATE_EXTENSION:
+                    if (value == '\r') {
+                        mState = STATE_SIZE_LF;
+                    } else if (value == '\n') {
+                        endSizeLine();
+                    }
+                    break;
+                case STATE_SIZE_LF:
+                    if (value != '\n') {
+                        return -1;
+                    }
+                    endSizeLine();
+                    break;
+                case STATE_DATA_CR:
+                    if (value == '\r') {
+                        mState = STATE_DATA_LF;
+                    } else if (value == '\n') {
+                        mState = STATE_SIZE;
+                    } else {
+                        return -1;
+                    }
+                    break;
+                case STATE_DATA_LF:
+                    if (value != '\n') {
+                        return -1;
+                    }
+                    mState = STATE_SIZE;
+                    break;
+                case STATE_TRAILER:
+                    if (value == '\r') {
+                        mState = STATE_TRAILER_LF;
+                    } else if (value == '\n') {
+                        mState = STATE_COMPLETE;
+                    } else {
+                        mState = STATE_TRAILER_LINE;
+                    }
+                    break;
+                case STATE_TRAILER_LINE:
+                    if (value == '\n') {
+                        mState = STATE_TRAILER;
+                    }
+                    break;
+                case STATE_TRAILER_LF:
+                    if (value != '\n') {
+                        return -1;
+                    }
+                    mState = STATE_COMPLETE;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Process end of a chunk size line : last chunk (size 0) is followed by trailer.
+     */
+    private void endSizeLine() {
+        mSizeDigits = 0;
+        mState = (mChunkRemaining == 0) ? STATE_TRAILER : STATE_DATA;
+    }
+}
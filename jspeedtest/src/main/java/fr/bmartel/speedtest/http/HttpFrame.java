@@ -24,10 +24,8 @@
 
 package fr.bmartel.speedtest.http;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
@@ -47,10 +45,10 @@ public class HttpFrame implements IHttpFrame {
     private String method = "";
     private String body = "";
 
-    private String readLineLimited(final BufferedReader reader, final int maxLength) throws IOException {
+    private String readLineLimited(final InputStream inputStream, final int maxLength) throws IOException {
         final StringBuilder sb = new StringBuilder();
         int ch;
-        while ((ch = reader.read()) != -1) {
+        while ((ch = inputStream.read()) != -1) {
             if (ch == '\n') {
                 break;
             }
@@ -69,9 +67,7 @@ public class HttpFrame implements IHttpFrame {
 
     public HttpStates decodeFrame(final InputStream inputStream) {
         try {
-            final BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-            final String statusLine = readLineLimited(reader, MAX_LINE_LENGTH);
+            final String statusLine = readLineLimited(inputStream, MAX_LINE_LENGTH);
 
             if (statusLine == null || statusLine.isEmpty()) {
                 return HttpStates.HTTP_FRAME_ERROR;
@@ -85,12 +81,9 @@ public class HttpFrame implements IHttpFrame {
 
     public HttpStates parseHeader(final InputStream inputStream) {
         try {
-            final BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-
             String line;
             int totalSize = 0;
-            while ((line = readLineLimited(reader, MAX_LINE_LENGTH)) != null) {
+            while ((line = readLineLimited(inputStream, MAX_LINE_LENGTH)) != null) {
                 if (line.isEmpty()) {
                     break;
                 }
@@ -108,9 +101,7 @@ public class HttpFrame implements IHttpFrame {
     }
 
     public HttpStates parseHttp(final InputStream inputStream) throws IOException {
-        final BufferedReader reader = new BufferedReader(
-                new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-        final String firstLine = readLineLimited(reader, MAX_LINE_LENGTH);
+        final String firstLine = readLineLimited(inputStream, MAX_LINE_LENGTH);
 
         if (firstLine == null || firstLine.isEmpty()) {
             return HttpStates.HTTP_FRAME_ERROR;
@@ -123,7 +114,7 @@ public class HttpFrame implements IHttpFrame {
 
         String line;
         int totalSize = 0;
-        while ((line = readLineLimited(reader, MAX_LINE_LENGTH)) != null) {
+        while ((line = readLineLimited(inputStream, MAX_LINE_LENGTH)) != null) {
             if (line.isEmpty()) {
                 break;
             }
@@ -135,17 +126,24 @@ public class HttpFrame implements IHttpFrame {
         }
 
         if (contentLength > 0) {
-            final char[] bodyChars = new char[(int) contentLength];
-            final int read = reader.read(bodyChars, 0, (int) contentLength);
+            final byte[] bodyBytes = new byte[(int) contentLength];
+            int read = 0;
+            while (read < bodyBytes.length) {
+                final int count = inputStream.read(bodyBytes, read, bodyBytes.length - read);
+                if (count == -1) {
+                    break;
+                }
+                read += count;
+            }
             if (read > 0) {
-                body = new String(bodyChars, 0, read);
+                body = new String(bodyBytes, 0, read, StandardCharsets.UTF_8);
             }
         }
 
         return HttpStates.HTTP_FRAME_OK;
     }
 
-    private HttpStates parseFirstLine(final String firstLine) {
+    HttpStates parseFirstLine(final String firstLine) {
         final String[] parts = firstLine.split(" ", 3);
 
         if (parts.length < 2) {
@@ -175,7 +173,7 @@ public class HttpFrame implements IHttpFrame {
         return HttpStates.HTTP_FRAME_OK;
     }
 
-    private void parseHeaderLine(final String line) {
+    void parseHeaderLine(final String line) {
         final int colonIndex = line.indexOf(':');
         if (colonIndex > 0) {
             final String name = line.substring(0, colonIndex).trim().toLowerCase();
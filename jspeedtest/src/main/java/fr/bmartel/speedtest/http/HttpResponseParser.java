@@ -0,0 +1,282 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2024 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Http response header parser reading ahead from socket input stream : octets read after the response header are kept
+ * in an internal buffer and must be consumed with {@link #readBody(InputStream, byte[], int, int)},
+ * {@link #readChunkedBody(InputStream, ChunkedDecoder)} or {@link #skipBody(InputStream, long)} before reading socket
+ * input stream directly. A connection can only be reused (pooled) when {@link #getBufferedLength()} is 0, otherwise
+ * buffered octets of the next response would be lost.
+ *
+ * @author Bertrand Martel
+ */
+public class HttpResponseParser {
+
+    /**
+     * default size of read-ahead buffer in octet.
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * maximum length of a header line in octet.
+     */
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    /**
+     * maximum size of response header in octet.
+     */
+    private static final int MAX_HEADER_SIZE = 65536;
+
+    /**
+     * read-ahead buffer (in read mode : octets between position and limit are not consumed yet).
+     */
+    private final ByteBuffer mBuffer;
+
+    /**
+     * current header line.
+     */
+    private final byte[] mLine = new byte[MAX_LINE_LENGTH];
+
+    /**
+     * length of current header line.
+     */
+    private int mLineLength;
+
+    /**
+     * size of response header parsed so far.
+     */
+    private int mHeaderSize;
+
+    /**
+     * define if next line is the status line.
+     */
+    private boolean mFirstLine = true;
+
+    /**
+     * response being parsed.
+     */
+    private HttpFrame mFrame = new HttpFrame();
+
+    /**
+     * Build parser with default read-ahead buffer size.
+     */
+    public HttpResponseParser() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Build parser.
+     *
+     * @param bufferSize read-ahead buffer size in octet
+     */
+    public HttpResponseParser(final int bufferSize) {
+        mBuffer = ByteBuffer.allocate(bufferSize);
+        mBuffer.flip();
+    }
+
+    /**
+     * Reset parser for a new connection : buffered octets are dropped.
+     */
+    public void reset() {
+        mBuffer.clear();
+        mBuffer.flip();
+        next();
+    }
+
+    /**
+     * Prepare parser for next response on the same connection : buffered octets are kept.
+     */
+    public void next() {
+        mLineLength = 0;
+        mHeaderSize = 0;
+        mFirstLine = true;
+        mFrame = new HttpFrame();
+    }
+
+    /**
+     * get response parsed.
+     *
+     * @return http frame
+     */
+    public HttpFrame getFrame() {
+        return mFrame;
+    }
+
+    /**
+     * get number of octet read from socket and not consumed yet.
+     *
+     * @return number of buffered octet (connection can only be pooled if 0)
+     */
+    public int getBufferedLength() {
+        return mBuffer.remaining();
+    }
+
+    /**
+     * Parse response header from a buffer, this can be called again with next octets while header is incomplete.
+     * Buffer position is left right after the header so that remaining octets are the beginning of the body.
+     *
+     * @param data octets to parse
+     * @return HTTP_FRAME_OK if header is complete, HTTP_FRAME_INCOMPLETE if more octets are required or an error
+     */
+    public HttpStates parse(final ByteBuffer data) {
+        while (data.hasRemaining()) {
+            final byte value = data.get();
+
+            if (value != '\n') {
+                if (mLineLength == MAX_LINE_LENGTH) {
+                    return HttpStates.HTTP_FRAME_ERROR;
+                }
+                mLine[mLineLength++] = value;
+                continue;
+            }
+            final int length = (mLineLength > 0 && mLine[mLineLength - 1] == '\r') ? mLineLength - 1 : mLineLength;
+            mLineLength = 0;
+            mHeaderSize += length;
+
+            if (mHeaderSize > MAX_HEADER_SIZE) {
+                return HttpStates.HTTP_FRAME_ERROR;
+            }
+            if (mFirstLine) {
+                if (length == 0) {
+                    return HttpStates.HTTP_FRAME_ERROR;
+                }
+                mFirstLine = false;
+                final HttpStates state = mFrame.parseFirstLine(new String(mLine, 0, length, StandardCharsets.UTF_8));
+                if (state != HttpStates.HTTP_FRAME_OK) {
+                    return state;
+                }
+            } else if (length == 0) {
+                return HttpStates.HTTP_FRAME_OK;
+            } else {
+                mFrame.parseHeaderLine(new String(mLine, 0, length, StandardCharsets.UTF_8));
+            }
+        }
+        return HttpStates.HTTP_FRAME_INCOMPLETE;
+    }
+
+    /**
+     * Parse response header from socket input stream. Input stream is read ahead : octets following the header are
+     * kept in read-ahead buffer and must be read with {@link #readBody(InputStream, byte[], int, int)}.
+     *
+     * @param inputStream socket input stream
+     * @return HTTP_FRAME_OK if header is complete, HTTP_READING_ERROR if stream has ended or an error
+     */
+    public HttpStates parse(final InputStream inputStream) {
+        try {
+            while (true) {
+                final HttpStates state = parse(mBuffer);
+
+                if (state != HttpStates.HTTP_FRAME_INCOMPLETE) {
+                    return state;
+                }
+                if (fill(inputStream) == -1) {
+                    return HttpStates.HTTP_READING_ERROR;
+                }
+            }
+        } catch (IOException e) {
+            return HttpStates.HTTP_READING_ERROR;
+        }
+    }
+
+    /**
+     * Read body octets : buffered octets are returned first, socket input stream is only read when read-ahead buffer
+     * is empty.
+     *
+     * @param inputStream socket input stream
+     * @param data        destination array
+     * @param offset      offset in destination array
+     * @param length      maximum number of octet to read
+     * @return number of octet read (-1 if stream has ended)
+     * @throws IOException socket io exception
+     */
+    public int readBody(final InputStream inputStream, final byte[] data, final int offset, final int length)
+            throws IOException {
+        if (mBuffer.hasRemaining()) {
+            final int count = Math.min(length, mBuffer.remaining());
+            mBuffer.get(data, offset, count);
+            return count;
+        }
+        return inputStream.read(data, offset, length);
+    }
+
+    /**
+     * Read and decode chunked body octets through read-ahead buffer, octets following the last chunk stay buffered.
+     *
+     * @param inputStream socket input stream
+     * @param decoder     chunked decoder of current response
+     * @return number of payload octet decoded (-1 if stream has ended)
+     * @throws IOException socket io exception or invalid chunk
+     */
+    public int readChunkedBody(final InputStream inputStream, final ChunkedDecoder decoder) throws IOException {
+        if (!mBuffer.hasRemaining() && fill(inputStream) == -1) {
+            return -1;
+        }
+        final int payload = decoder.decode(mBuffer);
+        if (payload == -1) {
+            throw new IOException("invalid chunk");
+        }
+        return payload;
+    }
+
+    /**
+     * Read and drop body octets.
+     *
+     * @param inputStream socket input stream
+     * @param length      number of octet to skip
+     * @return true if all octets have been skipped, false if stream has ended before
+     * @throws IOException socket io exception
+     */
+    public boolean skipBody(final InputStream inputStream, final long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            final int read = readBody(inputStream, mLine, 0, (int) Math.min(mLine.length, remaining));
+            if (read == -1) {
+                return false;
+            }
+            remaining -= read;
+        }
+        return true;
+    }
+
+    /**
+     * Fill read-ahead buffer from socket input stream, must only be called when buffer is empty.
+     *
+     * @param inputStream socket input stream
+     * @return number of octet read (-1 if stream has ended)
+     * @throws IOException socket io exception
+     */
+    private int fill(final InputStream inputStream) throws IOException {
+        mBuffer.clear();
+        final int read = inputStream.read(mBuffer.array(), 0, mBuffer.capacity());
+        mBuffer.limit(Math.max(0, read));
+        return read;
+    }
+}
@@ -27,5 +27,6 @@ package fr.bmartel.speedtest.http;
 public enum HttpStates {
     HTTP_FRAME_OK,
     HTTP_FRAME_ERROR,
-    HTTP_READING_ERROR
+    HTTP_READING_ERROR,
+    HTTP_FRAME_INCOMPLETE
 }
@@ -0,0 +1,387 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * HPACK header compression (RFC 7541). Headers are encoded as literals without indexing (no state is kept for
+ * encoding). Decoding maintains the dynamic table of the connection.
+ *
+ * @author Bertrand Martel
+ */
+final class Hpack {
+
+    /**
+     * static table entries (index starts at 1).
+     */
+    private static final String[][] STATIC_TABLE = new String[][]{
+            {":authority", ""},
+            {":method", "GET"},
+            {":method", "POST"},
+            {":path", "/"},
+            {":path", "/index.html"},
+            {":scheme", "http"},
+            {":scheme", "https"},
+            {":status", "200"},
+            {":status", "204"},
+            {":status", "206"},
+            {":status", "304"},
+            {":status", "400"},
+            {":status", "404"},
+            {":status", "500"},
+            {"accept-charset", ""},
+            {"accept-encoding", "gzip, deflate"},
+            {"accept-language", ""},
+            {"accept-ranges", ""},
+            {"accept", ""},
+            {"access-control-allow-origin", ""},
+            {"age", ""},
+            {"allow", ""},
+            {"authorization", ""},
+            {"cache-control", ""},
+            {"content-disposition", ""},
+            {"content-encoding", ""},
+            {"content-language", ""},
+            {"content-length", ""},
+            {"content-location", ""},
+            {"content-range", ""},
+            {"content-type", ""},
+            {"cookie", ""},
+            {"date", ""},
+            {"etag", ""},
+            {"expect", ""},
+            {"expires", ""},
+            {"from", ""},
+            {"host", ""},
+            {"if-match", ""},
+            {"if-modified-since", ""},
+            {"if-none-match", ""},
+            {"if-range", ""},
+            {"if-unmodified-since", ""},
+            {"last-modified", ""},
+            {"link", ""},
+            {"location", ""},
+            {"max-forwards", ""},
+            {"proxy-authenticate", ""},
+            {"proxy-authorization", ""},
+            {"range", ""},
+            {"referer", ""},
+            {"refresh", ""},
+            {"retry-after", ""},
+            {"server", ""},
+            {"set-cookie", ""},
+            {"strict-transport-security", ""},
+            {"transfer-encoding", ""},
+            {"user-agent", ""},
+            {"vary", ""},
+            {"via", ""},
+            {"www-authenticate", ""}
+    };
+
+    /**
+     * static table index of each header name.
+     */
+    private static final Map<String, Integer> STATIC_NAME_INDEX = new HashMap<>();
+
+    /**
+     * overhead of a dynamic table entry in octet.
+     */
+    private static final int ENTRY_OVERHEAD = 32;
+
+    static {
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) {
+            STATIC_NAME_INDEX.put(STATIC_TABLE[i][0], i + 1);
+        }
+    }
+
+    /**
+     * dynamic table, most recent entry first.
+     */
+    private final Deque<String[]> mDynamicTable = new ArrayDeque<>();
+
+    /**
+     * current size of dynamic table in octet.
+     */
+    private int mDynamicTableSize;
+
+    /**
+     * maximum size of dynamic table in octet (SETTINGS_HEADER_TABLE_SIZE sent to peer).
+     */
+    private final int mMaxDynamicTableSize;
+
+    /**
+     * current maximum size of dynamic table set by peer (dynamic table size update).
+     */
+    private int mDynamicTableLimit;
+
+    /**
+     * position of decoder in header block.
+     */
+    private int mPosition;
+
+    /**
+     * Build HPACK context.
+     *
+     * @param maxDynamicTableSize maximum size of dynamic table in octet
+     */
+    Hpack(final int maxDynamicTableSize) {
+        mMaxDynamicTableSize = maxDynamicTableSize;
+        mDynamicTableLimit = maxDynamicTableSize;
+    }
+
+    /**
+     * Encode a header as literal without indexing.
+     *
+     * @param out   header block
+     * @param name  header name (lower case)
+     * @param value header value
+     */
+    static void encodeHeader(final ByteArrayOutputStream out, final String name, final String value) {
+        final Integer index = STATIC_NAME_INDEX.get(name);
+
+        if (index != null) {
+            encodeInteger(out, 0x00, 4, index);
+        } else {
+            out.write(0x00);
+            encodeString(out, name);
+        }
+        encodeString(out, value);
+    }
+
+    /**
+     * Encode a string literal without Huffman coding.
+     *
+     * @param out   header block
+     * @param value string value
+     */
+    private static void encodeString(final ByteArrayOutputStream out, final String value) {
+        final byte[] data = value.getBytes(StandardCharsets.ISO_8859_1);
+        encodeInteger(out, 0x00, 7, data.length);
+        out.write(data, 0, data.length);
+    }
+
+    /**
+     * Encode an integer with a N-bit prefix.
+     *
+     * @param out    header block
+     * @param flags  flags set in the prefix octet
+     * @param prefix prefix size in bit
+     * @param value  integer value
+     */
+    private static void encodeInteger(final ByteArrayOutputStream out, final int flags, final int prefix,
+                                      final int value) {
+        final int max = (1 << prefix) - 1;
+
+        if (value < max) {
+            out.write(flags | value);
+            return;
+        }
+        out.write(flags | max);
+        int remaining = value - max;
+        while (remaining >= 0x80) {
+            out.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+
+    /**
+     * Decode a header block. The dynamic table is updated with indexed literals.
+     *
+     * @param block   header block
+     * @param length  header block length
+     * @param headers decoded headers (names are lower case)
+     * @throws IOException compression error
+     */
+    void decode(final byte[] block, final int length, final Map<String, String> headers) throws IOException {
+
+        mPosition = 0;
+
+        while (mPosition < length) {
+            final int value = block[mPosition] & 0xFF;
+
+            if ((value & 0x80) != 0) {
+                //indexed header field
+                final String[] entry = getEntry(decodeInteger(block, length, 7));
+                headers.put(entry[0], entry[1]);
+            } else if ((value & 0x40) != 0) {
+                //literal with incremental indexing
+                final String[] entry = decodeLiteral(block, length, 6);
+                headers.put(entry[0], entry[1]);
+                addEntry(entry);
+            } else if ((value & 0x20) != 0) {
+                //dynamic table size update
+                final int size = decodeInteger(block, length, 5);
+                if (size > mMaxDynamicTableSize) {
+                    throw new IOException("invalid dynamic table size " + size);
+                }
+                mDynamicTableLimit = size;
+                evict(0);
+            } else {
+                //literal without indexing / never indexed
+                final String[] entry = decodeLiteral(block, length, 4);
+                headers.put(entry[0], entry[1]);
+            }
+        }
+    }
+
+    /**
+     * Decode a literal header field.
+     *
+     * @param block  header block
+     * @param length header block length
+     * @param prefix name index prefix size in bit
+     * @return header name and value
+     * @throws IOException compression error
+     */
+    private String[] decodeLiteral(final byte[] block, final int length, final int prefix) throws IOException {
+        final int index = decodeInteger(block, length, prefix);
+        final String name = (index == 0) ? decodeString(block, length) : getEntry(index)[0];
+        return new String[]{name, decodeString(block, length)};
+    }
+
+    /**
+     * Decode an integer with a N-bit prefix.
+     *
+     * @param block  header block
+     * @param length header block length
+     * @param prefix prefix size in bit
+     * @return integer value
+     * @throws IOException compression error
+     */
+    private int decodeInteger(final byte[] block, final int length, final int prefix) throws IOException {
+        final int max = (1 << prefix) - 1;
+        int value = block[mPosition++] & max;
+
+        if (value < max) {
+            return value;
+        }
+        int shift = 0;
+        int octet;
+        do {
+            if (mPosition >= length || shift > 21) {
+                throw new IOException("invalid integer");
+            }
+            octet = block[mPosition++] & 0xFF;
+            value += (octet & 0x7F) << shift;
+            shift += 7;
+        } while ((octet & 0x80) != 0);
+
+        return value;
+    }
+
+    /**
+     * Decode a string literal.
+     *
+     * @param block  header block
+     * @param length header block length
+     * @return string value
+     * @throws IOException compression error
+     */
+    private String decodeString(final byte[] block, final int length) throws IOException {
+        if (mPosition >= length) {
+            throw new IOException("invalid string");
+        }
+        final boolean huffman = (block[mPosition] & 0x80) != 0;
+        final int size = decodeInteger(block, length, 7);
+
+        if (size > length - mPosition) {
+            throw new IOException("invalid string length");
+        }
+        final String value = huffman ? Huffman.decode(block, mPosition, size) :
+                new String(block, mPosition, size, StandardCharsets.ISO_8859_1);
+        mPosition += size;
+        return value;
+    }
+
+    /**
+     * Get a static or dynamic table entry.
+     *
+     * @param index entry index
+     * @return header name and value
+     * @throws IOException invalid index
+     */
+    private String[] getEntry(final int index) throws IOException {
+        if (index > 0 && index <= STATIC_TABLE.length) {
+            return STATIC_TABLE[index - 1];
+        }
+        int dynamicIndex = index - STATIC_TABLE.length - 1;
+
+        if (index <= 0 || dynamicIndex >= mDynamicTable.size()) {
+            throw new IOException("invalid header index " + index);
+        }
+        final Iterator<String[]> iterator = mDynamicTable.iterator();
+        String[] entry = iterator.next();
+        while (dynamicIndex-- > 0) {
+            entry = iterator.next();
+        }
+        return entry;
+    }
+
+    /**
+     * Add an entry to dynamic table, evicting oldest entries if needed.
+     *
+     * @param entry header name and value
+     */
+    private void addEntry(final String[] entry) {
+        final int size = entrySize(entry);
+
+        evict(size);
+
+        if (size <= mDynamicTableLimit) {
+            mDynamicTable.addFirst(entry);
+            mDynamicTableSize += size;
+        }
+    }
+
+    /**
+     * Evict oldest entries until there is enough room for a new entry.
+     *
+     * @param size size of new entry in octet
+     */
+    private void evict(final int size) {
+        while (!mDynamicTable.isEmpty() && mDynamicTableSize + size > mDynamicTableLimit) {
+            mDynamicTableSize -= entrySize(mDynamicTable.removeLast());
+        }
+    }
+
+    /**
+     * Get size of a dynamic table entry.
+     *
+     * @param entry header name and value
+     * @return size in octet
+     */
+    private static int entrySize(final String[] entry) {
+        return entry[0].length() + entry[1].length() + ENTRY_OVERHEAD;
+    }
+}
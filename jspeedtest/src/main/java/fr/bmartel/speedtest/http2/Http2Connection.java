@@ -0,0 +1,820 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.http2;
+
+import fr.bmartel.speedtest.WriteWatchdog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HTTP/2 client connection (RFC 7540) multiplexing several streams over one socket. Plain connections use prior
+ * knowledge (h2c), TLS connections must have negotiated "h2" with ALPN.
+ * <p/>
+ * Received data is acknowledged with WINDOW_UPDATE frames when half of the stream/connection window has been
+ * consumed. Sent data is limited by the windows granted by peer.
+ *
+ * @author Bertrand Martel
+ */
+public class Http2Connection {
+
+    /**
+     * ALPN protocol identifier of HTTP/2 over TLS.
+     */
+    public static final String PROTOCOL = "h2";
+
+    /**
+     * connection preface sent by client.
+     */
+    private static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * frame header size in octet.
+     */
+    private static final int FRAME_HEADER_SIZE = 9;
+
+    /**
+     * default flow control window size in octet.
+     */
+    private static final int DEFAULT_WINDOW_SIZE = 65535;
+
+    /**
+     * default (and maximum accepted) frame payload size in octet.
+     */
+    private static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+
+    /**
+     * maximum frame payload size a peer is allowed to advertise in octet.
+     */
+    private static final int MAX_FRAME_SIZE_LIMIT = 16777215;
+
+    /**
+     * RST_STREAM and WINDOW_UPDATE payload size in octet.
+     */
+    private static final int INT_PAYLOAD_SIZE = 4;
+
+    /**
+     * minimum GOAWAY payload size in octet (last stream identifier and error code).
+     */
+    private static final int GOAWAY_MIN_PAYLOAD_SIZE = 8;
+
+    /**
+     * maximum flow control window size in octet.
+     */
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * HPACK dynamic table size in octet.
+     */
+    private static final int HEADER_TABLE_SIZE = 4096;
+
+    /**
+     * frame types.
+     */
+    private static final int TYPE_DATA = 0x0;
+    private static final int TYPE_HEADERS = 0x1;
+    private static final int TYPE_RST_STREAM = 0x3;
+    private static final int TYPE_SETTINGS = 0x4;
+    private static final int TYPE_PUSH_PROMISE = 0x5;
+    private static final int TYPE_PING = 0x6;
+    private static final int TYPE_GOAWAY = 0x7;
+    private static final int TYPE_WINDOW_UPDATE = 0x8;
+    private static final int TYPE_CONTINUATION = 0x9;
+
+    /**
+     * frame flags.
+     */
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+    private static final int FLAG_PRIORITY = 0x20;
+
+    /**
+     * settings identifiers.
+     */
+    private static final int SETTINGS_ENABLE_PUSH = 0x2;
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+
+    /**
+     * socket of this connection.
+     */
+    private final Socket mSocket;
+
+    /**
+     * buffered socket input stream.
+     */
+    private final InputStream mInputStream;
+
+    /**
+     * buffered socket output stream.
+     */
+    private final OutputStream mOutputStream;
+
+    /**
+     * stream events listener.
+     */
+    private final IHttp2Listener mListener;
+
+    /**
+     * header compression context of this connection.
+     */
+    private final Hpack mHpack = new Hpack(HEADER_TABLE_SIZE);
+
+    /**
+     * receive window of each stream in octet.
+     */
+    private final int mStreamWindowSize;
+
+    /**
+     * receive window of the connection in octet.
+     */
+    private final int mConnectionWindowSize;
+
+    /**
+     * socket write timeout in milliseconds.
+     */
+    private final int mSocketTimeout;
+
+    /**
+     * close socket if a frame write exceeds socket timeout.
+     */
+    private final WriteWatchdog mWriteWatchdog = new WriteWatchdog();
+
+    /**
+     * lock used to write one frame at a time and to allocate stream identifiers in order.
+     */
+    private final Object mWriteLock = new Object();
+
+    /**
+     * frame header being written.
+     */
+    private final byte[] mFrameHeader = new byte[FRAME_HEADER_SIZE];
+
+    /**
+     * frame being read.
+     */
+    private final byte[] mReadBuffer = new byte[DEFAULT_MAX_FRAME_SIZE];
+
+    /**
+     * header block being received (HEADERS + CONTINUATION).
+     */
+    private byte[] mHeaderBlock = new byte[DEFAULT_MAX_FRAME_SIZE];
+
+    /**
+     * length of header block being received.
+     */
+    private int mHeaderBlockLength;
+
+    /**
+     * stream of header block being received.
+     */
+    private int mHeaderStreamId;
+
+    /**
+     * define if header block being received closes its stream.
+     */
+    private boolean mHeaderEndStream;
+
+    /**
+     * received octets not acknowledged yet for the connection.
+     */
+    private int mConnectionUnacked;
+
+    /**
+     * received octets not acknowledged yet for each stream.
+     */
+    private final Map<Integer, Integer> mStreamUnacked = new HashMap<>();
+
+    /**
+     * lock guarding send windows.
+     */
+    private final Object mWindowLock = new Object();
+
+    /**
+     * send window of the connection in octet.
+     */
+    private long mConnectionSendWindow = DEFAULT_WINDOW_SIZE;
+
+    /**
+     * send window of each open stream in octet.
+     */
+    private final Map<Integer, Long> mStreamSendWindow = new HashMap<>();
+
+    /**
+     * initial stream send window set by peer in octet.
+     */
+    private int mPeerInitialWindowSize = DEFAULT_WINDOW_SIZE;
+
+    /**
+     * maximum frame payload size accepted by peer in octet.
+     */
+    private int mPeerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+
+    /**
+     * maximum number of concurrent streams accepted by peer.
+     */
+    private int mPeerMaxConcurrentStreams = Integer.MAX_VALUE;
+
+    /**
+     * define if peer settings have been received.
+     */
+    private boolean mPeerSettingsReceived;
+
+    /**
+     * next stream identifier (client streams are odd).
+     */
+    private int mNextStreamId = 1;
+
+    /**
+     * define if connection is closed.
+     */
+    private volatile boolean mClosed;
+
+    /**
+     * Build HTTP/2 connection over a connected socket.
+     *
+     * @param socket               connected socket (TLS socket must have negotiated h2)
+     * @param streamWindowSize     receive window of each stream in octet
+     * @param connectionWindowSize receive window of the connection in octet
+     * @param socketTimeout        socket write timeout in milliseconds
+     * @param listener             stream events listener
+     * @throws IOException socket io exception
+     */
+    public Http2Connection(final Socket socket,
+                           final int streamWindowSize,
+                           final int connectionWindowSize,
+                           final int socketTimeout,
+                           final IHttp2Listener listener) throws IOException {
+        mSocket = socket;
+        mInputStream = new BufferedInputStream(socket.getInputStream(), DEFAULT_MAX_FRAME_SIZE * 4);
+        mOutputStream = new BufferedOutputStream(socket.getOutputStream(), DEFAULT_MAX_FRAME_SIZE * 2);
+        mStreamWindowSize = Math.max(DEFAULT_WINDOW_SIZE, streamWindowSize);
+        mConnectionWindowSize = Math.max(DEFAULT_WINDOW_SIZE, connectionWindowSize);
+        mSocketTimeout = socketTimeout;
+        mListener = listener;
+    }
+
+    /**
+     * Send connection preface & settings and wait for peer settings.
+     *
+     * @throws IOException socket io exception or protocol error
+     */
+    public void start() throws IOException {
+
+        final byte[] settings = new byte[12];
+        writeSetting(settings, 0, SETTINGS_ENABLE_PUSH, 0);
+        writeSetting(settings, 6, SETTINGS_INITIAL_WINDOW_SIZE, mStreamWindowSize);
+
+        synchronized (mWriteLock) {
+            mOutputStream.write(PREFACE);
+        }
+        writeFrame(TYPE_SETTINGS, 0, 0, settings, 0, settings.length);
+
+        if (mConnectionWindowSize > DEFAULT_WINDOW_SIZE) {
+            writeWindowUpdate(0, mConnectionWindowSize - DEFAULT_WINDOW_SIZE);
+        }
+        while (!mPeerSettingsReceived) {
+            readFrame();
+        }
+    }
+
+    /**
+     * Get maximum number of concurrent streams accepted by peer.
+     *
+     * @return maximum number of streams
+     */
+    public int getMaxConcurrentStreams() {
+        return mPeerMaxConcurrentStreams;
+    }
+
+    /**
+     * Open a new stream with a request.
+     *
+     * @param method        request method
+     * @param scheme        request scheme (http/https)
+     * @param authority     request authority (host[:port])
+     * @param path          request path
+     * @param contentLength request body length (0 if there is no body)
+     * @return stream identifier
+     * @throws IOException socket io exception
+     */
+    public int newStream(final String method,
+                         final String scheme,
+                         final String authority,
+                         final String path,
+                         final long contentLength) throws IOException {
+
+        final ByteArrayOutputStream headerBlock = new ByteArrayOutputStream();
+        Hpack.encodeHeader(headerBlock, ":method", method);
+        Hpack.encodeHeader(headerBlock, ":scheme", scheme);
+        Hpack.encodeHeader(headerBlock, ":authority", authority);
+        Hpack.encodeHeader(headerBlock, ":path", path);
+        if (contentLength > 0) {
+            Hpack.encodeHeader(headerBlock, "content-length", String.valueOf(contentLength));
+        }
+        final byte[] block = headerBlock.toByteArray();
+
+        synchronized (mWriteLock) {
+            final int streamId = mNextStreamId;
+            mNextStreamId += 2;
+
+            synchronized (mWindowLock) {
+                mStreamSendWindow.put(streamId, (long) mPeerInitialWindowSize);
+            }
+            writeFrame(TYPE_HEADERS, FLAG_END_HEADERS | ((contentLength > 0) ? 0 : FLAG_END_STREAM), streamId,
+                    block, 0, block.length);
+            return streamId;
+        }
+    }
+
+    /**
+     * Send request body data on a stream. This blocks until peer grants flow control window, one frame is sent at
+     * most.
+     *
+     * @param streamId  stream identifier
+     * @param data      data to send
+     * @param offset    offset of data to send
+     * @param length    number of octet to send
+     * @param endStream define if this is the end of request body
+     * @return number of octet sent
+     * @throws IOException socket io exception or stream reset
+     */
+    public int writeData(final int streamId,
+                         final byte[] data,
+                         final int offset,
+                         final int length,
+                         final boolean endStream) throws IOException {
+
+        final int count;
+
+        synchronized (mWindowLock) {
+            Long streamWindow = mStreamSendWindow.get(streamId);
+
+            while (!mClosed && streamWindow != null && length > 0 &&
+                    (streamWindow <= 0 || mConnectionSendWindow <= 0)) {
+                try {
+                    mWindowLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted");
+                }
+                streamWindow = mStreamSendWindow.get(streamId);
+            }
+            if (mClosed) {
+                throw new IOException("connection closed");
+            }
+            if (streamWindow == null) {
+                throw new IOException("stream " + streamId + " closed");
+            }
+            count = (int) Math.min(Math.min(length, mPeerMaxFrameSize),
+                    Math.min(streamWindow, mConnectionSendWindow));
+
+            mConnectionSendWindow -= count;
+            mStreamSendWindow.put(streamId, streamWindow - count);
+        }
+        writeFrame(TYPE_DATA, (endStream && count == length) ? FLAG_END_STREAM : 0, streamId, data, offset, count);
+        return count;
+    }
+
+    /**
+     * Read and process frames until connection is closed.
+     *
+     * @throws IOException socket io exception or protocol error
+     */
+    public void readLoop() throws IOException {
+        while (!mClosed) {
+            readFrame();
+        }
+    }
+
+    /**
+     * Close connection.
+     */
+    public void close() {
+        mClosed = true;
+
+        synchronized (mWindowLock) {
+            mWindowLock.notifyAll();
+        }
+        try {
+            mSocket.close();
+        } catch (IOException e) {
+            //e.printStackTrace();
+        }
+    }
+
+    /**
+     * Read and process one frame.
+     *
+     * @throws IOException socket io exception or protocol error
+     */
+    private void readFrame() throws IOException {
+
+        readFully(mReadBuffer, FRAME_HEADER_SIZE);
+
+        final int length = ((mReadBuffer[0] & 0xFF) << 16) | ((mReadBuffer[1] & 0xFF) << 8) |
+                (mReadBuffer[2] & 0xFF);
+        final int type = mReadBuffer[3] & 0xFF;
+        final int flags = mReadBuffer[4] & 0xFF;
+        final int streamId = readInt(mReadBuffer, 5) & 0x7FFFFFFF;
+
+        if (length > mReadBuffer.length) {
+            throw new IOException("frame size error : " + length);
+        }
+        readFully(mReadBuffer, length);
+
+        if (mHeaderBlockLength > 0 && type != TYPE_CONTINUATION) {
+            throw new IOException("protocol error : CONTINUATION expected");
+        }
+
+        switch (type) {
+            case TYPE_DATA:
+                onDataFrame(flags, streamId, length);
+                break;
+            case TYPE_HEADERS:
+                onHeadersFrame(flags, streamId, length);
+                break;
+            case TYPE_CONTINUATION:
+                appendHeaderBlock(0, length);
+                if ((flags & FLAG_END_HEADERS) != 0) {
+                    onHeaderBlock();
+                }
+                break;
+            case TYPE_RST_STREAM:
+                checkPayloadSize(type, length, INT_PAYLOAD_SIZE, INT_PAYLOAD_SIZE);
+                removeStream(streamId);
+                mListener.onReset(streamId, readInt(mReadBuffer, 0));
+                break;
+            case TYPE_SETTINGS:
+                if ((flags & FLAG_ACK) == 0) {
+                    onSettingsFrame(length);
+                }
+                break;
+            case TYPE_PING:
+                if ((flags & FLAG_ACK) == 0) {
+                    writeFrame(TYPE_PING, FLAG_ACK, 0, Arrays.copyOf(mReadBuffer, length), 0, length);
+                }
+                break;
+            case TYPE_GOAWAY:
+                checkPayloadSize(type, length, GOAWAY_MIN_PAYLOAD_SIZE, mReadBuffer.length);
+                mListener.onGoAway(readInt(mReadBuffer, 0) & 0x7FFFFFFF, readInt(mReadBuffer, 4));
+                break;
+            case TYPE_WINDOW_UPDATE:
+                checkPayloadSize(type, length, INT_PAYLOAD_SIZE, INT_PAYLOAD_SIZE);
+                onWindowUpdateFrame(streamId, readInt(mReadBuffer, 0) & 0x7FFFFFFF);
+                break;
+            case TYPE_PUSH_PROMISE:
+                throw new IOException("protocol error : push is disabled");
+            default:
+                //PRIORITY and unknown frames are ignored
+                break;
+        }
+    }
+
+    /**
+     * Check payload length of a frame with fixed size fields.
+     *
+     * @param type      frame type
+     * @param length    frame payload length
+     * @param minLength minimum valid payload length
+     * @param maxLength maximum valid payload length
+     * @throws IOException frame size error
+     */
+    private void checkPayloadSize(final int type, final int length, final int minLength, final int maxLength)
+            throws IOException {
+        if (length < minLength || length > maxLength) {
+            throw new IOException("frame size error : invalid payload length " + length + " for frame type " + type);
+        }
+    }
+
+    /**
+     * Process DATA frame and acknowledge received octets.
+     *
+     * @param flags    frame flags
+     * @param streamId stream identifier
+     * @param length   frame payload length
+     * @throws IOException socket io exception
+     */
+    private void onDataFrame(final int flags, final int streamId, final int length) throws IOException {
+
+        final boolean endStream = (flags & FLAG_END_STREAM) != 0;
+
+        int dataLength = length;
+        if ((flags & FLAG_PADDED) != 0) {
+            dataLength -= 1 + (mReadBuffer[0] & 0xFF);
+        }
+
+        //flow control applies to the whole frame payload (padding included)
+        mConnectionUnacked += length;
+        if (mConnectionUnacked >= mConnectionWindowSize / 2) {
+            writeWindowUpdate(0, mConnectionUnacked);
+            mConnectionUnacked = 0;
+        }
+        if (endStream) {
+            mStreamUnacked.remove(streamId);
+        } else {
+            final Integer unacked = mStreamUnacked.get(streamId);
+            final int streamUnacked = (unacked != null ? unacked : 0) + length;
+
+            if (streamUnacked >= mStreamWindowSize / 2) {
+                writeWindowUpdate(streamId, streamUnacked);
+                mStreamUnacked.put(streamId, 0);
+            } else {
+                mStreamUnacked.put(streamId, streamUnacked);
+            }
+        }
+        if (endStream) {
+            removeStream(streamId);
+        }
+        mListener.onData(streamId, Math.max(0, dataLength), endStream);
+    }
+
+    /**
+     * Process HEADERS frame.
+     *
+     * @param flags    frame flags
+     * @param streamId stream identifier
+     * @param length   frame payload length
+     * @throws IOException protocol error
+     */
+    private void onHeadersFrame(final int flags, final int streamId, final int length) throws IOException {
+
+        int offset = 0;
+        int end = length;
+
+        if ((flags & FLAG_PADDED) != 0) {
+            end -= mReadBuffer[0] & 0xFF;
+            offset++;
+        }
+        if ((flags & FLAG_PRIORITY) != 0) {
+            offset += 5;
+        }
+        if (offset > end) {
+            throw new IOException("protocol error : invalid HEADERS frame");
+        }
+        mHeaderStreamId = streamId;
+        mHeaderEndStream = (flags & FLAG_END_STREAM) != 0;
+        appendHeaderBlock(offset, end - offset);
+
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            onHeaderBlock();
+        }
+    }
+
+    /**
+     * Append a header block fragment.
+     *
+     * @param offset offset of fragment in read buffer
+     * @param length fragment length
+     */
+    private void appendHeaderBlock(final int offset, final int length) {
+        if (mHeaderBlockLength + length > mHeaderBlock.length) {
+            mHeaderBlock = Arrays.copyOf(mHeaderBlock, Math.max(mHeaderBlock.length * 2,
+                    mHeaderBlockLength + length));
+        }
+        System.arraycopy(mReadBuffer, offset, mHeaderBlock, mHeaderBlockLength, length);
+        mHeaderBlockLength += length;
+    }
+
+    /**
+     * Decode a complete header block and dispatch it.
+     *
+     * @throws IOException compression error
+     */
+    private void onHeaderBlock() throws IOException {
+
+        final Map<String, String> headers = new HashMap<>();
+        mHpack.decode(mHeaderBlock, mHeaderBlockLength, headers);
+        mHeaderBlockLength = 0;
+
+        if (mHeaderEndStream) {
+            mStreamUnacked.remove(mHeaderStreamId);
+            removeStream(mHeaderStreamId);
+        }
+        mListener.onHeaders(mHeaderStreamId, headers, mHeaderEndStream);
+    }
+
+    /**
+     * Apply peer settings and acknowledge them.
+     *
+     * @param length frame payload length
+     * @throws IOException socket io exception or protocol error
+     */
+    private void onSettingsFrame(final int length) throws IOException {
+
+        if (length % 6 != 0) {
+            throw new IOException("frame size error : invalid SETTINGS payload length " + length);
+        }
+
+        for (int i = 0; i + 6 <= length; i += 6) {
+            final int id = ((mReadBuffer[i] & 0xFF) << 8) | (mReadBuffer[i + 1] & 0xFF);
+            final int value = readInt(mReadBuffer, i + 2);
+
+            switch (id) {
+                case SETTINGS_MAX_CONCURRENT_STREAMS:
+                    mPeerMaxConcurrentStreams = value;
+                    break;
+                case SETTINGS_INITIAL_WINDOW_SIZE:
+                    if (value < 0) {
+                        throw new IOException("flow control error : invalid initial window size");
+                    }
+                    synchronized (mWindowLock) {
+                        final int delta = value - mPeerInitialWindowSize;
+                        mPeerInitialWindowSize = value;
+                        for (final Map.Entry<Integer, Long> entry : mStreamSendWindow.entrySet()) {
+                            entry.setValue(entry.getValue() + delta);
+                        }
+                        mWindowLock.notifyAll();
+                    }
+                    break;
+                case SETTINGS_MAX_FRAME_SIZE:
+                    if (value < DEFAULT_MAX_FRAME_SIZE || value > MAX_FRAME_SIZE_LIMIT) {
+                        throw new IOException("protocol error : invalid max frame size " + value);
+                    }
+                    mPeerMaxFrameSize = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+        writeFrame(TYPE_SETTINGS, FLAG_ACK, 0, mFrameHeader, 0, 0);
+        mPeerSettingsReceived = true;
+    }
+
+    /**
+     * Process WINDOW_UPDATE frame.
+     *
+     * @param streamId  stream identifier (0 for connection)
+     * @param increment window size increment in octet
+     */
+    private void onWindowUpdateFrame(final int streamId, final int increment) {
+
+        synchronized (mWindowLock) {
+            if (streamId == 0) {
+                mConnectionSendWindow = Math.min(MAX_WINDOW_SIZE, mConnectionSendWindow + increment);
+            } else {
+                final Long window = mStreamSendWindow.get(streamId);
+                if (window != null) {
+                    mStreamSendWindow.put(streamId, Math.min(MAX_WINDOW_SIZE, window + increment));
+                }
+            }
+            mWindowLock.notifyAll();
+        }
+    }
+
+    /**
+     * Remove send window of a closed stream.
+     *
+     * @param streamId stream identifier
+     */
+    private void removeStream(final int streamId) {
+        synchronized (mWindowLock) {
+            if (mStreamSendWindow.remove(streamId) != null) {
+                mWindowLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Write WINDOW_UPDATE frame.
+     *
+     * @param streamId  stream identifier (0 for connection)
+     * @param increment window size increment in octet
+     * @throws IOException socket io exception
+     */
+    private void writeWindowUpdate(final int streamId, final int increment) throws IOException {
+        final byte[] payload = new byte[4];
+        writeInt(payload, 0, increment);
+        writeFrame(TYPE_WINDOW_UPDATE, 0, streamId, payload, 0, payload.length);
+    }
+
+    /**
+     * Write a frame and flush socket. Socket is closed by write watchdog if write exceeds socket timeout.
+     *
+     * @param type     frame type
+     * @param flags    frame flags
+     * @param streamId stream identifier
+     * @param payload  frame payload
+     * @param offset   offset of payload
+     * @param length   payload length
+     * @throws IOException socket io exception
+     */
+    private void writeFrame(final int type,
+                            final int flags,
+                            final int streamId,
+                            final byte[] payload,
+                            final int offset,
+                            final int length) throws IOException {
+
+        synchronized (mWriteLock) {
+            mFrameHeader[0] = (byte) (length >>> 16);
+            mFrameHeader[1] = (byte) (length >>> 8);
+            mFrameHeader[2] = (byte) length;
+            mFrameHeader[3] = (byte) type;
+            mFrameHeader[4] = (byte) flags;
+            writeInt(mFrameHeader, 5, streamId);
+
+            mWriteWatchdog.begin(mSocket, mSocketTimeout);
+            try {
+                mOutputStream.write(mFrameHeader, 0, FRAME_HEADER_SIZE);
+                mOutputStream.write(payload, offset, length);
+                mOutputStream.flush();
+            } finally {
+                mWriteWatchdog.end();
+            }
+        }
+    }
+
+    /**
+     * Read exactly length octets from socket.
+     *
+     * @param buffer buffer to read to
+     * @param length number of octet to read
+     * @throws IOException socket io exception or end of stream
+     */
+    private void readFully(final byte[] buffer, final int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            final int count = mInputStream.read(buffer, read, length - read);
+            if (count == -1) {
+                throw new EOFException("connection closed by peer");
+            }
+            read += count;
+        }
+    }
+
+    /**
+     * Write a setting entry.
+     *
+     * @param buffer setting buffer
+     * @param offset offset of setting entry
+     * @param id     setting identifier
+     * @param value  setting value
+     */
+    private static void writeSetting(final byte[] buffer, final int offset, final int id, final int value) {
+        buffer[offset] = (byte) (id >>> 8);
+        buffer[offset + 1] = (byte) id;
+        writeInt(buffer, offset + 2, value);
+    }
+
+    /**
+     * Read a 32 bit big endian integer.
+     *
+     * @param buffer buffer to read from
+     * @param offset offset of integer
+     * @return integer value
+     */
+    private static int readInt(final byte[] buffer, final int offset) {
+        return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16) |
+                ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Write a 32 bit big endian integer.
+     *
+     * @param buffer buffer to write to
+     * @param offset offset of integer
+     * @param value  integer value
+     */
+    private static void writeInt(final byte[] buffer, final int offset, final int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
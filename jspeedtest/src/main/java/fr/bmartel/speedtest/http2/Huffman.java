@@ -0,0 +1,153 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.http2;
+
+import java.io.IOException;
+
+/**
+ * HPACK Huffman decoder (RFC 7541 Appendix B). The code is canonical so that it is rebuilt from the length of each
+ * symbol code.
+ *
+ * @author Bertrand Martel
+ */
+final class Huffman {
+
+    /**
+     * code length in bit of each symbol (256 octets + EOS).
+     */
+    private static final byte[] CODE_LENGTH = new byte[]{
+            13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28, 28, 28, 28, 28,
+            28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28, 6, 10, 10, 12, 13, 6, 8, 11,
+            10, 10, 8, 11, 8, 6, 6, 6, 5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8,
+            15, 6, 12, 10, 13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+            7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6, 15, 5, 6, 5,
+            6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5, 6, 7, 6, 5, 5, 6, 7, 7,
+            7, 7, 7, 15, 11, 14, 13, 28, 20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23,
+            23, 23, 24, 23, 24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+            22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23, 21, 21, 22, 21,
+            23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23, 26, 26, 20, 19, 22, 23, 22, 25,
+            26, 26, 26, 27, 27, 26, 24, 25, 19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26,
+            28, 27, 27, 27, 20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+            26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26, 30
+    };
+
+    /**
+     * maximum code length in bit.
+     */
+    private static final int MAX_LENGTH = 30;
+
+    /**
+     * symbols sorted by code length then by value.
+     */
+    private static final int[] SYMBOLS = new int[CODE_LENGTH.length];
+
+    /**
+     * number of codes of each length.
+     */
+    private static final int[] COUNT = new int[MAX_LENGTH + 1];
+
+    /**
+     * first code of each length.
+     */
+    private static final int[] FIRST_CODE = new int[MAX_LENGTH + 1];
+
+    /**
+     * index in symbol array of the first code of each length.
+     */
+    private static final int[] FIRST_INDEX = new int[MAX_LENGTH + 1];
+
+    /**
+     * EOS symbol.
+     */
+    private static final int EOS = 256;
+
+    static {
+        for (int i = 0; i < CODE_LENGTH.length; i++) {
+            COUNT[CODE_LENGTH[i]]++;
+        }
+        int code = 0;
+        int index = 0;
+        for (int length = 1; length <= MAX_LENGTH; length++) {
+            FIRST_CODE[length] = code;
+            FIRST_INDEX[length] = index;
+            code = (code + COUNT[length]) << 1;
+            index += COUNT[length];
+        }
+        final int[] position = FIRST_INDEX.clone();
+        for (int i = 0; i < CODE_LENGTH.length; i++) {
+            SYMBOLS[position[CODE_LENGTH[i]]++] = i;
+        }
+    }
+
+    private Huffman() {
+    }
+
+    /**
+     * Decode a Huffman encoded string.
+     *
+     * @param data   encoded data
+     * @param offset offset of encoded string in data
+     * @param length length of encoded string
+     * @return decoded string
+     * @throws IOException invalid Huffman code
+     */
+    static String decode(final byte[] data, final int offset, final int length) throws IOException {
+
+        final StringBuilder builder = new StringBuilder(length + (length >> 1));
+
+        int code = 0;
+        int codeLength = 0;
+        int ones = 0;
+
+        for (int i = offset; i < offset + length; i++) {
+            for (int bit = 7; bit >= 0; bit--) {
+                final int value = (data[i] >> bit) & 1;
+                code = (code << 1) | value;
+                codeLength++;
+                ones = (value == 1) ? ones + 1 : 0;
+
+                final int rank = code - FIRST_CODE[codeLength];
+
+                if (rank >= 0 && rank < COUNT[codeLength]) {
+                    final int symbol = SYMBOLS[FIRST_INDEX[codeLength] + rank];
+                    if (symbol == EOS) {
+                        throw new IOException("EOS in Huffman string");
+                    }
+                    builder.append((char) symbol);
+                    code = 0;
+                    codeLength = 0;
+                    ones = 0;
+                } else if (codeLength == MAX_LENGTH) {
+                    throw new IOException("invalid Huffman code");
+                }
+            }
+        }
+        //padding must be the most significant bits of EOS (all ones) and shorter than 8 bits
+        if (codeLength > 7 || ones != codeLength) {
+            throw new IOException("invalid Huffman padding");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.http2;
+
+import java.util.Map;
+
+/**
+ * Stream events of a HTTP/2 connection.
+ *
+ * @author Bertrand Martel
+ */
+public interface IHttp2Listener {
+
+    /**
+     * called when response headers are received on a stream.
+     *
+     * @param streamId  stream identifier
+     * @param headers   response headers (names are lower case)
+     * @param endStream define if stream is closed by peer with this frame
+     */
+    void onHeaders(int streamId, Map<String, String> headers, boolean endStream);
+
+    /**
+     * called when data is received on a stream.
+     *
+     * @param streamId  stream identifier
+     * @param length    number of payload octet received
+     * @param endStream define if stream is closed by peer with this frame
+     */
+    void onData(int streamId, int length, boolean endStream);
+
+    /**
+     * called when a stream is reset by peer.
+     *
+     * @param streamId  stream identifier
+     * @param errorCode HTTP/2 error code
+     */
+    void onReset(int streamId, int errorCode);
+
+    /**
+     * called when peer closes the connection with GOAWAY.
+     *
+     * @param lastStreamId last stream processed by peer
+     * @param errorCode    HTTP/2 error code
+     */
+    void onGoAway(int lastStreamId, int errorCode);
+}
@@ -0,0 +1,59 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.inter;
+
+import fr.bmartel.speedtest.LatencyReport;
+import fr.bmartel.speedtest.model.SpeedTestError;
+
+/**
+ * Listener for latency test results.
+ *
+ * @author Bertrand Martel
+ */
+public interface ILatencyListener {
+
+    /**
+     * latency test completion with latency statistics.
+     *
+     * @param report latency report
+     */
+    void onCompletion(LatencyReport report);
+
+    /**
+     * monitor each latency probe.
+     *
+     * @param probeIndex index of probe
+     * @param latency    round trip time in nanoseconds (-1 if probe has failed)
+     */
+    void onProbe(int probeIndex, long latency);
+
+    /**
+     * Error catch, this is called if all probes have failed.
+     *
+     * @param speedTestError error enum
+     * @param errorMessage   error message
+     */
+    void onError(SpeedTestError speedTestError, String errorMessage);
+}
@@ -24,12 +24,15 @@
 
 package fr.bmartel.speedtest.inter;
 
+import fr.bmartel.speedtest.ConnectionPool;
 import fr.bmartel.speedtest.RepeatWrapper;
 import fr.bmartel.speedtest.SpeedTestReport;
 import fr.bmartel.speedtest.model.ComputationMethod;
 import fr.bmartel.speedtest.model.FtpMode;
+import fr.bmartel.speedtest.model.StopReason;
 import fr.bmartel.speedtest.model.UploadStorageType;
 
+import javax.net.ssl.SSLContext;
 import java.math.RoundingMode;
 
 /**
@@ -74,6 +77,11 @@ public interface ISpeedTestSocket {
      */
     void forceStopTask();
 
+    /**
+     * close socket + shutdown thread pool without waiting for task completion, this is used from timer threads.
+     */
+    void forceStopTaskAsync();
+
     /**
      * get a temporary download/upload report at this moment.
      *
@@ -169,6 +177,97 @@ public interface ISpeedTestSocket {
      */
     ComputationMethod getComputationMethod();
 
+    /**
+     * Set throughput estimator used to calculate transfer rate instead of computation method.
+     *
+     * @param estimator throughput estimator (null to use computation method)
+     */
+    void setThroughputEstimator(IThroughputEstimator estimator);
+
+    /**
+     * Get the throughput estimator.
+     *
+     * @return throughput estimator (null if computation method is used)
+     */
+    IThroughputEstimator getThroughputEstimator();
+
+    /**
+     * Set duration of fixed intervals whose transfer rate is recorded in interval rate distribution.
+     *
+     * @param rateInterval interval in milliseconds
+     */
+    void setRateInterval(int rateInterval);
+
+    /**
+     * Get duration of fixed intervals whose transfer rate is recorded in interval rate distribution.
+     *
+     * @return interval in milliseconds
+     */
+    int getRateInterval();
+
+    /**
+     * Detect end of TCP slow-start from transfer rate instead of using fixed setup time.
+     *
+     * @param autoWarmup true to enable warm-up detection
+     */
+    void setAutoWarmup(boolean autoWarmup);
+
+    /**
+     * Define if TCP slow-start is detected from transfer rate.
+     *
+     * @return true if warm-up detection is enabled
+     */
+    boolean isAutoWarmup();
+
+    /**
+     * Set minimum time between two progress events when no report interval is set.
+     *
+     * @param progressInterval interval in milliseconds (0 to disable)
+     */
+    void setProgressInterval(int progressInterval);
+
+    /**
+     * Get minimum time between two progress events when no report interval is set.
+     *
+     * @return interval in milliseconds (0 if disabled)
+     */
+    int getProgressInterval();
+
+    /**
+     * Set minimum number of octet between two progress events when no report interval is set.
+     *
+     * @param progressOctetStep octet count (0 to disable)
+     */
+    void setProgressOctetStep(long progressOctetStep);
+
+    /**
+     * Get minimum number of octet between two progress events when no report interval is set.
+     *
+     * @return octet count (0 if disabled)
+     */
+    long getProgressOctetStep();
+
+    /**
+     * Set minimum progress percent between two progress events when no report interval is set.
+     *
+     * @param progressPercentStep percent (0 to disable)
+     */
+    void setProgressPercentStep(float progressPercentStep);
+
+    /**
+     * Get minimum progress percent between two progress events when no report interval is set.
+     *
+     * @return percent (0 if disabled)
+     */
+    float getProgressPercentStep();
+
+    /**
+     * Get reason why current transfer has been stopped.
+     *
+     * @return stop reason (NONE if transfer is running or has not been stopped)
+     */
+    StopReason getStopReason();
+
     /**
      * Set proxy server for all DL/UL tasks.
      *
@@ -183,4 +282,67 @@ public interface ISpeedTestSocket {
      * @return ftp mode
      */
     FtpMode getFtpMode();
+
+    /**
+     * Define if the same report instance is reused for each progress event.
+     *
+     * @return true if progress report is reused
+     */
+    boolean isReuseProgressReport();
+
+    /**
+     * Get keep-alive connection pool used for HTTP connections.
+     *
+     * @return connection pool (null if connections are not reused)
+     */
+    ConnectionPool getConnectionPool();
+
+    /**
+     * Get number of HTTP requests sent ahead on the same connection for download repeat.
+     *
+     * @return pipeline depth (1 if requests are not pipelined)
+     */
+    int getPipelineDepth();
+
+    /**
+     * Get SSL context used for https connections.
+     *
+     * @return SSL context (null if shared SSL context is used)
+     */
+    SSLContext getSslContext();
+
+    /**
+     * Get socket receive buffer size (SO_RCVBUF).
+     *
+     * @return buffer size in octet (-1 for system default)
+     */
+    int getReceiveBufferSize();
+
+    /**
+     * Get socket send buffer size (SO_SNDBUF).
+     *
+     * @return buffer size in octet (-1 for system default)
+     */
+    int getSendBufferSize();
+
+    /**
+     * Check if Nagle's algorithm is disabled (TCP_NODELAY).
+     *
+     * @return true if TCP_NODELAY is set
+     */
+    boolean isTcpNoDelay();
+
+    /**
+     * Get IP traffic class (type of service) of sockets.
+     *
+     * @return traffic class (-1 for system default)
+     */
+    int getTrafficClass();
+
+    /**
+     * Check if socket buffers are autotuned from bandwidth-delay product measured during setup phase.
+     *
+     * @return true if buffers are autotuned
+     */
+    boolean isBufferAutotune();
 }
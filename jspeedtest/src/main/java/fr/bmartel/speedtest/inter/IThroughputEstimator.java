@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.inter;
+
+/**
+ * Throughput estimator fed with samples from transfer loop. When an estimator is set on speed test socket, it replaces
+ * computation method to calculate transfer rate. A new instance is used for each connection.
+ *
+ * @author Bertrand Martel
+ */
+public interface IThroughputEstimator {
+
+    /**
+     * Reset estimator state at transfer start.
+     *
+     * @param timestamp transfer start time (System.nanoTime())
+     */
+    void reset(long timestamp);
+
+    /**
+     * Feed a transfer sample, called from transfer loop on each socket read/write so it must not allocate.
+     *
+     * @param timestamp   sample time (System.nanoTime())
+     * @param octetCount number of octet transferred since previous sample
+     */
+    void addSample(long timestamp, long octetCount);
+
+    /**
+     * Get estimated transfer rate.
+     *
+     * @param timestamp estimation time (System.nanoTime())
+     * @return transfer rate in octet/s
+     */
+    double getRate(long timestamp);
+
+    /**
+     * Build a new estimator with the same settings.
+     *
+     * @return new estimator
+     */
+    IThroughputEstimator newInstance();
+}
@@ -0,0 +1,12 @@
+package fr.bmartel.speedtest.model;
+
+/**
+ * HTTP protocol version used for http/https speed tests
+ * @author Bertrand Martel
+ */
+public enum HttpVersion {
+    //one request per connection (or per keep-alive/pipelined exchange)
+    HTTP_1_1,
+    //several streams multiplexed over one connection (h2c prior knowledge or h2 negotiated with ALPN)
+    HTTP_2
+}
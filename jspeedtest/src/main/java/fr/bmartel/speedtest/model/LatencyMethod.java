@@ -0,0 +1,12 @@
+package fr.bmartel.speedtest.model;
+
+/**
+ * Latency probe method
+ * @author Bertrand Martel
+ */
+public enum LatencyMethod {
+    //round trip time of TCP connection establishment (SYN / SYN-ACK), a new connection is opened for each probe
+    TCP_CONNECT,
+    //round trip time of a HEAD request on a keep-alive connection (connection setup is not measured)
+    HTTP
+}
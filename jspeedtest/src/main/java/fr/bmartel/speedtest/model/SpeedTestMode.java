@@ -41,5 +41,9 @@ public enum SpeedTestMode {
     /**
      * upload examples.
      */
-    UPLOAD
+    UPLOAD,
+    /**
+     * latency examples.
+     */
+    LATENCY
 }
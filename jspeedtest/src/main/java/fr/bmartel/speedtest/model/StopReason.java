@@ -0,0 +1,18 @@
+package fr.bmartel.speedtest.model;
+
+/**
+ * Reason why a download/upload has stopped
+ * @author Bertrand Martel
+ */
+public enum StopReason {
+    //transfer is still running
+    NONE,
+    //all data has been transferred
+    COMPLETED,
+    //maximum duration of a fixed duration or adaptive speed test has been reached
+    MAX_DURATION,
+    //transfer rate of an adaptive speed test has converged
+    CONVERGED,
+    //stopped with forceStopTask()
+    FORCE_STOP
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.nio;
+
+import fr.bmartel.speedtest.SpeedTestConst;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Event loop thread driving all non-blocking speed tests registered on its selector.
+ *
+ * @author Bertrand Martel
+ */
+class NioEventLoop implements Runnable {
+
+    /**
+     * interval between two socket timeout checks in milliseconds.
+     */
+    private static final int TIMEOUT_CHECK_INTERVAL = 100;
+
+    /**
+     * selector used to wait for socket events.
+     */
+    private final Selector mSelector;
+
+    /**
+     * tasks submitted from other threads to be run in this loop.
+     */
+    private final Queue<Runnable> mTaskQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * read buffer shared by all speed tests of this loop.
+     */
+    private final ByteBuffer mReadBuffer = ByteBuffer.allocateDirect(SpeedTestConst.READ_BUFFER_SIZE);
+
+    /**
+     * event loop thread.
+     */
+    private final Thread mThread;
+
+    /**
+     * define if loop is running.
+     */
+    private volatile boolean mRunning = true;
+
+    /**
+     * last time socket timeouts were checked.
+     */
+    private long mLastTimeoutCheck;
+
+    /**
+     * Build event loop.
+     *
+     * @param name thread name
+     * @throws IOException selector cannot be opened
+     */
+    NioEventLoop(final String name) throws IOException {
+        mSelector = Selector.open();
+        mThread = new Thread(this, name);
+        mThread.setDaemon(true);
+    }
+
+    /**
+     * start event loop thread.
+     */
+    void start() {
+        mThread.start();
+    }
+
+    /**
+     * Run a task in this loop.
+     *
+     * @param task task to run
+     */
+    void execute(final Runnable task) {
+        mTaskQueue.add(task);
+        mSelector.wakeup();
+    }
+
+    /**
+     * Get selector of this loop.
+     *
+     * @return selector
+     */
+    Selector getSelector() {
+        return mSelector;
+    }
+
+    /**
+     * Get read buffer shared by all speed tests of this loop. Must only be used from the loop thread.
+     *
+     * @return read buffer
+     */
+    ByteBuffer getReadBuffer() {
+        return mReadBuffer;
+    }
+
+    /**
+     * Stop event loop, all speed tests still running are force stopped.
+     */
+    void shutdown() {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                for (final SelectionKey key : mSelector.keys()) {
+                    if (key.attachment() instanceof NioSpeedTest) {
+                        final NioSpeedTest speedTest = (NioSpeedTest) key.attachment();
+                        try {
+                            speedTest.stop();
+                        } catch (RuntimeException e) {
+                            speedTest.fail(e);
+                        }
+                    }
+                }
+                mRunning = false;
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        while (mRunning) {
+            try {
+                mSelector.select(TIMEOUT_CHECK_INTERVAL);
+            } catch (IOException e) {
+                break;
+            }
+            final Iterator<SelectionKey> iterator = mSelector.selectedKeys().iterator();
+
+            while (iterator.hasNext()) {
+                final SelectionKey key = iterator.next();
+                iterator.remove();
+
+                if (key.isValid()) {
+                    ((NioSpeedTest) key.attachment()).handleEvent(key);
+                }
+            }
+            Runnable task;
+            while ((task = mTaskQueue.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    //speed test tasks fail their own speed test, event loop must keep running for other ones
+                }
+            }
+            checkTimeout();
+        }
+        try {
+            mSelector.close();
+        } catch (IOException e) {
+            //e.printStackTrace();
+        }
+    }
+
+    /**
+     * check socket timeout of all speed tests registered on this loop.
+     */
+    private void checkTimeout() {
+
+        final long now = System.nanoTime();
+
+        if ((now - mLastTimeoutCheck) < TIMEOUT_CHECK_INTERVAL * 1000000L) {
+            return;
+        }
+        mLastTimeoutCheck = now;
+
+        for (final SelectionKey key : mSelector.keys()) {
+            if (key.isValid() && key.attachment() instanceof NioSpeedTest) {
+                final NioSpeedTest speedTest = (NioSpeedTest) key.attachment();
+                try {
+                    speedTest.checkTimeout(now);
+                } catch (RuntimeException e) {
+                    speedTest.fail(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,762 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.nio;
+
+import fr.bmartel.speedtest.SpeedTestConst;
+import fr.bmartel.speedtest.SpeedTestReport;
+import fr.bmartel.speedtest.http.ChunkedDecoder;
+import fr.bmartel.speedtest.http.HttpFrame;
+import fr.bmartel.speedtest.http.HttpResponseParser;
+import fr.bmartel.speedtest.http.HttpStates;
+import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.model.SpeedTestError;
+import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.utils.PayloadPool;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single download/upload speed test driven by a {@link NioEventLoop}. All socket operations are non-blocking and
+ * happen in the event loop thread, listener callbacks are called from this thread too.
+ *
+ * @author Bertrand Martel
+ */
+public class NioSpeedTest {
+
+    /**
+     * maximum number of redirection followed.
+     */
+    private static final int MAX_REDIRECT = 5;
+
+    /**
+     * maximum number of read/write per socket event so that a fast connection doesn't starve other ones.
+     */
+    private static final int MAX_OPERATION_PER_EVENT = 16;
+
+    /**
+     * connecting to server.
+     */
+    private static final int STATE_CONNECTING = 0;
+
+    /**
+     * writing http request header.
+     */
+    private static final int STATE_WRITING_REQUEST = 1;
+
+    /**
+     * writing upload body.
+     */
+    private static final int STATE_WRITING_BODY = 2;
+
+    /**
+     * reading http response header.
+     */
+    private static final int STATE_READING_HEADER = 3;
+
+    /**
+     * reading download body.
+     */
+    private static final int STATE_READING_BODY = 4;
+
+    /**
+     * speed test is finished.
+     */
+    private static final int STATE_FINISHED = 5;
+
+    /**
+     * engine this speed test belongs to.
+     */
+    private final NioSpeedTestEngine mEngine;
+
+    /**
+     * event loop driving this speed test.
+     */
+    private final NioEventLoop mEventLoop;
+
+    /**
+     * speed test listener.
+     */
+    private final ISpeedTestListener mListener;
+
+    /**
+     * speed test mode (DOWNLOAD/UPLOAD).
+     */
+    private final SpeedTestMode mSpeedTestMode;
+
+    /**
+     * maximum duration in milliseconds (0 if not defined).
+     */
+    private final int mMaxDuration;
+
+    /**
+     * current uri.
+     */
+    private URL mUrl;
+
+    /**
+     * socket channel.
+     */
+    private SocketChannel mChannel;
+
+    /**
+     * selection key of socket channel.
+     */
+    private SelectionKey mKey;
+
+    /**
+     * current state.
+     */
+    private int mState = STATE_CONNECTING;
+
+    /**
+     * http request header to write.
+     */
+    private ByteBuffer mRequest;
+
+    /**
+     * view of upload payload block being written.
+     */
+    private ByteBuffer mBody;
+
+    /**
+     * incremental http response parser.
+     */
+    private final HttpResponseParser mResponseParser = new HttpResponseParser(0);
+
+    /**
+     * number of redirection followed.
+     */
+    private int mRedirectCount;
+
+    /**
+     * define if response uses chunked transfer encoding.
+     */
+    private boolean mChunkedTransfer;
+
+    /**
+     * decoder used to count payload octets of a chunked response.
+     */
+    private final ChunkedDecoder mChunkedDecoder = new ChunkedDecoder();
+
+    /**
+     * number of octet downloaded/uploaded.
+     */
+    private volatile long mTempPacketSize;
+
+    /**
+     * number of octet to download/upload (-1 if unknown).
+     */
+    private volatile long mTotalPacketSize;
+
+    /**
+     * creation time in nanoseconds used for max duration.
+     */
+    private final long mCreationTime = System.nanoTime();
+
+    /**
+     * transfer start time in nanoseconds.
+     */
+    private volatile long mTimeStart;
+
+    /**
+     * transfer end time in nanoseconds.
+     */
+    private volatile long mTimeEnd;
+
+    /**
+     * last time data has been read/written in nanoseconds.
+     */
+    private long mLastActivity = System.nanoTime();
+
+    /**
+     * last time a progress report has been dispatched in nanoseconds.
+     */
+    private long mLastReport;
+
+    /**
+     * Build speed test.
+     *
+     * @param engine        engine this speed test belongs to
+     * @param eventLoop     event loop driving this speed test
+     * @param mode          speed test mode
+     * @param fileSizeOctet size of file to upload
+     * @param maxDuration   maximum duration in milliseconds (0 if not defined)
+     * @param listener      speed test listener
+     */
+    NioSpeedTest(final NioSpeedTestEngine engine,
+                 final NioEventLoop eventLoop,
+                 final SpeedTestMode mode,
+                 final int fileSizeOctet,
+                 final int maxDuration,
+                 final ISpeedTestListener listener) {
+        mEngine = engine;
+        mEventLoop = eventLoop;
+        mSpeedTestMode = mode;
+        mTotalPacketSize = (mode == SpeedTestMode.UPLOAD) ? fileSizeOctet : 0;
+        mMaxDuration = maxDuration;
+        mListener = listener;
+    }
+
+    /**
+     * Parse uri and resolve host name, must be called from a resolver thread (never from event loop thread since
+     * DNS lookup is blocking). Connection is then started on event loop thread.
+     *
+     * @param uri uri to download from/upload to
+     */
+    void start(final String uri) {
+
+        final URL url;
+        try {
+            url = new URL(uri);
+        } catch (final MalformedURLException e) {
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    dispatchError(SpeedTestError.MALFORMED_URI, e.getMessage());
+                }
+            });
+            return;
+        }
+        if (!"http".equals(url.getProtocol())) {
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    dispatchError(SpeedTestError.UNSUPPORTED_PROTOCOL, "unsupported protocol : " +
+                            url.getProtocol());
+                }
+            });
+            return;
+        }
+        final int port = url.getPort() != -1 ? url.getPort() : SpeedTestConst.HTTP_DEFAULT_PORT;
+        final InetSocketAddress address = new InetSocketAddress(url.getHost(), port);
+
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                connect(uri, url, address);
+            }
+        });
+    }
+
+    /**
+     * Connect to resolved address, must be called from event loop thread.
+     *
+     * @param uri     uri to download from/upload to
+     * @param url     parsed uri
+     * @param address resolved server address
+     */
+    private void connect(final String uri, final URL url, final InetSocketAddress address) {
+
+        if (mState == STATE_FINISHED) {
+            //stopped during host name resolution
+            return;
+        }
+        if (address.isUnresolved()) {
+            dispatchError(SpeedTestError.CONNECTION_ERROR, "unknown host : " + url.getHost());
+            return;
+        }
+        mUrl = url;
+        mRequest = ByteBuffer.wrap(buildRequest(uri).getBytes(StandardCharsets.UTF_8));
+        mResponseParser.reset();
+        mChunkedTransfer = false;
+        mState = STATE_CONNECTING;
+        mLastActivity = System.nanoTime();
+
+        try {
+            mChannel = SocketChannel.open();
+            mChannel.configureBlocking(false);
+            mChannel.socket().setKeepAlive(true);
+            mChannel.socket().setReuseAddress(true);
+
+            if (mChannel.connect(address)) {
+                mKey = mChannel.register(mEventLoop.getSelector(), SelectionKey.OP_WRITE, this);
+                mState = STATE_WRITING_REQUEST;
+            } else {
+                mKey = mChannel.register(mEventLoop.getSelector(), SelectionKey.OP_CONNECT, this);
+            }
+        } catch (IOException e) {
+            closeChannel();
+            dispatchError(SpeedTestError.CONNECTION_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * Build http request header.
+     *
+     * @param uri requested uri
+     * @return http request header
+     */
+    private String buildRequest(final String uri) {
+        if (mSpeedTestMode == SpeedTestMode.UPLOAD) {
+            return "POST " + uri + " HTTP/1.1\r\n" + "Host: " + mUrl.getHost() +
+                    "\r\nAccept: " + "*/*\r\nContent-Length: " + mTotalPacketSize + "\r\n\r\n";
+        }
+        return "GET " + uri + " HTTP/1.1\r\n" + "Host: " + mUrl.getHost() + "\r\n\r\n";
+    }
+
+    /**
+     * Handle a socket event, called from event loop thread.
+     *
+     * @param key selection key
+     */
+    void handleEvent(final SelectionKey key) {
+        try {
+            switch (mState) {
+                case STATE_CONNECTING:
+                    if (mChannel.finishConnect()) {
+                        mState = STATE_WRITING_REQUEST;
+                        key.interestOps(SelectionKey.OP_WRITE);
+                    }
+                    break;
+                case STATE_WRITING_REQUEST:
+                    writeRequest(key);
+                    break;
+                case STATE_WRITING_BODY:
+                    writeBody(key);
+                    break;
+                case STATE_READING_HEADER:
+                    readHeader();
+                    break;
+                case STATE_READING_BODY:
+                    readBody();
+                    break;
+                default:
+                    break;
+            }
+        } catch (IOException e) {
+            mTimeEnd = System.nanoTime();
+            closeChannel();
+            dispatchError(SpeedTestError.CONNECTION_ERROR, e.getMessage());
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Close and fail this speed test after an unexpected exception (for instance thrown by listener) so that other
+     * speed tests of the event loop are not affected. Called from event loop thread.
+     *
+     * @param exception unexpected exception
+     */
+    void fail(final RuntimeException exception) {
+        final boolean finished = mState == STATE_FINISHED;
+        if (mTimeEnd == 0) {
+            mTimeEnd = System.nanoTime();
+        }
+        closeChannel();
+        if (!finished) {
+            dispatchError(SpeedTestError.CONNECTION_ERROR, exception.toString());
+        }
+    }
+
+    /**
+     * Run a task for this speed test on event loop thread, an exception thrown by task only fails this speed test.
+     *
+     * @param task task to run
+     */
+    void execute(final Runnable task) {
+        mEventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    fail(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Write http request header.
+     *
+     * @param key selection key
+     * @throws IOException socket io exception
+     */
+    private void writeRequest(final SelectionKey key) throws IOException {
+
+        mChannel.write(mRequest);
+        mLastActivity = System.nanoTime();
+
+        if (mRequest.hasRemaining()) {
+            return;
+        }
+        if (mSpeedTestMode == SpeedTestMode.UPLOAD) {
+            mBody = ByteBuffer.wrap(PayloadPool.getBlock());
+            mBody.limit(0);
+            mTempPacketSize = 0;
+            startTransfer();
+            mState = STATE_WRITING_BODY;
+            writeBody(key);
+        } else {
+            mState = STATE_READING_HEADER;
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Write upload body.
+     *
+     * @param key selection key
+     * @throws IOException socket io exception
+     */
+    private void writeBody(final SelectionKey key) throws IOException {
+
+        int written = 0;
+
+        for (int i = 0; i < MAX_OPERATION_PER_EVENT && mTempPacketSize + written < mTotalPacketSize; i++) {
+            if (!mBody.hasRemaining()) {
+                mBody.clear();
+                mBody.limit((int) Math.min(mBody.capacity(), mTotalPacketSize - mTempPacketSize - written));
+            }
+            final int count = mChannel.write(mBody);
+            if (count == 0) {
+                break;
+            }
+            written += count;
+        }
+        if (written > 0) {
+            mTempPacketSize += written;
+            mLastActivity = System.nanoTime();
+            dispatchProgress();
+        }
+        if (mTempPacketSize >= mTotalPacketSize) {
+            mState = STATE_READING_HEADER;
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Read http response header.
+     *
+     * @throws IOException socket io exception
+     */
+    private void readHeader() throws IOException {
+
+        final ByteBuffer buffer = mEventLoop.getReadBuffer();
+        buffer.clear();
+
+        final int read = mChannel.read(buffer);
+
+        if (read == -1) {
+            mTimeEnd = System.nanoTime();
+            closeChannel();
+            dispatchError(SpeedTestError.INVALID_HTTP_RESPONSE, SpeedTestConst.PARSING_ERROR + "http frame");
+            return;
+        }
+        mLastActivity = System.nanoTime();
+        buffer.flip();
+
+        final HttpStates state = mResponseParser.parse(buffer);
+
+        if (state == HttpStates.HTTP_FRAME_OK) {
+            onHeaderReceived(buffer.remaining());
+        } else if (state != HttpStates.HTTP_FRAME_INCOMPLETE) {
+            closeChannel();
+            dispatchError(SpeedTestError.INVALID_HTTP_RESPONSE, SpeedTestConst.PARSING_ERROR + "http headers");
+        }
+    }
+
+    /**
+     * Process http response header.
+     *
+     * @param bodyLength number of body octet read with http response header
+     */
+    private void onHeaderReceived(final int bodyLength) {
+
+        final HttpFrame frame = mResponseParser.getFrame();
+        final int statusCode = frame.getStatusCode();
+
+        if ((statusCode == 301 || statusCode == 302 || statusCode == 307) &&
+                frame.getHeaders().containsKey("location") && mRedirectCount < MAX_REDIRECT) {
+            final String location = frame.getHeaders().get("location");
+            mRedirectCount++;
+            closeChannel();
+            mState = STATE_CONNECTING;
+            mEngine.resolve(this, location.charAt(0) == '/' ?
+                    mUrl.getProtocol() + "://" + mUrl.getAuthority() + location : location);
+            return;
+        }
+        if (statusCode != SpeedTestConst.HTTP_OK) {
+            closeChannel();
+            dispatchError(SpeedTestError.INVALID_HTTP_RESPONSE, "Error status code " + statusCode);
+            return;
+        }
+        if (mSpeedTestMode == SpeedTestMode.UPLOAD) {
+            finish();
+            return;
+        }
+        mChunkedTransfer = frame.isChunkedTransfer();
+        mChunkedDecoder.reset();
+        mTotalPacketSize = (mChunkedTransfer || frame.getContentLength() <= 0) ? -1 : frame.getContentLength();
+        mTempPacketSize = 0;
+        startTransfer();
+        mState = STATE_READING_BODY;
+
+        if (mChunkedTransfer && bodyLength > 0) {
+            onChunkRead(mEventLoop.getReadBuffer());
+        } else if (bodyLength > 0) {
+            onBodyRead(bodyLength);
+        }
+    }
+
+    /**
+     * Read download body.
+     *
+     * @throws IOException socket io exception
+     */
+    private void readBody() throws IOException {
+
+        final ByteBuffer buffer = mEventLoop.getReadBuffer();
+        int total = 0;
+
+        for (int i = 0; i < MAX_OPERATION_PER_EVENT && mState == STATE_READING_BODY; i++) {
+            buffer.clear();
+            final int read = mChannel.read(buffer);
+
+            if (mChunkedTransfer && read > 0) {
+                buffer.flip();
+                onChunkRead(buffer);
+                continue;
+            }
+
+            if (read == -1) {
+                if (total > 0) {
+                    onBodyRead(total);
+                }
+                if (mState != STATE_READING_BODY) {
+                    return;
+                }
+                if (mChunkedTransfer || mTotalPacketSize != -1) {
+                    //last chunk or content length not reached
+                    mTimeEnd = System.nanoTime();
+                    closeChannel();
+                    dispatchError(SpeedTestError.CONNECTION_ERROR, "connection closed before end of response body");
+                    return;
+                }
+                finish();
+                return;
+            }
+            if (read == 0) {
+                break;
+            }
+            total += read;
+        }
+        if (total > 0) {
+            onBodyRead(total);
+        }
+    }
+
+    /**
+     * Update download counters.
+     *
+     * @param read number of body octet read
+     */
+    private void onBodyRead(final int read) {
+
+        mTempPacketSize += read;
+        mLastActivity = System.nanoTime();
+
+        dispatchProgress();
+
+        if (mTotalPacketSize != -1 && mTempPacketSize >= mTotalPacketSize) {
+            finish();
+        }
+    }
+
+    /**
+     * Decode chunked body and update download counters with chunk payload.
+     *
+     * @param buffer octets read from channel
+     */
+    private void onChunkRead(final ByteBuffer buffer) {
+
+        final int payload = mChunkedDecoder.decode(buffer);
+
+        if (payload == -1) {
+            closeChannel();
+            dispatchError(SpeedTestError.INVALID_HTTP_RESPONSE, SpeedTestConst.PARSING_ERROR + "chunk");
+            return;
+        }
+        if (mChunkedDecoder.isComplete()) {
+            mTotalPacketSize = mTempPacketSize + payload;
+        }
+        onBodyRead(payload);
+    }
+
+    /**
+     * Set transfer start time.
+     */
+    private void startTransfer() {
+        mTimeStart = System.nanoTime();
+        mTimeEnd = 0;
+        mLastReport = mTimeStart;
+    }
+
+    /**
+     * Dispatch progress to listener if report interval is elapsed.
+     */
+    private void dispatchProgress() {
+
+        final int reportInterval = mEngine.getReportInterval();
+
+        if (reportInterval > 0) {
+            final long now = System.nanoTime();
+            if ((now - mLastReport) < reportInterval * 1000000L) {
+                return;
+            }
+            mLastReport = now;
+        }
+        final SpeedTestReport report = getLiveReport();
+        mListener.onProgress(report.getProgressPercent(), report);
+    }
+
+    /**
+     * Complete speed test successfully.
+     */
+    private void finish() {
+        if (mState == STATE_FINISHED) {
+            return;
+        }
+        mTimeEnd = System.nanoTime();
+        closeChannel();
+        mListener.onCompletion(getLiveReport());
+    }
+
+    /**
+     * Stop speed test, completion is dispatched with the report at this moment. Must be called from event loop
+     * thread.
+     */
+    void stop() {
+        finish();
+    }
+
+    /**
+     * Stop speed test, completion is dispatched with the report at this moment.
+     */
+    public void forceStop() {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                stop();
+            }
+        });
+    }
+
+    /**
+     * Check socket timeout & max duration, called from event loop thread.
+     *
+     * @param now current time in nanoseconds
+     */
+    void checkTimeout(final long now) {
+
+        if (mState == STATE_FINISHED) {
+            return;
+        }
+        if (mMaxDuration > 0 && (now - mCreationTime) >= mMaxDuration * 1000000L) {
+            stop();
+            return;
+        }
+        final int socketTimeout = mEngine.getSocketTimeout();
+
+        if (socketTimeout > 0 && (now - mLastActivity) >= socketTimeout * 1000000L) {
+            mTimeEnd = now;
+            closeChannel();
+            dispatchError(SpeedTestError.SOCKET_TIMEOUT, "socket timeout");
+        }
+    }
+
+    /**
+     * Close socket channel.
+     */
+    private void closeChannel() {
+        mState = STATE_FINISHED;
+        if (mKey != null) {
+            mKey.cancel();
+        }
+        if (mChannel != null) {
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                //e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Dispatch error to listener.
+     *
+     * @param error        error enum
+     * @param errorMessage error message
+     */
+    private void dispatchError(final SpeedTestError error, final String errorMessage) {
+        mState = STATE_FINISHED;
+        try {
+            mListener.onError(error, errorMessage);
+        } catch (RuntimeException e) {
+            //speed test is already closed : nothing more to dispatch
+        }
+    }
+
+    /**
+     * Get a download/upload report at this moment, transfer rate is only computed if requested from the report.
+     *
+     * @return speed test report
+     */
+    public SpeedTestReport getLiveReport() {
+
+        final long temporaryPacketSize = mTempPacketSize;
+        final long totalPacketSize = mTotalPacketSize;
+        final long timeStart = mTimeStart;
+        final long timeEnd = mTimeEnd;
+        final long currentTime = (timeEnd == 0) ? System.nanoTime() : timeEnd;
+
+        float percent = 0;
+
+        if (totalPacketSize > 0) {
+            percent = (float) (temporaryPacketSize * SpeedTestConst.PERCENT_MAX.doubleValue() / totalPacketSize);
+        }
+        return new SpeedTestReport(mSpeedTestMode, percent, timeStart, currentTime,
+                temporaryPacketSize, totalPacketSize, temporaryPacketSize,
+                (timeStart != 0) ? currentTime - timeStart : 0, 1,
+                mEngine.getDefaultScale(), mEngine.getDefaultRoundingMode());
+    }
+
+    /**
+     * Get speed test mode.
+     *
+     * @return speed test mode (DOWNLOAD/UPLOAD)
+     */
+    public SpeedTestMode getSpeedTestMode() {
+        return mSpeedTestMode;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.nio;
+
+import fr.bmartel.speedtest.SpeedTestConst;
+import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.model.SpeedTestMode;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking speed test engine : a small number of event loop threads drive any number of concurrent HTTP
+ * download/upload speed tests instead of using 2 threads per socket.
+ *
+ * @author Bertrand Martel
+ */
+public class NioSpeedTestEngine {
+
+    /**
+     * event loops used to drive speed tests.
+     */
+    private final NioEventLoop[] mEventLoops;
+
+    /**
+     * index of the next event loop to use.
+     */
+    private final AtomicInteger mNextEventLoop = new AtomicInteger();
+
+    /**
+     * executor resolving host names so that a slow DNS lookup never blocks an event loop.
+     */
+    private final ExecutorService mResolverExecutor;
+
+    /**
+     * socket timeout in milliseconds.
+     */
+    private volatile int mSocketTimeout = SpeedTestConst.DEFAULT_SOCKET_TIMEOUT;
+
+    /**
+     * report interval in milliseconds (0 to report on each read/write).
+     */
+    private volatile int mReportInterval;
+
+    /**
+     * BigDecimal scale used in transfer rate calculation.
+     */
+    private volatile int mScale = SpeedTestConst.DEFAULT_SCALE;
+
+    /**
+     * BigDecimal RoundingMode used in transfer rate calculation.
+     */
+    private volatile RoundingMode mRoundingMode = SpeedTestConst.DEFAULT_ROUNDING_MODE;
+
+    /**
+     * Build engine with one event loop thread.
+     *
+     * @throws IOException selector cannot be opened
+     */
+    public NioSpeedTestEngine() throws IOException {
+        this(1);
+    }
+
+    /**
+     * Build engine.
+     *
+     * @param threadCount number of event loop threads
+     * @throws IOException selector cannot be opened
+     */
+    public NioSpeedTestEngine(final int threadCount) throws IOException {
+        mEventLoops = new NioEventLoop[Math.max(1, threadCount)];
+        for (int i = 0; i < mEventLoops.length; i++) {
+            mEventLoops[i] = new NioEventLoop("nio-speedtest-" + i);
+            mEventLoops[i].start();
+        }
+        mResolverExecutor = Executors.newFixedThreadPool(SpeedTestConst.NIO_RESOLVER_THREAD_COUNT,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "nio-speedtest-resolver");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Start download speed test.
+     *
+     * @param uri      uri to download from
+     * @param listener speed test listener
+     * @return speed test handle
+     */
+    public NioSpeedTest startDownload(final String uri, final ISpeedTestListener listener) {
+        return startFixedDownload(uri, 0, listener);
+    }
+
+    /**
+     * Start download speed test stopped after a maximum duration.
+     *
+     * @param uri         uri to download from
+     * @param maxDuration maximum duration in milliseconds (0 if not defined)
+     * @param listener    speed test listener
+     * @return speed test handle
+     */
+    public NioSpeedTest startFixedDownload(final String uri, final int maxDuration,
+                                           final ISpeedTestListener listener) {
+        return start(uri, SpeedTestMode.DOWNLOAD, 0, maxDuration, listener);
+    }
+
+    /**
+     * Start upload speed test.
+     *
+     * @param uri           uri to upload to
+     * @param fileSizeOctet size of file to upload
+     * @param listener      speed test listener
+     * @return speed test handle
+     */
+    public NioSpeedTest startUpload(final String uri, final int fileSizeOctet, final ISpeedTestListener listener) {
+        return startFixedUpload(uri, fileSizeOctet, 0, listener);
+    }
+
+    /**
+     * Start upload speed test stopped after a maximum duration.
+     *
+     * @param uri           uri to upload to
+     * @param fileSizeOctet size of file to upload
+     * @param maxDuration   maximum duration in milliseconds (0 if not defined)
+     * @param listener      speed test listener
+     * @return speed test handle
+     */
+    public NioSpeedTest startFixedUpload(final String uri, final int fileSizeOctet, final int maxDuration,
+                                         final ISpeedTestListener listener) {
+        return start(uri, SpeedTestMode.UPLOAD, fileSizeOctet, maxDuration, listener);
+    }
+
+    /**
+     * Create a speed test and start it in the next event loop.
+     *
+     * @param uri           uri to download from/upload to
+     * @param mode          speed test mode
+     * @param fileSizeOctet size of file to upload
+     * @param maxDuration   maximum duration in milliseconds (0 if not defined)
+     * @param listener      speed test listener
+     * @return speed test handle
+     */
+    private NioSpeedTest start(final String uri,
+                               final SpeedTestMode mode,
+                               final int fileSizeOctet,
+                               final int maxDuration,
+                               final ISpeedTestListener listener) {
+
+        final NioEventLoop eventLoop = mEventLoops[(mNextEventLoop.getAndIncrement() & Integer.MAX_VALUE) %
+                mEventLoops.length];
+
+        final NioSpeedTest speedTest = new NioSpeedTest(this, eventLoop, mode, fileSizeOctet, maxDuration,
+                listener);
+
+        resolve(speedTest, uri);
+        return speedTest;
+    }
+
+    /**
+     * Resolve host name of a speed test uri on a resolver thread, speed test is then connected on its event loop.
+     *
+     * @param speedTest speed test to start
+     * @param uri       uri to download from/upload to
+     */
+    void resolve(final NioSpeedTest speedTest, final String uri) {
+        mResolverExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                speedTest.start(uri);
+            }
+        });
+    }
+
+    /**
+     * Stop all event loops, speed tests still running are force stopped.
+     */
+    public void shutdown() {
+        mResolverExecutor.shutdownNow();
+        for (int i = 0; i < mEventLoops.length; i++) {
+            mEventLoops[i].shutdown();
+        }
+    }
+
+    /**
+     * Set socket timeout in milliseconds (0 to disable).
+     *
+     * @param socketTimeoutMillis socket timeout value in milliseconds
+     */
+    public void setSocketTimeout(final int socketTimeoutMillis) {
+        if (socketTimeoutMillis >= 0) {
+            mSocketTimeout = socketTimeoutMillis;
+        }
+    }
+
+    /**
+     * Get socket timeout in milliseconds.
+     *
+     * @return socket timeout value
+     */
+    public int getSocketTimeout() {
+        return mSocketTimeout;
+    }
+
+    /**
+     * Set minimum interval between two progress reports in milliseconds (0 to report on each read/write).
+     *
+     * @param reportInterval report interval in milliseconds
+     */
+    public void setReportInterval(final int reportInterval) {
+        if (reportInterval >= 0) {
+            mReportInterval = reportInterval;
+        }
+    }
+
+    /**
+     * Get minimum interval between two progress reports in milliseconds.
+     *
+     * @return report interval
+     */
+    public int getReportInterval() {
+        return mReportInterval;
+    }
+
+    /**
+     * Set the default RoundingMode for BigDecimal.
+     *
+     * @param roundingMode rounding mode.
+     */
+    public void setDefaultRoundingMode(final RoundingMode roundingMode) {
+        mRoundingMode = roundingMode;
+    }
+
+    /**
+     * Set the default scale for BigDecimal.
+     *
+     * @param scale mScale value
+     */
+    public void setDefaultScale(final int scale) {
+        mScale = scale;
+    }
+
+    /**
+     * retrieve rounding mode used for BigDecimal.
+     *
+     * @return rounding mode
+     */
+    public RoundingMode getDefaultRoundingMode() {
+        return mRoundingMode;
+    }
+
+    /**
+     * retrieve scale used for BigDecimal.
+     *
+     * @return mScale value
+     */
+    public int getDefaultScale() {
+        return mScale;
+    }
+}
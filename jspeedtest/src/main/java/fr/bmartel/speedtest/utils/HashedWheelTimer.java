@@ -0,0 +1,520 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest.utils;
+
+import fr.bmartel.speedtest.SpeedTestConst;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timer wheel shared by all speed test sockets : report intervals, fixed duration stops and repeat windows
+ * are scheduled on a single tick thread whatever the number of concurrent speed tests.
+ * <p/>
+ * Timeouts are hashed in a wheel of buckets by deadline, each tick only walks one bucket so that scheduling and
+ * cancelling cost O(1). Deadlines are rounded up to the tick duration. Expired tasks are run on a bounded shared worker
+ * pool so that a slow task does not delay the tick thread, tasks must not block.
+ *
+ * @author Bertrand Martel
+ */
+public final class HashedWheelTimer {
+
+    /**
+     * timeout is pending.
+     */
+    private static final int STATE_INIT = 0;
+
+    /**
+     * timeout has been cancelled.
+     */
+    private static final int STATE_CANCELLED = 1;
+
+    /**
+     * timeout has expired and its task is being run.
+     */
+    private static final int STATE_EXPIRED = 2;
+
+    /**
+     * maximum number of timeouts moved from pending queue to wheel on each tick.
+     */
+    private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+    /**
+     * tick duration used for process-wide timer in milliseconds.
+     */
+    private static long sTickDuration = SpeedTestConst.DEFAULT_TIMER_TICK;
+
+    /**
+     * wheel size used for process-wide timer.
+     */
+    private static int sWheelSize = SpeedTestConst.DEFAULT_TIMER_WHEEL_SIZE;
+
+    /**
+     * number of worker threads used for process-wide timer.
+     */
+    private static int sThreadCount = SpeedTestConst.DEFAULT_TIMER_THREAD_COUNT;
+
+    /**
+     * process-wide timer (built on first use).
+     */
+    private static HashedWheelTimer sInstance;
+
+    /**
+     * tick duration in nanoseconds.
+     */
+    private final long mTickDuration;
+
+    /**
+     * wheel buckets.
+     */
+    private final Bucket[] mWheel;
+
+    /**
+     * mask used to compute bucket index from tick (wheel size is a power of 2).
+     */
+    private final int mMask;
+
+    /**
+     * timeouts scheduled but not added to wheel yet.
+     */
+    private final Queue<Timeout> mPendingTimeouts = new ConcurrentLinkedQueue<>();
+
+    /**
+     * timeouts cancelled but not removed from wheel yet.
+     */
+    private final Queue<Timeout> mCancelledTimeouts = new ConcurrentLinkedQueue<>();
+
+    /**
+     * worker pool running expired tasks.
+     */
+    private final ExecutorService mTaskExecutor;
+
+    /**
+     * timer start time (System.nanoTime()).
+     */
+    private final long mStartTime;
+
+    /**
+     * Build a timer wheel and start its tick thread.
+     *
+     * @param tickDuration tick duration in milliseconds
+     * @param wheelSize    number of buckets (rounded up to a power of 2)
+     * @param threadCount  number of worker threads running expired tasks
+     */
+    private HashedWheelTimer(final long tickDuration, final int wheelSize, final int threadCount) {
+
+        mTickDuration = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        mWheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            mWheel[i] = new Bucket();
+        }
+        mMask = size - 1;
+
+        mTaskExecutor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "speedtest-timer-task");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mStartTime = System.nanoTime();
+
+        final Thread tickThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWheel();
+            }
+        }, "speedtest-timer");
+        tickThread.setDaemon(true);
+        tickThread.start();
+    }
+
+    /**
+     * Set tick duration and wheel size of process-wide timer. This must be called before any speed test is started.
+     *
+     * @param tickDuration tick duration in milliseconds (10ms by default)
+     * @param wheelSize    number of buckets (512 by default)
+     * @return false if process-wide timer is already running or parameters are invalid
+     */
+    public static synchronized boolean configure(final long tickDuration, final int wheelSize) {
+        return configure(tickDuration, wheelSize, sThreadCount);
+    }
+
+    /**
+     * Set tick duration, wheel size and worker thread count of process-wide timer. This must be called before any
+     * speed test is started.
+     *
+     * @param tickDuration tick duration in milliseconds (10ms by default)
+     * @param wheelSize    number of buckets (512 by default)
+     * @param threadCount  number of worker threads running expired tasks (4 by default)
+     * @return false if process-wide timer is already running or parameters are invalid
+     */
+    public static synchronized boolean configure(final long tickDuration, final int wheelSize,
+                                                 final int threadCount) {
+        if (sInstance != null || tickDuration <= 0 || wheelSize <= 0 || wheelSize > (1 << 30) || threadCount <= 0) {
+            return false;
+        }
+        sTickDuration = tickDuration;
+        sWheelSize = wheelSize;
+        sThreadCount = threadCount;
+        return true;
+    }
+
+    /**
+     * Get process-wide timer.
+     *
+     * @return timer shared by all speed test sockets
+     */
+    public static synchronized HashedWheelTimer getInstance() {
+        if (sInstance == null) {
+            sInstance = new HashedWheelTimer(sTickDuration, sWheelSize, sThreadCount);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Schedule a task once.
+     *
+     * @param task  task to run
+     * @param delay delay in milliseconds
+     * @return timeout that can be cancelled
+     */
+    public Timeout schedule(final Runnable task, final long delay) {
+        return add(new Timeout(this, task, 0), TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay)));
+    }
+
+    /**
+     * Schedule a task periodically. Next run is scheduled when current run has ended (runs never overlap), late runs
+     * are caught up like with {@link java.util.concurrent.ScheduledExecutorService#scheduleAtFixedRate}.
+     *
+     * @param task         task to run
+     * @param initialDelay delay before first run in milliseconds
+     * @param period       period in milliseconds
+     * @return timeout that can be cancelled
+     */
+    public Timeout scheduleAtFixedRate(final Runnable task, final long initialDelay, final long period) {
+        return add(new Timeout(this, task, TimeUnit.MILLISECONDS.toNanos(Math.max(1, period))),
+                TimeUnit.MILLISECONDS.toNanos(Math.max(0, initialDelay)));
+    }
+
+    /**
+     * Queue a timeout to be added to wheel on next tick.
+     *
+     * @param timeout timeout
+     * @param delay   delay in nanoseconds
+     * @return timeout
+     */
+    private Timeout add(final Timeout timeout, final long delay) {
+        timeout.mDeadline = System.nanoTime() + delay - mStartTime;
+        mPendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * tick thread loop.
+     */
+    private void runWheel() {
+
+        long tick = 0;
+
+        while (true) {
+            final long tickDeadline = mTickDuration * (tick + 1);
+
+            long sleepTime = tickDeadline - (System.nanoTime() - mStartTime);
+            while (sleepTime > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepTime);
+                } catch (InterruptedException e) {
+                    //ignore : tick thread is never stopped
+                }
+                sleepTime = tickDeadline - (System.nanoTime() - mStartTime);
+            }
+            removeCancelledTimeouts();
+            transferPendingTimeouts(tick);
+            mWheel[(int) (tick & mMask)].expireTimeouts(tickDeadline);
+            tick++;
+        }
+    }
+
+    /**
+     * Remove cancelled timeouts from their bucket.
+     */
+    private void removeCancelledTimeouts() {
+        Timeout timeout;
+        while ((timeout = mCancelledTimeouts.poll()) != null) {
+            if (timeout.mBucket != null) {
+                timeout.mBucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * Add pending timeouts to the bucket of their deadline.
+     *
+     * @param tick current tick
+     */
+    private void transferPendingTimeouts(final long tick) {
+
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            final Timeout timeout = mPendingTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.mState.get() == STATE_CANCELLED) {
+                continue;
+            }
+            final long calculatedTick = timeout.mDeadline / mTickDuration;
+            timeout.mRemainingRounds = (calculatedTick - tick) / mWheel.length;
+
+            //deadline already passed : expire on current tick
+            final long targetTick = Math.max(calculatedTick, tick);
+            mWheel[(int) (targetTick & mMask)].add(timeout);
+        }
+    }
+
+    /**
+     * Task scheduled on timer.
+     */
+    public static final class Timeout {
+
+        /**
+         * timer this timeout is scheduled on.
+         */
+        private final HashedWheelTimer mTimer;
+
+        /**
+         * task to run.
+         */
+        private final Runnable mTask;
+
+        /**
+         * period in nanoseconds (0 for a single run).
+         */
+        private final long mPeriod;
+
+        /**
+         * timeout state.
+         */
+        private final AtomicInteger mState = new AtomicInteger(STATE_INIT);
+
+        /**
+         * deadline relative to timer start in nanoseconds.
+         */
+        private long mDeadline;
+
+        /**
+         * number of wheel rounds before expiry.
+         */
+        private long mRemainingRounds;
+
+        /**
+         * bucket containing this timeout (null if not in wheel).
+         */
+        private Bucket mBucket;
+
+        /**
+         * next timeout in bucket.
+         */
+        private Timeout mNext;
+
+        /**
+         * previous timeout in bucket.
+         */
+        private Timeout mPrevious;
+
+        /**
+         * Build a timeout.
+         *
+         * @param timer  timer
+         * @param task   task to run
+         * @param period period in nanoseconds (0 for a single run)
+         */
+        private Timeout(final HashedWheelTimer timer, final Runnable task, final long period) {
+            mTimer = timer;
+            mTask = task;
+            mPeriod = period;
+        }
+
+        /**
+         * Cancel this timeout : task will not be run anymore (a run in progress is not interrupted).
+         *
+         * @return false if timeout was already cancelled or has already run once
+         */
+        public boolean cancel() {
+            while (true) {
+                final int state = mState.get();
+                if (state == STATE_CANCELLED || (state == STATE_EXPIRED && mPeriod == 0)) {
+                    return false;
+                }
+                if (mState.compareAndSet(state, STATE_CANCELLED)) {
+                    if (state == STATE_INIT) {
+                        mTimer.mCancelledTimeouts.add(this);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Check if this timeout is cancelled.
+         *
+         * @return true if cancelled
+         */
+        public boolean isCancelled() {
+            return mState.get() == STATE_CANCELLED;
+        }
+
+        /**
+         * Check if this timeout will not run anymore.
+         *
+         * @return true if cancelled or if a single run has started
+         */
+        public boolean isDone() {
+            final int state = mState.get();
+            return state == STATE_CANCELLED || (state == STATE_EXPIRED && mPeriod == 0);
+        }
+
+        /**
+         * Run expired task on worker pool and reschedule it if periodic.
+         */
+        private void expire() {
+            try {
+                mTask.run();
+            } catch (RuntimeException e) {
+                //like a scheduled executor, a periodic task that fails is not run anymore
+                mState.set(STATE_CANCELLED);
+                return;
+            }
+            if (mPeriod != 0 && mState.compareAndSet(STATE_EXPIRED, STATE_INIT)) {
+                mDeadline += mPeriod;
+                mTimer.mPendingTimeouts.add(this);
+            }
+        }
+    }
+
+    /**
+     * Wheel bucket : doubly linked list of timeouts only accessed from tick thread.
+     */
+    private final class Bucket {
+
+        /**
+         * first timeout.
+         */
+        private Timeout mHead;
+
+        /**
+         * last timeout.
+         */
+        private Timeout mTail;
+
+        /**
+         * Add a timeout at the end of this bucket.
+         *
+         * @param timeout timeout
+         */
+        private void add(final Timeout timeout) {
+            timeout.mBucket = this;
+            if (mHead == null) {
+                mHead = timeout;
+                mTail = timeout;
+            } else {
+                mTail.mNext = timeout;
+                timeout.mPrevious = mTail;
+                mTail = timeout;
+            }
+        }
+
+        /**
+         * Expire timeouts whose deadline has been reached.
+         *
+         * @param tickDeadline deadline of current tick relative to timer start
+         */
+        private void expireTimeouts(final long tickDeadline) {
+
+            Timeout timeout = mHead;
+
+            while (timeout != null) {
+                final Timeout next = timeout.mNext;
+
+                if (timeout.mRemainingRounds <= 0 && timeout.mDeadline <= tickDeadline) {
+                    remove(timeout);
+                    if (timeout.mState.compareAndSet(STATE_INIT, STATE_EXPIRED)) {
+                        final Timeout expired = timeout;
+                        mTaskExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                expired.expire();
+                            }
+                        });
+                    }
+                } else if (timeout.mState.get() == STATE_CANCELLED) {
+                    remove(timeout);
+                } else {
+                    timeout.mRemainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        /**
+         * Remove a timeout from this bucket.
+         *
+         * @param timeout timeout
+         */
+        private void remove(final Timeout timeout) {
+
+            if (timeout.mBucket != this) {
+                return;
+            }
+            final Timeout next = timeout.mNext;
+
+            if (timeout.mPrevious != null) {
+                timeout.mPrevious.mNext = next;
+            }
+            if (next != null) {
+                next.mPrevious = timeout.mPrevious;
+            }
+            if (timeout == mHead) {
+                mHead = next;
+            }
+            if (timeout == mTail) {
+                mTail = timeout.mPrevious;
+            }
+            timeout.mPrevious = null;
+            timeout.mNext = null;
+            timeout.mBucket = null;
+        }
+    }
+}
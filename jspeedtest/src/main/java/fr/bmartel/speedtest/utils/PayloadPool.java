@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.utils;
+
+import fr.bmartel.speedtest.SpeedTestConst;
+
+import java.util.SplittableRandom;
+
+/**
+ * Process-wide upload payload : a single random block is generated once and any upload payload is served as the
+ * repetition of this block, so that upload memory and generation cost don't depend on upload size.
+ * <p/>
+ * Octet at offset n of an upload payload is the octet at offset n % PAYLOAD_BLOCK_SIZE of the block.
+ *
+ * @author Bertrand Martel
+ */
+public final class PayloadPool {
+
+    /**
+     * Lazy holder of random block.
+     */
+    private static final class BlockHolder {
+
+        /**
+         * random block generated on first use.
+         */
+        private static final byte[] BLOCK = generateBlock(SpeedTestConst.PAYLOAD_BLOCK_SIZE);
+    }
+
+    /**
+     * Utility class.
+     */
+    private PayloadPool() {
+    }
+
+    /**
+     * Get random block shared by all uploads. This array must not be modified.
+     *
+     * @return random block
+     */
+    public static byte[] getBlock() {
+        return BlockHolder.BLOCK;
+    }
+
+    /**
+     * Get offset in block of the octet at a given offset of upload payload.
+     *
+     * @param offset offset in upload payload
+     * @return offset in block
+     */
+    public static int getBlockOffset(final long offset) {
+        return (int) (offset % SpeedTestConst.PAYLOAD_BLOCK_SIZE);
+    }
+
+    /**
+     * Copy a region of upload payload to an array.
+     *
+     * @param offset     offset of region in upload payload
+     * @param dest       destination array
+     * @param destOffset offset in destination array
+     * @param length     region size
+     */
+    public static void read(final long offset, final byte[] dest, final int destOffset, final int length) {
+
+        final byte[] block = getBlock();
+
+        int copied = 0;
+
+        while (copied < length) {
+            final int blockOffset = getBlockOffset(offset + copied);
+            final int count = Math.min(length - copied, block.length - blockOffset);
+            System.arraycopy(block, blockOffset, dest, destOffset + copied, count);
+            copied += count;
+        }
+    }
+
+    /**
+     * Generate random block with a fast non-cryptographic generator.
+     *
+     * @param length block size
+     * @return random block
+     */
+    private static byte[] generateBlock(final int length) {
+
+        final byte[] block = new byte[length];
+        final SplittableRandom random = new SplittableRandom();
+
+        int i = 0;
+
+        while (i < length) {
+            long value = random.nextLong();
+            for (int j = 0; j < Long.BYTES && i < length; j++) {
+                block[i++] = (byte) value;
+                value >>>= Byte.SIZE;
+            }
+        }
+        return block;
+    }
+}
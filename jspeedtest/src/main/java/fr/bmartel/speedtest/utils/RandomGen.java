@@ -57,26 +57,12 @@ public class RandomGen {
     public byte[] generateRandomArray(final int length) {
 
         final byte[] buffer = new byte[length];
-
-        final int iter = length / SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK;
-        final int remain = length % SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK;
-
-        for (int i = 0; i < iter; i++) {
-            final byte[] random = new byte[SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK];
-            mRandom.nextBytes(random);
-            System.arraycopy(random, 0, buffer, i * SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK, SpeedTestConst
-                    .UPLOAD_FILE_WRITE_CHUNK);
-        }
-        if (remain > 0) {
-            final byte[] random = new byte[remain];
-            mRandom.nextBytes(random);
-            System.arraycopy(random, 0, buffer, iter * SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK, remain);
-        }
+        mRandom.nextBytes(buffer);
         return buffer;
     }
 
     /**
-     * Generate random file.
+     * Generate random file, content is taken from upload payload pool.
      *
      * @param length number of bytes to be generated
      * @return file with random content
@@ -89,18 +75,10 @@ public class RandomGen {
         final RandomAccessFile randomFile = new RandomAccessFile(mFile.getAbsolutePath(), "rw");
         randomFile.setLength(length);
 
-        final int iter = length / SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK;
-        final int remain = length % SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK;
+        final byte[] block = PayloadPool.getBlock();
 
-        for (int i = 0; i < iter; i++) {
-            final byte[] random = new byte[SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK];
-            mRandom.nextBytes(random);
-            randomFile.write(random);
-        }
-        if (remain > 0) {
-            final byte[] random = new byte[remain];
-            mRandom.nextBytes(random);
-            randomFile.write(random);
+        for (int written = 0; written < length; written += block.length) {
+            randomFile.write(block, 0, Math.min(block.length, length - written));
         }
 
         return randomFile;
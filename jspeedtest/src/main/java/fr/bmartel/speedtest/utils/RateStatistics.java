@@ -0,0 +1,214 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest.utils;
+
+/**
+ * Immutable streaming statistics of transfer rates : count, sum, min/max and variance (Welford's algorithm) are kept
+ * in constant memory. A new snapshot is built for each added rate so that it can be shared through an
+ * {@link java.util.concurrent.atomic.AtomicReference} and updated without lock.
+ *
+ * @author Bertrand Martel
+ */
+public final class RateStatistics {
+
+    /**
+     * statistics without any rate.
+     */
+    public static final RateStatistics EMPTY = new RateStatistics(0, 0, 0, 0, 0, 0, 0, 0);
+
+    /**
+     * number of rates added.
+     */
+    private final long mCount;
+
+    /**
+     * sum of all rates in octet/s.
+     */
+    private final double mSum;
+
+    /**
+     * running mean of rates in octet/s.
+     */
+    private final double mMean;
+
+    /**
+     * running sum of squared differences from the mean.
+     */
+    private final double mM2;
+
+    /**
+     * lowest rate in octet/s.
+     */
+    private final double mMin;
+
+    /**
+     * highest rate in octet/s.
+     */
+    private final double mMax;
+
+    /**
+     * total number of octet transferred.
+     */
+    private final long mOctetCount;
+
+    /**
+     * total transfer time in nanoseconds.
+     */
+    private final long mActiveTime;
+
+    /**
+     * Build rate statistics.
+     *
+     * @param count      number of rates
+     * @param sum        sum of rates
+     * @param mean       mean of rates
+     * @param m2         sum of squared differences from the mean
+     * @param min        lowest rate
+     * @param max        highest rate
+     * @param octetCount total number of octet transferred
+     * @param activeTime total transfer time in nanoseconds
+     */
+    private RateStatistics(final long count,
+                           final double sum,
+                           final double mean,
+                           final double m2,
+                           final double min,
+                           final double max,
+                           final long octetCount,
+                           final long activeTime) {
+        mCount = count;
+        mSum = sum;
+        mMean = mean;
+        mM2 = m2;
+        mMin = min;
+        mMax = max;
+        mOctetCount = octetCount;
+        mActiveTime = activeTime;
+    }
+
+    /**
+     * Build statistics including a new rate.
+     *
+     * @param rate       transfer rate in octet/s
+     * @param octetCount number of octet transferred
+     * @param activeTime transfer time in nanoseconds
+     * @return new statistics
+     */
+    public RateStatistics add(final double rate, final long octetCount, final long activeTime) {
+
+        final long count = mCount + 1;
+        final double delta = rate - mMean;
+        final double mean = mMean + delta / count;
+
+        return new RateStatistics(count,
+                mSum + rate,
+                mean,
+                mM2 + delta * (rate - mean),
+                (mCount == 0) ? rate : Math.min(mMin, rate),
+                (mCount == 0) ? rate : Math.max(mMax, rate),
+                mOctetCount + octetCount,
+                mActiveTime + activeTime);
+    }
+
+    /**
+     * get number of rates added.
+     *
+     * @return rate count
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * get sum of all rates.
+     *
+     * @return sum in octet/s
+     */
+    public double getSum() {
+        return mSum;
+    }
+
+    /**
+     * get mean rate.
+     *
+     * @return mean in octet/s (0 if empty)
+     */
+    public double getMean() {
+        return mMean;
+    }
+
+    /**
+     * get sample variance of rates.
+     *
+     * @return variance in (octet/s)^2 (0 if less than 2 rates)
+     */
+    public double getVariance() {
+        return (mCount < 2) ? 0 : mM2 / (mCount - 1);
+    }
+
+    /**
+     * get sample standard deviation of rates.
+     *
+     * @return standard deviation in octet/s (0 if less than 2 rates)
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * get lowest rate.
+     *
+     * @return lowest rate in octet/s (0 if empty)
+     */
+    public double getMin() {
+        return mMin;
+    }
+
+    /**
+     * get highest rate.
+     *
+     * @return highest rate in octet/s (0 if empty)
+     */
+    public double getMax() {
+        return mMax;
+    }
+
+    /**
+     * get total number of octet transferred.
+     *
+     * @return octet count
+     */
+    public long getOctetCount() {
+        return mOctetCount;
+    }
+
+    /**
+     * get total transfer time.
+     *
+     * @return time in nanoseconds
+     */
+    public long getActiveTime() {
+        return mActiveTime;
+    }
+}
@@ -32,11 +32,17 @@ import fr.bmartel.speedtest.inter.ISpeedTestSocket;
 import fr.bmartel.speedtest.model.SpeedTestError;
 import fr.bmartel.speedtest.model.UploadStorageType;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocketFactory;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.net.Socket;
+import java.net.SocketException;
 import java.math.BigInteger;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -51,6 +57,108 @@ public class SpeedTestUtils {
      */
     private static SecureRandom random = new SecureRandom();
 
+    /**
+     * SSL context shared by all speed test sockets, its client session cache is used to resume TLS sessions.
+     */
+    private static SSLContext sharedSslContext;
+
+    /**
+     * Get SSL context shared by all speed test sockets which don't define their own SSL context. TLS sessions are
+     * kept in its client session cache (session ID and session ticket resumption).
+     *
+     * @return shared SSL context
+     * @throws GeneralSecurityException SSL context initialization error
+     */
+    public static synchronized SSLContext getSharedSslContext() throws GeneralSecurityException {
+        if (sharedSslContext == null) {
+            final SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, null, null);
+            context.getClientSessionContext().setSessionCacheSize(SpeedTestConst.SSL_SESSION_CACHE_SIZE);
+            context.getClientSessionContext().setSessionTimeout(SpeedTestConst.SSL_SESSION_TIMEOUT);
+            sharedSslContext = context;
+        }
+        return sharedSslContext;
+    }
+
+    /**
+     * Get SSL socket factory of a speed test socket : its own SSL context if defined or shared SSL context.
+     *
+     * @param speedTestSocket speed test socket
+     * @return SSL socket factory
+     * @throws IOException SSL context initialization error
+     */
+    public static SSLSocketFactory getSslSocketFactory(final ISpeedTestSocket speedTestSocket) throws IOException {
+
+        SSLContext context = speedTestSocket.getSslContext();
+
+        if (context == null) {
+            try {
+                context = getSharedSslContext();
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        return context.getSocketFactory();
+    }
+
+    /**
+     * Apply socket options of a speed test socket to a socket before it is connected (buffer sizes larger than 64KB
+     * must be set before connection to be taken into account by TCP window scaling). For the same reason, receive
+     * buffer computed by autotune is only applied before connecting next connections.
+     *
+     * @param speedTestSocket speed test socket
+     * @param socket          socket to configure
+     * @throws SocketException socket option error
+     */
+    public static void applySocketOptions(final ISpeedTestSocket speedTestSocket,
+                                          final Socket socket) throws SocketException {
+
+        socket.setReuseAddress(true);
+        socket.setKeepAlive(true);
+        socket.setTcpNoDelay(speedTestSocket.isTcpNoDelay());
+
+        if (speedTestSocket.getReceiveBufferSize() > 0) {
+            socket.setReceiveBufferSize(speedTestSocket.getReceiveBufferSize());
+        }
+        if (speedTestSocket.getSendBufferSize() > 0) {
+            socket.setSendBufferSize(speedTestSocket.getSendBufferSize());
+        }
+        if (speedTestSocket.getTrafficClass() >= 0) {
+            socket.setTrafficClass(speedTestSocket.getTrafficClass());
+        }
+    }
+
+    /**
+     * Get socket buffer size required by a transfer : bandwidth-delay product multiplied by
+     * {@link SpeedTestConst#AUTOTUNE_BDP_FACTOR} and limited to {@link SpeedTestConst#AUTOTUNE_MAX_BUFFER_SIZE}.
+     *
+     * @param transferred number of octet transferred
+     * @param duration    transfer duration in nanoseconds
+     * @param rtt         round trip time in nanoseconds
+     * @return buffer size in octet (0 if it can't be computed)
+     */
+    public static int getAutotuneBufferSize(final long transferred, final long duration, final long rtt) {
+
+        if (duration <= 0 || rtt <= 0) {
+            return 0;
+        }
+        final double bdp = (double) transferred * rtt / duration;
+
+        return (int) Math.min(SpeedTestConst.AUTOTUNE_MAX_BUFFER_SIZE, bdp * SpeedTestConst.AUTOTUNE_BDP_FACTOR);
+    }
+
+    /**
+     * Check if a TLS handshake has resumed a previous session : a resumed session keeps the creation time of the
+     * session it has been resumed from.
+     *
+     * @param session              session of handshake
+     * @param handshakeStartMillis handshake start time in milliseconds (wall clock)
+     * @return true if session has been resumed
+     */
+    public static boolean isSessionResumed(final SSLSession session, final long handshakeStartMillis) {
+        return session.getCreationTime() < handshakeStartMillis;
+    }
+
     /**
      * Generate a random file name for file FTP upload.
      *
@@ -102,32 +210,40 @@ public class SpeedTestUtils {
     }
 
     /**
-     * Read data from RAM of FILE storage for upload task.
+     * Write a chunk of upload data from RAM or FILE storage to an output stream. RAM storage data is written as
+     * slices of payload pool block without copy, FILE storage data is read in the given buffer.
      *
      * @param storageType        RAM or FILE storage
-     * @param body               full upload body for RAM storage case
+     * @param outputStream       output stream to write to
      * @param uploadFile         file pointer to upload for FILE storage case
+     * @param buffer             buffer of at least chunkSize octet for FILE storage case
      * @param uploadTempFileSize temporary file size (offset)
-     * @param chunkSize          chunk size to read
-     * @return byte array to flush
+     * @param chunkSize          chunk size to write
+     * @throws IOException file read or stream write exception
      */
-    public static byte[] readUploadData(final UploadStorageType storageType,
-                                        final byte[] body,
-                                        final RandomAccessFile uploadFile,
-                                        final int uploadTempFileSize,
-                                        final int chunkSize) throws IOException {
-
-        byte[] data;
+    public static void writeUploadData(final UploadStorageType storageType,
+                                       final OutputStream outputStream,
+                                       final RandomAccessFile uploadFile,
+                                       final byte[] buffer,
+                                       final long uploadTempFileSize,
+                                       final int chunkSize) throws IOException {
 
         if (storageType == UploadStorageType.RAM_STORAGE) {
-            data = Arrays.copyOfRange(body, uploadTempFileSize,
-                    uploadTempFileSize + chunkSize);
+            final byte[] block = PayloadPool.getBlock();
+
+            int written = 0;
+
+            while (written < chunkSize) {
+                final int blockOffset = PayloadPool.getBlockOffset(uploadTempFileSize + written);
+                final int count = Math.min(chunkSize - written, block.length - blockOffset);
+                outputStream.write(block, blockOffset, count);
+                written += count;
+            }
         } else {
-            data = new byte[chunkSize];
             uploadFile.seek(uploadTempFileSize);
-            uploadFile.read(data);
+            uploadFile.readFully(buffer, 0, chunkSize);
+            outputStream.write(buffer, 0, chunkSize);
         }
-        return data;
     }
 
     /**
@@ -0,0 +1,304 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of transfer rate measured over fixed sub-intervals of a transfer. Rates are stored in log-scale buckets
+ * (16 linear sub-buckets per power of 2, relative error below 7%) so that memory is fixed whatever the transfer rate.
+ * <p/>
+ * Samples may be recorded from several threads without lock or allocation, summary is computed on request.
+ *
+ * @author Bertrand Martel
+ */
+public class ThroughputHistogram {
+
+    /**
+     * number of bits of linear sub-buckets in each power of 2.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * number of linear sub-buckets in each power of 2.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * highest power of 2 recorded (rates above 2^41 octet/s are stored in last bucket).
+     */
+    private static final int MAX_EXPONENT = 41;
+
+    /**
+     * number of buckets.
+     */
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    /**
+     * nanoseconds in a second.
+     */
+    private static final double NANO_PER_SECOND = 1e9;
+
+    /**
+     * number of intervals in each bucket.
+     */
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * number of intervals recorded.
+     */
+    private final AtomicLong mIntervalCount = new AtomicLong();
+
+    /**
+     * highest interval rate recorded in octet/s.
+     */
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * start time of current interval.
+     */
+    private final AtomicLong mIntervalStart = new AtomicLong();
+
+    /**
+     * octets transferred in current interval.
+     */
+    private final AtomicLong mIntervalOctetCount = new AtomicLong();
+
+    /**
+     * interval duration in nanoseconds.
+     */
+    private volatile long mInterval = 1;
+
+    /**
+     * number of intervals taken into account in summary.
+     */
+    private long mSummaryIntervalCount = -1;
+
+    /**
+     * 10th percentile of interval rates in octet/s.
+     */
+    private long mP10;
+
+    /**
+     * median of interval rates in octet/s.
+     */
+    private long mP50;
+
+    /**
+     * 90th percentile of interval rates in octet/s.
+     */
+    private long mP90;
+
+    /**
+     * 99th percentile of interval rates in octet/s.
+     */
+    private long mP99;
+
+    /**
+     * Clear histogram at transfer start.
+     *
+     * @param timestamp transfer start time (System.nanoTime())
+     * @param interval  interval duration in milliseconds
+     */
+    public void reset(final long timestamp, final int interval) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mIntervalCount.set(0);
+        mMax.set(0);
+        mIntervalOctetCount.set(0);
+        mInterval = Math.max(1, interval) * 1000000L;
+        mIntervalStart.set(timestamp);
+
+        synchronized (this) {
+            mSummaryIntervalCount = -1;
+        }
+    }
+
+    /**
+     * Record a transfer sample, rate of each interval ended before sample time is added to histogram.
+     *
+     * @param timestamp  sample time (System.nanoTime())
+     * @param octetCount number of octet transferred since previous sample
+     */
+    public void addSample(final long timestamp, final long octetCount) {
+
+        final long interval = mInterval;
+        final long start = mIntervalStart.get();
+        final long intervals = (timestamp - start) / interval;
+
+        if (intervals > 0 && mIntervalStart.compareAndSet(start, start + intervals * interval)) {
+            final long octets = mIntervalOctetCount.getAndSet(0);
+            record((long) (octets * NANO_PER_SECOND / interval), 1);
+            if (intervals > 1) {
+                //intervals without any transfer
+                record(0, intervals - 1);
+            }
+        }
+        mIntervalOctetCount.addAndGet(octetCount);
+    }
+
+    /**
+     * Add interval rates to histogram.
+     *
+     * @param rate  rate in octet/s
+     * @param count number of intervals
+     */
+    private void record(final long rate, final long count) {
+        mBuckets.addAndGet(getBucket(rate), count);
+
+        long max = mMax.get();
+        while (rate > max && !mMax.compareAndSet(max, rate)) {
+            max = mMax.get();
+        }
+        mIntervalCount.addAndGet(count);
+    }
+
+    /**
+     * Get bucket of a rate.
+     *
+     * @param rate rate in octet/s
+     * @return bucket index
+     */
+    private static int getBucket(final long rate) {
+        if (rate < SUB_BUCKET_COUNT) {
+            return (int) Math.max(0, rate);
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(rate);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT +
+                (int) (rate >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * Get rate at the middle of a bucket.
+     *
+     * @param bucket bucket index
+     * @return rate in octet/s
+     */
+    private static long getBucketValue(final int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKET_COUNT - 1;
+        final long low = ((long) (bucket % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT)) << shift;
+        return low + ((1L << shift) >> 1);
+    }
+
+    /**
+     * Get a percentile of interval rates.
+     *
+     * @param percentile percentile (0 < percentile <= 1)
+     * @return rate in octet/s (0 if no interval has been recorded)
+     */
+    public long getPercentile(final double percentile) {
+
+        final long total = mIntervalCount.get();
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long count = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mBuckets.get(i);
+            if (count >= rank) {
+                return Math.min(getBucketValue(i), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    /**
+     * Compute p10/p50/p90/p99 if intervals have been recorded since last summary.
+     */
+    public synchronized void updateSummary() {
+        final long intervalCount = mIntervalCount.get();
+        if (intervalCount != mSummaryIntervalCount) {
+            mP10 = getPercentile(0.1);
+            mP50 = getPercentile(0.5);
+            mP90 = getPercentile(0.9);
+            mP99 = getPercentile(0.99);
+            mSummaryIntervalCount = intervalCount;
+        }
+    }
+
+    /**
+     * get number of intervals recorded.
+     *
+     * @return interval count
+     */
+    public long getIntervalCount() {
+        return mIntervalCount.get();
+    }
+
+    /**
+     * get highest interval rate.
+     *
+     * @return rate in octet/s
+     */
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * get 10th percentile of interval rates computed by last summary.
+     *
+     * @return rate in octet/s
+     */
+    public synchronized long getP10() {
+        return mP10;
+    }
+
+    /**
+     * get median of interval rates computed by last summary.
+     *
+     * @return rate in octet/s
+     */
+    public synchronized long getP50() {
+        return mP50;
+    }
+
+    /**
+     * get 90th percentile of interval rates computed by last summary.
+     *
+     * @return rate in octet/s
+     */
+    public synchronized long getP90() {
+        return mP90;
+    }
+
+    /**
+     * get 99th percentile of interval rates computed by last summary.
+     *
+     * @return rate in octet/s
+     */
+    public synchronized long getP99() {
+        return mP99;
+    }
+}
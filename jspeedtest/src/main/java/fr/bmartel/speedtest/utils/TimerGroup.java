@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Timeouts of a speed test socket scheduled on the process-wide {@link HashedWheelTimer} : they can all be cancelled
+ * at once when transfer ends, like shutting down a report threadpool.
+ *
+ * @author Bertrand Martel
+ */
+public class TimerGroup {
+
+    /**
+     * timeouts scheduled in this group.
+     */
+    private final List<HashedWheelTimer.Timeout> mTimeouts = new ArrayList<>();
+
+    /**
+     * define if this group has been closed.
+     */
+    private boolean mClosed;
+
+    /**
+     * Schedule a task once.
+     *
+     * @param task  task to run
+     * @param delay delay in milliseconds
+     * @return timeout that can be cancelled
+     */
+    public HashedWheelTimer.Timeout schedule(final Runnable task, final long delay) {
+        return add(HashedWheelTimer.getInstance().schedule(task, delay));
+    }
+
+    /**
+     * Schedule a task periodically.
+     *
+     * @param task         task to run
+     * @param initialDelay delay before first run in milliseconds
+     * @param period       period in milliseconds
+     * @return timeout that can be cancelled
+     */
+    public HashedWheelTimer.Timeout scheduleAtFixedRate(final Runnable task,
+                                                        final long initialDelay,
+                                                        final long period) {
+        return add(HashedWheelTimer.getInstance().scheduleAtFixedRate(task, initialDelay, period));
+    }
+
+    /**
+     * Track a scheduled timeout, timeouts that won't run anymore are dropped.
+     *
+     * @param timeout timeout
+     * @return timeout
+     */
+    private synchronized HashedWheelTimer.Timeout add(final HashedWheelTimer.Timeout timeout) {
+        if (mClosed) {
+            timeout.cancel();
+            throw new RejectedExecutionException("timer group is closed");
+        }
+        for (int i = mTimeouts.size() - 1; i >= 0; i--) {
+            if (mTimeouts.get(i).isDone()) {
+                mTimeouts.remove(i);
+            }
+        }
+        mTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Cancel all timeouts of this group, no timeout can be scheduled until {@link #renew()} is called.
+     */
+    public synchronized void close() {
+        mClosed = true;
+        for (int i = 0; i < mTimeouts.size(); i++) {
+            mTimeouts.get(i).cancel();
+        }
+        mTimeouts.clear();
+    }
+
+    /**
+     * Allow timeouts to be scheduled again after {@link #close()}.
+     */
+    public synchronized void renew() {
+        mClosed = false;
+    }
+
+    /**
+     * Check if this group has been closed.
+     *
+     * @return true if closed
+     */
+    public synchronized boolean isClosed() {
+        return mClosed;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest.test;
+
+import fr.bmartel.speedtest.AsyncSpeedTestListener;
+import fr.bmartel.speedtest.SpeedTestReport;
+import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.model.SpeedTestError;
+import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous listener dispatch through ring buffer.
+ *
+ * @author Bertrand Martel
+ */
+public class AsyncSpeedTestListenerTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(AsyncSpeedTestListenerTest.class);
+
+    /**
+     * number of progress events published.
+     */
+    private static final int PROGRESS_COUNT = 10000;
+
+    /**
+     * ring buffer capacity.
+     */
+    private static final int CAPACITY = 16;
+
+    /**
+     * maximum time to wait for completion in milliseconds.
+     */
+    private static final int WAIT_TIMEOUT = 10000;
+
+    /**
+     * Build a report with given temporary size.
+     *
+     * @param size temporary size
+     * @return report
+     */
+    private static SpeedTestReport buildReport(final long size) {
+        return new SpeedTestReport(SpeedTestMode.DOWNLOAD, 0, 0, 0, size, PROGRESS_COUNT, BigDecimal.ZERO,
+                BigDecimal.ZERO, 1);
+    }
+
+    @Test
+    public void slowListenerTest() throws InterruptedException {
+
+        final List<Long> progressSizes = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long[] completionSize = new long[1];
+
+        final AsyncSpeedTestListener listener = new AsyncSpeedTestListener(new ISpeedTestListener() {
+            @Override
+            public void onCompletion(final SpeedTestReport report) {
+                completionSize[0] = report.getTemporaryPacketSize();
+                latch.countDown();
+            }
+
+            @Override
+            public void onProgress(final float percent, final SpeedTestReport report) {
+                progressSizes.add(report.getTemporaryPacketSize());
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    //ignore
+                }
+            }
+
+            @Override
+            public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+                //not used
+            }
+        }, CAPACITY);
+
+        final SpeedTestReport[] reports = new SpeedTestReport[PROGRESS_COUNT + 1];
+        for (int i = 0; i <= PROGRESS_COUNT; i++) {
+            reports[i] = buildReport(i);
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 1; i < PROGRESS_COUNT + 1; i++) {
+            listener.onProgress(0, reports[i]);
+        }
+        listener.onCompletion(reports[PROGRESS_COUNT]);
+        final long publishTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assert.assertTrue(HEADER + "completion not delivered", latch.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+        listener.close();
+        listener.awaitTermination(WAIT_TIMEOUT);
+
+        //publishing must not wait for a listener sleeping 1ms per event
+        Assert.assertTrue(HEADER + "publish took " + publishTime + "ms", publishTime < PROGRESS_COUNT / 2);
+        Assert.assertEquals(HEADER + "completion report incorrect", PROGRESS_COUNT, completionSize[0]);
+        Assert.assertEquals(HEADER + "event count incorrect", PROGRESS_COUNT,
+                progressSizes.size() + listener.getDroppedCount() + listener.getCoalescedCount());
+        Assert.assertTrue(HEADER + "events should be dropped", listener.getDroppedCount() > 0);
+
+        for (int i = 1; i < progressSizes.size(); i++) {
+            Assert.assertTrue(HEADER + "progress order incorrect", progressSizes.get(i) > progressSizes.get(i - 1));
+        }
+        Assert.assertEquals(HEADER + "pending count incorrect", 0, listener.getPendingCount());
+    }
+
+    @Test
+    public void fastListenerTest() throws InterruptedException {
+
+        final int[] progressCount = new int[1];
+        final CountDownLatch latch = new CountDownLatch(2);
+
+        final AsyncSpeedTestListener listener = new AsyncSpeedTestListener(new ISpeedTestListener() {
+            @Override
+            public void onCompletion(final SpeedTestReport report) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onProgress(final float percent, final SpeedTestReport report) {
+                progressCount[0]++;
+            }
+
+            @Override
+            public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+                latch.countDown();
+            }
+        });
+
+        for (int i = 0; i < CAPACITY; i++) {
+            listener.onProgress(0, buildReport(i));
+        }
+        listener.onError(SpeedTestError.CONNECTION_ERROR, "error");
+        listener.onCompletion(buildReport(CAPACITY));
+
+        Assert.assertTrue(HEADER + "events not delivered", latch.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+        listener.close();
+        listener.awaitTermination(WAIT_TIMEOUT);
+
+        Assert.assertEquals(HEADER + "no event should be dropped", 0, listener.getDroppedCount());
+        Assert.assertEquals(HEADER + "event count incorrect", CAPACITY,
+                progressCount[0] + listener.getCoalescedCount());
+    }
+}
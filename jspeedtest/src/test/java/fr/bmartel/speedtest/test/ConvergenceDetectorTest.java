@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.test;
+
+import fr.bmartel.speedtest.ConvergenceDetector;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Convergence detector of adaptive speed tests fed with synthetic samples.
+ *
+ * @author Bertrand Martel
+ */
+public class ConvergenceDetectorTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(ConvergenceDetectorTest.class);
+
+    /**
+     * nanoseconds in a millisecond.
+     */
+    private static final long MILLI = 1000000L;
+
+    /**
+     * interval between two samples in milliseconds.
+     */
+    private static final int SAMPLE_INTERVAL = 100;
+
+    /**
+     * sliding window in milliseconds.
+     */
+    private static final int WINDOW = 1000;
+
+    /**
+     * convergence period in milliseconds.
+     */
+    private static final int PERIOD = 2000;
+
+    /**
+     * tolerance.
+     */
+    private static final double TOLERANCE = 0.05;
+
+    /**
+     * octets transferred in each sample interval at nominal rate.
+     */
+    private static final long OCTET_PER_SAMPLE = 100000;
+
+    @Test
+    public void stableRateTest() {
+
+        final ConvergenceDetector detector = new ConvergenceDetector(SAMPLE_INTERVAL, WINDOW, PERIOD, TOLERANCE);
+
+        long octets = 0;
+        int convergedAt = -1;
+
+        for (int i = 0; i < 100 && convergedAt == -1; i++) {
+            octets += OCTET_PER_SAMPLE;
+            if (detector.addSample(i * SAMPLE_INTERVAL * MILLI, octets)) {
+                convergedAt = i;
+            }
+        }
+        //first windowed rate needs a full window, then a full period of windowed rates is needed
+        Assert.assertEquals(HEADER + "convergence sample incorrect", (WINDOW + PERIOD) / SAMPLE_INTERVAL - 1,
+                convergedAt);
+    }
+
+    @Test
+    public void oscillatingRateTest() {
+
+        final ConvergenceDetector detector = new ConvergenceDetector(SAMPLE_INTERVAL, WINDOW, PERIOD, TOLERANCE);
+
+        long octets = 0;
+
+        for (int i = 0; i < 200; i++) {
+            //rate alternates between half and 1.5 times nominal rate every second
+            octets += ((i / 10) % 2 == 0) ? OCTET_PER_SAMPLE / 2 : OCTET_PER_SAMPLE * 3 / 2;
+            Assert.assertFalse(HEADER + "oscillating rate should not converge",
+                    detector.addSample(i * SAMPLE_INTERVAL * MILLI, octets));
+        }
+    }
+
+    @Test
+    public void stepRateTest() {
+
+        final ConvergenceDetector detector = new ConvergenceDetector(SAMPLE_INTERVAL, WINDOW, PERIOD, TOLERANCE);
+
+        long octets = 0;
+        int convergedAt = -1;
+
+        for (int i = 0; i < 200 && convergedAt == -1; i++) {
+            //rate doubles after 5s
+            octets += (i < 50) ? OCTET_PER_SAMPLE : OCTET_PER_SAMPLE * 2;
+            if (detector.addSample(i * SAMPLE_INTERVAL * MILLI, octets) && i >= 50) {
+                convergedAt = i;
+            }
+        }
+        Assert.assertTrue(HEADER + "should converge again after step", convergedAt != -1);
+        Assert.assertTrue(HEADER + "should not converge before new rate is stable for a period",
+                convergedAt >= 50 + PERIOD / SAMPLE_INTERVAL);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest.test;
+
+import fr.bmartel.speedtest.SpeedTestConst;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import fr.bmartel.speedtest.utils.HashedWheelTimer;
+import fr.bmartel.speedtest.utils.TimerGroup;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide hashed timer wheel and timer groups.
+ *
+ * @author Bertrand Martel
+ */
+public class HashedWheelTimerTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(HashedWheelTimerTest.class);
+
+    /**
+     * maximum time to wait for a timeout in milliseconds.
+     */
+    private static final int WAIT_TIMEOUT = 5000;
+
+    @Test
+    public void scheduleTest() throws InterruptedException {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicLong fired = new AtomicLong();
+        final long start = System.nanoTime();
+        final int delay = 200;
+
+        HashedWheelTimer.getInstance().schedule(new Runnable() {
+            @Override
+            public void run() {
+                fired.set(System.nanoTime());
+                latch.countDown();
+            }
+        }, delay);
+
+        Assert.assertTrue(HEADER + "timeout not fired", latch.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(fired.get() - start);
+        Assert.assertTrue(HEADER + "timeout fired too early : " + elapsed, elapsed >= delay);
+        Assert.assertTrue(HEADER + "timeout fired too late : " + elapsed,
+                elapsed < delay + 10 * SpeedTestConst.DEFAULT_TIMER_TICK);
+    }
+
+    @Test
+    public void longDelayTest() throws InterruptedException {
+
+        //delay longer than one wheel revolution
+        final int delay = SpeedTestConst.DEFAULT_TIMER_TICK * SpeedTestConst.DEFAULT_TIMER_WHEEL_SIZE + 100;
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long start = System.nanoTime();
+
+        HashedWheelTimer.getInstance().schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, delay);
+
+        Assert.assertTrue(HEADER + "timeout not fired", latch.await(delay + WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(HEADER + "timeout fired too early",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= delay);
+    }
+
+    @Test
+    public void periodicCancelTest() throws InterruptedException {
+
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(5);
+
+        final HashedWheelTimer.Timeout timeout = HashedWheelTimer.getInstance().scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+                latch.countDown();
+            }
+        }, 20, 20);
+
+        Assert.assertTrue(HEADER + "periodic timeout not fired", latch.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(HEADER + "cancel failed", timeout.cancel());
+        Assert.assertTrue(HEADER + "timeout should be cancelled", timeout.isCancelled());
+
+        Thread.sleep(100);
+        final int cancelledCount = count.get();
+        Thread.sleep(200);
+        Assert.assertEquals(HEADER + "periodic timeout run after cancel", cancelledCount, count.get());
+    }
+
+    @Test
+    public void groupTest() throws InterruptedException {
+
+        final TimerGroup group = new TimerGroup();
+        final AtomicInteger count = new AtomicInteger();
+
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        };
+        group.schedule(task, 100);
+        group.scheduleAtFixedRate(task, 100, 100);
+        group.close();
+
+        Thread.sleep(300);
+        Assert.assertEquals(HEADER + "closed group timeout should not run", 0, count.get());
+
+        try {
+            group.schedule(task, 100);
+            Assert.fail(HEADER + "closed group should reject timeout");
+        } catch (RejectedExecutionException e) {
+            //expected
+        }
+        group.renew();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        group.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 50);
+        Assert.assertTrue(HEADER + "renewed group timeout not fired", latch.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+}
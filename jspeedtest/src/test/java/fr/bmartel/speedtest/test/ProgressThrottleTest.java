@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest.test;
+
+import fr.bmartel.speedtest.ProgressThrottle;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Progress event coalescing thresholds.
+ *
+ * @author Bertrand Martel
+ */
+public class ProgressThrottleTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(ProgressThrottleTest.class);
+
+    /**
+     * octets transferred on each read.
+     */
+    private static final int READ_SIZE = 1000;
+
+    /**
+     * number of reads of transfer.
+     */
+    private static final int READ_COUNT = 1000;
+
+    /**
+     * Count progress events dispatched for a transfer.
+     *
+     * @param throttle progress throttle
+     * @param total    total transfer size
+     * @return number of progress dispatched
+     */
+    private static int countProgress(final ProgressThrottle throttle, final long total) {
+        int count = 0;
+        for (int i = 1; i <= READ_COUNT; i++) {
+            if (throttle.shallDispatch((long) i * READ_SIZE, total)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void disabledTest() {
+        final ProgressThrottle throttle = new ProgressThrottle();
+        throttle.reset(System.nanoTime(), 0, 0, 0);
+        Assert.assertEquals(HEADER + "all progress should be dispatched", READ_COUNT,
+                countProgress(throttle, READ_SIZE * READ_COUNT));
+    }
+
+    @Test
+    public void octetStepTest() {
+        final ProgressThrottle throttle = new ProgressThrottle();
+        throttle.reset(System.nanoTime(), 0, 10 * READ_SIZE, 0);
+        Assert.assertEquals(HEADER + "progress count incorrect", READ_COUNT / 10, countProgress(throttle, -1));
+    }
+
+    @Test
+    public void percentStepTest() {
+        final ProgressThrottle throttle = new ProgressThrottle();
+        throttle.reset(System.nanoTime(), 0, 0, 5);
+        Assert.assertEquals(HEADER + "progress count incorrect", 20,
+                countProgress(throttle, READ_SIZE * READ_COUNT));
+
+        //percent step is ignored when size is unknown
+        throttle.reset(System.nanoTime(), 0, 0, 5);
+        Assert.assertEquals(HEADER + "all progress should be dispatched", READ_COUNT, countProgress(throttle, -1));
+    }
+
+    @Test
+    public void intervalTest() throws InterruptedException {
+        final ProgressThrottle throttle = new ProgressThrottle();
+        throttle.reset(System.nanoTime(), 10000, 0, 0);
+
+        Assert.assertFalse(HEADER + "progress should be coalesced", throttle.shallDispatch(READ_SIZE, -1));
+        Assert.assertTrue(HEADER + "last progress should be dispatched",
+                throttle.shallDispatch(READ_SIZE * READ_COUNT, READ_SIZE * READ_COUNT));
+
+        throttle.reset(System.nanoTime(), 20, 0, 0);
+        Thread.sleep(40);
+        Assert.assertTrue(HEADER + "progress should be dispatched after interval",
+                throttle.shallDispatch(READ_SIZE, -1));
+        Assert.assertFalse(HEADER + "progress should be coalesced", throttle.shallDispatch(2 * READ_SIZE, -1));
+    }
+
+    @Test
+    public void combinedTest() {
+        final ProgressThrottle throttle = new ProgressThrottle();
+        //both thresholds must be reached : octet step is the largest here
+        throttle.reset(System.nanoTime(), 0, 100 * READ_SIZE, 1);
+        Assert.assertEquals(HEADER + "progress count incorrect", READ_COUNT / 100,
+                countProgress(throttle, READ_SIZE * READ_COUNT));
+    }
+}
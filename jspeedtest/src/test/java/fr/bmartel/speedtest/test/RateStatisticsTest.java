@@ -0,0 +1,98 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest.test;
+
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import fr.bmartel.speedtest.utils.RateStatistics;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Streaming rate statistics compared with statistics computed over all rates.
+ *
+ * @author Bertrand Martel
+ */
+public class RateStatisticsTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(RateStatisticsTest.class);
+
+    /**
+     * relative tolerance.
+     */
+    private static final double TOLERANCE = 1e-9;
+
+    /**
+     * number of rates.
+     */
+    private static final int RATE_COUNT = 1000;
+
+    @Test
+    public void emptyTest() {
+        Assert.assertEquals(HEADER + "count should be 0", 0, RateStatistics.EMPTY.getCount());
+        Assert.assertEquals(HEADER + "mean should be 0", 0, RateStatistics.EMPTY.getMean(), 0);
+        Assert.assertEquals(HEADER + "variance should be 0", 0, RateStatistics.EMPTY.getVariance(), 0);
+        Assert.assertEquals(HEADER + "min should be 0", 0, RateStatistics.EMPTY.getMin(), 0);
+        Assert.assertEquals(HEADER + "max should be 0", 0, RateStatistics.EMPTY.getMax(), 0);
+    }
+
+    @Test
+    public void statisticsTest() {
+
+        final double[] rates = new double[RATE_COUNT];
+        RateStatistics statistics = RateStatistics.EMPTY;
+
+        for (int i = 0; i < RATE_COUNT; i++) {
+            //large offset with small spread to check numerical stability
+            rates[i] = 1e9 + (i * 7919 % 1000);
+            statistics = statistics.add(rates[i], 1000, 10);
+        }
+
+        double sum = 0;
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        for (int i = 0; i < RATE_COUNT; i++) {
+            sum += rates[i];
+            min = Math.min(min, rates[i]);
+            max = Math.max(max, rates[i]);
+        }
+        final double mean = sum / RATE_COUNT;
+        double squares = 0;
+        for (int i = 0; i < RATE_COUNT; i++) {
+            squares += (rates[i] - mean) * (rates[i] - mean);
+        }
+        final double variance = squares / (RATE_COUNT - 1);
+
+        Assert.assertEquals(HEADER + "count incorrect", RATE_COUNT, statistics.getCount());
+        Assert.assertEquals(HEADER + "sum incorrect", sum, statistics.getSum(), sum * TOLERANCE);
+        Assert.assertEquals(HEADER + "mean incorrect", mean, statistics.getMean(), mean * TOLERANCE);
+        Assert.assertEquals(HEADER + "variance incorrect", variance, statistics.getVariance(), variance * 1e-6);
+        Assert.assertEquals(HEADER + "min incorrect", min, statistics.getMin(), 0);
+        Assert.assertEquals(HEADER + "max incorrect", max, statistics.getMax(), 0);
+        Assert.assertEquals(HEADER + "octet count incorrect", 1000L * RATE_COUNT, statistics.getOctetCount());
+        Assert.assertEquals(HEADER + "active time incorrect", 10L * RATE_COUNT, statistics.getActiveTime());
+    }
+}
@@ -26,11 +26,12 @@ package fr.bmartel.speedtest.test;
 
 import fr.bmartel.speedtest.RepeatWrapper;
 import fr.bmartel.speedtest.SpeedTestSocket;
+import fr.bmartel.speedtest.utils.RateStatistics;
 import org.junit.Assert;
 
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Repeat vars wrapper to retrieve those private fields and test directly in SpeedTestSocketTest class.
@@ -87,9 +88,9 @@ public class RepeatVars {
     private final Field mFirstUploadRepeat;
 
     /**
-     * transfer rate list.
+     * transfer rate statistics.
      */
-    private final Field mRepeatTransferRateList;
+    private final Field mRateStatistics;
 
     /**
      * define if download repeat task is finished.
@@ -151,9 +152,9 @@ public class RepeatVars {
         Assert.assertNotNull("mFirstUploadRepeat is null", mFirstUploadRepeat);
         mFirstUploadRepeat.setAccessible(true);
 
-        mRepeatTransferRateList = mRepeatWrapper.getClass().getDeclaredField("mRepeatTransferRateList");
-        Assert.assertNotNull("mRepeatTransferRateList is null", mRepeatTransferRateList);
-        mRepeatTransferRateList.setAccessible(true);
+        mRateStatistics = mRepeatWrapper.getClass().getDeclaredField("mRateStatistics");
+        Assert.assertNotNull("mRateStatistics is null", mRateStatistics);
+        mRateStatistics.setAccessible(true);
 
         mRepeatFinished = mRepeatWrapper.getClass().getDeclaredField("mRepeatFinished");
         Assert.assertNotNull("mRepeatFinished is null", mRepeatFinished);
@@ -339,24 +340,14 @@ public class RepeatVars {
     }
 
     /**
-     * Get current value of field mRepeatTransferRateList.
+     * Get current value of field mRateStatistics.
      *
      * @return
      * @throws IllegalAccessException
      */
     @SuppressWarnings("unchecked")
-    public List<BigDecimal> getRepeatTransferRateList() throws IllegalAccessException {
-        return (List<BigDecimal>) mRepeatTransferRateList.get(mRepeatWrapper);
-    }
-
-    /**
-     * Set current value of field mRepeatTransferRateList.
-     *
-     * @param repeatTransferRateList
-     * @throws IllegalAccessException
-     */
-    public void setRepeatTransferRateList(final List<BigDecimal> repeatTransferRateList) throws IllegalAccessException {
-        this.mRepeatTransferRateList.set(mRepeatWrapper, repeatTransferRateList);
+    public RateStatistics getRateStatistics() throws IllegalAccessException {
+        return ((AtomicReference<RateStatistics>) mRateStatistics.get(mRepeatWrapper)).get();
     }
 
     /**
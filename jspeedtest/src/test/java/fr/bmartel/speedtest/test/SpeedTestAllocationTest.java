@@ -0,0 +1,212 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.test;
+
+import fr.bmartel.speedtest.SpeedTestReport;
+import fr.bmartel.speedtest.SpeedTestSocket;
+import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.model.SpeedTestError;
+import fr.bmartel.speedtest.test.utils.TestCommon;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import net.jodah.concurrentunit.Waiter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Allocation benchmark of download progress path : measure the number of octet allocated by the reading thread
+ * between two progress events when no report interval is set.
+ *
+ * @author Bertrand Martel
+ */
+public class SpeedTestAllocationTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(SpeedTestAllocationTest.class);
+
+    /**
+     * size of file to download.
+     */
+    private static final int FILE_SIZE = 200000000;
+
+    /**
+     * size of each packet written by the server.
+     */
+    private static final int SERVER_CHUNK_SIZE = 16384;
+
+    /**
+     * number of progress events ignored at start (JIT warm-up).
+     */
+    private static final int WARMUP_EVENT = 100;
+
+    /**
+     * maximum average number of octet allocated per progress event when progress report is reused.
+     */
+    private static final int MAX_ALLOCATION_PER_EVENT = 16;
+
+    /**
+     * thread bean used to measure allocated octet per thread.
+     */
+    private final com.sun.management.ThreadMXBean mThreadBean = (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+
+    /**
+     * number of progress events measured.
+     */
+    private long mEventCount;
+
+    /**
+     * number of octet allocated between progress events measured.
+     */
+    private long mAllocatedSize;
+
+    /**
+     * octet allocated by reading thread at last progress event.
+     */
+    private long mLastAllocatedSize;
+
+    /**
+     * number of progress events received.
+     */
+    private int mProgressCount;
+
+    @Test
+    public void reusedReportAllocationTest() throws IOException, TimeoutException, InterruptedException {
+
+        Assert.assertTrue(HEADER + "thread allocation measurement not supported",
+                mThreadBean.isThreadAllocatedMemorySupported());
+
+        final long reused = measureAllocation(true);
+        final long notReused = measureAllocation(false);
+
+        Assert.assertTrue(HEADER + "progress path should not allocate : " + reused + " octet per event",
+                reused <= MAX_ALLOCATION_PER_EVENT);
+        Assert.assertTrue(HEADER + "reused report should allocate less : " + reused + " octet per event (reused) / " +
+                notReused + " octet per event (not reused)", reused < notReused);
+    }
+
+    /**
+     * Download a file from a local server and measure average allocated octet between 2 progress events.
+     *
+     * @param reuseReport define if progress report is reused
+     * @return average number of octet allocated per progress event
+     */
+    private long measureAllocation(final boolean reuseReport) throws IOException, TimeoutException,
+            InterruptedException {
+
+        final ServerSocket serverSocket = new ServerSocket(0);
+        startServer(serverSocket);
+
+        mEventCount = 0;
+        mAllocatedSize = 0;
+        mProgressCount = 0;
+
+        final Waiter waiter = new Waiter();
+        final SpeedTestSocket socket = new SpeedTestSocket();
+        socket.setReuseProgressReport(reuseReport);
+
+        socket.addSpeedTestListener(new ISpeedTestListener() {
+            @Override
+            public void onCompletion(final SpeedTestReport report) {
+                waiter.resume();
+            }
+
+            @Override
+            public void onProgress(final float percent, final SpeedTestReport report) {
+                final long allocated = mThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+                if (mProgressCount++ > WARMUP_EVENT) {
+                    mAllocatedSize += allocated - mLastAllocatedSize;
+                    mEventCount++;
+                }
+                mLastAllocatedSize = mThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+
+            @Override
+            public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+                waiter.fail(errorMessage);
+            }
+        });
+
+        socket.startDownload("http://127.0.0.1:" + serverSocket.getLocalPort() + "/file");
+
+        waiter.await(TestCommon.WAITING_TIMEOUT_VERY_LONG_OPERATION, TimeUnit.SECONDS);
+
+        socket.forceStopTask();
+        serverSocket.close();
+
+        Assert.assertTrue(HEADER + "not enough progress events", mEventCount > 0);
+
+        return mAllocatedSize / mEventCount;
+    }
+
+    /**
+     * Start a server sending a file of FILE_SIZE octet to the first client.
+     *
+     * @param serverSocket server socket
+     */
+    private void startServer(final ServerSocket serverSocket) {
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket client = serverSocket.accept()) {
+
+                    final InputStream inputStream = client.getInputStream();
+
+                    int state = 0;
+                    while (state < 4) {
+                        final int data = inputStream.read();
+                        if (data == -1) {
+                            return;
+                        }
+                        state = (data == '\r' || data == '\n') ? state + 1 : 0;
+                    }
+                    final OutputStream outputStream = client.getOutputStream();
+                    outputStream.write(("HTTP/1.1 200 OK\r\nContent-Length: " + FILE_SIZE + "\r\n\r\n").getBytes());
+                    outputStream.flush();
+
+                    final byte[] chunk = new byte[SERVER_CHUNK_SIZE];
+
+                    for (int i = 0; i < FILE_SIZE; i += chunk.length) {
+                        outputStream.write(chunk, 0, Math.min(chunk.length, FILE_SIZE - i));
+                    }
+                    outputStream.flush();
+                } catch (IOException e) {
+                    //e.printStackTrace();
+                }
+            }
+        }).start();
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.test;
+
+import fr.bmartel.speedtest.SpeedTestReport;
+import fr.bmartel.speedtest.SpeedTestSocket;
+import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.model.HttpVersion;
+import fr.bmartel.speedtest.model.SpeedTestError;
+import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.test.server.Http2Server;
+import fr.bmartel.speedtest.test.utils.TestCommon;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import net.jodah.concurrentunit.Waiter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * HTTP/2 speed test against a local h2c server : all streams must be multiplexed over a single connection.
+ *
+ * @author Bertrand Martel
+ */
+public class SpeedTestHttp2Test {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(SpeedTestHttp2Test.class);
+
+    /**
+     * number of streams used.
+     */
+    private static final int STREAM_COUNT = 4;
+
+    /**
+     * size of body downloaded on each stream (larger than default window to exercise flow control).
+     */
+    private static final int DOWNLOAD_SIZE = 3000000;
+
+    /**
+     * total size of file to upload.
+     */
+    private static final int UPLOAD_SIZE = 10000001;
+
+    /**
+     * receive window of each stream used in test.
+     */
+    private static final int WINDOW_SIZE = 262144;
+
+    /**
+     * completion report.
+     */
+    private SpeedTestReport mReport;
+
+    /**
+     * error received.
+     */
+    private SpeedTestError mError;
+
+    @Test
+    public void downloadTest() throws IOException, TimeoutException, InterruptedException {
+
+        final Http2Server server = new Http2Server(DOWNLOAD_SIZE);
+
+        final SpeedTestReport report = runSpeedTest(server, SpeedTestMode.DOWNLOAD);
+
+        Assert.assertEquals(HEADER + "connection count incorrect", 1, server.getConnectionCount());
+        Assert.assertEquals(HEADER + "stream count incorrect", STREAM_COUNT, server.getStreamCount());
+        Assert.assertEquals(HEADER + "stream report count incorrect", STREAM_COUNT, report.getStreamReports().size());
+        Assert.assertEquals(HEADER + "downloaded size incorrect", (long) DOWNLOAD_SIZE * STREAM_COUNT,
+                report.getTemporaryPacketSize());
+        Assert.assertEquals(HEADER + "total size incorrect", (long) DOWNLOAD_SIZE * STREAM_COUNT,
+                report.getTotalPacketSize());
+        Assert.assertEquals(HEADER + "progress incorrect", 100f, report.getProgressPercent(), 0f);
+
+        for (int i = 0; i < STREAM_COUNT; i++) {
+            Assert.assertEquals(HEADER + "stream downloaded size incorrect", DOWNLOAD_SIZE,
+                    report.getStreamReports().get(i).getTemporaryPacketSize());
+        }
+        server.close();
+    }
+
+    @Test
+    public void uploadTest() throws IOException, TimeoutException, InterruptedException {
+
+        final Http2Server server = new Http2Server(0);
+
+        final SpeedTestReport report = runSpeedTest(server, SpeedTestMode.UPLOAD);
+
+        Assert.assertEquals(HEADER + "connection count incorrect", 1, server.getConnectionCount());
+        Assert.assertEquals(HEADER + "stream count incorrect", STREAM_COUNT, server.getStreamCount());
+        Assert.assertEquals(HEADER + "received size incorrect", UPLOAD_SIZE, server.getUploadSize());
+        Assert.assertEquals(HEADER + "uploaded size incorrect", UPLOAD_SIZE, report.getTemporaryPacketSize());
+        Assert.assertEquals(HEADER + "total size incorrect", UPLOAD_SIZE, report.getTotalPacketSize());
+        Assert.assertTrue(HEADER + "transfer rate should be > 0", report.getTransferRateBit().signum() > 0);
+
+        server.close();
+    }
+
+    @Test
+    public void invalidMaxFrameSizeTest() throws IOException, TimeoutException, InterruptedException {
+
+        final Http2Server server = new Http2Server(0);
+        //SETTINGS_MAX_FRAME_SIZE = 0 (below 16384 minimum)
+        server.setSettings(new byte[]{0, 0x5, 0, 0, 0, 0});
+
+        final Waiter waiter = new Waiter();
+        final SpeedTestSocket socket = new SpeedTestSocket();
+        socket.setHttpVersion(HttpVersion.HTTP_2);
+        socket.setHttp2StreamCount(STREAM_COUNT);
+
+        mError = null;
+
+        socket.addSpeedTestListener(new ISpeedTestListener() {
+            @Override
+            public void onCompletion(final SpeedTestReport report) {
+                waiter.fail("invalid max frame size should fail connection");
+            }
+
+            @Override
+            public void onProgress(final float percent, final SpeedTestReport report) {
+                //nothing to do here
+            }
+
+            @Override
+            public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+                mError = speedTestError;
+                waiter.resume();
+            }
+        });
+
+        socket.startUpload("http://127.0.0.1:" + server.getPort() + "/file", UPLOAD_SIZE);
+
+        waiter.await(TestCommon.WAITING_TIMEOUT_DEFAULT_SEC, TimeUnit.SECONDS);
+
+        Assert.assertNotNull(HEADER + "error expected", mError);
+        socket.forceStopTask();
+        server.close();
+    }
+
+    /**
+     * Run a HTTP/2 speed test against local server and wait for completion.
+     *
+     * @param server local server
+     * @param mode   speed test mode
+     * @return completion report
+     */
+    private SpeedTestReport runSpeedTest(final Http2Server server, final SpeedTestMode mode)
+            throws TimeoutException, InterruptedException {
+
+        final Waiter waiter = new Waiter();
+        final SpeedTestSocket socket = new SpeedTestSocket();
+        socket.setHttpVersion(HttpVersion.HTTP_2);
+        socket.setHttp2StreamCount(STREAM_COUNT);
+        socket.setHttp2WindowSize(WINDOW_SIZE);
+
+        mReport = null;
+
+        socket.addSpeedTestListener(new ISpeedTestListener() {
+            @Override
+            public void onCompletion(final SpeedTestReport report) {
+                mReport = report;
+                waiter.resume();
+            }
+
+            @Override
+            public void onProgress(final float percent, final SpeedTestReport report) {
+                //nothing to do here
+            }
+
+            @Override
+            public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+                waiter.fail(speedTestError + " : " + errorMessage);
+            }
+        });
+
+        final String uri = "http://127.0.0.1:" + server.getPort() + "/file";
+
+        if (mode == SpeedTestMode.DOWNLOAD) {
+            socket.startDownload(uri);
+        } else {
+            socket.startUpload(uri, UPLOAD_SIZE);
+        }
+        waiter.await(TestCommon.WAITING_TIMEOUT_LONG_OPERATION, TimeUnit.SECONDS);
+
+        Assert.assertEquals(HEADER + "speed test mode incorrect", mode, mReport.getSpeedTestMode());
+        socket.forceStopTask();
+        return mReport;
+    }
+}
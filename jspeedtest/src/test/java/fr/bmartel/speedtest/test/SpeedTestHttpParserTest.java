@@ -0,0 +1,152 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest.test;
+
+import fr.bmartel.speedtest.http.ChunkedDecoder;
+import fr.bmartel.speedtest.http.HttpResponseParser;
+import fr.bmartel.speedtest.http.HttpStates;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Http response parser test.
+ *
+ * @author Bertrand Martel
+ */
+public class SpeedTestHttpParserTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(SpeedTestHttpParserTest.class);
+
+    /**
+     * http response used in test.
+     */
+    private static final String RESPONSE = "HTTP/1.1 200 OK\r\nContent-Length: 5\r\nConnection: keep-alive\r\n\r\n" +
+            "hello";
+
+    /**
+     * chunked body used in test (with chunk extension and trailer) followed by next response.
+     */
+    private static final String CHUNKED_BODY = "5;name=value\r\nhello\r\n1A\r\nabcdefghijklmnopqrstuvwxyz\r\n" +
+            "0\r\nExpires: 0\r\n\r\nHTTP/1.1";
+
+    /**
+     * test incremental parsing of a response received octet by octet (non-blocking IO).
+     */
+    @Test
+    public void incrementalParseTest() {
+
+        final HttpResponseParser parser = new HttpResponseParser();
+        final byte[] data = RESPONSE.getBytes();
+
+        HttpStates state = HttpStates.HTTP_FRAME_INCOMPLETE;
+        int offset = 0;
+
+        while (state == HttpStates.HTTP_FRAME_INCOMPLETE && offset < data.length) {
+            state = parser.parse(ByteBuffer.wrap(data, offset, 1));
+            offset++;
+        }
+        Assert.assertEquals(HEADER + "header not parsed", HttpStates.HTTP_FRAME_OK, state);
+        Assert.assertEquals(HEADER + "body start incorrect", RESPONSE.indexOf("hello"), offset);
+        Assert.assertEquals(HEADER + "status code incorrect", 200, parser.getFrame().getStatusCode());
+        Assert.assertEquals(HEADER + "content length incorrect", 5, parser.getFrame().getContentLength());
+        Assert.assertEquals(HEADER + "header incorrect", "keep-alive", parser.getFrame().getHeaders().get
+                ("connection"));
+    }
+
+    /**
+     * test that body octets read with response header are given back to reader (pipelined responses).
+     *
+     * @throws IOException stream io exception
+     */
+    @Test
+    public void pipelinedParseTest() throws IOException {
+
+        final HttpResponseParser parser = new HttpResponseParser();
+        final InputStream inputStream = new ByteArrayInputStream((RESPONSE + RESPONSE).getBytes());
+        final byte[] body = new byte[5];
+
+        for (int i = 0; i < 2; i++) {
+            parser.next();
+            Assert.assertEquals(HEADER + "header not parsed", HttpStates.HTTP_FRAME_OK, parser.parse(inputStream));
+
+            int read = 0;
+            while (read < body.length) {
+                read += parser.readBody(inputStream, body, read, body.length - read);
+            }
+            Assert.assertEquals(HEADER + "body incorrect", "hello", new String(body));
+        }
+        Assert.assertEquals(HEADER + "octets remaining", 0, parser.getBufferedLength());
+        Assert.assertEquals(HEADER + "stream not empty", -1, parser.readBody(inputStream, body, 0, body.length));
+    }
+
+    /**
+     * test invalid response.
+     */
+    @Test
+    public void invalidResponseTest() {
+        final HttpResponseParser parser = new HttpResponseParser();
+        Assert.assertEquals(HEADER + "invalid status line accepted", HttpStates.HTTP_FRAME_ERROR,
+                parser.parse(ByteBuffer.wrap("\r\n\r\n".getBytes())));
+    }
+
+    /**
+     * test chunked body decoding : only payload is counted and decoding stops after last chunk.
+     */
+    @Test
+    public void chunkedDecodeTest() {
+
+        final byte[] data = CHUNKED_BODY.getBytes();
+
+        for (int step = 1; step <= data.length; step++) {
+
+            final ChunkedDecoder decoder = new ChunkedDecoder();
+            final ByteBuffer buffer = ByteBuffer.wrap(data);
+            int payload = 0;
+
+            while (!decoder.isComplete() && buffer.hasRemaining()) {
+                final int end = Math.min(data.length, buffer.position() + step);
+                final ByteBuffer segment = ByteBuffer.wrap(data, buffer.position(), end - buffer.position());
+                final int count = decoder.decode(segment);
+                Assert.assertNotEquals(HEADER + "invalid chunk", -1, count);
+                payload += count;
+                buffer.position(segment.position());
+            }
+            Assert.assertTrue(HEADER + "last chunk not detected", decoder.isComplete());
+            Assert.assertEquals(HEADER + "payload size incorrect", 31, payload);
+            Assert.assertEquals(HEADER + "next response consumed", "HTTP/1.1", new String(data, buffer.position(),
+                    buffer.remaining()));
+        }
+        Assert.assertEquals(HEADER + "invalid chunk size accepted", -1, new ChunkedDecoder().decode(ByteBuffer.wrap
+                ("zz\r\n".getBytes())));
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.test;
+
+import fr.bmartel.speedtest.LatencyReport;
+import fr.bmartel.speedtest.SpeedTestSocket;
+import fr.bmartel.speedtest.inter.ILatencyListener;
+import fr.bmartel.speedtest.model.LatencyMethod;
+import fr.bmartel.speedtest.model.SpeedTestError;
+import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.test.server.LatencyServer;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import net.jodah.concurrentunit.Waiter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Latency test against a local server with TCP connect and HTTP probes.
+ *
+ * @author Bertrand Martel
+ */
+public class SpeedTestLatencyTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(SpeedTestLatencyTest.class);
+
+    /**
+     * number of probes sent.
+     */
+    private static final int PROBE_COUNT = 50;
+
+    /**
+     * completion report.
+     */
+    private LatencyReport mReport;
+
+    /**
+     * number of probe callbacks.
+     */
+    private int mProbeCallbackCount;
+
+    /**
+     * error received.
+     */
+    private SpeedTestError mError;
+
+    @Test
+    public void tcpConnectTest() throws IOException, TimeoutException, InterruptedException {
+
+        final LatencyServer server = new LatencyServer();
+
+        final LatencyReport report = runLatency("http://127.0.0.1:" + server.getPort() + "/",
+                LatencyMethod.TCP_CONNECT);
+
+        Assert.assertEquals(HEADER + "method incorrect", LatencyMethod.TCP_CONNECT, report.getMethod());
+        checkReport(report);
+        server.close();
+    }
+
+    @Test
+    public void httpTest() throws IOException, TimeoutException, InterruptedException {
+
+        final LatencyServer server = new LatencyServer();
+
+        final LatencyReport report = runLatency("http://127.0.0.1:" + server.getPort() + "/",
+                LatencyMethod.HTTP);
+
+        Assert.assertEquals(HEADER + "method incorrect", LatencyMethod.HTTP, report.getMethod());
+        Assert.assertEquals(HEADER + "connection should be reused", 1, server.getConnectionCount());
+        Assert.assertEquals(HEADER + "request count incorrect", PROBE_COUNT, server.getRequestCount());
+        checkReport(report);
+        server.close();
+    }
+
+    @Test
+    public void httpHeaderTest() throws IOException, TimeoutException, InterruptedException {
+
+        final LatencyServer server = new LatencyServer("HTTP/1.1 200 OK\r\nSet-Cookie: state=closed\r\n" +
+                "X-Connection: close\r\nContent-Length: 0\r\n\r\n");
+
+        final LatencyReport report = runLatency("http://127.0.0.1:" + server.getPort() + "/",
+                LatencyMethod.HTTP);
+
+        Assert.assertEquals(HEADER + "connection should be reused", 1, server.getConnectionCount());
+        checkReport(report);
+        server.close();
+    }
+
+    @Test
+    public void httpCloseTest() throws IOException, TimeoutException, InterruptedException {
+
+        final LatencyServer server = new LatencyServer("HTTP/1.1 200 OK\r\nConnection: Keep-Alive, Close\r\n" +
+                "Content-Length: 0\r\n\r\n");
+
+        final LatencyReport report = runLatency("http://127.0.0.1:" + server.getPort() + "/",
+                LatencyMethod.HTTP);
+
+        Assert.assertEquals(HEADER + "connection should not be reused", PROBE_COUNT, server.getConnectionCount());
+        checkReport(report);
+        server.close();
+    }
+
+    @Test
+    public void connectionErrorTest() throws IOException, TimeoutException, InterruptedException {
+
+        final ServerSocket serverSocket = new ServerSocket(0);
+        final int port = serverSocket.getLocalPort();
+        serverSocket.close();
+
+        runLatency("http://127.0.0.1:" + port + "/", LatencyMethod.TCP_CONNECT);
+
+        Assert.assertEquals(HEADER + "error expected", SpeedTestError.CONNECTION_ERROR, mError);
+        Assert.assertEquals(HEADER + "probe callback count incorrect", PROBE_COUNT, mProbeCallbackCount);
+    }
+
+    /**
+     * Check statistics of a latency report with all probes successful.
+     *
+     * @param report latency report
+     */
+    private void checkReport(final LatencyReport report) {
+        Assert.assertNotNull(HEADER + "report should not be null", report);
+        Assert.assertEquals(HEADER + "probe count incorrect", PROBE_COUNT, report.getProbeCount());
+        Assert.assertEquals(HEADER + "sample count incorrect", PROBE_COUNT, report.getSampleCount());
+        Assert.assertEquals(HEADER + "lost count incorrect", 0, report.getLostCount());
+        Assert.assertEquals(HEADER + "probe callback count incorrect", PROBE_COUNT, mProbeCallbackCount);
+        Assert.assertTrue(HEADER + "min should be > 0", report.getMin() > 0);
+        Assert.assertTrue(HEADER + "min > median", report.getMin() <= report.getMedian());
+        Assert.assertTrue(HEADER + "median > p95", report.getMedian() <= report.getPercentile95());
+        Assert.assertTrue(HEADER + "p95 > max", report.getPercentile95() <= report.getMax());
+        Assert.assertTrue(HEADER + "average out of range",
+                report.getAverage() >= report.getMin() && report.getAverage() <= report.getMax());
+        Assert.assertTrue(HEADER + "jitter should be >= 0", report.getJitter() >= 0);
+    }
+
+    /**
+     * Run a latency test and wait for completion or error.
+     *
+     * @param uri    uri of host to probe
+     * @param method probe method
+     * @return completion report (null on error)
+     */
+    private LatencyReport runLatency(final String uri, final LatencyMethod method)
+            throws TimeoutException, InterruptedException {
+
+        final Waiter waiter = new Waiter();
+        final SpeedTestSocket socket = new SpeedTestSocket();
+
+        mReport = null;
+        mError = null;
+        mProbeCallbackCount = 0;
+
+        socket.startLatency(uri, PROBE_COUNT, method, new ILatencyListener() {
+            @Override
+            public void onCompletion(final LatencyReport report) {
+                mReport = report;
+                waiter.resume();
+            }
+
+            @Override
+            public void onProbe(final int probeIndex, final long latency) {
+                waiter.assertEquals(mProbeCallbackCount, probeIndex);
+                mProbeCallbackCount++;
+            }
+
+            @Override
+            public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+                mError = speedTestError;
+                waiter.resume();
+            }
+        });
+        Assert.assertEquals(HEADER + "mode incorrect", SpeedTestMode.LATENCY, socket.getSpeedTestMode());
+
+        waiter.await(10, TimeUnit.SECONDS);
+        socket.shutdownAndWait();
+        return mReport;
+    }
+}
@@ -228,7 +228,7 @@ public class SpeedTestRepeatTest extends AbstractTest {
             mWaiter.assertEquals(repeatVars.isRepeatDownload(), false);
             mWaiter.assertEquals(repeatVars.isRepeatFinished(), false);
             mWaiter.assertTrue(repeatVars.getStartDateRepeat() > 0);
-            //mWaiter.assertEquals(repeatVars.getRepeatTransferRateList().size(), report.getRequestNum());
+            //mWaiter.assertEquals(repeatVars.getRateStatistics().getCount(), report.getRequestNum());
         } catch (IllegalAccessException e) {
             mWaiter.fail(e.getMessage());
         }
@@ -246,7 +246,7 @@ public class SpeedTestRepeatTest extends AbstractTest {
             mWaiter.assertEquals(repeatVars.isRepeatFinished(), false);
             //mWaiter.assertTrue(repeatVars.getStartDateRepeat() > 0);
             //depending being called before or after onProgress of each listener it can be requestNum or requestNum+1
-            //mWaiter.assertEquals(repeatVars.getRepeatTransferRateList().size(), report.getRequestNum());
+            //mWaiter.assertEquals(repeatVars.getRateStatistics().getCount(), report.getRequestNum());
         } catch (IllegalAccessException e) {
             mWaiter.fail(e.getMessage());
         }
@@ -264,8 +264,8 @@ public class SpeedTestRepeatTest extends AbstractTest {
             Assert.assertEquals(repeatVars.getRepeatWindows(), 0);
             Assert.assertEquals(repeatVars.getRepeatPacketSize().longValue(), 0);
             Assert.assertEquals(repeatVars.getRepeatTempPckSize(), 0);
-            Assert.assertNotNull(repeatVars.getRepeatTransferRateList());
-            Assert.assertEquals(repeatVars.getRepeatTransferRateList().size(), 0);
+            Assert.assertNotNull(repeatVars.getRateStatistics());
+            Assert.assertEquals(repeatVars.getRateStatistics().getCount(), 0);
             Assert.assertEquals(repeatVars.isRepeatFinished(), false);
         } catch (IllegalAccessException e) {
             Assert.fail(e.getMessage());
@@ -301,8 +301,8 @@ public class SpeedTestRepeatTest extends AbstractTest {
             waiter.assertEquals(repeatVars.getRepeatWindows(), repeatWindow);
             waiter.assertTrue(repeatVars.getRepeatPacketSize().longValue() != 0);
             waiter.assertTrue(repeatVars.getRepeatTempPckSize() != 0);
-            waiter.assertNotNull(repeatVars.getRepeatTransferRateList());
-            waiter.assertEquals(repeatVars.getRepeatTransferRateList().size(), requestNum);
+            waiter.assertNotNull(repeatVars.getRateStatistics());
+            waiter.assertEquals(repeatVars.getRateStatistics().getCount(), (long) requestNum);
             waiter.assertEquals(repeatVars.isRepeatFinished(), true);
         } catch (IllegalAccessException e) {
             Assert.fail(e.getMessage());
@@ -0,0 +1,225 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.test;
+
+import fr.bmartel.speedtest.LatencyReport;
+import fr.bmartel.speedtest.ServerCandidate;
+import fr.bmartel.speedtest.ServerSelector;
+import fr.bmartel.speedtest.inter.IServerSelectorListener;
+import fr.bmartel.speedtest.model.LatencyMethod;
+import fr.bmartel.speedtest.model.SpeedTestError;
+import fr.bmartel.speedtest.test.server.LatencyServer;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import net.jodah.concurrentunit.Waiter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Server selection against local servers.
+ *
+ * @author Bertrand Martel
+ */
+public class SpeedTestServerSelectorTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(SpeedTestServerSelectorTest.class);
+
+    /**
+     * number of reachable candidate servers.
+     */
+    private static final int SERVER_COUNT = 3;
+
+    /**
+     * server selection result.
+     */
+    private List<ServerCandidate> mCandidates;
+
+    @Test
+    public void rankingTest() throws IOException, TimeoutException, InterruptedException {
+
+        final ServerSocket closedSocket = new ServerSocket(0);
+        final String closedUri = "http://127.0.0.1:" + closedSocket.getLocalPort() + "/";
+        closedSocket.close();
+
+        final List<LatencyServer> servers = new ArrayList<>();
+        final List<String> uris = new ArrayList<>();
+        uris.add(closedUri);
+
+        for (int i = 0; i < SERVER_COUNT; i++) {
+            final LatencyServer server = new LatencyServer();
+            servers.add(server);
+            uris.add("http://127.0.0.1:" + server.getPort() + "/");
+        }
+
+        final ServerSelector selector = new ServerSelector();
+        selector.setParallelism(2);
+        selector.setLatencyMethod(LatencyMethod.HTTP);
+
+        final List<ServerCandidate> candidates = select(selector, uris);
+
+        Assert.assertEquals(HEADER + "candidate count incorrect", SERVER_COUNT + 1, candidates.size());
+        Assert.assertEquals(HEADER + "unreachable server should be last", closedUri,
+                candidates.get(SERVER_COUNT).getUri());
+        Assert.assertFalse(HEADER + "server should be unreachable", candidates.get(SERVER_COUNT).isReachable());
+        Assert.assertEquals(HEADER + "error incorrect", SpeedTestError.CONNECTION_ERROR,
+                candidates.get(SERVER_COUNT).getError());
+
+        for (int i = 0; i < SERVER_COUNT; i++) {
+            Assert.assertTrue(HEADER + "server should be reachable", candidates.get(i).isReachable());
+            Assert.assertEquals(HEADER + "sample count incorrect", selector.getProbeCount(),
+                    candidates.get(i).getLatencyReport().getSampleCount());
+            if (i > 0) {
+                Assert.assertTrue(HEADER + "candidates not ranked by latency",
+                        candidates.get(i - 1).getLatencyReport().getMedian() <=
+                                candidates.get(i).getLatencyReport().getMedian());
+            }
+        }
+
+        //second selection is served from cache
+        final List<ServerCandidate> cachedCandidates = select(selector, uris);
+
+        for (int i = 0; i < SERVER_COUNT + 1; i++) {
+            Assert.assertSame(HEADER + "result should be cached", candidates.get(i), cachedCandidates.get(i));
+        }
+        for (int i = 0; i < SERVER_COUNT; i++) {
+            Assert.assertEquals(HEADER + "server should not be probed again", selector.getProbeCount(),
+                    servers.get(i).getRequestCount());
+            servers.get(i).close();
+        }
+        selector.shutdownAndWait();
+    }
+
+    @Test
+    public void mixedTransferRateRankingTest() {
+
+        final ServerCandidate fast = buildCandidate("fast", new BigDecimal(20000000), 50);
+        final ServerCandidate slow = buildCandidate("slow", new BigDecimal(10000000), 30);
+        final ServerCandidate noRateFar = buildCandidate("noRateFar", null, 60);
+        final ServerCandidate noRateNear = buildCandidate("noRateNear", null, 40);
+        final ServerCandidate unreachable = new ServerCandidate("unreachable", null, null,
+                SpeedTestError.SOCKET_TIMEOUT, 0);
+
+        final List<ServerCandidate> expected = new ArrayList<>();
+        expected.add(fast);
+        expected.add(slow);
+        expected.add(noRateNear);
+        expected.add(noRateFar);
+        expected.add(unreachable);
+
+        //comparator must be consistent for every pair (transitive ranking)
+        for (int i = 0; i < expected.size(); i++) {
+            for (int j = 0; j < expected.size(); j++) {
+                Assert.assertEquals(HEADER + "ranking incorrect for " + expected.get(i).getUri() + " / " +
+                                expected.get(j).getUri(), Integer.signum(Integer.compare(i, j)),
+                        Integer.signum(ServerSelector.RANKING.compare(expected.get(i), expected.get(j))));
+            }
+        }
+
+        //ranking must not depend on input order
+        for (int i = 0; i < expected.size(); i++) {
+            final List<ServerCandidate> candidates = new ArrayList<>(expected);
+            Collections.rotate(candidates, i);
+            Collections.reverse(candidates);
+            Collections.sort(candidates, ServerSelector.RANKING);
+            Assert.assertEquals(HEADER + "sorted ranking incorrect", expected, candidates);
+        }
+    }
+
+    /**
+     * Build a reachable candidate server.
+     *
+     * @param uri             candidate uri
+     * @param transferRateBit transfer rate in bit/s (null if not measured)
+     * @param medianMillis    median latency in milliseconds
+     * @return candidate server
+     */
+    private ServerCandidate buildCandidate(final String uri, final BigDecimal transferRateBit,
+                                           final long medianMillis) {
+        final long median = TimeUnit.MILLISECONDS.toNanos(medianMillis);
+        return new ServerCandidate(uri, new LatencyReport(LatencyMethod.HTTP, 1, 1, median, median, median, median,
+                median, 0), transferRateBit, null, 0);
+    }
+
+    @Test
+    public void deadlineTest() throws IOException, TimeoutException, InterruptedException {
+
+        //server never answering HTTP requests
+        final ServerSocket silentSocket = new ServerSocket(0);
+        final String silentUri = "http://127.0.0.1:" + silentSocket.getLocalPort() + "/";
+
+        final ServerSelector selector = new ServerSelector();
+        selector.setLatencyMethod(LatencyMethod.HTTP);
+        selector.setTimeout(500);
+
+        final List<String> uris = new ArrayList<>();
+        uris.add(silentUri);
+
+        final long start = System.currentTimeMillis();
+        final List<ServerCandidate> candidates = select(selector, uris);
+
+        Assert.assertTrue(HEADER + "deadline not respected", (System.currentTimeMillis() - start) < 5000);
+        Assert.assertEquals(HEADER + "candidate count incorrect", 1, candidates.size());
+        Assert.assertFalse(HEADER + "server should be unreachable", candidates.get(0).isReachable());
+        Assert.assertEquals(HEADER + "error incorrect", SpeedTestError.SOCKET_TIMEOUT, candidates.get(0).getError());
+
+        silentSocket.close();
+        selector.shutdownAndWait();
+    }
+
+    /**
+     * Run a server selection and wait for completion.
+     *
+     * @param selector server selector
+     * @param uris     candidate server uris
+     * @return ranked candidates
+     */
+    private List<ServerCandidate> select(final ServerSelector selector, final List<String> uris)
+            throws TimeoutException, InterruptedException {
+
+        final Waiter waiter = new Waiter();
+        mCandidates = null;
+
+        selector.selectServers(uris, new IServerSelectorListener() {
+            @Override
+            public void onCompletion(final List<ServerCandidate> candidates) {
+                mCandidates = candidates;
+                waiter.resume();
+            }
+        });
+        waiter.await(15, TimeUnit.SECONDS);
+        return mCandidates;
+    }
+}
@@ -35,9 +35,11 @@ import net.jodah.concurrentunit.Waiter;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.net.ssl.SSLContext;
 import java.lang.reflect.Field;
 import java.math.RoundingMode;
 import java.net.Socket;
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -141,6 +143,56 @@ public class SpeedTestSocketTest extends AbstractTest {
                 8);
     }
 
+    /**
+     * test socket options default values and setters.
+     */
+    @Test
+    public void socketOptionsSetterTest() {
+        Assert.assertEquals(HEADER + "receive buffer size should be -1 by default", -1,
+                mSocket.getReceiveBufferSize());
+        Assert.assertEquals(HEADER + "send buffer size should be -1 by default", -1, mSocket.getSendBufferSize());
+        Assert.assertEquals(HEADER + "traffic class should be -1 by default", -1, mSocket.getTrafficClass());
+        Assert.assertFalse(HEADER + "TCP_NODELAY should be false by default", mSocket.isTcpNoDelay());
+        Assert.assertFalse(HEADER + "buffer autotune should be false by default", mSocket.isBufferAutotune());
+
+        mSocket.setReceiveBufferSize(4194304);
+        mSocket.setSendBufferSize(1048576);
+        mSocket.setTrafficClass(0x10);
+        mSocket.setTcpNoDelay(true);
+        mSocket.setBufferAutotune(true);
+
+        Assert.assertEquals(HEADER + "receive buffer size incorrect value after set", 4194304,
+                mSocket.getReceiveBufferSize());
+        Assert.assertEquals(HEADER + "send buffer size incorrect value after set", 1048576,
+                mSocket.getSendBufferSize());
+        Assert.assertEquals(HEADER + "traffic class incorrect value after set", 0x10, mSocket.getTrafficClass());
+        Assert.assertTrue(HEADER + "TCP_NODELAY incorrect value after set", mSocket.isTcpNoDelay());
+        Assert.assertTrue(HEADER + "buffer autotune incorrect value after set", mSocket.isBufferAutotune());
+
+        mSocket.setReceiveBufferSize(0);
+        mSocket.setTrafficClass(256);
+        Assert.assertEquals(HEADER + "invalid receive buffer size should be ignored", 4194304,
+                mSocket.getReceiveBufferSize());
+        Assert.assertEquals(HEADER + "invalid traffic class should be ignored", 0x10, mSocket.getTrafficClass());
+    }
+
+    /**
+     * test SSL context setter and shared SSL context.
+     */
+    @Test
+    public void sslContextSetterTest() throws GeneralSecurityException {
+        Assert.assertNull(HEADER + "SSL context should be null by default", mSocket.getSslContext());
+
+        final SSLContext sharedContext = fr.bmartel.speedtest.utils.SpeedTestUtils.getSharedSslContext();
+        Assert.assertSame(HEADER + "shared SSL context should be the same instance", sharedContext,
+                fr.bmartel.speedtest.utils.SpeedTestUtils.getSharedSslContext());
+
+        final SSLContext context = SSLContext.getInstance("TLS");
+        mSocket.setSslContext(context);
+        Assert.assertSame(HEADER + "SSL context incorrect value after set", context, mSocket.getSslContext());
+        mSocket.setSslContext(null);
+    }
+
     /**
      * test speed test mode value.
      */
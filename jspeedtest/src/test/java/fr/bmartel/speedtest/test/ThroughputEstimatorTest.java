@@ -0,0 +1,157 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.test;
+
+import fr.bmartel.speedtest.estimator.EwmaEstimator;
+import fr.bmartel.speedtest.estimator.SlidingWindowEstimator;
+import fr.bmartel.speedtest.inter.IThroughputEstimator;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Throughput estimators fed with synthetic samples.
+ *
+ * @author Bertrand Martel
+ */
+public class ThroughputEstimatorTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(ThroughputEstimatorTest.class);
+
+    /**
+     * nanoseconds in a millisecond.
+     */
+    private static final long MILLI = 1000000L;
+
+    /**
+     * interval between two samples in nanoseconds.
+     */
+    private static final long SAMPLE_INTERVAL = 10 * MILLI;
+
+    /**
+     * initial transfer rate in octet/s.
+     */
+    private static final double LOW_RATE = 100000;
+
+    /**
+     * transfer rate after step in octet/s.
+     */
+    private static final double HIGH_RATE = 1000000;
+
+    /**
+     * relative tolerance on estimated rate (a sample ending exactly on a bucket boundary is counted in the new bucket).
+     */
+    private static final double TOLERANCE = 0.02;
+
+    @Test
+    public void slidingWindowStepTest() {
+        checkStep(new SlidingWindowEstimator(1000, 10));
+    }
+
+    @Test
+    public void ewmaStepTest() {
+        checkStep(new EwmaEstimator(0.5, 100));
+    }
+
+    @Test
+    public void newInstanceTest() {
+        final IThroughputEstimator window = new SlidingWindowEstimator(1000, 10);
+        final IThroughputEstimator ewma = new EwmaEstimator(0.5, 100);
+        Assert.assertNotSame(HEADER + "new instance expected", window, window.newInstance());
+        Assert.assertNotSame(HEADER + "new instance expected", ewma, ewma.newInstance());
+        checkStep(window.newInstance());
+        checkStep(ewma.newInstance());
+    }
+
+    @Test
+    public void idleTest() {
+        final IThroughputEstimator[] estimators = new IThroughputEstimator[]{
+                new SlidingWindowEstimator(1000, 10), new EwmaEstimator(0.5, 100)};
+
+        for (int i = 0; i < estimators.length; i++) {
+            final IThroughputEstimator estimator = estimators[i];
+            final long end = feed(estimator, 0, 1000 * MILLI, HIGH_RATE);
+            Assert.assertTrue(HEADER + "rate should be > 0", estimator.getRate(end) > 0);
+            Assert.assertEquals(HEADER + "rate should drop to 0 when idle", 0,
+                    estimator.getRate(end + 3000 * MILLI), HIGH_RATE / 1000);
+        }
+    }
+
+    @Test
+    public void invalidParameterTest() {
+        try {
+            new EwmaEstimator(0, 100);
+            Assert.fail(HEADER + "alpha 0 should be rejected");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        try {
+            new SlidingWindowEstimator(1000, 0);
+            Assert.fail(HEADER + "bucket count 0 should be rejected");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    /**
+     * Feed estimator with a low rate then a high rate and check estimation follows the step.
+     *
+     * @param estimator throughput estimator
+     */
+    private void checkStep(final IThroughputEstimator estimator) {
+
+        estimator.reset(0);
+
+        long time = feed(estimator, 0, 2000 * MILLI, LOW_RATE);
+        Assert.assertEquals(HEADER + "low rate incorrect", LOW_RATE, estimator.getRate(time), LOW_RATE * TOLERANCE);
+
+        time = feed(estimator, time, 1500 * MILLI, HIGH_RATE);
+        Assert.assertEquals(HEADER + "high rate incorrect", HIGH_RATE, estimator.getRate(time),
+                HIGH_RATE * TOLERANCE);
+    }
+
+    /**
+     * Feed estimator with samples at a constant rate.
+     *
+     * @param estimator throughput estimator
+     * @param start     start time in nanoseconds
+     * @param duration  duration in nanoseconds
+     * @param rate      rate in octet/s
+     * @return end time in nanoseconds
+     */
+    private long feed(final IThroughputEstimator estimator, final long start, final long duration,
+                      final double rate) {
+        final long octetCount = (long) (rate * SAMPLE_INTERVAL / 1e9);
+        long time = start;
+        while (time < start + duration) {
+            time += SAMPLE_INTERVAL;
+            estimator.addSample(time, octetCount);
+        }
+        return time;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.test;
+
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import fr.bmartel.speedtest.utils.ThroughputHistogram;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Interval transfer rate histogram fed with synthetic samples.
+ *
+ * @author Bertrand Martel
+ */
+public class ThroughputHistogramTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(ThroughputHistogramTest.class);
+
+    /**
+     * nanoseconds in a millisecond.
+     */
+    private static final long MILLI = 1000000L;
+
+    /**
+     * interval duration in milliseconds.
+     */
+    private static final int INTERVAL = 50;
+
+    /**
+     * number of intervals fed.
+     */
+    private static final int INTERVAL_COUNT = 100;
+
+    /**
+     * rate step between two intervals in octet/s.
+     */
+    private static final long RATE_STEP = 1000000;
+
+    /**
+     * relative error of log buckets.
+     */
+    private static final double TOLERANCE = 0.07;
+
+    @Test
+    public void percentileTest() {
+
+        final ThroughputHistogram histogram = new ThroughputHistogram();
+        histogram.reset(0, INTERVAL);
+
+        //interval i has a rate of (i + 1) * RATE_STEP
+        for (int i = 0; i < INTERVAL_COUNT; i++) {
+            histogram.addSample((i * INTERVAL + 1) * MILLI, (i + 1) * RATE_STEP * INTERVAL / 1000);
+        }
+        //close last interval
+        histogram.addSample(INTERVAL_COUNT * INTERVAL * MILLI + 1, 0);
+
+        histogram.updateSummary();
+
+        Assert.assertEquals(HEADER + "interval count incorrect", INTERVAL_COUNT, histogram.getIntervalCount());
+        Assert.assertEquals(HEADER + "max incorrect", INTERVAL_COUNT * RATE_STEP, histogram.getMax());
+        checkRate("p10", 10 * RATE_STEP, histogram.getP10());
+        checkRate("p50", 50 * RATE_STEP, histogram.getP50());
+        checkRate("p90", 90 * RATE_STEP, histogram.getP90());
+        checkRate("p99", 99 * RATE_STEP, histogram.getP99());
+    }
+
+    @Test
+    public void idleIntervalTest() {
+
+        final ThroughputHistogram histogram = new ThroughputHistogram();
+        histogram.reset(0, INTERVAL);
+
+        histogram.addSample(MILLI, RATE_STEP);
+        //9 intervals without any transfer
+        histogram.addSample(10 * INTERVAL * MILLI + 1, RATE_STEP);
+
+        histogram.updateSummary();
+
+        Assert.assertEquals(HEADER + "interval count incorrect", 10, histogram.getIntervalCount());
+        Assert.assertEquals(HEADER + "p50 should be 0", 0, histogram.getP50());
+        Assert.assertEquals(HEADER + "max incorrect", RATE_STEP * 1000 / INTERVAL, histogram.getMax());
+    }
+
+    @Test
+    public void resetTest() {
+
+        final ThroughputHistogram histogram = new ThroughputHistogram();
+        histogram.reset(0, INTERVAL);
+        histogram.addSample(MILLI, RATE_STEP);
+        histogram.addSample(INTERVAL * MILLI + 1, RATE_STEP);
+        histogram.updateSummary();
+        Assert.assertTrue(HEADER + "p50 should be > 0", histogram.getP50() > 0);
+
+        histogram.reset(0, INTERVAL);
+        histogram.updateSummary();
+
+        Assert.assertEquals(HEADER + "interval count incorrect", 0, histogram.getIntervalCount());
+        Assert.assertEquals(HEADER + "p50 should be 0", 0, histogram.getP50());
+        Assert.assertEquals(HEADER + "max should be 0", 0, histogram.getMax());
+    }
+
+    /**
+     * Check a rate given by histogram within bucket error.
+     *
+     * @param name     percentile name
+     * @param expected expected rate
+     * @param actual   rate given by histogram
+     */
+    private void checkRate(final String name, final long expected, final long actual) {
+        Assert.assertEquals(HEADER + name + " incorrect", expected, actual, expected * TOLERANCE);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest.test;
+
+import fr.bmartel.speedtest.SpeedTestConst;
+import fr.bmartel.speedtest.WarmupDetector;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * TCP slow-start detector fed with synthetic samples.
+ *
+ * @author Bertrand Martel
+ */
+public class WarmupDetectorTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(WarmupDetectorTest.class);
+
+    /**
+     * nanoseconds in a millisecond.
+     */
+    private static final long MILLI = 1000000L;
+
+    /**
+     * interval between two samples in milliseconds.
+     */
+    private static final int SAMPLE_INTERVAL = 10;
+
+    /**
+     * detector interval in milliseconds.
+     */
+    private static final int INTERVAL = 50;
+
+    /**
+     * octets transferred in each sample during first interval.
+     */
+    private static final long OCTET_PER_SAMPLE = 1000;
+
+    /**
+     * number of intervals during which rate doubles.
+     */
+    private static final int RAMP_INTERVALS = 5;
+
+    @Test
+    public void rampThenPlateauTest() {
+
+        final WarmupDetector detector = new WarmupDetector();
+        detector.reset(0, INTERVAL * MILLI);
+
+        final int samplePerInterval = INTERVAL / SAMPLE_INTERVAL;
+        long expectedOctets = 0;
+        int detectedAt = -1;
+
+        for (int i = 0; i < 100 && detectedAt == -1; i++) {
+            //rate doubles on each interval then stays flat
+            final long octets = OCTET_PER_SAMPLE << Math.min(i / samplePerInterval, RAMP_INTERVALS);
+            detector.addSample(i * SAMPLE_INTERVAL * MILLI, octets);
+            if (i < (RAMP_INTERVALS + 1) * samplePerInterval) {
+                expectedOctets += octets;
+            }
+            if (detector.isDetected()) {
+                detectedAt = i;
+            }
+        }
+        //warm-up ends with first interval at plateau rate, detected after plateau intervals
+        Assert.assertEquals(HEADER + "detection sample incorrect",
+                (RAMP_INTERVALS + 1 + SpeedTestConst.WARMUP_PLATEAU_INTERVALS) * samplePerInterval, detectedAt);
+        Assert.assertEquals(HEADER + "warm-up duration incorrect", (RAMP_INTERVALS + 1) * INTERVAL * MILLI,
+                detector.getWarmupDuration());
+        Assert.assertEquals(HEADER + "warm-up end time incorrect", (RAMP_INTERVALS + 1) * INTERVAL * MILLI,
+                detector.getWarmupEndTime());
+        Assert.assertEquals(HEADER + "warm-up octet count incorrect", expectedOctets,
+                detector.getWarmupOctetCount());
+    }
+
+    @Test
+    public void constantRateTest() {
+
+        final WarmupDetector detector = new WarmupDetector();
+        detector.reset(0, INTERVAL * MILLI);
+
+        for (int i = 0; i < 100 && !detector.isDetected(); i++) {
+            detector.addSample(i * SAMPLE_INTERVAL * MILLI, OCTET_PER_SAMPLE);
+        }
+        Assert.assertTrue(HEADER + "warm-up should be detected", detector.isDetected());
+        Assert.assertEquals(HEADER + "warm-up duration incorrect", INTERVAL * MILLI, detector.getWarmupDuration());
+        Assert.assertEquals(HEADER + "warm-up octet count incorrect", OCTET_PER_SAMPLE * INTERVAL / SAMPLE_INTERVAL,
+                detector.getWarmupOctetCount());
+    }
+
+    @Test
+    public void growingRateTest() {
+
+        final WarmupDetector detector = new WarmupDetector();
+        detector.reset(0, INTERVAL * MILLI);
+
+        for (int i = 0; i < 100; i++) {
+            //rate grows by half on each interval
+            final long octets = OCTET_PER_SAMPLE * Math.round(Math.pow(1.5, i / (INTERVAL / SAMPLE_INTERVAL)));
+            detector.addSample(i * SAMPLE_INTERVAL * MILLI, octets);
+            Assert.assertFalse(HEADER + "warm-up should not be detected while rate grows", detector.isDetected());
+        }
+        Assert.assertEquals(HEADER + "warm-up duration should be 0", 0, detector.getWarmupDuration());
+        Assert.assertEquals(HEADER + "warm-up octet count should be 0", 0, detector.getWarmupOctetCount());
+    }
+}
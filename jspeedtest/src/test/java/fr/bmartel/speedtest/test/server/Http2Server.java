@@ -0,0 +1,416 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.test.server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal HTTP/2 server with prior knowledge (h2c) used to test HTTP/2 speed test : any GET request is answered with
+ * a body of a fixed size and any POST request body is counted and answered with an empty 200 response. Flow control
+ * windows granted by client are respected.
+ *
+ * @author Bertrand Martel
+ */
+public class Http2Server {
+
+    /**
+     * maximum DATA frame payload size.
+     */
+    private static final int MAX_FRAME_SIZE = 16384;
+
+    /**
+     * default flow control window size.
+     */
+    private static final int DEFAULT_WINDOW_SIZE = 65535;
+
+    /**
+     * server socket.
+     */
+    private final ServerSocket mServerSocket;
+
+    /**
+     * size of body sent for each GET request.
+     */
+    private final int mDownloadSize;
+
+    /**
+     * number of connections accepted.
+     */
+    private final AtomicInteger mConnectionCount = new AtomicInteger();
+
+    /**
+     * number of streams opened by clients.
+     */
+    private final AtomicInteger mStreamCount = new AtomicInteger();
+
+    /**
+     * number of request body octet received.
+     */
+    private final AtomicLong mUploadSize = new AtomicLong();
+
+    /**
+     * SETTINGS payload sent to clients.
+     */
+    private volatile byte[] mSettings = new byte[]{0, 0x3, 0, 0, 0, 100};
+
+    /**
+     * Build and start server on an ephemeral port.
+     *
+     * @param downloadSize size of body sent for each GET request
+     * @throws IOException server socket exception
+     */
+    public Http2Server(final int downloadSize) throws IOException {
+        mServerSocket = new ServerSocket(0);
+        mDownloadSize = downloadSize;
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!mServerSocket.isClosed()) {
+                        final Socket socket = mServerSocket.accept();
+                        mConnectionCount.incrementAndGet();
+                        new Thread(new Connection(socket)).start();
+                    }
+                } catch (IOException e) {
+                    //server closed
+                }
+            }
+        }).start();
+    }
+
+    /**
+     * Set SETTINGS payload sent to clients on new connections.
+     *
+     * @param settings SETTINGS frame payload
+     */
+    public void setSettings(final byte[] settings) {
+        mSettings = settings;
+    }
+
+    /**
+     * Get server port.
+     *
+     * @return port
+     */
+    public int getPort() {
+        return mServerSocket.getLocalPort();
+    }
+
+    /**
+     * Get number of connections accepted.
+     *
+     * @return number of connections
+     */
+    public int getConnectionCount() {
+        return mConnectionCount.get();
+    }
+
+    /**
+     * Get number of streams opened by clients.
+     *
+     * @return number of streams
+     */
+    public int getStreamCount() {
+        return mStreamCount.get();
+    }
+
+    /**
+     * Get number of request body octet received.
+     *
+     * @return number of octet
+     */
+    public long getUploadSize() {
+        return mUploadSize.get();
+    }
+
+    /**
+     * Close server.
+     */
+    public void close() {
+        try {
+            mServerSocket.close();
+        } catch (IOException e) {
+            //e.printStackTrace();
+        }
+    }
+
+    /**
+     * One client connection.
+     */
+    private class Connection implements Runnable {
+
+        /**
+         * client socket.
+         */
+        private final Socket mSocket;
+
+        /**
+         * buffered socket output stream.
+         */
+        private OutputStream mOutputStream;
+
+        /**
+         * connection send window.
+         */
+        private long mConnectionWindow = DEFAULT_WINDOW_SIZE;
+
+        /**
+         * initial stream send window set by client.
+         */
+        private int mInitialWindow = DEFAULT_WINDOW_SIZE;
+
+        /**
+         * send window of each stream.
+         */
+        private final Map<Integer, Long> mStreamWindow = new HashMap<>();
+
+        /**
+         * Build connection.
+         *
+         * @param socket client socket
+         */
+        private Connection(final Socket socket) {
+            mSocket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final DataInputStream inputStream = new DataInputStream(mSocket.getInputStream());
+                mOutputStream = new BufferedOutputStream(mSocket.getOutputStream(), MAX_FRAME_SIZE * 2);
+
+                inputStream.readFully(new byte[24]);
+
+                writeFrame(0x4, 0, 0, mSettings);
+
+                final byte[] header = new byte[9];
+
+                while (true) {
+                    inputStream.readFully(header);
+
+                    final int length = ((header[0] & 0xFF) << 16) | ((header[1] & 0xFF) << 8) | (header[2] & 0xFF);
+                    final int type = header[3];
+                    final int flags = header[4];
+                    final int streamId = readInt(header, 5) & 0x7FFFFFFF;
+                    final byte[] payload = new byte[length];
+                    inputStream.readFully(payload);
+
+                    switch (type) {
+                        case 0x0:
+                            onData(streamId, flags, length);
+                            break;
+                        case 0x1:
+                            mStreamCount.incrementAndGet();
+                            synchronized (this) {
+                                mStreamWindow.put(streamId, (long) mInitialWindow);
+                            }
+                            if ((flags & 0x1) != 0) {
+                                sendBody(streamId);
+                            }
+                            break;
+                        case 0x4:
+                            if ((flags & 0x1) == 0) {
+                                onSettings(payload);
+                            }
+                            break;
+                        case 0x8:
+                            onWindowUpdate(streamId, readInt(payload, 0) & 0x7FFFFFFF);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } catch (IOException e) {
+                //connection closed
+            } finally {
+                synchronized (this) {
+                    mStreamWindow.clear();
+                    notifyAll();
+                }
+                try {
+                    mSocket.close();
+                } catch (IOException e) {
+                    //e.printStackTrace();
+                }
+            }
+        }
+
+        /**
+         * Count request body and give window back to client, response is sent at end of stream.
+         *
+         * @param streamId stream identifier
+         * @param flags    frame flags
+         * @param length   frame payload length
+         * @throws IOException socket io exception
+         */
+        private void onData(final int streamId, final int flags, final int length) throws IOException {
+            mUploadSize.addAndGet(length);
+
+            if (length > 0) {
+                writeFrame(0x8, 0, 0, intBytes(length));
+                if ((flags & 0x1) == 0) {
+                    writeFrame(0x8, 0, streamId, intBytes(length));
+                }
+            }
+            if ((flags & 0x1) != 0) {
+                writeFrame(0x1, 0x4 | 0x1, streamId, new byte[]{(byte) 0x88});
+            }
+        }
+
+        /**
+         * Apply client settings and acknowledge them.
+         *
+         * @param payload settings payload
+         * @throws IOException socket io exception
+         */
+        private void onSettings(final byte[] payload) throws IOException {
+            for (int i = 0; i + 6 <= payload.length; i += 6) {
+                if (payload[i + 1] == 0x4) {
+                    synchronized (this) {
+                        mInitialWindow = readInt(payload, i + 2);
+                    }
+                }
+            }
+            writeFrame(0x4, 0x1, 0, new byte[0]);
+        }
+
+        /**
+         * Credit send window.
+         *
+         * @param streamId  stream identifier (0 for connection)
+         * @param increment window increment
+         */
+        private synchronized void onWindowUpdate(final int streamId, final int increment) {
+            if (streamId == 0) {
+                mConnectionWindow += increment;
+            } else if (mStreamWindow.containsKey(streamId)) {
+                mStreamWindow.put(streamId, mStreamWindow.get(streamId) + increment);
+            }
+            notifyAll();
+        }
+
+        /**
+         * Send response to a GET request from a new thread.
+         *
+         * @param streamId stream identifier
+         */
+        private void sendBody(final int streamId) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final byte[] length = String.valueOf(mDownloadSize).getBytes(StandardCharsets.US_ASCII);
+                        final byte[] block = new byte[4 + length.length];
+                        block[0] = (byte) 0x88;
+                        block[1] = 0x0F;
+                        block[2] = 0x0D;
+                        block[3] = (byte) length.length;
+                        System.arraycopy(length, 0, block, 4, length.length);
+                        writeFrame(0x1, 0x4, streamId, block);
+
+                        final byte[] data = new byte[MAX_FRAME_SIZE];
+                        int sent = 0;
+
+                        while (sent < mDownloadSize) {
+                            final int count;
+                            synchronized (Connection.this) {
+                                while (mStreamWindow.containsKey(streamId) &&
+                                        (mConnectionWindow <= 0 || mStreamWindow.get(streamId) <= 0)) {
+                                    Connection.this.wait();
+                                }
+                                if (!mStreamWindow.containsKey(streamId)) {
+                                    return;
+                                }
+                                count = (int) Math.min(Math.min(MAX_FRAME_SIZE, mDownloadSize - sent),
+                                        Math.min(mConnectionWindow, mStreamWindow.get(streamId)));
+                                mConnectionWindow -= count;
+                                mStreamWindow.put(streamId, mStreamWindow.get(streamId) - count);
+                            }
+                            sent += count;
+                            writeFrame(0x0, (sent == mDownloadSize) ? 0x1 : 0, streamId,
+                                    (count == data.length) ? data : Arrays.copyOf(data, count));
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        //connection closed
+                    }
+                }
+            }).start();
+        }
+
+        /**
+         * Write a frame.
+         *
+         * @param type     frame type
+         * @param flags    frame flags
+         * @param streamId stream identifier
+         * @param payload  frame payload
+         * @throws IOException socket io exception
+         */
+        private void writeFrame(final int type, final int flags, final int streamId, final byte[] payload)
+                throws IOException {
+            synchronized (mOutputStream) {
+                mOutputStream.write(new byte[]{(byte) (payload.length >>> 16), (byte) (payload.length >>> 8),
+                        (byte) payload.length, (byte) type, (byte) flags});
+                mOutputStream.write(intBytes(streamId));
+                mOutputStream.write(payload);
+                mOutputStream.flush();
+            }
+        }
+    }
+
+    /**
+     * Read a 32 bit big endian integer.
+     *
+     * @param buffer buffer to read from
+     * @param offset offset of integer
+     * @return integer value
+     */
+    private static int readInt(final byte[] buffer, final int offset) {
+        return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16) |
+                ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Get 32 bit big endian representation of an integer.
+     *
+     * @param value integer value
+     * @return 4 octet
+     */
+    private static byte[] intBytes(final int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+}
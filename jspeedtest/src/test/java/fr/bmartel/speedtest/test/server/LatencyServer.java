@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.test.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal keep-alive HTTP server used to test latency probes : each request header is answered with an empty 200
+ * response on the same connection.
+ *
+ * @author Bertrand Martel
+ */
+public class LatencyServer {
+
+    /**
+     * default response sent for each request.
+     */
+    private static final String RESPONSE = "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n";
+
+    /**
+     * response sent for each request.
+     */
+    private final byte[] mResponse;
+
+    /**
+     * server socket.
+     */
+    private final ServerSocket mServerSocket;
+
+    /**
+     * number of connections accepted.
+     */
+    private final AtomicInteger mConnectionCount = new AtomicInteger();
+
+    /**
+     * number of requests answered.
+     */
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+
+    /**
+     * Build and start server on an ephemeral port.
+     *
+     * @throws IOException server socket exception
+     */
+    public LatencyServer() throws IOException {
+        this(RESPONSE);
+    }
+
+    /**
+     * Build and start server on an ephemeral port with a custom response.
+     *
+     * @param response response sent for each request
+     * @throws IOException server socket exception
+     */
+    public LatencyServer(final String response) throws IOException {
+        mResponse = response.getBytes(StandardCharsets.US_ASCII);
+        mServerSocket = new ServerSocket(0);
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!mServerSocket.isClosed()) {
+                        final Socket socket = mServerSocket.accept();
+                        mConnectionCount.incrementAndGet();
+                        new Thread(new Connection(socket)).start();
+                    }
+                } catch (IOException e) {
+                    //server closed
+                }
+            }
+        }).start();
+    }
+
+    /**
+     * Get server port.
+     *
+     * @return port
+     */
+    public int getPort() {
+        return mServerSocket.getLocalPort();
+    }
+
+    /**
+     * Get number of connections accepted.
+     *
+     * @return connection count
+     */
+    public int getConnectionCount() {
+        return mConnectionCount.get();
+    }
+
+    /**
+     * Get number of requests answered.
+     *
+     * @return request count
+     */
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * Close server.
+     */
+    public void close() {
+        try {
+            mServerSocket.close();
+        } catch (IOException e) {
+            //ignored
+        }
+    }
+
+    /**
+     * Client connection answering each request header until end of stream.
+     */
+    private class Connection implements Runnable {
+
+        /**
+         * client socket.
+         */
+        private final Socket mSocket;
+
+        /**
+         * Build connection.
+         *
+         * @param socket client socket
+         */
+        Connection(final Socket socket) {
+            mSocket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final InputStream inputStream = mSocket.getInputStream();
+                final OutputStream outputStream = mSocket.getOutputStream();
+                int matched = 0;
+                int read;
+
+                while ((read = inputStream.read()) != -1) {
+                    if ((read == '\r' && matched % 2 == 0) || (read == '\n' && matched % 2 == 1)) {
+                        matched++;
+                    } else {
+                        matched = 0;
+                    }
+                    if (matched == 4) {
+                        matched = 0;
+                        mRequestCount.incrementAndGet();
+                        outputStream.write(mResponse);
+                        outputStream.flush();
+                    }
+                }
+            } catch (IOException e) {
+                //connection closed
+            } finally {
+                try {
+                    mSocket.close();
+                } catch (IOException e) {
+                    //ignored
+                }
+            }
+        }
+    }
+}